@@ -18,9 +18,14 @@ package com.android.tools.sizereduction.analyzer;
 
 import com.android.tools.sizereduction.analyzer.AnalyzerMain.VersionProvider;
 import com.android.tools.sizereduction.analyzer.analyzers.Version;
+import com.android.tools.sizereduction.analyzer.cli.CheckApk;
 import com.android.tools.sizereduction.analyzer.cli.CheckBundle;
 import com.android.tools.sizereduction.analyzer.cli.CheckProject;
+import com.android.tools.sizereduction.analyzer.cli.DeviceSizes;
+import com.android.tools.sizereduction.analyzer.cli.DiffBundles;
+import com.android.tools.sizereduction.analyzer.cli.History;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.Callable;
 import org.fusesource.jansi.AnsiConsole;
 import picocli.CommandLine;
@@ -36,7 +41,11 @@ import picocli.CommandLine.Option;
     versionProvider = VersionProvider.class,
     subcommands = {
       CheckBundle.class,
+      CheckApk.class,
       CheckProject.class,
+      DiffBundles.class,
+      DeviceSizes.class,
+      History.class,
       HelpCommand.class,
     })
 public class AnalyzerMain implements Callable<Void> {
@@ -57,11 +66,22 @@ public class AnalyzerMain implements Callable<Void> {
   public static void main(String[] args) throws IOException {
     AnsiConsole.systemInstall();
     AnalyzerMain main = new AnalyzerMain();
-    main.handleCommand(args);
+    int exitCode = main.handleCommand(args);
+    if (exitCode != 0) {
+      System.exit(exitCode);
+    }
   }
 
-  void handleCommand(String[] args) {
-    new CommandLine(this).parseWithHandler(new CommandLine.RunLast(), args);
+  /** Runs the command, and returns the exit code reported by it, 0 if there is none. */
+  int handleCommand(String[] args) {
+    List<Object> results =
+        new CommandLine(this)
+            .setCaseInsensitiveEnumValuesAllowed(true)
+            .parseWithHandler(new CommandLine.RunLast(), args);
+    if (results != null && !results.isEmpty() && results.get(0) instanceof Integer) {
+      return (Integer) results.get(0);
+    }
+    return 0;
   }
 
   @Override
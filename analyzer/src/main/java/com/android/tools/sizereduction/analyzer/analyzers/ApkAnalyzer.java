@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.android.tools.sizereduction.analyzer.model.ApkContext;
+import com.android.tools.sizereduction.analyzer.model.BinaryManifest;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryFileData;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
+import com.android.tools.sizereduction.analyzer.suggesters.ApkEntrySuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.ApkSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.CollectingSuggestionSink;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
+import com.android.tools.sizereduction.analyzer.zip.ZipCentralDirectory;
+import com.android.tools.sizereduction.analyzer.zip.ZipEntryReader;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.CheckReturnValue;
+
+/**
+ * Analyzes an APK by applying the provided list of suggesters to the APK artifact.
+ *
+ * <p>The entries of the APK go through the same pipeline as the entries of a bundle: they are read
+ * in file order, in batches that are processed concurrently, and their suggestions are pushed to
+ * the sink in entry order.
+ */
+public final class ApkAnalyzer implements ArtifactAnalyzer {
+
+  private static final String MANIFEST_ENTRY = "AndroidManifest.xml";
+  private static final String METADATA_TAG_WEARABLE = "com.google.android.wearable.beta.app";
+
+  private final ImmutableList<ApkSuggester> apkSuggesters;
+  private final ImmutableList<ApkEntrySuggester> apkEntrySuggesters;
+
+  public ApkAnalyzer(
+      ImmutableList<ApkSuggester> apkSuggesters,
+      ImmutableList<ApkEntrySuggester> apkEntrySuggesters) {
+    this.apkSuggesters = apkSuggesters;
+    this.apkEntrySuggesters = apkEntrySuggesters;
+  }
+
+  /** Analyzes the given APK file for size optimization suggestions. */
+  @Override
+  @CheckReturnValue
+  public ImmutableList<Suggestion> analyze(File artifactFile) {
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+    analyze(artifactFile, sink);
+    return sink.getSuggestions();
+  }
+
+  /** Analyzes the given APK file, pushing each suggestion to the sink as it is produced. */
+  @Override
+  public void analyze(File artifactFile, SuggestionSink sink) {
+    try (ZipFile zipFile = new ZipFile(artifactFile);
+        ZipEntryReader entryReader = ZipEntryReader.open(artifactFile.toPath())) {
+      ApkContext context = readContext(zipFile);
+
+      // Process suggesters operating on the entire APK.
+      apkSuggesters.forEach(suggester -> suggester.processApk(context, zipFile, sink));
+      if (apkEntrySuggesters.isEmpty()) {
+        return;
+      }
+
+      // Process suggesters operating on the individual APK files.
+      BundleEntryTable entryTable =
+          BundleEntryTable.createWithoutModules(ZipCentralDirectory.open(artifactFile.toPath()));
+      EntryReadSchedule schedule =
+          EntryReadSchedule.create(entryTable, entryReader, artifactFile.length());
+      EntryOrderSink entryOrderSink = new EntryOrderSink(schedule, sink);
+      IntStream.range(0, schedule.getBatchCount())
+          .parallel()
+          .mapToObj(batch -> processEntries(entryTable, schedule, batch, context))
+          .forEachOrdered(entryOrderSink::acceptBatch);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Applies the entry suggesters to the entries of the batch, grouping suggestions by entry. */
+  private ImmutableListMultimap<Integer, Suggestion> processEntries(
+      BundleEntryTable entryTable, EntryReadSchedule schedule, int batch, ApkContext context) {
+    BundleEntryFileData fileData =
+        new BundleEntryFileData(schedule.takeBatchSource(batch), entryTable);
+    ImmutableListMultimap.Builder<Integer, Suggestion> suggestions =
+        ImmutableListMultimap.builder();
+    schedule
+        .getBatchEntries(batch)
+        .forEach(
+            index -> {
+              for (ApkEntrySuggester suggester : apkEntrySuggesters) {
+                fileData.moveTo(index);
+                suggester.processApkZipEntry(
+                    context, fileData, suggestion -> suggestions.put(index, suggestion));
+              }
+            });
+    return suggestions.build();
+  }
+
+  /** Reads the context of the APK from its binary manifest. */
+  private static ApkContext readContext(ZipFile zipFile) throws IOException {
+    ZipEntry manifestEntry = zipFile.getEntry(MANIFEST_ENTRY);
+    if (manifestEntry == null) {
+      throw new IllegalArgumentException("The APK has no " + MANIFEST_ENTRY + ".");
+    }
+    BinaryManifest manifest;
+    try (InputStream inputStream = zipFile.getInputStream(manifestEntry)) {
+      manifest = BinaryManifest.parse(ByteStreams.toByteArray(inputStream));
+    }
+    return ApkContext.create(
+        manifest.getMinSdkVersion(),
+        /* onDemand= */ false,
+        manifest.getMetadataNames().contains(METADATA_TAG_WEARABLE));
+  }
+}
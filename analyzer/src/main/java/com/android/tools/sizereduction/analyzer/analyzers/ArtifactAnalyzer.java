@@ -17,6 +17,7 @@
 package com.android.tools.sizereduction.analyzer.analyzers;
 
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
 import com.google.common.collect.ImmutableList;
 import java.io.File;
 
@@ -26,4 +27,10 @@ import java.io.File;
  */
 interface ArtifactAnalyzer {
   ImmutableList<Suggestion> analyze(File artifactFile);
+
+  /**
+   * Analyzes the given artifact, pushing each suggestion to the sink as soon as it is produced
+   * instead of accumulating all of them first.
+   */
+  void analyze(File artifactFile, SuggestionSink sink);
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.LongStream;
+
+/**
+ * Computes a content hash of an artifact file. The file is split into fixed size chunks that are
+ * hashed in parallel using positional reads, and the chunk hashes are then combined into the final
+ * hash, so the result only depends on the file content and not on the level of parallelism.
+ */
+public final class ArtifactHasher {
+
+  @VisibleForTesting static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+  private ArtifactHasher() {}
+
+  /** Returns the hex encoded content hash of the given file. */
+  public static String hash(File file) {
+    return hash(file, DEFAULT_CHUNK_SIZE);
+  }
+
+  @VisibleForTesting
+  static String hash(File file, int chunkSize) {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      long chunkCount = (size + chunkSize - 1) / chunkSize;
+      ImmutableList<HashCode> chunkHashes =
+          LongStream.range(0, chunkCount)
+              .parallel()
+              .mapToObj(chunk -> hashChunk(channel, chunk * chunkSize, chunkSize, size))
+              .collect(toImmutableList());
+
+      Hasher hasher = Hashing.sha256().newHasher().putLong(size);
+      chunkHashes.forEach(chunkHash -> hasher.putBytes(chunkHash.asBytes()));
+      return hasher.hash().toString();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static HashCode hashChunk(FileChannel channel, long start, int chunkSize, long size) {
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(chunkSize, size - start));
+    try {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, start + buffer.position()) < 0) {
+          throw new IOException("Unexpected end of file while hashing.");
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    buffer.flip();
+    return Hashing.sha256().newHasher().putBytes(buffer).hash();
+  }
+}
@@ -17,6 +17,7 @@
 package com.android.tools.sizereduction.analyzer.analyzers;
 
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.util.stream.Collectors.joining;
 
 import com.android.bundle.Commands.DeliveryType;
 import com.android.tools.build.bundletool.model.AndroidManifest;
@@ -24,43 +25,149 @@ import com.android.tools.build.bundletool.model.AppBundle;
 import com.android.tools.build.bundletool.model.BundleModule;
 import com.android.tools.build.bundletool.model.BundleModuleName;
 import com.android.tools.build.bundletool.model.version.BundleToolVersion;
+import com.android.tools.sizereduction.analyzer.analyzers.NestedArchiveExpander.NestedEntry;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
-import com.android.tools.sizereduction.analyzer.model.ZipFileData;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryFileData;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.CollectingSuggestionSink;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
+import com.android.tools.sizereduction.analyzer.zip.ZipCentralDirectory;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteSource;
+import com.google.play.bit.proto.SizeAnalyzerLog.SizeAnalysisLog;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
-import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.zip.ZipEntry;
+import java.util.stream.IntStream;
 import java.util.zip.ZipFile;
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
 
 /** Analyzes an app bundle by applying the provided list of suggesters to the bundle artifact. */
 public final class BundleAnalyzer implements ArtifactAnalyzer {
 
   private final ImmutableList<BundleSuggester> bundleSuggesters;
   private final ImmutableList<BundleEntrySuggester> bundleEntrySuggesters;
+  @Nullable private final ResultCache resultCache;
+  private final NestedArchiveExpander nestedArchiveExpander;
   private static final String METADATA_TAG_WEARABLE = "com.google.android.wearable.beta.app";
 
   public BundleAnalyzer(
       ImmutableList<BundleSuggester> bundleSuggesters,
       ImmutableList<BundleEntrySuggester> bundleEntrySuggesters) {
+    this(bundleSuggesters, bundleEntrySuggesters, /* resultCache= */ null);
+  }
+
+  /**
+   * Creates an analyzer that reuses the results stored in the given cache for bundles that were
+   * already analyzed with the same analyzer version and suggesters.
+   */
+  public BundleAnalyzer(
+      ImmutableList<BundleSuggester> bundleSuggesters,
+      ImmutableList<BundleEntrySuggester> bundleEntrySuggesters,
+      @Nullable ResultCache resultCache) {
+    this(bundleSuggesters, bundleEntrySuggesters, resultCache, NestedArchiveExpander.DISABLED);
+  }
+
+  /**
+   * Creates an analyzer that also applies the entry suggesters to the entries of the archives
+   * embedded in the bundle, as expanded by the given expander.
+   */
+  public BundleAnalyzer(
+      ImmutableList<BundleSuggester> bundleSuggesters,
+      ImmutableList<BundleEntrySuggester> bundleEntrySuggesters,
+      @Nullable ResultCache resultCache,
+      NestedArchiveExpander nestedArchiveExpander) {
     this.bundleSuggesters = bundleSuggesters;
     this.bundleEntrySuggesters = bundleEntrySuggesters;
+    this.resultCache = resultCache;
+    this.nestedArchiveExpander = nestedArchiveExpander;
   }
 
   /** Analyzes the given bundle file for size optimization suggestions. */
   @Override
   @CheckReturnValue
   public ImmutableList<Suggestion> analyze(File artifactFile) {
-    ImmutableList.Builder<Suggestion> resultBuilder = ImmutableList.<Suggestion>builder();
-    try (ZipFile zipFile = new ZipFile(artifactFile)) {
-      AppBundle appBundle = AppBundle.buildFromZip(zipFile);
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+    analyze(artifactFile, sink);
+    return sink.getSuggestions();
+  }
+
+  /** Analyzes the given bundle file, pushing each suggestion to the sink as it is produced. */
+  @Override
+  public void analyze(File artifactFile, SuggestionSink sink) {
+    analyze(artifactFile, sink, /* sizeAccounting= */ null);
+  }
+
+  /**
+   * Analyzes the given bundle file like {@link #analyze(File, SuggestionSink)}, and additionally
+   * returns a log record with the size breakdown of the bundle and a summary of the suggestions.
+   */
+  public SizeAnalysisLog analyzeAndLog(File artifactFile, SuggestionSink sink) {
+    BundleSizeAccounting sizeAccounting = new BundleSizeAccounting();
+    analyze(artifactFile, SuggestionSink.tee(sink, sizeAccounting), sizeAccounting);
+    return sizeAccounting.toSizeAnalysisLog(artifactFile.length());
+  }
+
+  private void analyze(
+      File artifactFile, SuggestionSink sink, @Nullable BundleSizeAccounting sizeAccounting) {
+    if (resultCache == null) {
+      analyzeBundle(artifactFile, sink, sizeAccounting);
+      return;
+    }
+
+    ResultCache.Key key =
+        resultCache.createKey(
+            ArtifactHasher.hash(artifactFile), Version.CURRENT_VERSION, getSuggesterConfiguration());
+    Optional<ImmutableList<Suggestion>> cachedSuggestions = resultCache.lookup(key);
+    if (cachedSuggestions.isPresent()) {
+      if (sizeAccounting != null) {
+        // The size breakdown is not cached, but only needs the central directory of the bundle.
+        accountEntries(artifactFile, sizeAccounting);
+      }
+      sink.acceptAll(cachedSuggestions.get());
+      return;
+    }
+    // The cache needs the complete result, so keep a copy while still streaming to the caller.
+    CollectingSuggestionSink collectingSink = new CollectingSuggestionSink();
+    analyzeBundle(artifactFile, SuggestionSink.tee(collectingSink, sink), sizeAccounting);
+    resultCache.store(key, collectingSink.getSuggestions());
+  }
+
+  /**
+   * Describes the suggesters applied by this analyzer, so that cached results are only reused for
+   * the same set of suggesters.
+   */
+  private String getSuggesterConfiguration() {
+    return "bundle="
+        + classNames(bundleSuggesters)
+        + ";entry="
+        + classNames(bundleEntrySuggesters)
+        + ";nested="
+        + nestedArchiveExpander;
+  }
+
+  private static String classNames(ImmutableList<?> suggesters) {
+    return suggesters.stream()
+        .map(suggester -> suggester.getClass().getName())
+        .collect(joining(","));
+  }
+
+  private void analyzeBundle(
+      File artifactFile, SuggestionSink sink, @Nullable BundleSizeAccounting sizeAccounting) {
+    try (ZipFile zipFile = new ZipFile(artifactFile);
+        AnalysisSession session = AnalysisSession.create(zipFile)) {
+      AppBundle appBundle = session.getAppBundle();
       ImmutableMap<BundleModuleName, BundleContext> contextPerModule =
           appBundle.getModules().entrySet().stream()
               .collect(
@@ -69,38 +176,112 @@ public final class BundleAnalyzer implements ArtifactAnalyzer {
 
       // Process suggesters operating on the entire bundle.
       BundleContext baseContext = contextPerModule.get(BundleModuleName.BASE_MODULE_NAME);
-      bundleSuggesters.forEach(
-          suggester ->
-              resultBuilder.addAll(suggester.processBundle(baseContext, appBundle, zipFile)));
-
-      // Process suggesters operating on the individual bundle files.
-      Enumeration<? extends ZipEntry> entries = zipFile.entries();
-      while (entries.hasMoreElements()) {
-        ZipEntry entry = entries.nextElement();
-        BundleContext context = findContext(contextPerModule, entry);
-        for (BundleEntrySuggester suggester : bundleEntrySuggesters) {
-          ZipFileData zipFileData = new ZipFileData(zipFile, entry);
-          resultBuilder.addAll(suggester.processBundleZipEntry(context, zipFileData));
+      bundleSuggesters.forEach(suggester -> suggester.processBundle(baseContext, session, sink));
+
+      BundleEntryTable entryTable = session.getEntryTable();
+      if (sizeAccounting != null) {
+        for (int index = 0; index < entryTable.getEntryCount(); index++) {
+          if (!entryTable.isDirectory(index)) {
+            sizeAccounting.addEntry(entryTable.getName(index), entryTable.getSize(index));
+          }
         }
       }
+      if (bundleEntrySuggesters.isEmpty()) {
+        return;
+      }
+
+      // Process suggesters operating on the individual bundle files. Batches of entries that are
+      // adjacent in the file are read ahead and processed concurrently, each moving its own file
+      // data view over the entry table, and their suggestions are pushed to the sink in entry
+      // order.
+      BundleContext[] contextPerModuleId = findContexts(contextPerModule, entryTable);
+      EntryReadSchedule schedule =
+          EntryReadSchedule.create(entryTable, session.getEntryReader(), artifactFile.length());
+      EntryOrderSink entryOrderSink = new EntryOrderSink(schedule, sink);
+      IntStream.range(0, schedule.getBatchCount())
+          .parallel()
+          .mapToObj(
+              batch -> processEntries(session, schedule, batch, baseContext, contextPerModuleId))
+          .forEachOrdered(entryOrderSink::acceptBatch);
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     }
+  }
 
-    return resultBuilder.build();
+  /** Applies the entry suggesters to the entries of the batch, grouping suggestions by entry. */
+  private ImmutableListMultimap<Integer, Suggestion> processEntries(
+      AnalysisSession session,
+      EntryReadSchedule schedule,
+      int batch,
+      BundleContext baseContext,
+      BundleContext[] contextPerModuleId) {
+    BundleEntryTable entryTable = session.getEntryTable();
+    BundleEntryFileData fileData =
+        new BundleEntryFileData(schedule.takeBatchSource(batch), entryTable);
+    ImmutableListMultimap.Builder<Integer, Suggestion> suggestions =
+        ImmutableListMultimap.builder();
+    schedule
+        .getBatchEntries(batch)
+        .forEach(
+            index -> {
+              int moduleId = entryTable.getModuleId(index);
+              BundleContext context =
+                  moduleId == BundleEntryTable.NO_MODULE
+                      ? baseContext
+                      : contextPerModuleId[moduleId];
+              SuggestionSink entrySink = suggestion -> suggestions.put(index, suggestion);
+              for (BundleEntrySuggester suggester : bundleEntrySuggesters) {
+                fileData.moveTo(index);
+                suggester.processBundleZipEntry(context, fileData, entrySink);
+              }
+              if (nestedArchiveExpander.isExpandable(fileData)) {
+                // Suggestions for the entries of nested archives are pushed with their archive.
+                nestedArchiveExpander.expand(
+                    fileData,
+                    new ByteSource() {
+                      @Override
+                      public InputStream openStream() {
+                        fileData.moveTo(index);
+                        return fileData.getInputStream();
+                      }
+                    },
+                    nestedEntry -> processNestedEntry(context, nestedEntry, entrySink));
+              }
+            });
+    return suggestions.build();
+  }
+
+  private void processNestedEntry(
+      BundleContext context, NestedEntry nestedEntry, SuggestionSink sink) {
+    for (BundleEntrySuggester suggester : bundleEntrySuggesters) {
+      suggester.processBundleZipEntry(context, nestedEntry.newFileData(), sink);
+    }
+  }
+
+  private static void accountEntries(File artifactFile, BundleSizeAccounting sizeAccounting) {
+    ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(artifactFile.toPath());
+    for (int index = 0; index < centralDirectory.getEntryCount(); index++) {
+      if (!centralDirectory.isDirectory(index)) {
+        sizeAccounting.addEntry(centralDirectory.getName(index), centralDirectory.getSize(index));
+      }
+    }
   }
 
-  private BundleContext findContext(
-      ImmutableMap<BundleModuleName, BundleContext> contextPerModule, ZipEntry entry) {
-    Optional<BundleModuleName> moduleName = AppBundle.extractModuleName(entry);
-    if (moduleName.isPresent() && contextPerModule.containsKey(moduleName.get())) {
-      return contextPerModule.get(moduleName.get());
+  /** Finds the context of every module of the entry table, defaulting to the base context. */
+  private static BundleContext[] findContexts(
+      ImmutableMap<BundleModuleName, BundleContext> contextPerModule, BundleEntryTable entryTable) {
+    BundleContext baseContext = contextPerModule.get(BundleModuleName.BASE_MODULE_NAME);
+    Map<String, BundleContext> contextPerModuleName = new HashMap<>();
+    contextPerModule.forEach((name, context) -> contextPerModuleName.put(name.getName(), context));
+    BundleContext[] contexts = new BundleContext[entryTable.getModuleCount()];
+    for (int moduleId = 0; moduleId < contexts.length; moduleId++) {
+      contexts[moduleId] =
+          contextPerModuleName.getOrDefault(entryTable.getModuleName(moduleId), baseContext);
     }
-    // Default to the base context
-    return contextPerModule.get(BundleModuleName.BASE_MODULE_NAME);
+    return contexts;
   }
 
-  private static BundleContext createContext(BundleModule module) {
+  static BundleContext createContext(BundleModule module) {
     boolean onDemand =
         BundleToolVersion.getVersionFromBundleConfig(module.getBundleConfig())
                 .isNewerThan(com.android.tools.build.bundletool.model.version.Version.of("0.10.1"))
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+/** The aggregated size differences between two bundles. */
+@AutoValue
+public abstract class BundleDiff {
+
+  public static BundleDiff create(
+      SizeDelta totalDelta,
+      ImmutableList<SizeDelta> moduleDeltas,
+      ImmutableList<SizeDelta> directoryDeltas) {
+    return new AutoValue_BundleDiff(totalDelta, moduleDeltas, directoryDeltas);
+  }
+
+  /** The difference in size of all entries of the bundles. */
+  public abstract SizeDelta getTotalDelta();
+
+  /** The differences per module, ordered by module name. */
+  public abstract ImmutableList<SizeDelta> getModuleDeltas();
+
+  /** The differences per directory directly containing entries, ordered by path. */
+  public abstract ImmutableList<SizeDelta> getDirectoryDeltas();
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.tools.sizereduction.analyzer.model.BundleEntryType;
+import com.android.tools.sizereduction.analyzer.zip.ZipCentralDirectory;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Computes the size differences between two bundles. Only the central directories of the bundles
+ * are read: the entries of both bundles are sorted by name and merge-joined, so the memory used
+ * only depends on the number of entries and not on the size of their content.
+ */
+public final class BundleDiffer {
+
+  /** The module name used for entries that are not part of any module. */
+  public static final String NO_MODULE = "<bundle>";
+
+  private BundleDiffer() {}
+
+  /**
+   * Diffs the given bundles. Every entry whose size changed, including added and removed entries,
+   * is passed to the consumer in path order while the entries are joined.
+   */
+  public static BundleDiff diff(File oldBundle, File newBundle, Consumer<SizeDelta> entryDeltas) {
+    List<EntrySize> oldEntries = readSortedEntries(oldBundle);
+    List<EntrySize> newEntries = readSortedEntries(newBundle);
+
+    SizeAccumulator total = new SizeAccumulator();
+    Map<String, SizeAccumulator> modules = new TreeMap<>();
+    Map<String, SizeAccumulator> directories = new TreeMap<>();
+    int oldIndex = 0;
+    int newIndex = 0;
+    while (oldIndex < oldEntries.size() || newIndex < newEntries.size()) {
+      EntrySize oldEntry = oldIndex < oldEntries.size() ? oldEntries.get(oldIndex) : null;
+      EntrySize newEntry = newIndex < newEntries.size() ? newEntries.get(newIndex) : null;
+      int comparison =
+          oldEntry == null ? 1 : newEntry == null ? -1 : oldEntry.name.compareTo(newEntry.name);
+      if (comparison < 0) {
+        newEntry = null;
+        oldIndex++;
+      } else if (comparison > 0) {
+        oldEntry = null;
+        newIndex++;
+      } else {
+        oldIndex++;
+        newIndex++;
+      }
+
+      String name = oldEntry != null ? oldEntry.name : newEntry.name;
+      SizeAccumulator entry = new SizeAccumulator();
+      entry.add(oldEntry, newEntry);
+      total.add(oldEntry, newEntry);
+      modules
+          .computeIfAbsent(
+              BundleEntryType.getModuleName(name).orElse(NO_MODULE), key -> new SizeAccumulator())
+          .add(oldEntry, newEntry);
+      directories
+          .computeIfAbsent(getDirectory(name), key -> new SizeAccumulator())
+          .add(oldEntry, newEntry);
+      if (entry.hasChanged()) {
+        entryDeltas.accept(entry.toSizeDelta(name));
+      }
+    }
+
+    return BundleDiff.create(
+        total.toSizeDelta(""), toSizeDeltas(modules), toSizeDeltas(directories));
+  }
+
+  private static List<EntrySize> readSortedEntries(File bundle) {
+    List<EntrySize> entries = new ArrayList<>();
+    ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(bundle.toPath());
+    for (int index = 0; index < centralDirectory.getEntryCount(); index++) {
+      if (!centralDirectory.isDirectory(index)) {
+        entries.add(
+            new EntrySize(
+                centralDirectory.getName(index),
+                centralDirectory.getCompressedSize(index),
+                centralDirectory.getSize(index)));
+      }
+    }
+    entries.sort(Comparator.comparing(entry -> entry.name));
+    return entries;
+  }
+
+  private static String getDirectory(String entryName) {
+    int separator = entryName.lastIndexOf('/');
+    return separator < 0 ? "" : entryName.substring(0, separator);
+  }
+
+  private static ImmutableList<SizeDelta> toSizeDeltas(
+      Map<String, SizeAccumulator> accumulators) {
+    return accumulators.entrySet().stream()
+        .map(entry -> entry.getValue().toSizeDelta(entry.getKey()))
+        .collect(toImmutableList());
+  }
+
+  /** The sizes of a single bundle entry, as read from the central directory. */
+  private static final class EntrySize {
+    private final String name;
+    private final long compressedSize;
+    private final long size;
+
+    private EntrySize(String name, long compressedSize, long size) {
+      this.name = name;
+      this.compressedSize = compressedSize;
+      this.size = size;
+    }
+  }
+
+  /** Sums the sizes of entries in both bundles. */
+  private static final class SizeAccumulator {
+    private long oldCompressedSize;
+    private long newCompressedSize;
+    private long oldSize;
+    private long newSize;
+    private boolean entryAddedOrRemoved;
+
+    private void add(EntrySize oldEntry, EntrySize newEntry) {
+      if (oldEntry != null) {
+        oldCompressedSize += oldEntry.compressedSize;
+        oldSize += oldEntry.size;
+      }
+      if (newEntry != null) {
+        newCompressedSize += newEntry.compressedSize;
+        newSize += newEntry.size;
+      }
+      entryAddedOrRemoved |= oldEntry == null || newEntry == null;
+    }
+
+    private boolean hasChanged() {
+      return entryAddedOrRemoved || oldCompressedSize != newCompressedSize || oldSize != newSize;
+    }
+
+    private SizeDelta toSizeDelta(String path) {
+      return SizeDelta.create(path, oldCompressedSize, newCompressedSize, oldSize, newSize);
+    }
+  }
+}
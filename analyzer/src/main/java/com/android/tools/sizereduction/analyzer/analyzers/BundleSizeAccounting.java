@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.tools.sizereduction.analyzer.model.BundleEntryType;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
+import com.google.common.collect.ImmutableList;
+import com.google.play.bit.proto.SizeAnalyzerLog.ArtifactType;
+import com.google.play.bit.proto.SizeAnalyzerLog.BundleSizeBreakdown;
+import com.google.play.bit.proto.SizeAnalyzerLog.ErrorType;
+import com.google.play.bit.proto.SizeAnalyzerLog.SizeAnalysisLog;
+import com.google.play.bit.proto.SizeAnalyzerLog.SuggestionsByIssueType;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+
+/**
+ * Accumulates the size breakdown of a bundle and a summary of its suggestions while the bundle is
+ * being analyzed, so that a {@link SizeAnalysisLog} can be produced without another pass over the
+ * bundle.
+ */
+public final class BundleSizeAccounting implements SuggestionSink {
+
+  private final BundleSizeBreakdown.Builder totalBreakdown = BundleSizeBreakdown.newBuilder();
+  private final Map<String, BundleSizeBreakdown.Builder> moduleBreakdowns = new TreeMap<>();
+  private final Map<Suggestion.IssueType, SuggestionsByIssueType.Builder> suggestionsByIssueType =
+      new EnumMap<>(Suggestion.IssueType.class);
+
+  /** Adds the uncompressed size of the given bundle entry to the breakdowns. */
+  public void addEntry(ZipEntry entry) {
+    if (!entry.isDirectory()) {
+      addEntry(entry.getName(), Math.max(entry.getSize(), 0L));
+    }
+  }
+
+  /** Adds the uncompressed size of the bundle file entry with the given name to the breakdowns. */
+  public void addEntry(String entryName, long size) {
+    Optional<String> moduleName = BundleEntryType.getModuleName(entryName);
+    if (!moduleName.isPresent()) {
+      return;
+    }
+    BundleEntryType entryType = BundleEntryType.fromEntryName(entryName);
+    addSize(totalBreakdown, entryType, size);
+    addSize(
+        moduleBreakdowns.computeIfAbsent(
+            moduleName.get(), name -> BundleSizeBreakdown.newBuilder().setModuleName(name)),
+        entryType,
+        size);
+  }
+
+  @Override
+  public void accept(Suggestion suggestion) {
+    SuggestionsByIssueType.Builder summary =
+        suggestionsByIssueType.computeIfAbsent(
+            suggestion.getIssueType(),
+            issueType ->
+                SuggestionsByIssueType.newBuilder()
+                    .setIssueType(issueType.name())
+                    .setCategory(suggestion.getCategory().name()));
+    summary.setSuggestionCount(summary.getSuggestionCount() + 1);
+    if (suggestion.getEstimatedBytesSaved() != null) {
+      summary.setEstimatedSavingsBytes(
+          summary.getEstimatedSavingsBytes() + suggestion.getEstimatedBytesSaved());
+    }
+  }
+
+  /** Returns the size breakdown of the whole bundle. */
+  public BundleSizeBreakdown getTotalBreakdown(long aabFileBytes) {
+    return totalBreakdown.clone().setAabFileBytes(aabFileBytes).build();
+  }
+
+  /** Returns the size breakdown of each module, ordered by module name. */
+  public ImmutableList<BundleSizeBreakdown> getModuleBreakdowns() {
+    return moduleBreakdowns.values().stream()
+        .map(BundleSizeBreakdown.Builder::build)
+        .collect(toImmutableList());
+  }
+
+  /** Creates the log record for a successful analysis of a bundle of the given size. */
+  public SizeAnalysisLog toSizeAnalysisLog(long aabFileBytes) {
+    return SizeAnalysisLog.newBuilder()
+        .setAnalyzerVersion(Version.CURRENT_VERSION)
+        .setArtifactType(ArtifactType.APP_BUNDLE)
+        .setErrorType(ErrorType.NO_ERROR)
+        .setBundleSizeBreakdown(getTotalBreakdown(aabFileBytes))
+        .addAllModuleSizeBreakdowns(getModuleBreakdowns())
+        .addAllSuggestionsByIssueType(
+            suggestionsByIssueType.values().stream()
+                .map(SuggestionsByIssueType.Builder::build)
+                .collect(toImmutableList()))
+        .build();
+  }
+
+  private static void addSize(
+      BundleSizeBreakdown.Builder breakdown, BundleEntryType entryType, long size) {
+    switch (entryType) {
+      case DEX:
+        breakdown.setDexBytes(breakdown.getDexBytes() + size);
+        break;
+      case RESOURCE_TABLE:
+        breakdown.setResourcePbBytes(breakdown.getResourcePbBytes() + size);
+        break;
+      case RESOURCE:
+        breakdown.setResourceFileBytes(breakdown.getResourceFileBytes() + size);
+        break;
+      case ASSET:
+        breakdown.setAssetBytes(breakdown.getAssetBytes() + size);
+        break;
+      case NATIVE_LIB:
+        breakdown.setNativeLibBytes(breakdown.getNativeLibBytes() + size);
+        break;
+      case OTHER:
+        break;
+    }
+  }
+}
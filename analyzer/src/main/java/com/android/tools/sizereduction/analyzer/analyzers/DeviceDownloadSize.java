@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+/** The size of the APKs that a device gets when installing a bundle. */
+@AutoValue
+public abstract class DeviceDownloadSize {
+
+  public static DeviceDownloadSize create(
+      String deviceName, ImmutableList<String> apkPaths, long downloadSize, long installSize) {
+    return new AutoValue_DeviceDownloadSize(deviceName, apkPaths, downloadSize, installSize);
+  }
+
+  /** The name of the device spec. */
+  public abstract String getDeviceName();
+
+  /** The paths of the APKs delivered to the device in the APK set, e.g. splits/base-master.apk. */
+  public abstract ImmutableList<String> getApkPaths();
+
+  /** The number of bytes transferred to the device, with the APKs gzipped. */
+  public abstract long getDownloadSize();
+
+  /**
+   * The number of bytes taken by the APKs once installed, including the native libraries that are
+   * extracted from the APKs.
+   */
+  public abstract long getInstallSize();
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.bundle.Commands.BuildApksResult;
+import com.android.bundle.Devices.DeviceSpec;
+import com.android.tools.build.bundletool.androidtools.Aapt2Command;
+import com.android.tools.build.bundletool.commands.BuildApksCommand;
+import com.android.tools.build.bundletool.device.ApkMatcher;
+import com.android.tools.build.bundletool.device.ApkMatcher.GeneratedApk;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reports the sizes of the APKs that devices get when installing a bundle, rather than the size of
+ * the bundle.
+ *
+ * <p>The APKs are generated by bundletool into an APK set, and selected for each device with the
+ * device matching of bundletool, so that the splits, the standalone APKs of devices below
+ * Lollipop and the content of each APK are those actually served. The size of each APK is only
+ * computed once for all the devices getting it, and devices are matched in parallel.
+ */
+public final class DownloadSizeSimulator implements Closeable {
+
+  private static final String TABLE_OF_CONTENTS_ENTRY = "toc.pb";
+  private static final String NATIVE_LIBRARIES_DIRECTORY = "lib/";
+  private static final int DEFAULT_DENSITY = 160;
+
+  private final ZipFile apkSet;
+  private final BuildApksResult tableOfContents;
+  private final int minSdkVersion;
+  private final ConcurrentMap<String, ApkSize> apkSizes = new ConcurrentHashMap<>();
+
+  private DownloadSizeSimulator(ZipFile apkSet, BuildApksResult tableOfContents) {
+    this.apkSet = apkSet;
+    this.tableOfContents = tableOfContents;
+    this.minSdkVersion =
+        tableOfContents.getVariantList().stream()
+            .flatMap(
+                variant -> variant.getTargeting().getSdkVersionTargeting().getValueList().stream())
+            .mapToInt(sdkVersion -> sdkVersion.getMin().getValue())
+            .min()
+            .orElse(1);
+  }
+
+  /**
+   * Generates the APK set of the given bundle into the given file with bundletool, and opens it.
+   * The APKs are converted with the given aapt2 binary, or else with the one shipped in bundletool.
+   */
+  public static DownloadSizeSimulator create(
+      Path bundlePath, Path apkSetPath, Optional<Path> aapt2Path) {
+    BuildApksCommand.Builder command =
+        BuildApksCommand.builder()
+            .setBundlePath(bundlePath)
+            .setOutputFile(apkSetPath)
+            .setOverwriteOutput(true);
+    aapt2Path.ifPresent(
+        path -> command.setAapt2Command(Aapt2Command.createFromExecutablePath(path)));
+    return open(command.build().execute());
+  }
+
+  /** Opens an APK set generated by bundletool, such as with its build-apks command. */
+  public static DownloadSizeSimulator open(Path apkSetPath) {
+    try {
+      ZipFile apkSet = new ZipFile(apkSetPath.toFile());
+      ZipEntry tableOfContents = apkSet.getEntry(TABLE_OF_CONTENTS_ENTRY);
+      if (tableOfContents == null) {
+        apkSet.close();
+        throw new IllegalArgumentException(
+            String.format("The file %s is not an APK set generated by bundletool.", apkSetPath));
+      }
+      try (InputStream inputStream = apkSet.getInputStream(tableOfContents)) {
+        return new DownloadSizeSimulator(apkSet, BuildApksResult.parseFrom(inputStream));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Simulates the installation of the bundle on each of the given devices, keyed by name. The
+   * devices are simulated in parallel, and the results are in the order of the devices.
+   */
+  public ImmutableList<DeviceDownloadSize> simulate(ImmutableMap<String, DeviceSpec> devices) {
+    return devices.entrySet().parallelStream()
+        .map(device -> simulate(device.getKey(), device.getValue()))
+        .collect(toImmutableList());
+  }
+
+  /** Simulates the installation of the bundle on the given device. */
+  public DeviceDownloadSize simulate(String deviceName, DeviceSpec device) {
+    DeviceSpec.Builder deviceSpec = device.toBuilder();
+    // An unset SDK version stands for the latest platform.
+    if (device.getSdkVersion() <= 0) {
+      deviceSpec.setSdkVersion(Integer.MAX_VALUE);
+    }
+    if (device.getScreenDensity() <= 0) {
+      deviceSpec.setScreenDensity(DEFAULT_DENSITY);
+    }
+    checkArgument(
+        deviceSpec.getSdkVersion() >= minSdkVersion,
+        "The device %s has SDK version %s, which is below the minSdkVersion %s of the bundle.",
+        deviceName,
+        deviceSpec.getSdkVersion(),
+        minSdkVersion);
+
+    ImmutableList<String> apkPaths =
+        new ApkMatcher(deviceSpec.build()).getMatchingApks(tableOfContents).stream()
+            .map(GeneratedApk::getPath)
+            .map(Object::toString)
+            .collect(toImmutableList());
+    long downloadSize = 0;
+    long installSize = 0;
+    for (String apkPath : apkPaths) {
+      ApkSize apkSize = apkSizes.computeIfAbsent(apkPath, this::computeApkSize);
+      downloadSize += apkSize.getDownloadSize();
+      installSize += apkSize.getInstallSize();
+    }
+    return DeviceDownloadSize.create(deviceName, apkPaths, downloadSize, installSize);
+  }
+
+  /** Returns the number of APKs sized so far, shared by the simulated devices. */
+  @VisibleForTesting
+  int getComputedApkCount() {
+    return apkSizes.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    apkSet.close();
+  }
+
+  /**
+   * Computes the size of an APK of the set. APKs are downloaded gzipped, and the native libraries
+   * they hold compressed are extracted from them on installation.
+   */
+  private ApkSize computeApkSize(String apkPath) {
+    ZipEntry apkEntry = apkSet.getEntry(apkPath);
+    checkArgument(apkEntry != null, "The APK %s is missing from the APK set.", apkPath);
+    try {
+      CountingOutputStream gzippedApk = new CountingOutputStream(ByteStreams.nullOutputStream());
+      try (InputStream apk = apkSet.getInputStream(apkEntry);
+          OutputStream gzipStream = new BestCompressionGzipOutputStream(gzippedApk)) {
+        ByteStreams.copy(apk, gzipStream);
+      }
+
+      long extractedNativeLibSize = 0;
+      try (ZipInputStream apk = new ZipInputStream(apkSet.getInputStream(apkEntry))) {
+        ZipEntry entry;
+        while ((entry = apk.getNextEntry()) != null) {
+          if (entry.getName().startsWith(NATIVE_LIBRARIES_DIRECTORY)
+              && entry.getMethod() == ZipEntry.DEFLATED) {
+            extractedNativeLibSize += ByteStreams.exhaust(apk);
+          }
+        }
+      }
+      return ApkSize.create(gzippedApk.getCount(), apkEntry.getSize() + extractedNativeLibSize);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Gzip stream at the highest compression level, as used to serve APKs. */
+  private static final class BestCompressionGzipOutputStream extends GZIPOutputStream {
+
+    BestCompressionGzipOutputStream(OutputStream outputStream) throws IOException {
+      super(outputStream);
+      def.setLevel(Deflater.BEST_COMPRESSION);
+    }
+  }
+
+  /** The download and install size of an APK. */
+  @AutoValue
+  abstract static class ApkSize {
+
+    static ApkSize create(long downloadSize, long installSize) {
+      return new AutoValue_DownloadSizeSimulator_ApkSize(downloadSize, installSize);
+    }
+
+    abstract long getDownloadSize();
+
+    abstract long getInstallSize();
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pushes the suggestions of the batches of a schedule to a sink in the order of the entries in
+ * the artifact, as soon as all preceding entries have been processed. Batches must be accepted in
+ * schedule order.
+ */
+final class EntryOrderSink {
+  private final EntryReadSchedule schedule;
+  private final SuggestionSink sink;
+  private final BitSet processedEntries = new BitSet();
+  private final Map<Integer, ImmutableList<Suggestion>> pendingSuggestions = new HashMap<>();
+  private int nextBatch;
+  private int nextEntry;
+
+  EntryOrderSink(EntryReadSchedule schedule, SuggestionSink sink) {
+    this.schedule = schedule;
+    this.sink = sink;
+  }
+
+  void acceptBatch(ImmutableListMultimap<Integer, Suggestion> suggestionsPerEntry) {
+    schedule.getBatchEntries(nextBatch++).forEach(processedEntries::set);
+    for (Integer entry : suggestionsPerEntry.keySet()) {
+      pendingSuggestions.put(entry, suggestionsPerEntry.get(entry));
+    }
+    while (processedEntries.get(nextEntry)) {
+      ImmutableList<Suggestion> suggestions = pendingSuggestions.remove(nextEntry);
+      if (suggestions != null) {
+        sink.acceptAll(suggestions);
+      }
+      nextEntry++;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
+import com.android.tools.sizereduction.analyzer.zip.ZipEntryReader;
+import com.android.tools.sizereduction.analyzer.zip.ZipEntryReader.ReadAheadWindow;
+import com.android.tools.sizereduction.analyzer.zip.ZipEntrySource;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Plans the reads of the entries of a bundle in the physical order of their data in the file.
+ *
+ * <p>The entries are split into batches of entries that are adjacent in the file, so that the
+ * content of a batch is read with a single sequential read. When the window of a batch is taken,
+ * the windows of the next batches start being read in the background, which avoids random seeks
+ * on cold disks and network file systems. Bundles are usually written in central directory order,
+ * in which case every batch is a range of consecutive entries.
+ */
+final class EntryReadSchedule {
+
+  @VisibleForTesting static final int MAX_BATCH_SIZE = 64;
+  @VisibleForTesting static final int MAX_WINDOW_SIZE = 4 * 1024 * 1024;
+  private static final int READ_AHEAD_BATCHES = 2;
+  // The fixed part of the local file header, followed by a name and extra field of any size.
+  private static final long MAX_LOCAL_HEADER_SIZE = 30 + 2 * 0xffff;
+
+  private final ZipEntryReader entryReader;
+  private final int[] entriesInFileOrder;
+  // The entries of batch i are entriesInFileOrder[batchStarts[i], batchStarts[i + 1]).
+  private final int[] batchStarts;
+  private final long[] windowStarts;
+  private final long[] windowEnds;
+  // Windows being read ahead, and the batches whose window was taken, guarded by this.
+  private final ReadAheadWindow[] windows;
+  private final BitSet takenBatches = new BitSet();
+
+  private EntryReadSchedule(
+      ZipEntryReader entryReader,
+      int[] entriesInFileOrder,
+      int[] batchStarts,
+      long[] windowStarts,
+      long[] windowEnds) {
+    this.entryReader = entryReader;
+    this.entriesInFileOrder = entriesInFileOrder;
+    this.batchStarts = batchStarts;
+    this.windowStarts = windowStarts;
+    this.windowEnds = windowEnds;
+    this.windows = new ReadAheadWindow[windowStarts.length];
+  }
+
+  /** Plans the reads of all entries of the table, from a file of the given size. */
+  static EntryReadSchedule create(
+      BundleEntryTable entryTable, ZipEntryReader entryReader, long fileSize) {
+    int entryCount = entryTable.getEntryCount();
+    int[] entries = sortByLocalHeaderOffset(entryTable);
+    int[] batchStarts = new int[entryCount + 1];
+    long[] windowStarts = new long[entryCount];
+    long[] windowEnds = new long[entryCount];
+    int batchCount = 0;
+    for (int position = 0; position < entryCount; position++) {
+      long entryStart = entryTable.getLocalHeaderOffset(entries[position]);
+      // An entry ends where the next one starts, which also covers its data descriptor.
+      long entryEnd =
+          position + 1 < entryCount
+              ? entryTable.getLocalHeaderOffset(entries[position + 1])
+              : Math.min(
+                  fileSize,
+                  entryStart
+                      + MAX_LOCAL_HEADER_SIZE
+                      + entryTable.getCompressedSize(entries[position]));
+      if (batchCount == 0
+          || position - batchStarts[batchCount - 1] == MAX_BATCH_SIZE
+          || entryEnd - windowStarts[batchCount - 1] > MAX_WINDOW_SIZE) {
+        batchStarts[batchCount] = position;
+        windowStarts[batchCount] = entryStart;
+        batchCount++;
+      }
+      windowEnds[batchCount - 1] = entryEnd;
+    }
+    batchStarts[batchCount] = entryCount;
+    return new EntryReadSchedule(
+        entryReader,
+        entries,
+        Arrays.copyOf(batchStarts, batchCount + 1),
+        Arrays.copyOf(windowStarts, batchCount),
+        Arrays.copyOf(windowEnds, batchCount));
+  }
+
+  /** The number of batches of entries. */
+  int getBatchCount() {
+    return windowStarts.length;
+  }
+
+  /** The indices in the entry table of the entries of the batch, in file order. */
+  IntStream getBatchEntries(int batch) {
+    return Arrays.stream(entriesInFileOrder, batchStarts[batch], batchStarts[batch + 1]);
+  }
+
+  /**
+   * Returns the source from which the entries of the batch are read, and starts reading ahead the
+   * windows of the next batches. Every batch is meant to be taken once.
+   */
+  synchronized ZipEntrySource takeBatchSource(int batch) {
+    int lastReadAhead = Math.min(batch + READ_AHEAD_BATCHES, getBatchCount() - 1);
+    for (int next = batch; next <= lastReadAhead; next++) {
+      if (!takenBatches.get(next) && windows[next] == null && hasWindow(next)) {
+        windows[next] = entryReader.readAhead(windowStarts[next], (int) windowLength(next));
+      }
+    }
+    ZipEntrySource source = windows[batch] != null ? windows[batch] : entryReader;
+    // Let the window be garbage collected once the batch is done.
+    windows[batch] = null;
+    takenBatches.set(batch);
+    return source;
+  }
+
+  /** Whether the batch is small enough to be read in one window; large entries are streamed. */
+  private boolean hasWindow(int batch) {
+    return windowLength(batch) <= MAX_WINDOW_SIZE;
+  }
+
+  private long windowLength(int batch) {
+    return windowEnds[batch] - windowStarts[batch];
+  }
+
+  private static int[] sortByLocalHeaderOffset(BundleEntryTable entryTable) {
+    int entryCount = entryTable.getEntryCount();
+    boolean sorted = true;
+    for (int index = 1; index < entryCount && sorted; index++) {
+      sorted = entryTable.getLocalHeaderOffset(index - 1) <= entryTable.getLocalHeaderOffset(index);
+    }
+    if (sorted) {
+      return IntStream.range(0, entryCount).toArray();
+    }
+    return IntStream.range(0, entryCount)
+        .boxed()
+        .sorted(Comparator.comparingLong(entryTable::getLocalHeaderOffset))
+        .mapToInt(Integer::intValue)
+        .toArray();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.annotation.Nullable;
+
+/**
+ * Holds the content of entries read from a stream, so that it can be read again later.
+ *
+ * <p>Content is kept in memory as long as the total size of the content held in memory stays
+ * within the budget of the spool, and is written to a temporary file otherwise, so the memory used
+ * does not depend on the size of the entries. Content must be released once it is no longer
+ * needed, and closing the spool deletes all temporary files. This class is not threadsafe.
+ */
+final class EntrySpool implements Closeable {
+
+  private final long memoryBudget;
+  private long memoryUsed;
+  @Nullable private Path directory;
+
+  EntrySpool(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+
+  /** Reads the given stream to its end and holds its content. */
+  SpooledContent spool(InputStream inputStream) throws IOException {
+    long available = memoryBudget - memoryUsed;
+    byte[] head = ByteStreams.toByteArray(ByteStreams.limit(inputStream, available + 1));
+    if (head.length <= available) {
+      memoryUsed += head.length;
+      return new SpooledContent(ByteSource.wrap(head), head.length, /* file= */ null);
+    }
+
+    if (directory == null) {
+      directory = Files.createTempDirectory("size-analyzer-spool");
+    }
+    Path file = Files.createTempFile(directory, "entry", ".bin");
+    try (OutputStream outputStream = Files.newOutputStream(file)) {
+      outputStream.write(head);
+      ByteStreams.copy(inputStream, outputStream);
+    }
+    return new SpooledContent(MoreFiles.asByteSource(file), Files.size(file), file);
+  }
+
+  /** The number of bytes of content currently held in memory. */
+  long getMemoryUsed() {
+    return memoryUsed;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (directory != null) {
+      MoreFiles.deleteRecursively(directory, RecursiveDeleteOption.ALLOW_INSECURE);
+      directory = null;
+    }
+  }
+
+  /** The content of an entry held by the spool. */
+  final class SpooledContent {
+    private final ByteSource content;
+    private final long size;
+    @Nullable private final Path file;
+    private boolean released;
+
+    private SpooledContent(ByteSource content, long size, @Nullable Path file) {
+      this.content = content;
+      this.size = size;
+      this.file = file;
+    }
+
+    /** The content, which can be read any number of times until it is released. */
+    ByteSource getContent() {
+      return content;
+    }
+
+    long getSize() {
+      return size;
+    }
+
+    /** Frees the memory or deletes the file holding the content. */
+    void release() throws IOException {
+      if (released) {
+        return;
+      }
+      released = true;
+      if (file == null) {
+        memoryUsed -= size;
+      } else {
+        Files.delete(file);
+      }
+    }
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.android.tools.sizereduction.analyzer.analyzers.EntrySpool.SpooledContent;
+import com.android.tools.sizereduction.analyzer.model.FileData;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.errorprone.annotations.MustBeClosed;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Expands the archives embedded in bundle entries, such as .zip, .jar, .apk or .obb assets, so that
+ * the entry suggesters also see the entries of these archives.
+ *
+ * <p>Inner archives are read as streams from the content of their outer entry, and every inner
+ * entry is inflated once into an {@link EntrySpool}, so that every suggester and the nested
+ * archives within can read it again. Up to {@link #MAX_BUFFERED_ENTRY_SIZE} bytes of inner entries
+ * are kept in memory, and larger entries are written to temporary files. The content of an inner
+ * entry is only available while it is visited. Inner entries are named after the path of their
+ * archive, followed by "!/" and their path within the archive, e.g. {@code
+ * base/assets/foo.zip!/img.png}.
+ *
+ * <p>Expansion stops at the maximum depth of nested archives, and once the total uncompressed size
+ * of the inner entries of an archive reaches the budget, which thus also bounds the bytes inflated
+ * and spooled per bundle entry. This class is threadsafe.
+ */
+public final class NestedArchiveExpander {
+
+  /** An expander that expands no archive. */
+  public static final NestedArchiveExpander DISABLED =
+      new NestedArchiveExpander(/* maxDepth= */ 0, /* maxExpandedBytes= */ 0);
+
+  public static final int DEFAULT_MAX_DEPTH = 2;
+  public static final long DEFAULT_MAX_EXPANDED_BYTES = 64L * 1024 * 1024;
+
+  @VisibleForTesting static final int MAX_BUFFERED_ENTRY_SIZE = 1024 * 1024;
+  private static final String NESTED_SEPARATOR = "!/";
+  private static final ImmutableSet<String> ARCHIVE_EXTENSIONS =
+      ImmutableSet.of("zip", "jar", "apk", "obb");
+
+  private final int maxDepth;
+  private final long maxExpandedBytes;
+
+  /**
+   * Creates an expander that expands archives nested up to the given depth, 1 meaning that only the
+   * archives of the bundle entries are expanded, and inflates at most the given number of bytes per
+   * bundle entry.
+   */
+  public NestedArchiveExpander(int maxDepth, long maxExpandedBytes) {
+    this.maxDepth = maxDepth;
+    this.maxExpandedBytes = maxExpandedBytes;
+  }
+
+  /** Whether the given file is an archive that this expander expands. */
+  public boolean isExpandable(FileData fileData) {
+    return maxDepth > 0 && isArchive(fileData.getPathWithinRoot().toString());
+  }
+
+  /**
+   * Calls the visitor with every entry of the given archive, and of the archives nested in it, in
+   * the order in which they are stored. The content of an entry can only be read until the visitor
+   * returns. Content that is not a ZIP archive has no entries.
+   *
+   * @param archive the file data of the archive, which gives the paths of its entries
+   * @param content the content of the archive, which may be opened several times
+   */
+  public void expand(FileData archive, ByteSource content, Consumer<NestedEntry> visitor) {
+    if (!isExpandable(archive)) {
+      return;
+    }
+    try (EntrySpool spool = new EntrySpool(MAX_BUFFERED_ENTRY_SIZE)) {
+      expand(
+          archive.getPathWithinRoot().toString(),
+          archive.getPathWithinModule().toString(),
+          content,
+          /* depth= */ 1,
+          new Budget(maxExpandedBytes),
+          spool,
+          visitor);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void expand(
+      String pathWithinRoot,
+      String pathWithinModule,
+      ByteSource content,
+      int depth,
+      Budget budget,
+      EntrySpool spool,
+      Consumer<NestedEntry> visitor)
+      throws IOException {
+    try (ZipInputStream zipStream = new ZipInputStream(content.openBufferedStream())) {
+      for (ZipEntry entry = zipStream.getNextEntry();
+          entry != null;
+          entry = zipStream.getNextEntry()) {
+        if (entry.isDirectory()) {
+          continue;
+        }
+        // Read the entry only as far as the budget allows, which also protects from archives
+        // that inflate to huge sizes.
+        SpooledContent entryContent =
+            spool.spool(ByteStreams.limit(zipStream, budget.remaining + 1));
+        try {
+          long size = entryContent.getSize();
+          if (size > budget.remaining) {
+            budget.remaining = 0;
+            return;
+          }
+          budget.remaining -= size;
+
+          NestedEntry nestedEntry =
+              new NestedEntry(
+                  pathWithinRoot + NESTED_SEPARATOR + entry.getName(),
+                  pathWithinModule + NESTED_SEPARATOR + entry.getName(),
+                  size,
+                  entry.getCompressedSize(),
+                  entryContent.getContent());
+          visitor.accept(nestedEntry);
+          if (depth < maxDepth && isArchive(entry.getName())) {
+            expand(
+                nestedEntry.pathWithinRoot,
+                nestedEntry.pathWithinModule,
+                entryContent.getContent(),
+                depth + 1,
+                budget,
+                spool,
+                visitor);
+          }
+        } finally {
+          entryContent.release();
+        }
+      }
+    } catch (ZipException e) {
+      // Not a ZIP archive, e.g. an opaque .obb file: the entries read so far are all there is.
+    }
+  }
+
+  private static boolean isArchive(String path) {
+    return ARCHIVE_EXTENSIONS.contains(Ascii.toLowerCase(Files.getFileExtension(path)));
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("maxDepth", maxDepth)
+        .add("maxExpandedBytes", maxExpandedBytes)
+        .toString();
+  }
+
+  /** An entry of a nested archive. */
+  public static final class NestedEntry {
+    private final String pathWithinRoot;
+    private final String pathWithinModule;
+    private final long size;
+    private final long compressedSize;
+    private final ByteSource content;
+
+    private NestedEntry(
+        String pathWithinRoot,
+        String pathWithinModule,
+        long size,
+        long compressedSize,
+        ByteSource content) {
+      this.pathWithinRoot = pathWithinRoot;
+      this.pathWithinModule = pathWithinModule;
+      this.size = size;
+      this.compressedSize = compressedSize;
+      this.content = content;
+    }
+
+    /**
+     * Creates a file data for the entry. Since the input stream of a file data can only be opened
+     * once, every suggester needs its own file data.
+     */
+    public FileData newFileData() {
+      return new NestedEntryFileData(this);
+    }
+  }
+
+  /** Supplies the file data of a nested entry. This is not threadsafe. */
+  private static final class NestedEntryFileData implements FileData {
+    private final NestedEntry entry;
+    private InputStream inputStream;
+
+    private NestedEntryFileData(NestedEntry entry) {
+      this.entry = entry;
+    }
+
+    @Override
+    @MustBeClosed
+    public InputStream getInputStream() {
+      checkState(inputStream == null, "input stream was already supplied and opened");
+
+      try {
+        inputStream = entry.content.openStream();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return inputStream;
+    }
+
+    @Override
+    public Path getPathWithinRoot() {
+      return Paths.get(entry.pathWithinRoot);
+    }
+
+    @Override
+    public Path getPathWithinModule() {
+      return Paths.get(entry.pathWithinModule);
+    }
+
+    @Override
+    public long getSize() {
+      return entry.size;
+    }
+
+    @Override
+    public long getCompressedSize() {
+      return entry.compressedSize;
+    }
+  }
+
+  /** The number of bytes that can still be inflated for a bundle entry. */
+  private static final class Budget {
+    private long remaining;
+
+    private Budget(long remaining) {
+      this.remaining = remaining;
+    }
+  }
+}
@@ -19,9 +19,11 @@ package com.android.tools.sizereduction.analyzer.analyzers;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.android.tools.sizereduction.analyzer.model.Project;
 import com.android.tools.sizereduction.analyzer.model.SystemFileData;
+import com.android.tools.sizereduction.analyzer.suggesters.CollectingSuggestionSink;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectTreeSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
 import com.google.common.collect.ImmutableList;
 import java.io.File;
 import java.nio.file.Path;
@@ -48,37 +50,46 @@ public final class ProjectAnalyzer implements ArtifactAnalyzer {
   @Override
   @CheckReturnValue
   public ImmutableList<Suggestion> analyze(File projectDirectory) {
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+    analyze(projectDirectory, sink);
+    return sink.getSuggestions();
+  }
+
+  /** Analyzes the given project directory, pushing each suggestion to the sink as it is produced. */
+  @Override
+  public void analyze(File projectDirectory, SuggestionSink sink) {
     File buildFile = new File(projectDirectory, Project.BUILD_GRADLE);
     Project project = buildFile.exists() ? Project.create(projectDirectory, null) : null;
-    return analyzeProject(
-        projectDirectory, project, projectDirectory, projectSuggesters, suggesters);
+    analyzeProject(
+        projectDirectory, project, projectDirectory, projectSuggesters, suggesters, sink);
+    for (ProjectTreeSuggester suggester : suggesters) {
+      suggester.finishProjectTree(sink);
+    }
   }
 
-  private static ImmutableList<Suggestion> analyzeProject(
+  private static void analyzeProject(
       File rootDirectory,
       Project project,
       File directory,
       ImmutableList<ProjectSuggester> projectSuggesters,
-      ImmutableList<ProjectTreeSuggester> suggesters) {
-    ImmutableList.Builder<Suggestion> resultBuilder = ImmutableList.<Suggestion>builder();
+      ImmutableList<ProjectTreeSuggester> suggesters,
+      SuggestionSink sink) {
     if (project != null) {
       for (ProjectSuggester projectSuggester : projectSuggesters) {
-        resultBuilder.addAll(
-            projectSuggester.processProject(project.getContext(), project.getProjectDirectory()));
+        projectSuggester.processProject(
+            project.getContext(), project.getProjectDirectory(), sink);
       }
     }
-    return resultBuilder
-        .addAll(analyzeDirectory(rootDirectory, project, directory, projectSuggesters, suggesters))
-        .build();
+    analyzeDirectory(rootDirectory, project, directory, projectSuggesters, suggesters, sink);
   }
 
-  private static ImmutableList<Suggestion> analyzeDirectory(
+  private static void analyzeDirectory(
       File rootDirectory,
       Project project,
       File directory,
       ImmutableList<ProjectSuggester> projectSuggesters,
-      ImmutableList<ProjectTreeSuggester> suggesters) {
-    ImmutableList.Builder<Suggestion> resultBuilder = ImmutableList.<Suggestion>builder();
+      ImmutableList<ProjectTreeSuggester> suggesters,
+      SuggestionSink sink) {
     File[] files = directory.listFiles();
     for (File file : files) {
       String name = file.getName();
@@ -89,12 +100,10 @@ public final class ProjectAnalyzer implements ArtifactAnalyzer {
         File buildFile = new File(file, Project.BUILD_GRADLE);
         if (buildFile.exists()) {
           Project subProject = Project.create(file, project);
-          resultBuilder.addAll(
-              analyzeProject(rootDirectory, subProject, file, projectSuggesters, suggesters));
+          analyzeProject(rootDirectory, subProject, file, projectSuggesters, suggesters, sink);
         } else {
           // recurse, through directory under the same directory.
-          resultBuilder.addAll(
-              analyzeDirectory(rootDirectory, project, file, projectSuggesters, suggesters));
+          analyzeDirectory(rootDirectory, project, file, projectSuggesters, suggesters, sink);
         }
       } else {
         GradleContext context =
@@ -109,11 +118,9 @@ public final class ProjectAnalyzer implements ArtifactAnalyzer {
         for (ProjectTreeSuggester suggester : suggesters) {
           SystemFileData systemFileData =
               new SystemFileData(file, pathWithinRoot, pathWithinModule);
-          resultBuilder.addAll(suggester.processProjectEntry(context, systemFileData));
+          suggester.processProjectEntry(context, systemFileData, sink);
         }
       }
     }
-
-    return resultBuilder.build();
   }
 }
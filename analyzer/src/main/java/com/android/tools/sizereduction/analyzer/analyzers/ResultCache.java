@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.AnalysisRecords.CachedAnalysis;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Stores the suggestions produced for an artifact on disk, keyed by the content hash of the
+ * artifact, the analyzer version and the enabled suggesters, so that byte-identical artifacts do
+ * not need to be analyzed again.
+ */
+public final class ResultCache {
+
+  private static final String CACHE_FILE_EXTENSION = ".pb";
+
+  /**
+   * Version of the suggestions stored in the cache. It must be bumped whenever a change alters the
+   * suggestions produced for an artifact, so that results cached by earlier builds of the same
+   * analyzer version are not reused.
+   */
+  @VisibleForTesting static final int RESULT_FORMAT_VERSION = 2;
+
+  private final Path cacheDirectory;
+  private final String options;
+
+  public ResultCache(Path cacheDirectory) {
+    this(cacheDirectory, /* options= */ "");
+  }
+
+  /**
+   * Creates a cache in the given directory. The options describe any additional configuration that
+   * affects the produced suggestions (e.g. suggester thresholds), and become part of every key.
+   */
+  public ResultCache(Path cacheDirectory, String options) {
+    this.cacheDirectory = cacheDirectory;
+    this.options = options;
+  }
+
+  /** Creates the key for an artifact analyzed with the given suggesters. */
+  Key createKey(String artifactHash, String analyzerVersion, String suggesters) {
+    return Key.create(
+        artifactHash,
+        analyzerVersion,
+        suggesters + ";options=" + options + ";format=" + RESULT_FORMAT_VERSION);
+  }
+
+  /** Returns the cached suggestions for the given key, if there are any. */
+  public Optional<ImmutableList<Suggestion>> lookup(Key key) {
+    CachedAnalysis cachedAnalysis;
+    try (InputStream inputStream = Files.newInputStream(cacheFile(key))) {
+      cachedAnalysis = CachedAnalysis.parseFrom(inputStream);
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (InvalidProtocolBufferException e) {
+      // A partially written or otherwise corrupted entry is treated as a cache miss.
+      return Optional.empty();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    if (!Key.fromCachedAnalysis(cachedAnalysis).equals(key)) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        cachedAnalysis.getSuggestionsList().stream()
+            .map(Suggestion::fromRecord)
+            .collect(toImmutableList()));
+  }
+
+  /** Stores the suggestions for the given key, replacing any previously cached result. */
+  public void store(Key key, ImmutableList<Suggestion> suggestions) {
+    CachedAnalysis cachedAnalysis =
+        CachedAnalysis.newBuilder()
+            .setArtifactHash(key.getArtifactHash())
+            .setAnalyzerVersion(key.getAnalyzerVersion())
+            .setSuggesterConfiguration(key.getSuggesterConfiguration())
+            .addAllSuggestions(
+                suggestions.stream().map(Suggestion::toRecord).collect(toImmutableList()))
+            .build();
+    try {
+      Files.createDirectories(cacheDirectory);
+      // Write to a temporary file first so that concurrent readers never observe partial entries.
+      Path temporaryFile = Files.createTempFile(cacheDirectory, "result", ".tmp");
+      try (OutputStream outputStream = Files.newOutputStream(temporaryFile)) {
+        cachedAnalysis.writeTo(outputStream);
+      }
+      Files.move(
+          temporaryFile,
+          cacheFile(key),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Path cacheFile(Key key) {
+    String fileName =
+        Hashing.sha256()
+            .newHasher()
+            .putString(key.getArtifactHash(), UTF_8)
+            .putString(key.getAnalyzerVersion(), UTF_8)
+            .putString(key.getSuggesterConfiguration(), UTF_8)
+            .hash()
+            .toString();
+    return cacheDirectory.resolve(fileName + CACHE_FILE_EXTENSION);
+  }
+
+  /** Identifies a single analysis result in the cache. */
+  @AutoValue
+  public abstract static class Key {
+
+    public static Key create(
+        String artifactHash, String analyzerVersion, String suggesterConfiguration) {
+      return new AutoValue_ResultCache_Key(artifactHash, analyzerVersion, suggesterConfiguration);
+    }
+
+    private static Key fromCachedAnalysis(CachedAnalysis cachedAnalysis) {
+      return create(
+          cachedAnalysis.getArtifactHash(),
+          cachedAnalysis.getAnalyzerVersion(),
+          cachedAnalysis.getSuggesterConfiguration());
+    }
+
+    /** The hex encoded content hash of the analyzed artifact. */
+    public abstract String getArtifactHash();
+
+    /** The version of the analyzer producing the result. */
+    public abstract String getAnalyzerVersion();
+
+    /** Description of the suggesters enabled for the analysis. */
+    public abstract String getSuggesterConfiguration();
+  }
+}
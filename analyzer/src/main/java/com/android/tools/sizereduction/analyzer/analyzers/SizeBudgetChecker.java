@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.Budget.SizeBudget;
+import com.android.tools.sizereduction.analyzer.Budget.SizeLimit;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryType;
+import com.android.tools.sizereduction.analyzer.zip.ZipCentralDirectory;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.TextFormat;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Checks a bundle against a size budget using only the sizes recorded in its central directory.
+ * Since sizes only grow while entries are added up, a limit is decided as soon as it is exceeded,
+ * and the check stops reading entries once every limit has been exceeded.
+ */
+public final class SizeBudgetChecker {
+
+  private final ImmutableList<LimitCounter> counters;
+
+  public SizeBudgetChecker(SizeBudget budget) {
+    this.counters =
+        budget.getLimitsList().stream().map(LimitCounter::new).collect(toImmutableList());
+  }
+
+  /** Reads a size budget written in the protobuf text format. */
+  public static SizeBudget readBudget(File budgetFile) {
+    SizeBudget.Builder budget = SizeBudget.newBuilder();
+    try (Reader reader = Files.newBufferedReader(budgetFile.toPath(), UTF_8)) {
+      TextFormat.merge(reader, budget);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return budget.build();
+  }
+
+  /** Checks the given bundle against the budget and returns the usage of every limit. */
+  public ImmutableList<LimitUsage> check(File bundleFile) {
+    ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(bundleFile.toPath());
+    int undecidedLimits = counters.size();
+    for (int index = 0; index < centralDirectory.getEntryCount() && undecidedLimits > 0; index++) {
+      if (centralDirectory.isDirectory(index)) {
+        continue;
+      }
+      String entryName = centralDirectory.getName(index);
+      for (LimitCounter counter : counters) {
+        if (counter.add(
+            entryName,
+            centralDirectory.getCompressedSize(index),
+            centralDirectory.getSize(index))) {
+          undecidedLimits--;
+        }
+      }
+    }
+    return counters.stream().map(LimitCounter::toUsage).collect(toImmutableList());
+  }
+
+  /** The size counted against a single limit of the budget. */
+  @AutoValue
+  public abstract static class LimitUsage {
+
+    static LimitUsage create(SizeLimit limit, long usedBytes) {
+      return new AutoValue_SizeBudgetChecker_LimitUsage(limit, usedBytes);
+    }
+
+    public abstract SizeLimit getLimit();
+
+    /**
+     * The total size of the matching entries. Once the limit is exceeded, counting stops, so this
+     * is then only a lower bound.
+     */
+    public abstract long getUsedBytes();
+
+    public boolean isExceeded() {
+      return getUsedBytes() > getLimit().getMaxBytes();
+    }
+  }
+
+  /** Adds up the sizes of the entries selected by a limit. */
+  private static final class LimitCounter {
+    private final SizeLimit limit;
+    private final Predicate<String> selector;
+    private long usedBytes;
+
+    private LimitCounter(SizeLimit limit) {
+      this.limit = limit;
+      this.selector = createSelector(limit);
+    }
+
+    /** Counts the entry, and returns whether the limit has just been exceeded because of it. */
+    private boolean add(String entryName, long compressedSize, long size) {
+      if (usedBytes > limit.getMaxBytes() || !selector.test(entryName)) {
+        return false;
+      }
+      usedBytes += limit.getCompressed() ? compressedSize : size;
+      return usedBytes > limit.getMaxBytes();
+    }
+
+    private LimitUsage toUsage() {
+      return LimitUsage.create(limit, usedBytes);
+    }
+
+    private static Predicate<String> createSelector(SizeLimit limit) {
+      switch (limit.getSelectorCase()) {
+        case MODULE:
+          return entryName ->
+              BundleEntryType.getModuleName(entryName).equals(Optional.of(limit.getModule()));
+        case PATH_GLOB:
+          PathMatcher matcher =
+              FileSystems.getDefault().getPathMatcher("glob:" + limit.getPathGlob());
+          return entryName -> matcher.matches(Paths.get(entryName));
+        case ENTRY_TYPE:
+          if (limit.getEntryType() == SizeLimit.EntryType.ENTRY_TYPE_UNSPECIFIED) {
+            throw new IllegalArgumentException("Size limit without an entry type: " + limit);
+          }
+          BundleEntryType entryType = BundleEntryType.valueOf(limit.getEntryType().name());
+          return entryName -> BundleEntryType.fromEntryName(entryName) == entryType;
+        default:
+          throw new IllegalArgumentException("Size limit without a selector: " + limit);
+      }
+    }
+  }
+}
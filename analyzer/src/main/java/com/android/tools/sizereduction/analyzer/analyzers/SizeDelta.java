@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.google.auto.value.AutoValue;
+
+/** The change in size of a single entry, directory or module between two bundles. */
+@AutoValue
+public abstract class SizeDelta {
+
+  public static SizeDelta create(
+      String path, long oldCompressedSize, long newCompressedSize, long oldSize, long newSize) {
+    return new AutoValue_SizeDelta(path, oldCompressedSize, newCompressedSize, oldSize, newSize);
+  }
+
+  /** The path of the entry or directory, or the name of the module. */
+  public abstract String getPath();
+
+  /** The compressed size in the old bundle, 0 if absent. */
+  public abstract long getOldCompressedSize();
+
+  /** The compressed size in the new bundle, 0 if absent. */
+  public abstract long getNewCompressedSize();
+
+  /** The uncompressed size in the old bundle, 0 if absent. */
+  public abstract long getOldSize();
+
+  /** The uncompressed size in the new bundle, 0 if absent. */
+  public abstract long getNewSize();
+
+  public long getCompressedSizeDelta() {
+    return getNewCompressedSize() - getOldCompressedSize();
+  }
+
+  public long getSizeDelta() {
+    return getNewSize() - getOldSize();
+  }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.android.aapt.Resources.XmlNode;
+import com.android.bundle.Config.BundleConfig;
+import com.android.tools.build.bundletool.model.BundleModule;
+import com.android.tools.build.bundletool.model.BundleModuleName;
+import com.android.tools.sizereduction.analyzer.analyzers.EntrySpool.SpooledContent;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
+import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryType;
+import com.android.tools.sizereduction.analyzer.model.FileData;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.CollectingSuggestionSink;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.errorprone.annotations.MustBeClosed;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
+
+/**
+ * Analyzes an app bundle read from a stream, such as the standard input, without the bundle being
+ * written to disk first.
+ *
+ * <p>The entry suggesters are applied to every entry as it is read. They need the context of the
+ * module of the entry, which is only known once the bundle config and the manifest of the module
+ * have been read; entries read before that are held back until then. The content of the entries is
+ * held by an {@link EntrySpool}, so that the memory used stays bounded whatever the size of the
+ * bundle. Only the metadata entries needed by the bundle suggesters are kept until the end of the
+ * stream, in a temporary ZIP file which lists all other entries with an empty content, and the
+ * bundle suggesters then run on a session created from that file and from the entry table recorded
+ * from the stream.
+ *
+ * <p>Unlike with {@link BundleAnalyzer}, the suggestions for the entries precede the suggestions
+ * for the entire bundle, and suggestions for entries that were held back are pushed once the
+ * context of their module is known.
+ */
+public final class StreamingBundleAnalyzer {
+
+  // Memory for the content of entries, shared by the entry being analyzed and held back entries.
+  private static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+  private static final String BUNDLE_CONFIG_ENTRY = "BundleConfig.pb";
+  private static final String MANIFEST_PATH = "manifest/AndroidManifest.xml";
+  private static final ImmutableSet<String> MODULE_METADATA_PATHS =
+      ImmutableSet.of(MANIFEST_PATH, "assets.pb", "native.pb", "resources.pb", "apex.pb");
+  // Local header offsets have no meaning for entries that were not read from a file.
+  private static final long NO_LOCAL_HEADER_OFFSET = -1;
+
+  private final ImmutableList<BundleSuggester> bundleSuggesters;
+  private final ImmutableList<BundleEntrySuggester> bundleEntrySuggesters;
+  private final NestedArchiveExpander nestedArchiveExpander;
+  private final long memoryBudget;
+
+  public StreamingBundleAnalyzer(
+      ImmutableList<BundleSuggester> bundleSuggesters,
+      ImmutableList<BundleEntrySuggester> bundleEntrySuggesters) {
+    this(bundleSuggesters, bundleEntrySuggesters, NestedArchiveExpander.DISABLED);
+  }
+
+  /**
+   * Creates an analyzer that also applies the entry suggesters to the entries of the archives
+   * embedded in the bundle, as expanded by the given expander.
+   */
+  public StreamingBundleAnalyzer(
+      ImmutableList<BundleSuggester> bundleSuggesters,
+      ImmutableList<BundleEntrySuggester> bundleEntrySuggesters,
+      NestedArchiveExpander nestedArchiveExpander) {
+    this(bundleSuggesters, bundleEntrySuggesters, nestedArchiveExpander, DEFAULT_MEMORY_BUDGET);
+  }
+
+  @VisibleForTesting
+  StreamingBundleAnalyzer(
+      ImmutableList<BundleSuggester> bundleSuggesters,
+      ImmutableList<BundleEntrySuggester> bundleEntrySuggesters,
+      NestedArchiveExpander nestedArchiveExpander,
+      long memoryBudget) {
+    this.bundleSuggesters = bundleSuggesters;
+    this.bundleEntrySuggesters = bundleEntrySuggesters;
+    this.nestedArchiveExpander = nestedArchiveExpander;
+    this.memoryBudget = memoryBudget;
+  }
+
+  /** Analyzes the bundle read from the given stream for size optimization suggestions. */
+  @CheckReturnValue
+  public ImmutableList<Suggestion> analyze(InputStream bundleStream) {
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+    analyze(bundleStream, sink);
+    return sink.getSuggestions();
+  }
+
+  /**
+   * Analyzes the bundle read from the given stream, pushing each suggestion to the sink as it is
+   * produced. The stream is read to its end but not closed.
+   */
+  public void analyze(InputStream bundleStream, SuggestionSink sink) {
+    try (EntrySpool spool = new EntrySpool(memoryBudget)) {
+      Path metadataZipFile = Files.createTempFile("size-analyzer-bundle", ".zip");
+      try {
+        StreamedBundle bundle = new StreamedBundle(spool, sink);
+        BundleEntryTable entryTable = bundle.readEntries(bundleStream, metadataZipFile);
+        try (ZipFile metadataZip = new ZipFile(metadataZipFile.toFile());
+            AnalysisSession session = AnalysisSession.create(metadataZip, entryTable)) {
+          BundleContext baseContext = bundle.processHeldBackEntries(session);
+          bundleSuggesters.forEach(
+              suggester -> suggester.processBundle(baseContext, session, sink));
+        }
+      } finally {
+        Files.deleteIfExists(metadataZipFile);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Whether the entry is needed by the bundletool model of the bundle. */
+  private static boolean isMetadataEntry(String entryName) {
+    Optional<String> moduleName = BundleEntryType.getModuleName(entryName);
+    if (!moduleName.isPresent()) {
+      return true;
+    }
+    return MODULE_METADATA_PATHS.contains(
+        entryName.substring(moduleName.get().length() + 1));
+  }
+
+  /** The module whose context applies to the entry, the base module for entries out of modules. */
+  private static String getContextModuleName(String entryName) {
+    return BundleEntryType.getModuleName(entryName)
+        .orElse(BundleModuleName.BASE_MODULE_NAME.getName());
+  }
+
+  /** The state of the analysis of a single bundle stream. */
+  private final class StreamedBundle {
+    private final EntrySpool spool;
+    private final SuggestionSink sink;
+    private final BundleEntryTable.Builder entryTable = BundleEntryTable.builder();
+    private final Map<String, BundleContext> contextPerModule = new HashMap<>();
+    private final ListMultimap<String, StreamedEntry> heldBackEntries =
+        ArrayListMultimap.create();
+    // Manifests read before the bundle config, per module name.
+    private final Map<String, XmlNode> pendingManifests = new HashMap<>();
+    @Nullable private BundleConfig bundleConfig;
+
+    private StreamedBundle(EntrySpool spool, SuggestionSink sink) {
+      this.spool = spool;
+      this.sink = sink;
+    }
+
+    /**
+     * Reads all entries of the stream, writing the metadata ZIP file, and returns the table of the
+     * entries.
+     */
+    private BundleEntryTable readEntries(InputStream bundleStream, Path metadataZipFile)
+        throws IOException {
+      ZipInputStream zipStream = new ZipInputStream(bundleStream);
+      try (ZipOutputStream metadataZip =
+          new ZipOutputStream(Files.newOutputStream(metadataZipFile))) {
+        for (ZipEntry entry = zipStream.getNextEntry();
+            entry != null;
+            entry = zipStream.getNextEntry()) {
+          readEntry(entry, zipStream, metadataZip);
+        }
+      }
+      return entryTable.build();
+    }
+
+    private void readEntry(ZipEntry zipEntry, InputStream content, ZipOutputStream metadataZip)
+        throws IOException {
+      String name = zipEntry.getName();
+      SpooledContent spooledContent = spool.spool(content);
+      // The sizes of entries followed by a data descriptor are only known once they were read.
+      StreamedEntry entry =
+          new StreamedEntry(
+              name, zipEntry.getSize(), zipEntry.getCompressedSize(), spooledContent);
+      entryTable.addEntry(
+          name,
+          entry.size,
+          entry.compressedSize,
+          NO_LOCAL_HEADER_OFFSET,
+          (int) zipEntry.getCrc(),
+          zipEntry.getMethod() == ZipEntry.DEFLATED);
+
+      metadataZip.putNextEntry(new ZipEntry(name));
+      if (isMetadataEntry(name)) {
+        spooledContent.getContent().copyTo(metadataZip);
+        readModuleModel(name, spooledContent);
+      }
+      metadataZip.closeEntry();
+
+      String moduleName = getContextModuleName(name);
+      BundleContext context = contextPerModule.get(moduleName);
+      if (context == null) {
+        heldBackEntries.put(moduleName, entry);
+      } else {
+        processEntry(context, entry);
+      }
+    }
+
+    /** Computes the context of a module as soon as its manifest and the bundle config are read. */
+    private void readModuleModel(String name, SpooledContent content) throws IOException {
+      if (name.equals(BUNDLE_CONFIG_ENTRY)) {
+        bundleConfig = BundleConfig.parseFrom(content.getContent().read());
+        pendingManifests.forEach(this::resolveModule);
+        pendingManifests.clear();
+        return;
+      }
+      Optional<String> moduleName = BundleEntryType.getModuleName(name);
+      if (moduleName.isPresent() && name.equals(moduleName.get() + "/" + MANIFEST_PATH)) {
+        XmlNode manifest = XmlNode.parseFrom(content.getContent().read());
+        if (bundleConfig == null) {
+          pendingManifests.put(moduleName.get(), manifest);
+        } else {
+          resolveModule(moduleName.get(), manifest);
+        }
+      }
+    }
+
+    private void resolveModule(String moduleName, XmlNode manifest) {
+      BundleContext context =
+          BundleAnalyzer.createContext(
+              BundleModule.builder()
+                  .setName(BundleModuleName.create(moduleName))
+                  .setBundleConfig(bundleConfig)
+                  .setAndroidManifestProto(manifest)
+                  .build());
+      contextPerModule.put(moduleName, context);
+      for (StreamedEntry entry : heldBackEntries.removeAll(moduleName)) {
+        processEntry(context, entry);
+      }
+    }
+
+    /**
+     * Processes the entries that are still held back at the end of the stream, with the contexts
+     * of the modules of the bundle, and returns the context of the base module.
+     */
+    private BundleContext processHeldBackEntries(AnalysisSession session) {
+      for (BundleModule module : session.getAppBundle().getModules().values()) {
+        contextPerModule.computeIfAbsent(
+            module.getName().getName(), name -> BundleAnalyzer.createContext(module));
+      }
+      BundleContext baseContext =
+          contextPerModule.get(BundleModuleName.BASE_MODULE_NAME.getName());
+      for (String moduleName : ImmutableSet.copyOf(heldBackEntries.keySet())) {
+        BundleContext context = contextPerModule.getOrDefault(moduleName, baseContext);
+        for (StreamedEntry entry : heldBackEntries.removeAll(moduleName)) {
+          processEntry(context, entry);
+        }
+      }
+      return baseContext;
+    }
+
+    private void processEntry(BundleContext context, StreamedEntry entry) {
+      // Every suggester gets its own file data, since the input stream can only be opened once.
+      for (BundleEntrySuggester suggester : bundleEntrySuggesters) {
+        suggester.processBundleZipEntry(context, new StreamedEntryFileData(entry), sink);
+      }
+      nestedArchiveExpander.expand(
+          new StreamedEntryFileData(entry),
+          entry.content.getContent(),
+          nestedEntry -> {
+            for (BundleEntrySuggester suggester : bundleEntrySuggesters) {
+              suggester.processBundleZipEntry(context, nestedEntry.newFileData(), sink);
+            }
+          });
+      try {
+        entry.content.release();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /** An entry read from the stream, with its content held by the spool. */
+  private static final class StreamedEntry {
+    private final String name;
+    private final long size;
+    private final long compressedSize;
+    private final SpooledContent content;
+
+    private StreamedEntry(String name, long size, long compressedSize, SpooledContent content) {
+      this.name = name;
+      this.size = size;
+      this.compressedSize = compressedSize;
+      this.content = content;
+    }
+  }
+
+  /** Supplies the file data of an entry read from the stream. This is not threadsafe. */
+  private static final class StreamedEntryFileData implements FileData {
+    private final StreamedEntry entry;
+    private InputStream inputStream;
+
+    private StreamedEntryFileData(StreamedEntry entry) {
+      this.entry = entry;
+    }
+
+    @Override
+    @MustBeClosed
+    public InputStream getInputStream() {
+      checkState(inputStream == null, "input stream was already supplied and opened");
+
+      try {
+        inputStream = entry.content.getContent().openStream();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return inputStream;
+    }
+
+    @Override
+    public Path getPathWithinRoot() {
+      return Paths.get(entry.name);
+    }
+
+    @Override
+    public Path getPathWithinModule() {
+      Optional<String> moduleName = BundleEntryType.getModuleName(entry.name);
+      return moduleName.isPresent()
+          ? Paths.get(entry.name.substring(moduleName.get().length() + 1))
+          : getPathWithinRoot();
+    }
+
+    @Override
+    public long getSize() {
+      return entry.size;
+    }
+
+    @Override
+    public long getCompressedSize() {
+      return entry.compressedSize;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multiset;
+
+/** The suggestions that appeared or disappeared between the analyses of two artifacts. */
+@AutoValue
+public abstract class SuggestionDiff {
+
+  /**
+   * Compares the suggestions of two analyses. Suggestions are matched on their issue type, category
+   * and message, so a suggestion whose size estimate merely changed is considered unchanged.
+   */
+  public static SuggestionDiff compute(
+      ImmutableList<Suggestion> oldSuggestions, ImmutableList<Suggestion> newSuggestions) {
+    Multiset<String> unmatchedOldKeys = HashMultiset.create();
+    oldSuggestions.forEach(suggestion -> unmatchedOldKeys.add(key(suggestion)));
+
+    ImmutableList.Builder<Suggestion> appeared = ImmutableList.builder();
+    for (Suggestion suggestion : newSuggestions) {
+      if (!unmatchedOldKeys.remove(key(suggestion))) {
+        appeared.add(suggestion);
+      }
+    }
+    ImmutableList.Builder<Suggestion> disappeared = ImmutableList.builder();
+    for (Suggestion suggestion : oldSuggestions) {
+      if (unmatchedOldKeys.remove(key(suggestion))) {
+        disappeared.add(suggestion);
+      }
+    }
+    return new AutoValue_SuggestionDiff(appeared.build(), disappeared.build());
+  }
+
+  /** Suggestions only produced for the new artifact. */
+  public abstract ImmutableList<Suggestion> getAppearedSuggestions();
+
+  /** Suggestions only produced for the old artifact. */
+  public abstract ImmutableList<Suggestion> getDisappearedSuggestions();
+
+  private static String key(Suggestion suggestion) {
+    return suggestion.getIssueType()
+        + "/"
+        + suggestion.getCategory()
+        + "/"
+        + suggestion.getMessage();
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import com.android.tools.sizereduction.analyzer.analyzers.ApkAnalyzer;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.LargeFilesSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.QuestionableFilesSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.WebpSuggester;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/** This command checks an APK for any size suggestions. */
+@Command(
+    name = "check-apk",
+    mixinStandardHelpOptions = true,
+    description = "Checks an Android APK for size suggestion savings.")
+public final class CheckApk implements Callable<Void> {
+
+  @Parameters(description = "Android .apk file", arity = "1" /* one parameter */)
+  private File apkFile;
+
+  @Option(
+      names = {"-d", "--display-all"},
+      description =
+          "Displays each individual suggestion within a category."
+              + " By default only the category summary is displayed.")
+  private boolean displayAll = false;
+
+  @Option(
+      names = {"-c", "--category"},
+      description =
+          "Display only suggestions relating to the provided category."
+              + " Valid categories are webp and large-files.")
+  private List<String> categories;
+
+  @Option(
+      names = "--format",
+      description =
+          "Output format of the suggestions. Valid formats are text, jsonl (one JSON record per"
+              + " line) and proto (length delimited protos). Defaults to text.")
+  private OutputFormat format = OutputFormat.TEXT;
+
+  private static final ApkAnalyzer APK_ANALYZER =
+      new ApkAnalyzer(
+          ImmutableList.of(),
+          ImmutableList.of(
+              new WebpSuggester(), new LargeFilesSuggester(), new QuestionableFilesSuggester()));
+
+  @Override
+  public Void call() throws IOException {
+    if (format != OutputFormat.TEXT) {
+      SuggestionWriter writer = SuggestionWriter.create(format, System.out);
+      APK_ANALYZER.analyze(apkFile, writer);
+      writer.flush();
+      return null;
+    }
+    TerminalInterface terminalInterface =
+        TerminalInterface.createStreaming(
+            categories != null ? ImmutableList.copyOf(categories) : ImmutableList.of(),
+            displayAll);
+    APK_ANALYZER.analyze(apkFile, terminalInterface);
+    terminalInterface.displaySuggestions();
+    return null;
+  }
+}
@@ -16,20 +16,46 @@
 
 package com.android.tools.sizereduction.analyzer.cli;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.android.tools.sizereduction.analyzer.Budget.SizeLimit;
 import com.android.tools.sizereduction.analyzer.analyzers.BundleAnalyzer;
-import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.analyzers.NestedArchiveExpander;
+import com.android.tools.sizereduction.analyzer.analyzers.ResultCache;
+import com.android.tools.sizereduction.analyzer.analyzers.SizeBudgetChecker;
+import com.android.tools.sizereduction.analyzer.analyzers.SizeBudgetChecker.LimitUsage;
+import com.android.tools.sizereduction.analyzer.analyzers.StreamingBundleAnalyzer;
+import com.android.tools.sizereduction.analyzer.analyzers.Version;
+import com.android.tools.sizereduction.analyzer.history.HistoryMetrics;
+import com.android.tools.sizereduction.analyzer.history.HistoryStore;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.DuplicateFilesSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.LargeFilesSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.QuestionableFilesSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.WebpSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.bundles.BundleSplitSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.bundles.LargeFilesInBaseModuleSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.bundles.UncompressedNativeLibsSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.code.DebugMetadataSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.code.DexIdCountsSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.code.DuplicateClassesSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.code.LargeCodePackagesSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.libraries.LibraryEligibleForFeatureSplitSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.proguard.ProguardSuggester;
 import com.google.common.collect.ImmutableList;
+import com.google.play.bit.proto.SizeAnalyzerLog.ArtifactType;
+import com.google.play.bit.proto.SizeAnalyzerLog.ErrorType;
+import com.google.play.bit.proto.SizeAnalyzerLog.SizeAnalysisLog;
+import com.google.protobuf.TextFormat;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
@@ -39,9 +65,17 @@ import picocli.CommandLine.Parameters;
     name = "check-bundle",
     mixinStandardHelpOptions = true,
     description = "Checks an Android App Bundle for size suggestion savings.")
-public final class CheckBundle implements Callable<Void> {
+public final class CheckBundle implements Callable<Integer> {
+
+  /** Exit code returned when the bundle exceeds its size budget. */
+  public static final int BUDGET_EXCEEDED_EXIT_CODE = 1;
 
-  @Parameters(description = "Android App Bundle .aab file", arity = "1" /* one parameter */)
+  /** The bundle file name that stands for the standard input. */
+  private static final String STANDARD_INPUT = "-";
+
+  @Parameters(
+      description = "Android App Bundle .aab file, or - to read the bundle from the standard input",
+      arity = "1" /* one parameter */)
   private File bundleFile;
 
   @Option(
@@ -56,17 +90,27 @@ public final class CheckBundle implements Callable<Void> {
               + " of the top largest files in the ")
   private static long baseModuleLargeFileThreshold;
 
-  private static final BundleAnalyzer BUNDLE_ANALYZER =
-      new BundleAnalyzer(
-          /* bundleSuggesters= */ ImmutableList.of(
-              new ProguardSuggester(),
-              new BundleSplitSuggester(),
-              new UncompressedNativeLibsSuggester(),
-              new LibraryEligibleForFeatureSplitSuggester(),
-              new LargeFilesInBaseModuleSuggester(
-                  baseModuleTopFiles, baseModuleLargeFileThreshold)),
-          /* bundleEntrySuggesters= */ ImmutableList.of(
-              new WebpSuggester(), new LargeFilesSuggester(), new QuestionableFilesSuggester()));
+  @Option(
+      names = "--nested-archive-depth",
+      description =
+          "Depth up to which archives embedded in the bundle, such as .zip or .jar assets, are"
+              + " expanded so that their entries are checked too. 0 disables the expansion."
+              + " Defaults to 2.")
+  private int nestedArchiveDepth = NestedArchiveExpander.DEFAULT_MAX_DEPTH;
+
+  @Option(
+      names = "--nested-archive-budget",
+      description =
+          "Maximum number of bytes inflated from the archives embedded in a single bundle entry."
+              + " Defaults to 64 MB.")
+  private long nestedArchiveBudget = NestedArchiveExpander.DEFAULT_MAX_EXPANDED_BYTES;
+
+  @Option(
+      names = "--cache-dir",
+      description =
+          "Directory in which analysis results are cached. Analyzing a bundle that is"
+              + " byte-identical to a previously analyzed one reuses the cached result.")
+  private File cacheDirectory;
 
   @Option(
       names = {"-d", "--display-all"},
@@ -82,21 +126,212 @@ public final class CheckBundle implements Callable<Void> {
               + " Valid categories are webp, proguard, and large-files.")
   private List<String> categories;
 
+  @Option(
+      names = "--format",
+      description =
+          "Output format of the suggestions. Valid formats are text, jsonl (one JSON record per"
+              + " line) and proto (length delimited protos). Defaults to text.")
+  private OutputFormat format = OutputFormat.TEXT;
+
+  @Option(
+      names = "--log-file",
+      description =
+          "File to which a size analysis log record, with the size breakdown of the bundle and a"
+              + " summary of the suggestions, is appended as a length delimited proto.")
+  private File logFile;
+
+  @Option(
+      names = "--budget",
+      description =
+          "Text format SizeBudget proto with limits per module, path glob or entry type. When set,"
+              + " only the budget is checked, from the sizes in the central directory, and the"
+              + " command fails if any limit is exceeded.")
+  private File budgetFile;
+
+  @Option(
+      names = "--history-dir",
+      description =
+          "Directory of the size history store. The size breakdown and suggestion totals of the"
+              + " run are appended to it, and can be queried with the history command.")
+  private File historyDirectory;
+
+  @Option(
+      names = "--revision",
+      description =
+          "Revision the bundle was built from, recorded in the size history. Defaults to the"
+              + " current git revision of the working directory, if any.")
+  private String revision;
+
   @Override
-  public Void call() {
+  public Integer call() throws IOException {
+    if (budgetFile != null) {
+      return checkBudget();
+    }
 
     try {
-      ImmutableList<Suggestion> suggestions = BUNDLE_ANALYZER.analyze(bundleFile);
-
-      TerminalInterface.create(
-              suggestions,
+      if (format != OutputFormat.TEXT) {
+        SuggestionWriter writer = SuggestionWriter.create(format, System.out);
+        analyzeBundle(writer);
+        writer.flush();
+        return 0;
+      }
+      TerminalInterface terminalInterface =
+          TerminalInterface.createStreaming(
               categories != null ? ImmutableList.copyOf(categories) : ImmutableList.of(),
-              displayAll)
-          .displaySuggestions();
+              displayAll);
+      analyzeBundle(terminalInterface);
+      terminalInterface.displaySuggestions();
     } catch (Exception e) {
       throw e;
     }
 
-    return null;
+    return 0;
+  }
+
+  private int checkBudget() {
+    checkArgument(
+        !bundleFile.getPath().equals(STANDARD_INPUT),
+        "--budget needs a bundle file, not the standard input.");
+    ImmutableList<LimitUsage> limitUsages =
+        new SizeBudgetChecker(SizeBudgetChecker.readBudget(budgetFile)).check(bundleFile);
+    boolean exceeded = false;
+    for (LimitUsage limitUsage : limitUsages) {
+      SizeLimit limit = limitUsage.getLimit();
+      String description =
+          TextFormat.shortDebugString(limit.toBuilder().clearMaxBytes().clearCompressed().build())
+              + (limit.getCompressed() ? " (compressed)" : "");
+      if (limitUsage.isExceeded()) {
+        exceeded = true;
+        System.out.println(
+            "Budget exceeded for "
+                + description
+                + ": more than "
+                + limit.getMaxBytes()
+                + " bytes (at least "
+                + limitUsage.getUsedBytes()
+                + " bytes).");
+      } else {
+        System.out.println(
+            "Budget met for "
+                + description
+                + ": "
+                + limitUsage.getUsedBytes()
+                + " of "
+                + limit.getMaxBytes()
+                + " bytes.");
+      }
+    }
+    return exceeded ? BUDGET_EXCEEDED_EXIT_CODE : 0;
+  }
+
+  private void analyzeBundle(SuggestionSink sink) throws IOException {
+    if (bundleFile.getPath().equals(STANDARD_INPUT)) {
+      checkArgument(
+          cacheDirectory == null && logFile == null && historyDirectory == null,
+          "--cache-dir, --log-file and --history-dir need a bundle file, not the standard input.");
+      new StreamingBundleAnalyzer(
+              createBundleSuggesters(baseModuleTopFiles, baseModuleLargeFileThreshold),
+              createBundleEntrySuggesters(),
+              createNestedArchiveExpander())
+          .analyze(System.in, sink);
+      return;
+    }
+
+    BundleAnalyzer bundleAnalyzer = createBundleAnalyzer();
+    if (logFile == null && historyDirectory == null) {
+      bundleAnalyzer.analyze(bundleFile, sink);
+      return;
+    }
+
+    SizeAnalysisLog sizeAnalysisLog;
+    try {
+      sizeAnalysisLog = bundleAnalyzer.analyzeAndLog(bundleFile, sink);
+    } catch (RuntimeException e) {
+      if (logFile == null) {
+        throw e;
+      }
+      appendToLogFile(
+          SizeAnalysisLog.newBuilder()
+              .setAnalyzerVersion(Version.CURRENT_VERSION)
+              .setArtifactType(ArtifactType.APP_BUNDLE)
+              .setErrorType(ErrorType.RUNTIME_ERROR)
+              .build());
+      throw e;
+    }
+    if (logFile != null) {
+      appendToLogFile(sizeAnalysisLog);
+    }
+    if (historyDirectory != null) {
+      new HistoryStore(historyDirectory.toPath())
+          .append(
+              System.currentTimeMillis(),
+              revision != null ? revision : GitRevision.current().orElse(""),
+              HistoryMetrics.fromSizeAnalysisLog(sizeAnalysisLog));
+    }
+  }
+
+  private void appendToLogFile(SizeAnalysisLog sizeAnalysisLog) throws IOException {
+    try (OutputStream outputStream = new FileOutputStream(logFile, /* append= */ true)) {
+      sizeAnalysisLog.writeDelimitedTo(outputStream);
+    }
+  }
+
+  /** Creates the suggesters operating on the entire bundle. */
+  static ImmutableList<BundleSuggester> createBundleSuggesters(
+      int baseModuleTopFiles, long baseModuleLargeFileThreshold) {
+    return ImmutableList.of(
+        new ProguardSuggester(),
+        new BundleSplitSuggester(),
+        new UncompressedNativeLibsSuggester(),
+        new LibraryEligibleForFeatureSplitSuggester(),
+        new LargeFilesInBaseModuleSuggester(baseModuleTopFiles, baseModuleLargeFileThreshold),
+        new DuplicateFilesSuggester(),
+        new LargeCodePackagesSuggester(),
+        new DuplicateClassesSuggester(),
+        new DebugMetadataSuggester(),
+        new DexIdCountsSuggester());
+  }
+
+  /** Creates the suggesters operating on the individual bundle files. */
+  static ImmutableList<BundleEntrySuggester> createBundleEntrySuggesters() {
+    return ImmutableList.of(
+        new WebpSuggester(), new LargeFilesSuggester(), new QuestionableFilesSuggester());
+  }
+
+  private BundleAnalyzer createBundleAnalyzer() {
+    return createBundleAnalyzer(
+        baseModuleTopFiles,
+        baseModuleLargeFileThreshold,
+        nestedArchiveDepth,
+        nestedArchiveBudget,
+        cacheDirectory);
+  }
+
+  /**
+   * Creates the analyzer of bundle files with all suggesters and nested archive expansion, shared
+   * by the commands reporting suggestions so that they report the same ones.
+   */
+  static BundleAnalyzer createBundleAnalyzer(
+      int baseModuleTopFiles,
+      long baseModuleLargeFileThreshold,
+      int nestedArchiveDepth,
+      long nestedArchiveBudget,
+      @Nullable File cacheDirectory) {
+    return new BundleAnalyzer(
+        createBundleSuggesters(baseModuleTopFiles, baseModuleLargeFileThreshold),
+        createBundleEntrySuggesters(),
+        cacheDirectory != null
+            ? new ResultCache(
+                cacheDirectory.toPath(),
+                "baseModuleTopFiles="
+                    + baseModuleTopFiles
+                    + ",baseModuleLargeFileThreshold="
+                    + baseModuleLargeFileThreshold)
+            : null,
+        new NestedArchiveExpander(nestedArchiveDepth, nestedArchiveBudget));
+  }
+
+  private NestedArchiveExpander createNestedArchiveExpander() {
+    return new NestedArchiveExpander(nestedArchiveDepth, nestedArchiveBudget);
   }
 }
@@ -17,7 +17,7 @@
 package com.android.tools.sizereduction.analyzer.cli;
 
 import com.android.tools.sizereduction.analyzer.analyzers.ProjectAnalyzer;
-import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.DuplicateFilesSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.LargeFilesSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.QuestionableFilesSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.binaryfiles.WebpSuggester;
@@ -26,6 +26,7 @@ import com.android.tools.sizereduction.analyzer.suggesters.libraries.LibraryElig
 import com.android.tools.sizereduction.analyzer.suggesters.proguard.ProguardSuggester;
 import com.google.common.collect.ImmutableList;
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.Callable;
 import picocli.CommandLine.Command;
@@ -72,37 +73,60 @@ public final class CheckProject implements Callable<Void> {
               + " flag.")
   private boolean showFixes = false;
 
-  private static final ProjectAnalyzer PROJECT_ANALYZER =
-      new ProjectAnalyzer(
-          ImmutableList.of(
-              new ProguardSuggester(),
-              new BundleSplitSuggester(),
-              new LibraryEligibleForFeatureSplitSuggester()),
-          ImmutableList.of(
-              new WebpSuggester(), new LargeFilesSuggester(), new QuestionableFilesSuggester()));
+  @Option(
+      names = "--format",
+      description =
+          "Output format of the suggestions. Valid formats are text, jsonl (one JSON record per"
+              + " line) and proto (length delimited protos). Defaults to text.")
+  private OutputFormat format = OutputFormat.TEXT;
 
   @Override
-  public Void call() {
+  public Void call() throws IOException {
     if (applyFixes && showFixes) {
       System.out.println(
           "--apply-fixes and --show-fixes are mutually exclusive and cannot both be"
               + " true at the same time.");
       return null;
     }
+    if (format != OutputFormat.TEXT && (applyFixes || showFixes)) {
+      System.out.println(
+          "--apply-fixes and --show-fixes are only supported with the text output format.");
+      return null;
+    }
 
+    // Some suggesters keep state across the project tree, so each run gets its own analyzer.
+    ProjectAnalyzer projectAnalyzer = createProjectAnalyzer();
     try {
-      ImmutableList<Suggestion> suggestions = PROJECT_ANALYZER.analyze(directory);
-
-      TerminalInterface.create(
-          suggestions,
-          categories != null ? ImmutableList.copyOf(categories) : ImmutableList.of(),
-          displayAll,
-          applyFixes,
-          showFixes)
-          .displaySuggestions();
+      if (format != OutputFormat.TEXT) {
+        SuggestionWriter writer = SuggestionWriter.create(format, System.out);
+        projectAnalyzer.analyze(directory, writer);
+        writer.flush();
+        return null;
+      }
+      TerminalInterface terminalInterface =
+          TerminalInterface.createStreaming(
+              categories != null ? ImmutableList.copyOf(categories) : ImmutableList.of(),
+              displayAll,
+              applyFixes,
+              showFixes);
+      projectAnalyzer.analyze(directory, terminalInterface);
+      terminalInterface.displaySuggestions();
     } catch (Exception e) {
       throw e;
     }
     return null;
   }
+
+  private static ProjectAnalyzer createProjectAnalyzer() {
+    return new ProjectAnalyzer(
+        ImmutableList.of(
+            new ProguardSuggester(),
+            new BundleSplitSuggester(),
+            new LibraryEligibleForFeatureSplitSuggester()),
+        ImmutableList.of(
+            new WebpSuggester(),
+            new LargeFilesSuggester(),
+            new QuestionableFilesSuggester(),
+            new DuplicateFilesSuggester()));
+  }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.bundle.Devices.DeviceSpec;
+import com.android.tools.sizereduction.analyzer.analyzers.DeviceDownloadSize;
+import com.android.tools.sizereduction.analyzer.analyzers.DownloadSizeSimulator;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.util.JsonFormat;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/** This command reports the download and install sizes of a bundle for a set of devices. */
+@Command(
+    name = "device-sizes",
+    mixinStandardHelpOptions = true,
+    description =
+        "Generates the APKs of an Android App Bundle with bundletool, and reports the download and"
+            + " install sizes of the APKs that each device gets.")
+public final class DeviceSizes implements Callable<Void> {
+
+  @Parameters(description = "Android App Bundle .aab file", arity = "1" /* one parameter */)
+  private File bundleFile;
+
+  @Option(
+      names = "--device-spec",
+      required = true,
+      description =
+          "JSON device spec file, in the format used by bundletool, describing the ABIs, screen"
+              + " density, locales and SDK version of a device. Can be repeated.")
+  private List<File> deviceSpecFiles;
+
+  @Option(
+      names = "--aapt2",
+      description =
+          "Path to the aapt2 binary used to generate the APKs, defaults to the one shipped with"
+              + " bundletool.")
+  private File aapt2File;
+
+  @Override
+  public Void call() throws IOException {
+    // Devices are named by the path of their spec file, as spec files in different directories
+    // can share a name.
+    Map<String, DeviceSpec> devices = new LinkedHashMap<>();
+    for (File deviceSpecFile : deviceSpecFiles) {
+      checkArgument(
+          !devices.containsKey(deviceSpecFile.getPath()),
+          "Device spec file %s is given more than once.",
+          deviceSpecFile);
+      devices.put(deviceSpecFile.getPath(), readDeviceSpec(deviceSpecFile));
+    }
+    Path apkSetPath = Files.createTempFile("device-sizes", ".apks");
+    try (DownloadSizeSimulator simulator =
+        DownloadSizeSimulator.create(
+            bundleFile.toPath(),
+            apkSetPath,
+            Optional.ofNullable(aapt2File).map(File::toPath))) {
+      for (DeviceDownloadSize deviceSize : simulator.simulate(ImmutableMap.copyOf(devices))) {
+        System.out.println(
+            deviceSize.getDeviceName()
+                + ": download "
+                + deviceSize.getDownloadSize()
+                + " B, install "
+                + deviceSize.getInstallSize()
+                + " B ("
+                + String.join(", ", deviceSize.getApkPaths())
+                + ")");
+      }
+    } finally {
+      Files.deleteIfExists(apkSetPath);
+    }
+    return null;
+  }
+
+  private static DeviceSpec readDeviceSpec(File deviceSpecFile) throws IOException {
+    DeviceSpec.Builder deviceSpec = DeviceSpec.newBuilder();
+    try (Reader reader = Files.newBufferedReader(deviceSpecFile.toPath(), UTF_8)) {
+      JsonFormat.parser().merge(reader, deviceSpec);
+    }
+    return deviceSpec.build();
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import static java.util.Comparator.comparingLong;
+
+import com.android.tools.sizereduction.analyzer.analyzers.BundleAnalyzer;
+import com.android.tools.sizereduction.analyzer.analyzers.BundleDiff;
+import com.android.tools.sizereduction.analyzer.analyzers.BundleDiffer;
+import com.android.tools.sizereduction.analyzer.analyzers.NestedArchiveExpander;
+import com.android.tools.sizereduction.analyzer.analyzers.SizeDelta;
+import com.android.tools.sizereduction.analyzer.analyzers.SuggestionDiff;
+import java.io.File;
+import java.util.concurrent.Callable;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/** This command reports the size differences between two bundles. */
+@Command(
+    name = "diff-bundles",
+    mixinStandardHelpOptions = true,
+    description = "Reports what changed in size between two Android App Bundles.")
+public final class DiffBundles implements Callable<Void> {
+
+  @Parameters(index = "0", description = "The old Android App Bundle .aab file")
+  private File oldBundleFile;
+
+  @Parameters(index = "1", description = "The new Android App Bundle .aab file")
+  private File newBundleFile;
+
+  @Option(
+      names = "--top-directories",
+      description = "Number of directories with the largest size changes to display.")
+  private int topDirectories = 20;
+
+  @Option(
+      names = "--skip-suggestions",
+      description =
+          "Only compare the sizes of the bundles, without analyzing them for suggestions that"
+              + " appeared or disappeared.")
+  private boolean skipSuggestions = false;
+
+  @Override
+  public Void call() {
+    System.out.println("Changed entries:");
+    BundleDiff bundleDiff =
+        BundleDiffer.diff(
+            oldBundleFile, newBundleFile, entryDelta -> System.out.println(format(entryDelta)));
+
+    System.out.println("Changed modules:");
+    bundleDiff.getModuleDeltas().stream()
+        .filter(DiffBundles::hasChanged)
+        .forEach(moduleDelta -> System.out.println(format(moduleDelta)));
+
+    System.out.println("Directories with the largest changes:");
+    bundleDiff.getDirectoryDeltas().stream()
+        .filter(DiffBundles::hasChanged)
+        .sorted(
+            comparingLong((SizeDelta delta) -> Math.abs(delta.getCompressedSizeDelta())).reversed())
+        .limit(topDirectories)
+        .forEach(directoryDelta -> System.out.println(format(directoryDelta)));
+
+    SizeDelta totalDelta = bundleDiff.getTotalDelta();
+    System.out.println(
+        "Total: compressed "
+            + formatChange(totalDelta.getOldCompressedSize(), totalDelta.getNewCompressedSize())
+            + ", uncompressed "
+            + formatChange(totalDelta.getOldSize(), totalDelta.getNewSize()));
+
+    if (!skipSuggestions) {
+      BundleAnalyzer bundleAnalyzer =
+          CheckBundle.createBundleAnalyzer(
+              /* baseModuleTopFiles= */ 0,
+              /* baseModuleLargeFileThreshold= */ 0L,
+              NestedArchiveExpander.DEFAULT_MAX_DEPTH,
+              NestedArchiveExpander.DEFAULT_MAX_EXPANDED_BYTES,
+              /* cacheDirectory= */ null);
+      SuggestionDiff suggestionDiff =
+          SuggestionDiff.compute(
+              bundleAnalyzer.analyze(oldBundleFile), bundleAnalyzer.analyze(newBundleFile));
+      System.out.println("New suggestions:");
+      suggestionDiff.getAppearedSuggestions().forEach(s -> System.out.println("  + " + s));
+      System.out.println("Resolved suggestions:");
+      suggestionDiff.getDisappearedSuggestions().forEach(s -> System.out.println("  - " + s));
+    }
+    return null;
+  }
+
+  private static boolean hasChanged(SizeDelta delta) {
+    return delta.getCompressedSizeDelta() != 0 || delta.getSizeDelta() != 0;
+  }
+
+  private static String format(SizeDelta delta) {
+    return "  "
+        + delta.getPath()
+        + ": compressed "
+        + formatChange(delta.getOldCompressedSize(), delta.getNewCompressedSize())
+        + ", uncompressed "
+        + formatChange(delta.getOldSize(), delta.getNewSize());
+  }
+
+  private static String formatChange(long oldSize, long newSize) {
+    long delta = newSize - oldSize;
+    return (delta >= 0 ? "+" : "") + delta + " B (" + oldSize + " -> " + newSize + ")";
+  }
+}
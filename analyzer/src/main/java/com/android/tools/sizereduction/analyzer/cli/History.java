@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import com.android.tools.sizereduction.analyzer.history.HistoryStore;
+import com.android.tools.sizereduction.analyzer.history.HistoryStore.DataPoint;
+import java.io.File;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/** This command queries the size history recorded by check-bundle. */
+@Command(
+    name = "history",
+    mixinStandardHelpOptions = true,
+    description = "Shows how size metrics recorded with check-bundle --history-dir changed.")
+public final class History implements Callable<Void> {
+
+  @Parameters(
+      arity = "0..1",
+      description = "Name of the metric to show. Lists the recorded metrics if omitted.")
+  private String metric;
+
+  @Option(
+      names = "--history-dir",
+      required = true,
+      description = "Directory of the size history store.")
+  private File historyDirectory;
+
+  @Option(names = "--last", description = "Number of most recent runs to show.")
+  private int lastRuns = Integer.MAX_VALUE;
+
+  @Override
+  public Void call() {
+    HistoryStore historyStore = new HistoryStore(historyDirectory.toPath());
+    if (metric == null) {
+      historyStore.getMetricNames().forEach(System.out::println);
+      return null;
+    }
+
+    TrendSummary summary = new TrendSummary();
+    historyStore.query(
+        metric,
+        lastRuns,
+        dataPoint -> {
+          System.out.println(
+              Instant.ofEpochMilli(dataPoint.getTimestampMillis())
+                  + "  "
+                  + dataPoint.getRevision()
+                  + "  "
+                  + dataPoint.getValue());
+          summary.add(dataPoint);
+        });
+    if (summary.count == 0) {
+      System.out.println("No values recorded for " + metric + ".");
+      return null;
+    }
+    System.out.println(
+        summary.count
+            + " runs: first "
+            + summary.first
+            + ", last "
+            + summary.last
+            + " ("
+            + (summary.last >= summary.first ? "+" : "")
+            + (summary.last - summary.first)
+            + "), min "
+            + summary.min
+            + ", max "
+            + summary.max);
+    return null;
+  }
+
+  /** Summarizes a series of values without keeping them. */
+  private static final class TrendSummary {
+    private long count;
+    private long first;
+    private long last;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    private void add(DataPoint dataPoint) {
+      long value = dataPoint.getValue();
+      if (count == 0) {
+        first = value;
+      }
+      last = value;
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+      count++;
+    }
+  }
+}
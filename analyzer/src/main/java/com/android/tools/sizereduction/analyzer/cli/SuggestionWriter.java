@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
+import com.google.protobuf.util.JsonFormat;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Writes each suggestion to an output stream in a machine readable format as soon as it is
+ * produced, so the memory used does not depend on the number of suggestions.
+ */
+public abstract class SuggestionWriter implements SuggestionSink, Flushable {
+
+  /** Creates a writer for the given machine readable format. */
+  public static SuggestionWriter create(OutputFormat format, OutputStream outputStream) {
+    switch (format) {
+      case JSONL:
+        return new JsonLinesWriter(outputStream);
+      case PROTO:
+        return new DelimitedProtoWriter(outputStream);
+      default:
+        throw new IllegalArgumentException("No suggestion writer for format: " + format);
+    }
+  }
+
+  @Override
+  public void accept(Suggestion suggestion) {
+    try {
+      write(suggestion);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  protected abstract void write(Suggestion suggestion) throws IOException;
+
+  /** Writes one JSON encoded SuggestionRecord per line. */
+  private static final class JsonLinesWriter extends SuggestionWriter {
+
+    private final JsonFormat.Printer printer =
+        JsonFormat.printer().omittingInsignificantWhitespace();
+    private final Writer writer;
+
+    JsonLinesWriter(OutputStream outputStream) {
+      this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, UTF_8));
+    }
+
+    @Override
+    protected void write(Suggestion suggestion) throws IOException {
+      printer.appendTo(suggestion.toRecord(), writer);
+      writer.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+      writer.flush();
+    }
+  }
+
+  /** Writes length delimited binary SuggestionRecord protos. */
+  private static final class DelimitedProtoWriter extends SuggestionWriter {
+
+    private final OutputStream outputStream;
+
+    DelimitedProtoWriter(OutputStream outputStream) {
+      this.outputStream = new BufferedOutputStream(outputStream);
+    }
+
+    @Override
+    protected void write(Suggestion suggestion) throws IOException {
+      suggestion.toRecord().writeDelimitedTo(outputStream);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      outputStream.flush();
+    }
+  }
+}
@@ -24,6 +24,7 @@ import static java.util.Comparator.comparingLong;
 import com.android.tools.sizereduction.analyzer.suggesters.AutoFix;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Splitter;
@@ -31,8 +32,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Streams;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import org.fusesource.jansi.Ansi;
@@ -41,8 +44,12 @@ import org.fusesource.jansi.Ansi.Color;
 /**
  * This class will print out the suggestions in an understandable format in the terminal.
  * Suggestions will be categorized and sorted by size reduction savings estimate.
+ *
+ * <p>The terminal interface is also a {@link SuggestionSink}, so suggestions can be pushed to it
+ * while the analysis is still running. Only the per category totals are kept, unless the individual
+ * suggestions are needed for displaying details or applying fixes.
  */
-public final class TerminalInterface {
+public final class TerminalInterface implements SuggestionSink {
 
   private static final ImmutableMap<Category, String> CATEGORY_TO_STRING =
       ImmutableMap.<Category, String>builder()
@@ -52,6 +59,8 @@ public final class TerminalInterface {
           .put(Category.BUNDLE_CONFIG, "Optimizing the bundle configuration")
           .put(Category.BUNDLE_BASE, "Optimizing the initial app install")
           .put(Category.LIBRARIES, "Optimizing usage of libraries in the app")
+          .put(Category.DUPLICATE_FILES, "Removing duplicate files")
+          .put(Category.CODE_SIZE, "Reducing the largest code packages")
           .build();
 
   private static final ImmutableMap<String, Category> STRING_TO_CATEGORY =
@@ -62,14 +71,43 @@ public final class TerminalInterface {
           .put("bundle-config", Category.BUNDLE_CONFIG)
           .put("bundle-base", Category.BUNDLE_BASE)
           .put("libraries", Category.LIBRARIES)
+          .put("duplicate-files", Category.DUPLICATE_FILES)
+          .put("code-size", Category.CODE_SIZE)
           .build();
 
-  private final ImmutableList<Suggestion> suggestions;
+  private final List<Suggestion> suggestions = new ArrayList<>();
+  private final Map<Category, Long> categoryTotals = new LinkedHashMap<>();
   private final ImmutableList<Suggestion.Category> displayCategories;
   private final boolean displayDetails;
   private final boolean applyFixes;
   private final boolean showFixes;
+  private final boolean retainSuggestions;
   private final Scanner inputScanner;
+  private boolean hasAutoFix;
+
+  /**
+   * Creates a terminal interface that receives the suggestions through {@link #accept} and displays
+   * them once {@link #displaySuggestions} is called.
+   */
+  public static TerminalInterface createStreaming(
+      ImmutableList<String> categories, boolean displayDetails) {
+    return TerminalInterface.createStreaming(
+        categories, displayDetails, /* applyFixes= */ false, /* showFixes= */ false);
+  }
+
+  public static TerminalInterface createStreaming(
+      ImmutableList<String> categories,
+      boolean displayDetails,
+      boolean applyFixes,
+      boolean showFixes) {
+    return new TerminalInterface(
+        toCategories(categories),
+        displayDetails,
+        applyFixes,
+        showFixes,
+        /* retainSuggestions= */ displayDetails || applyFixes || showFixes,
+        new Scanner(System.in, UTF_8.name()));
+  }
 
   public static TerminalInterface create(
       ImmutableList<Suggestion> suggestions,
@@ -102,46 +140,65 @@ public final class TerminalInterface {
       boolean applyFixes,
       boolean showFixes,
       Scanner inputScanner) {
-    return new TerminalInterface(
-        suggestions,
-        categories.stream()
-            .filter(s -> STRING_TO_CATEGORY.containsKey(s))
-            .map(s -> STRING_TO_CATEGORY.get(s))
-            .collect(toImmutableList()),
-        displayDetails,
-        applyFixes,
-        showFixes,
-        inputScanner);
+    TerminalInterface terminalInterface =
+        new TerminalInterface(
+            toCategories(categories),
+            displayDetails,
+            applyFixes,
+            showFixes,
+            /* retainSuggestions= */ true,
+            inputScanner);
+    terminalInterface.acceptAll(suggestions);
+    return terminalInterface;
   }
 
   private TerminalInterface(
-      ImmutableList<Suggestion> suggestions,
       ImmutableList<Suggestion.Category> displayCategories,
       boolean displayDetails,
       boolean applyFixes,
       boolean showFixes,
+      boolean retainSuggestions,
       Scanner inputScanner) {
-    this.suggestions = suggestions;
     this.displayCategories = displayCategories;
     this.displayDetails = displayDetails;
     this.applyFixes = applyFixes;
     this.showFixes = showFixes;
+    this.retainSuggestions = retainSuggestions;
     this.inputScanner = inputScanner;
   }
 
-  public void displaySuggestions() {
-    ImmutableListMultimap<Category, Suggestion> categorizedSuggestions = categorizeSuggestions();
+  private static ImmutableList<Category> toCategories(ImmutableList<String> categories) {
+    return categories.stream()
+        .filter(s -> STRING_TO_CATEGORY.containsKey(s))
+        .map(s -> STRING_TO_CATEGORY.get(s))
+        .collect(toImmutableList());
+  }
 
-    if (categorizedSuggestions.size() == 0) {
+  @Override
+  public void accept(Suggestion suggestion) {
+    hasAutoFix |= suggestion.getAutoFix() != null;
+    if (!displayCategories.isEmpty() && !displayCategories.contains(suggestion.getCategory())) {
+      return;
+    }
+    categoryTotals.merge(
+        suggestion.getCategory(), getBytesSavedForSuggestion(suggestion), Long::sum);
+    if (retainSuggestions) {
+      suggestions.add(suggestion);
+    }
+  }
+
+  public void displaySuggestions() {
+    if (categoryTotals.isEmpty()) {
       System.out.println("No size saving suggestions found.");
       return;
     }
-    ImmutableList<Category> categoryDisplayOrder = getCategoryDisplayOrder(categorizedSuggestions);
+    ImmutableListMultimap<Category, Suggestion> categorizedSuggestions = categorizeSuggestions();
+    ImmutableList<Category> categoryDisplayOrder = getCategoryDisplayOrder();
 
     Long runningTotal = 0L;
     for (Category category : categoryDisplayOrder) {
       ImmutableList<Suggestion> suggestions = categorizedSuggestions.get(category);
-      Long totalSavings = getBytesSavedForSuggestionList(suggestions);
+      Long totalSavings = categoryTotals.get(category);
       System.out.println(
           Ansi.ansi()
               .fg(Color.GREEN)
@@ -184,7 +241,7 @@ public final class TerminalInterface {
       }
       // if there are any suggestions with a fix, explicitly let developers know they can apply them
       // or be shown them.
-      if (this.suggestions.stream().anyMatch(suggestion -> suggestion.getAutoFix() != null)) {
+      if (hasAutoFix) {
         System.out.println(
             "The --apply-all flag will automatically apply any available fixes while"
                 + " the --show-fixes flag allows for fixes to be selectively applied.");
@@ -249,9 +306,6 @@ public final class TerminalInterface {
   @VisibleForTesting
   ImmutableListMultimap<Category, Suggestion> categorizeSuggestions() {
     return suggestions.stream()
-        .filter(
-            suggestion ->
-                displayCategories.isEmpty() || displayCategories.contains(suggestion.getCategory()))
         .sorted(comparingLong(TerminalInterface::getBytesSavedForSuggestion).reversed())
         .collect(
             toImmutableListMultimap(
@@ -262,10 +316,9 @@ public final class TerminalInterface {
    * Returns the order for displaying each category, sorted by total size savings for each category.
    */
   @VisibleForTesting
-  ImmutableList<Category> getCategoryDisplayOrder(
-      ImmutableListMultimap<Category, Suggestion> categorizedSuggestions) {
-    return categorizedSuggestions.asMap().entrySet().stream()
-        .sorted(comparingLong(TerminalInterface::getTotalSizeSavings).reversed())
+  ImmutableList<Category> getCategoryDisplayOrder() {
+    return categoryTotals.entrySet().stream()
+        .sorted(comparingLong((Map.Entry<Category, Long> entry) -> entry.getValue()).reversed())
         .map(entry -> entry.getKey())
         .collect(toImmutableList());
   }
@@ -283,21 +336,10 @@ public final class TerminalInterface {
     return " (saves " + humanReadableByteCount(suggestion.getEstimatedBytesSaved()) + ")";
   }
 
-  private static Long getTotalSizeSavings(
-      Map.Entry<Category, Collection<Suggestion>> mappedSuggestions) {
-    return getBytesSavedForSuggestionList(mappedSuggestions.getValue());
-  }
-
   private static Long getBytesSavedForSuggestion(Suggestion suggestion) {
     return suggestion.getEstimatedBytesSaved() != null ? suggestion.getEstimatedBytesSaved() : 0L;
   }
 
-  private static Long getBytesSavedForSuggestionList(Collection<Suggestion> suggestions) {
-    return suggestions.stream()
-        .mapToLong(suggestion -> getBytesSavedForSuggestion(suggestion))
-        .sum();
-  }
-
   private static String humanReadableByteCount(Long bytes) {
     if (bytes == null || bytes == 0) {
       return "";
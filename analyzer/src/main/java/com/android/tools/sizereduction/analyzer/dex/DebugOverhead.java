@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import com.android.tools.sizereduction.analyzer.dex.DexFile.Cursor;
+import com.google.auto.value.AutoValue;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * Sizes of the metadata of dex files which is only used to debug the app or by reflection, and
+ * which Proguard and R8 remove unless told to keep it.
+ *
+ * <p>Each kind of metadata is measured by a single linear scan of its section of the dex file:
+ * the debug info items, with the names of the parameters they start with, the source file names
+ * of the class definitions, and the annotation items of kotlin.Metadata and of source debug
+ * extensions together with the strings they reference.
+ */
+@AutoValue
+public abstract class DebugOverhead {
+
+  private static final String KOTLIN_METADATA = "Lkotlin/Metadata;";
+  private static final String SOURCE_DEBUG_EXTENSION = "Ldalvik/annotation/SourceDebugExtension;";
+
+  private static final int VALUE_STRING = 0x17;
+  private static final int VALUE_ARRAY = 0x1c;
+  private static final int VALUE_ANNOTATION = 0x1d;
+  private static final int VALUE_NULL = 0x1e;
+  private static final int VALUE_BOOLEAN = 0x1f;
+
+  public static final DebugOverhead EMPTY = create(0, 0, 0, 0, 0);
+
+  public static DebugOverhead create(
+      long dexSize,
+      long debugInfoSize,
+      long parameterNamesSize,
+      long sourceFileSize,
+      long kotlinMetadataSize) {
+    return new AutoValue_DebugOverhead(
+        dexSize, debugInfoSize, parameterNamesSize, sourceFileSize, kotlinMetadataSize);
+  }
+
+  /** Measures the debug and source metadata of the given dex file. */
+  public static DebugOverhead compute(DexFile dex) {
+    long debugInfoSize = 0;
+    long parameterNamesSize = 0;
+    int debugInfoOffset = dex.getSectionOffset(DexFile.TYPE_DEBUG_INFO_ITEM);
+    if (debugInfoOffset != 0) {
+      // Debug info items are laid out one after the other.
+      Cursor debugInfo = dex.newCursor(debugInfoOffset);
+      int debugInfoCount = dex.getSectionItemCount(DexFile.TYPE_DEBUG_INFO_ITEM);
+      for (int item = 0; item < debugInfoCount; item++) {
+        debugInfo.readUleb128(); // line_start
+        int parameterCount = debugInfo.readUleb128();
+        int parameterNamesStart = debugInfo.getPosition();
+        for (int parameter = 0; parameter < parameterCount; parameter++) {
+          debugInfo.readUleb128(); // parameter_names, as uleb128p1
+        }
+        parameterNamesSize += debugInfo.getPosition() - parameterNamesStart;
+        debugInfo.skipDebugInfoOpcodes();
+      }
+      debugInfoSize = debugInfo.getPosition() - debugInfoOffset;
+    }
+
+    BitSet sourceStrings = new BitSet(dex.getStringCount());
+    for (int classDef = 0; classDef < dex.getClassDefCount(); classDef++) {
+      int sourceFile = dex.getClassDefSourceFileIndex(classDef);
+      if (sourceFile != DexFile.NO_INDEX) {
+        sourceStrings.set(sourceFile);
+      }
+    }
+
+    long sourceDebugExtensionSize = 0;
+    long kotlinMetadataSize = 0;
+    BitSet kotlinMetadataStrings = new BitSet(dex.getStringCount());
+    int annotationOffset = dex.getSectionOffset(DexFile.TYPE_ANNOTATION_ITEM);
+    if (annotationOffset != 0) {
+      // Annotation items are laid out one after the other.
+      Cursor annotations = dex.newCursor(annotationOffset);
+      int annotationCount = dex.getSectionItemCount(DexFile.TYPE_ANNOTATION_ITEM);
+      for (int item = 0; item < annotationCount; item++) {
+        int itemStart = annotations.getPosition();
+        annotations.readByte(); // visibility
+        ByteBuffer type = dex.getStringData(dex.getTypeDescriptorIndex(annotations.readUleb128()));
+        BitSet referencedStrings =
+            equalsString(type, KOTLIN_METADATA)
+                ? kotlinMetadataStrings
+                : equalsString(type, SOURCE_DEBUG_EXTENSION) ? sourceStrings : null;
+        skipAnnotationElements(annotations, referencedStrings);
+        int itemSize = annotations.getPosition() - itemStart;
+        if (referencedStrings == kotlinMetadataStrings) {
+          kotlinMetadataSize += itemSize;
+        } else if (referencedStrings == sourceStrings) {
+          sourceDebugExtensionSize += itemSize;
+        }
+      }
+    }
+
+    return create(
+        dex.getFileSize(),
+        debugInfoSize,
+        parameterNamesSize,
+        sourceDebugExtensionSize + getStringDataSize(dex, sourceStrings),
+        kotlinMetadataSize + getStringDataSize(dex, kotlinMetadataStrings));
+  }
+
+  /** The total size of the dex files. */
+  public abstract long getDexSize();
+
+  /** The size of the debug info items, mapping instructions to lines and local variables. */
+  public abstract long getDebugInfoSize();
+
+  /** The part of the debug info items naming the parameters of the methods. */
+  public abstract long getParameterNamesSize();
+
+  /** The size of the source file names and of the source debug extensions of inlined code. */
+  public abstract long getSourceFileSize();
+
+  /** The size of the kotlin.Metadata annotations, including the strings they hold. */
+  public abstract long getKotlinMetadataSize();
+
+  /** The total size of the metadata, the parameter names being part of the debug info. */
+  public long getTotalSize() {
+    return getDebugInfoSize() + getSourceFileSize() + getKotlinMetadataSize();
+  }
+
+  /** Adds up the overhead of two sets of dex files. */
+  public DebugOverhead plus(DebugOverhead other) {
+    return create(
+        getDexSize() + other.getDexSize(),
+        getDebugInfoSize() + other.getDebugInfoSize(),
+        getParameterNamesSize() + other.getParameterNamesSize(),
+        getSourceFileSize() + other.getSourceFileSize(),
+        getKotlinMetadataSize() + other.getKotlinMetadataSize());
+  }
+
+  /**
+   * Skips the elements of an encoded annotation, recording the strings referenced by its values
+   * in the given set unless it is null.
+   */
+  private static void skipAnnotationElements(Cursor cursor, BitSet referencedStrings) {
+    int elementCount = cursor.readUleb128();
+    for (int element = 0; element < elementCount; element++) {
+      cursor.readUleb128(); // name_idx
+      skipEncodedValue(cursor, referencedStrings);
+    }
+  }
+
+  private static void skipEncodedValue(Cursor cursor, BitSet referencedStrings) {
+    int header = cursor.readByte();
+    int valueType = header & 0x1f;
+    int valueSize = (header >>> 5) + 1;
+    switch (valueType) {
+      case VALUE_STRING:
+        int stringIndex = cursor.readStringIndex(valueSize);
+        if (referencedStrings != null) {
+          referencedStrings.set(stringIndex);
+        }
+        break;
+      case VALUE_ARRAY:
+        int valueCount = cursor.readUleb128();
+        for (int value = 0; value < valueCount; value++) {
+          skipEncodedValue(cursor, referencedStrings);
+        }
+        break;
+      case VALUE_ANNOTATION:
+        cursor.readUleb128(); // type_idx
+        skipAnnotationElements(cursor, referencedStrings);
+        break;
+      case VALUE_NULL:
+      case VALUE_BOOLEAN:
+        // The value, if any, is held by the header.
+        break;
+      default:
+        // Numbers and ids are held by the given number of bytes.
+        cursor.skip(valueSize);
+        break;
+    }
+  }
+
+  private static long getStringDataSize(DexFile dex, BitSet strings) {
+    long size = 0;
+    for (int string = strings.nextSetBit(0); string >= 0; string = strings.nextSetBit(string + 1)) {
+      size += dex.getStringDataSize(string);
+    }
+    return size;
+  }
+
+  private static boolean equalsString(ByteBuffer data, String string) {
+    if (data.remaining() != string.length()) {
+      return false;
+    }
+    for (int index = 0; index < string.length(); index++) {
+      if (data.get(index) != string.charAt(index)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,589 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A read-only view of a dex file, decoding the parts of the format that matter for size analysis:
+ * the header, the map of sections, the string, type, field and method ids, and the class
+ * definitions with the data and code they own.
+ *
+ * <p>The dex file is accessed through a byte buffer, which is typically memory-mapped so that
+ * large dex files are paged in on demand instead of being copied onto the heap. Nothing is decoded
+ * up front, and instances are safe to use from several threads.
+ */
+public final class DexFile {
+
+  /** The map item type of the section holding the string data items. */
+  public static final int TYPE_STRING_DATA_ITEM = 0x2002;
+  /** The map item type of the section holding the debug info items. */
+  public static final int TYPE_DEBUG_INFO_ITEM = 0x2003;
+  /** The map item type of the section holding the annotation items. */
+  public static final int TYPE_ANNOTATION_ITEM = 0x2004;
+  /** The value of optional indexes which are not set. */
+  public static final int NO_INDEX = -1;
+  /** The size of the header of dex files. */
+  public static final int HEADER_SIZE = 0x70;
+
+  private static final int ENDIAN_CONSTANT = 0x12345678;
+  private static final int MAP_ITEM_SIZE = 12;
+  private static final int CLASS_DEF_SIZE = 32;
+  private static final int CODE_ITEM_HEADER_SIZE = 16;
+  private static final int TRY_ITEM_SIZE = 8;
+
+  private static final int DBG_END_SEQUENCE = 0x00;
+  private static final int DBG_ADVANCE_PC = 0x01;
+  private static final int DBG_ADVANCE_LINE = 0x02;
+  private static final int DBG_START_LOCAL = 0x03;
+  private static final int DBG_START_LOCAL_EXTENDED = 0x04;
+  private static final int DBG_END_LOCAL = 0x05;
+  private static final int DBG_RESTART_LOCAL = 0x06;
+  private static final int DBG_SET_FILE = 0x09;
+
+  private final ByteBuffer buffer;
+
+  private DexFile(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Creates a view of the dex file held by the given buffer, from its start to its limit.
+   *
+   * @throws IllegalArgumentException if the buffer does not hold a dex file
+   */
+  public static DexFile parse(ByteBuffer buffer) {
+    ByteBuffer dex = checkHeader(buffer);
+    checkArgument(
+        dex.getInt(0x20) <= dex.limit(), "Truncated dex file of %s bytes.", dex.limit());
+    checkSection(dex, "string_ids", 0x38, 4);
+    checkSection(dex, "type_ids", 0x40, 4);
+    checkSection(dex, "proto_ids", 0x48, 12);
+    checkSection(dex, "field_ids", 0x50, 8);
+    checkSection(dex, "method_ids", 0x58, 8);
+    checkSection(dex, "class_defs", 0x60, CLASS_DEF_SIZE);
+    int mapOffset = dex.getInt(0x34);
+    checkArgument(
+        mapOffset >= HEADER_SIZE && mapOffset <= dex.limit() - 4,
+        "Invalid dex map offset %s.",
+        mapOffset);
+    checkArgument(
+        dex.getInt(mapOffset) >= 0
+            && mapOffset + 4 + (long) MAP_ITEM_SIZE * dex.getInt(mapOffset) <= dex.limit(),
+        "Invalid dex map size %s.",
+        dex.getInt(mapOffset));
+    return new DexFile(dex);
+  }
+
+  /**
+   * Checks that the id section whose size and offset are recorded at the given header offset lies
+   * within the dex file. Items outside of the id sections are checked as they are read.
+   */
+  private static void checkSection(ByteBuffer dex, String name, int headerOffset, int itemSize) {
+    int count = dex.getInt(headerOffset);
+    int offset = dex.getInt(headerOffset + 4);
+    checkArgument(
+        count >= 0
+            && (count == 0 || offset >= HEADER_SIZE)
+            && offset + (long) itemSize * count <= dex.limit(),
+        "Invalid dex %s section of %s items at offset %s.",
+        name,
+        count,
+        offset);
+  }
+
+  /**
+   * Creates a view of the header of a dex file, held by the given buffer which may end right after
+   * the header. Only the size of the file and the counts of its ids can be read from the view.
+   *
+   * @throws IllegalArgumentException if the buffer does not start with a dex file header
+   */
+  public static DexFile parseHeader(ByteBuffer buffer) {
+    return new DexFile(checkHeader(buffer));
+  }
+
+  private static ByteBuffer checkHeader(ByteBuffer buffer) {
+    ByteBuffer dex = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    checkArgument(
+        dex.limit() >= HEADER_SIZE
+            && dex.get(0) == 'd'
+            && dex.get(1) == 'e'
+            && dex.get(2) == 'x'
+            && dex.get(3) == '\n'
+            && dex.get(7) == 0,
+        "Not a dex file.");
+    checkArgument(dex.getInt(0x28) == ENDIAN_CONSTANT, "Unsupported dex file endianness.");
+    return dex;
+  }
+
+  /** The size of the dex file in bytes, as recorded in its header. */
+  public int getFileSize() {
+    return getInt(0x20);
+  }
+
+  public int getStringCount() {
+    return getInt(0x38);
+  }
+
+  public int getTypeCount() {
+    return getInt(0x40);
+  }
+
+  public int getProtoCount() {
+    return getInt(0x48);
+  }
+
+  public int getFieldCount() {
+    return getInt(0x50);
+  }
+
+  public int getMethodCount() {
+    return getInt(0x58);
+  }
+
+  public int getClassDefCount() {
+    return getInt(0x60);
+  }
+
+  /**
+   * Returns the MUTF-8 encoded characters of the string with the given index, as a view of the
+   * dex file without the length prefix and the terminating null byte.
+   */
+  public ByteBuffer getStringData(int stringIndex) {
+    checkStringIndex(stringIndex);
+    int offset = getInt(getInt(0x3C) + 4 * stringIndex);
+    // Skip the ULEB128 length in UTF-16 code units, which is not the length in bytes.
+    while ((getByte(offset) & 0x80) != 0) {
+      offset++;
+    }
+    offset++;
+    int end = offset;
+    while (getByte(end) != 0) {
+      end++;
+    }
+    ByteBuffer data = buffer.duplicate();
+    data.position(offset).limit(end);
+    return data.slice();
+  }
+
+  /** Returns the size in bytes of the MUTF-8 encoded characters of the given string. */
+  public int getStringDataSize(int stringIndex) {
+    return getStringData(stringIndex).remaining();
+  }
+
+  /**
+   * Decodes the string with the given index. Modified UTF-8 only differs from UTF-8 for null
+   * characters and supplementary characters, which do not occur in identifiers.
+   */
+  public String getString(int stringIndex) {
+    ByteBuffer data = getStringData(stringIndex);
+    byte[] bytes = new byte[data.remaining()];
+    data.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /** Returns the index of the string holding the descriptor of the given type. */
+  public int getTypeDescriptorIndex(int typeIndex) {
+    checkIndex(typeIndex, getTypeCount(), "type");
+    return checkStringIndex(getInt(getInt(0x44) + 4 * typeIndex));
+  }
+
+  /** Returns the index of the type defining the given field. */
+  public int getFieldClassIndex(int fieldIndex) {
+    checkIndex(fieldIndex, getFieldCount(), "field");
+    return getShort(getInt(0x54) + 8 * fieldIndex) & 0xffff;
+  }
+
+  /** Returns the index of the string holding the name of the given field. */
+  public int getFieldNameIndex(int fieldIndex) {
+    checkIndex(fieldIndex, getFieldCount(), "field");
+    return checkStringIndex(getInt(getInt(0x54) + 8 * fieldIndex + 4));
+  }
+
+  /** Returns the index of the type defining the given method. */
+  public int getMethodClassIndex(int methodIndex) {
+    checkIndex(methodIndex, getMethodCount(), "method");
+    return getShort(getInt(0x5C) + 8 * methodIndex) & 0xffff;
+  }
+
+  /** Returns the index of the string holding the name of the given method. */
+  public int getMethodNameIndex(int methodIndex) {
+    checkIndex(methodIndex, getMethodCount(), "method");
+    return checkStringIndex(getInt(getInt(0x5C) + 8 * methodIndex + 4));
+  }
+
+  /** Returns the index of the type defined by the given class definition. */
+  public int getClassDefTypeIndex(int classDefIndex) {
+    int typeIndex = getInt(getInt(0x64) + CLASS_DEF_SIZE * classDefIndex);
+    return checkIndex(typeIndex, getTypeCount(), "type");
+  }
+
+  /** Returns the index of the string naming the source file of the class, or {@link #NO_INDEX}. */
+  public int getClassDefSourceFileIndex(int classDefIndex) {
+    int sourceFileIndex = getInt(getInt(0x64) + CLASS_DEF_SIZE * classDefIndex + 16);
+    return sourceFileIndex == NO_INDEX ? NO_INDEX : checkStringIndex(sourceFileIndex);
+  }
+
+  /**
+   * Returns the number of bytes owned by each class defined in the dex file, by the name of the
+   * class, such as com.example.Main$Inner.
+   */
+  public ImmutableMap<String, Long> getClassSizes() {
+    ImmutableMap.Builder<String, Long> classSizes = ImmutableMap.builder();
+    for (int classDef = 0; classDef < getClassDefCount(); classDef++) {
+      String descriptor = getString(getTypeDescriptorIndex(getClassDefTypeIndex(classDef)));
+      classSizes.put(toClassName(descriptor), getClassDefSize(classDef));
+    }
+    return classSizes.build();
+  }
+
+  /** Converts a class descriptor such as Lcom/example/Main; to a class name. */
+  public static String toClassName(String descriptor) {
+    return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+  }
+
+  /**
+   * Returns the number of bytes owned by the given class definition: the definition itself, its
+   * class data listing the fields and methods, and the code and debug info of its methods. Strings
+   * and ids, which are shared between classes, are not included.
+   */
+  public long getClassDefSize(int classDefIndex) {
+    int classDefOffset = getInt(0x64) + CLASS_DEF_SIZE * classDefIndex;
+    int classDataOffset = getInt(classDefOffset + 24);
+    long size = CLASS_DEF_SIZE;
+    if (classDataOffset == 0) {
+      return size;
+    }
+    Cursor classData = new Cursor(classDataOffset);
+    int fieldCount = classData.readUleb128() + classData.readUleb128();
+    int methodCount = classData.readUleb128() + classData.readUleb128();
+    for (int field = 0; field < fieldCount; field++) {
+      classData.readUleb128(); // field_idx_diff
+      classData.readUleb128(); // access_flags
+    }
+    for (int method = 0; method < methodCount; method++) {
+      classData.readUleb128(); // method_idx_diff
+      classData.readUleb128(); // access_flags
+      int codeOffset = classData.readUleb128();
+      if (codeOffset != 0) {
+        size += getCodeItemSize(codeOffset);
+      }
+    }
+    return size + classData.position - classDataOffset;
+  }
+
+  /**
+   * Returns a hash of the content of the given class definition, which is the same for a class
+   * compiled identically into several dex files. Ids are numbered differently in each dex file,
+   * so the hash covers what the ids resolve to: the access flags and superclass of the class, the
+   * names and access flags of its fields and methods, and the shape of the code of its methods.
+   * The instructions themselves embed ids, and are only covered by their size.
+   */
+  public long getClassContentHash(int classDefIndex) {
+    int classDefOffset = getInt(0x64) + CLASS_DEF_SIZE * classDefIndex;
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putInt(getInt(classDefOffset + 4));
+    int superclassIndex = getInt(classDefOffset + 8);
+    if (superclassIndex != NO_INDEX) {
+      hasher.putBytes(getStringData(getTypeDescriptorIndex(superclassIndex)));
+    }
+    int classDataOffset = getInt(classDefOffset + 24);
+    if (classDataOffset == 0) {
+      return hasher.hash().asLong();
+    }
+    Cursor classData = new Cursor(classDataOffset);
+    int staticFieldCount = classData.readUleb128();
+    int instanceFieldCount = classData.readUleb128();
+    int directMethodCount = classData.readUleb128();
+    int virtualMethodCount = classData.readUleb128();
+    hasher
+        .putInt(staticFieldCount)
+        .putInt(instanceFieldCount)
+        .putInt(directMethodCount)
+        .putInt(virtualMethodCount);
+    // Member ids are delta encoded, restarting for each list of fields and methods.
+    for (int count : new int[] {staticFieldCount, instanceFieldCount}) {
+      int fieldIndex = 0;
+      for (int field = 0; field < count; field++) {
+        fieldIndex += classData.readUleb128();
+        hasher.putBytes(getStringData(getFieldNameIndex(fieldIndex)));
+        hasher.putInt(classData.readUleb128());
+      }
+    }
+    for (int count : new int[] {directMethodCount, virtualMethodCount}) {
+      int methodIndex = 0;
+      for (int method = 0; method < count; method++) {
+        methodIndex += classData.readUleb128();
+        hasher.putBytes(getStringData(getMethodNameIndex(methodIndex)));
+        hasher.putInt(classData.readUleb128());
+        int codeOffset = classData.readUleb128();
+        if (codeOffset != 0) {
+          // registers_size, ins_size, outs_size and tries_size, then insns_size.
+          hasher.putLong(getLong(codeOffset)).putInt(getInt(codeOffset + 12));
+        }
+      }
+    }
+    return hasher.hash().asLong();
+  }
+
+  /** Returns the size of a code item, including the debug info item it refers to. */
+  private long getCodeItemSize(int codeOffset) {
+    int triesSize = getShort(codeOffset + 6) & 0xffff;
+    int debugInfoOffset = getInt(codeOffset + 8);
+    int insnsSize = getInt(codeOffset + 12);
+    int end = codeOffset + CODE_ITEM_HEADER_SIZE + 2 * insnsSize;
+    if (triesSize > 0) {
+      // The tries are aligned on 4 bytes, followed by the encoded catch handler list.
+      Cursor handlers = new Cursor(((end + 3) & ~3) + TRY_ITEM_SIZE * triesSize);
+      int handlerCount = handlers.readUleb128();
+      for (int handler = 0; handler < handlerCount; handler++) {
+        int typedHandlerCount = handlers.readSleb128();
+        for (int typed = 0; typed < Math.abs(typedHandlerCount); typed++) {
+          handlers.readUleb128(); // type_idx
+          handlers.readUleb128(); // addr
+        }
+        if (typedHandlerCount <= 0) {
+          handlers.readUleb128(); // catch_all_addr
+        }
+      }
+      end = handlers.position;
+    }
+    return end - codeOffset + (debugInfoOffset != 0 ? getDebugInfoItemSize(debugInfoOffset) : 0);
+  }
+
+  /** Returns the size of a debug info item, decoding its state machine up to its end. */
+  private int getDebugInfoItemSize(int debugInfoOffset) {
+    Cursor debugInfo = new Cursor(debugInfoOffset);
+    debugInfo.readUleb128(); // line_start
+    int parameterCount = debugInfo.readUleb128();
+    for (int parameter = 0; parameter < parameterCount; parameter++) {
+      debugInfo.readUleb128(); // parameter_names, as uleb128p1
+    }
+    debugInfo.skipDebugInfoOpcodes();
+    return debugInfo.position - debugInfoOffset;
+  }
+
+  /**
+   * Returns the offset of the section holding the items of the given map item type, 0 if the dex
+   * file has no such section.
+   */
+  public int getSectionOffset(int itemType) {
+    int mapItemOffset = findMapItem(itemType);
+    return mapItemOffset < 0 ? 0 : getInt(mapItemOffset + 8);
+  }
+
+  /** Returns the number of items of the given map item type. */
+  public int getSectionItemCount(int itemType) {
+    int mapItemOffset = findMapItem(itemType);
+    return mapItemOffset < 0 ? 0 : getInt(mapItemOffset + 4);
+  }
+
+  /**
+   * Returns the size in bytes of the section holding the items of the given map item type, 0 if
+   * the dex file has no such section. Sections are laid out in the order of the map, so a section
+   * extends up to the next one.
+   */
+  public long getSectionSize(int itemType) {
+    int mapItemOffset = findMapItem(itemType);
+    if (mapItemOffset < 0) {
+      return 0;
+    }
+    int mapOffset = getInt(0x34);
+    int itemCount = getInt(mapOffset);
+    int sectionOffset = getInt(mapItemOffset + 8);
+    int nextSectionOffset = getFileSize();
+    for (int other = 0; other < itemCount; other++) {
+      int otherOffset = getInt(mapOffset + 4 + MAP_ITEM_SIZE * other + 8);
+      if (otherOffset > sectionOffset && otherOffset < nextSectionOffset) {
+        nextSectionOffset = otherOffset;
+      }
+    }
+    return nextSectionOffset - sectionOffset;
+  }
+
+  /** Returns the offset of the map item of the given type, -1 if there is none. */
+  private int findMapItem(int itemType) {
+    int mapOffset = getInt(0x34);
+    int itemCount = getInt(mapOffset);
+    for (int item = 0; item < itemCount; item++) {
+      int itemOffset = mapOffset + 4 + MAP_ITEM_SIZE * item;
+      if ((getShort(itemOffset) & 0xffff) == itemType) {
+        return itemOffset;
+      }
+    }
+    return -1;
+  }
+
+  // Offsets read from the dex file are not trusted, so reads out of the file are reported as an
+  // invalid dex file rather than as a bug.
+
+  /** Checks that a string index read from the dex file refers to one of its strings. */
+  int checkStringIndex(int stringIndex) {
+    return checkIndex(stringIndex, getStringCount(), "string");
+  }
+
+  private static int checkIndex(int index, int count, String kind) {
+    if (index < 0 || index >= count) {
+      throw new IllegalArgumentException(
+          String.format("Invalid dex %s index %s, out of %s ids.", kind, index, count));
+    }
+    return index;
+  }
+
+  private long getLong(int offset) {
+    try {
+      return buffer.getLong(offset);
+    } catch (IndexOutOfBoundsException e) {
+      throw outOfBounds(offset, e);
+    }
+  }
+
+  private int getInt(int offset) {
+    try {
+      return buffer.getInt(offset);
+    } catch (IndexOutOfBoundsException e) {
+      throw outOfBounds(offset, e);
+    }
+  }
+
+  private short getShort(int offset) {
+    try {
+      return buffer.getShort(offset);
+    } catch (IndexOutOfBoundsException e) {
+      throw outOfBounds(offset, e);
+    }
+  }
+
+  private byte getByte(int offset) {
+    try {
+      return buffer.get(offset);
+    } catch (IndexOutOfBoundsException e) {
+      throw outOfBounds(offset, e);
+    }
+  }
+
+  private IllegalArgumentException outOfBounds(int offset, IndexOutOfBoundsException cause) {
+    return new IllegalArgumentException(
+        String.format(
+            "Dex file offset %s is out of the %s bytes of the file.", offset, buffer.limit()),
+        cause);
+  }
+
+  /** Creates a cursor reading the dex file from the given offset. */
+  Cursor newCursor(int offset) {
+    return new Cursor(offset);
+  }
+
+  /** Reads the variable length integers of the dex format from a position of the dex file. */
+  final class Cursor {
+    private int position;
+
+    Cursor(int position) {
+      this.position = position;
+    }
+
+    int getPosition() {
+      return position;
+    }
+
+    void skip(int byteCount) {
+      position += byteCount;
+    }
+
+    /** Reads a little-endian unsigned integer of the given number of bytes, at most four. */
+    int readUnsigned(int byteCount) {
+      int result = 0;
+      for (int index = 0; index < byteCount; index++) {
+        result |= readByte() << (8 * index);
+      }
+      return result;
+    }
+
+    /** Reads a string index of the given number of bytes, checking it refers to a string. */
+    int readStringIndex(int byteCount) {
+      return checkStringIndex(readUnsigned(byteCount));
+    }
+
+    /** Skips the state machine of a debug info item, up to and including its end opcode. */
+    void skipDebugInfoOpcodes() {
+      int opcode;
+      while ((opcode = readByte()) != DBG_END_SEQUENCE) {
+        switch (opcode) {
+          case DBG_ADVANCE_PC:
+          case DBG_END_LOCAL:
+          case DBG_RESTART_LOCAL:
+          case DBG_SET_FILE:
+            readUleb128();
+            break;
+          case DBG_ADVANCE_LINE:
+            readSleb128();
+            break;
+          case DBG_START_LOCAL:
+            readUleb128(); // register_num
+            readUleb128(); // name_idx
+            readUleb128(); // type_idx
+            break;
+          case DBG_START_LOCAL_EXTENDED:
+            readUleb128(); // register_num
+            readUleb128(); // name_idx
+            readUleb128(); // type_idx
+            readUleb128(); // sig_idx
+            break;
+          default:
+            // DBG_SET_PROLOGUE_END, DBG_SET_EPILOGUE_BEGIN and special opcodes have no arguments.
+            break;
+        }
+      }
+    }
+
+    int readByte() {
+      return getByte(position++) & 0xff;
+    }
+
+    int readUleb128() {
+      int result = 0;
+      int shift = 0;
+      int value;
+      do {
+        value = readByte();
+        result |= (value & 0x7f) << shift;
+        shift += 7;
+      } while ((value & 0x80) != 0);
+      return result;
+    }
+
+    int readSleb128() {
+      int result = 0;
+      int shift = 0;
+      int value;
+      do {
+        value = readByte();
+        result |= (value & 0x7f) << shift;
+        shift += 7;
+      } while ((value & 0x80) != 0);
+      // Extend the sign bit of the last byte read.
+      return shift < 32 && (value & 0x40) != 0 ? result | (-1 << shift) : result;
+    }
+  }
+}
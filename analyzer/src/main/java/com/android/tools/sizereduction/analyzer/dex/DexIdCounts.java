@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Counts of the ids of a set of dex files, as recorded in their headers, so that they are known
+ * without parsing the rest of the dex files.
+ *
+ * <p>Instructions reference methods, fields and types by a 16-bit index, so a dex file holds at
+ * most 65536 of each, and code beyond that limit is split into several dex files. Ids referenced
+ * from several dex files are then declared in each of them, which is the overhead of multidex.
+ */
+@AutoValue
+public abstract class DexIdCounts {
+
+  /** The maximum number of method, field or type ids of a single dex file. */
+  public static final int REFERENCE_LIMIT = 65536;
+
+  public static final DexIdCounts EMPTY = create(0, 0, 0, 0, 0, 0, 0, 0);
+
+  public static DexIdCounts create(
+      int dexCount,
+      long dexSize,
+      long stringIds,
+      long typeIds,
+      long protoIds,
+      long fieldIds,
+      long methodIds,
+      int maxReferences) {
+    return new AutoValue_DexIdCounts(
+        dexCount, dexSize, stringIds, typeIds, protoIds, fieldIds, methodIds, maxReferences);
+  }
+
+  /** Reads the counts of a dex file from its header. */
+  public static DexIdCounts fromHeader(DexFile dex) {
+    return create(
+        /* dexCount= */ 1,
+        dex.getFileSize(),
+        dex.getStringCount(),
+        dex.getTypeCount(),
+        dex.getProtoCount(),
+        dex.getFieldCount(),
+        dex.getMethodCount(),
+        Math.max(dex.getMethodCount(), Math.max(dex.getFieldCount(), dex.getTypeCount())));
+  }
+
+  /** The number of dex files. */
+  public abstract int getDexCount();
+
+  /** The total size of the dex files. */
+  public abstract long getDexSize();
+
+  /** The number of strings declared by the dex files. */
+  public abstract long getStringIds();
+
+  /** The number of types declared by the dex files. */
+  public abstract long getTypeIds();
+
+  /** The number of method prototypes declared by the dex files. */
+  public abstract long getProtoIds();
+
+  /** The number of field references declared by the dex files. */
+  public abstract long getFieldIds();
+
+  /** The number of method references declared by the dex files. */
+  public abstract long getMethodIds();
+
+  /** The largest count of method, field or type ids of a single dex file. */
+  public abstract int getMaxReferences();
+
+  /** The share of the reference limit used by the fullest dex file, between 0 and 1. */
+  public double getReferenceLimitUsage() {
+    return (double) getMaxReferences() / REFERENCE_LIMIT;
+  }
+
+  /**
+   * The number of dex files which could hold all the ids. Ids declared by several dex files are
+   * counted once per dex file, as the headers do not tell which ids are shared, so at most this
+   * many dex files are needed.
+   */
+  public int getMinimumDexCount() {
+    long references = Math.max(getMethodIds(), Math.max(getFieldIds(), getTypeIds()));
+    return (int) Math.max(1, (references + REFERENCE_LIMIT - 1) / REFERENCE_LIMIT);
+  }
+
+  /**
+   * The number of dex files beyond those which could hold all the ids. Dex files filled close to
+   * the reference limit, as D8 and R8 lay them out, have no extra dex files.
+   */
+  public int getExtraDexCount() {
+    return Math.max(0, getDexCount() - getMinimumDexCount());
+  }
+
+  /** Adds up the counts of two sets of dex files. */
+  public DexIdCounts plus(DexIdCounts other) {
+    return create(
+        getDexCount() + other.getDexCount(),
+        getDexSize() + other.getDexSize(),
+        getStringIds() + other.getStringIds(),
+        getTypeIds() + other.getTypeIds(),
+        getProtoIds() + other.getProtoIds(),
+        getFieldIds() + other.getFieldIds(),
+        getMethodIds() + other.getMethodIds(),
+        Math.max(getMaxReferences(), other.getMaxReferences()));
+  }
+}
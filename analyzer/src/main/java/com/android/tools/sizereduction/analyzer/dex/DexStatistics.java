@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * Size statistics of the identifiers and debug information of dex files, from which the savings
+ * of obfuscating and shrinking the code with Proguard or R8 are estimated.
+ *
+ * <p>Identifiers are the names of the fields and methods and the descriptors of the classes of
+ * the app. Members of platform classes, and app members sharing their names, keep their names
+ * once obfuscated and are not counted. An identifier longer than an obfuscated name is considered
+ * unobfuscated.
+ */
+@AutoValue
+public abstract class DexStatistics {
+
+  /** The length of an obfuscated name, most of which have one or two characters. */
+  static final int OBFUSCATED_NAME_LENGTH = 2;
+
+  /** Packages of the platform, whose classes and members cannot be renamed. */
+  private static final ImmutableList<String> PLATFORM_PACKAGES =
+      ImmutableList.of("Landroid/", "Ldalvik/", "Ljava/", "Ljavax/");
+
+  public static final DexStatistics EMPTY = create(0, 0, 0, 0, 0);
+
+  public static DexStatistics create(
+      long dexSize,
+      long identifierSize,
+      long unobfuscatedIdentifierSize,
+      long debugInfoSize,
+      long obfuscationSavings) {
+    return new AutoValue_DexStatistics(
+        dexSize, identifierSize, unobfuscatedIdentifierSize, debugInfoSize, obfuscationSavings);
+  }
+
+  /** Measures the identifiers and debug information of the given dex file. */
+  public static DexStatistics compute(DexFile dex) {
+    BitSet platformTypes = new BitSet(dex.getTypeCount());
+    for (int type = 0; type < dex.getTypeCount(); type++) {
+      if (!isAppClass(dex.getStringData(dex.getTypeDescriptorIndex(type)))) {
+        platformTypes.set(type);
+      }
+    }
+
+    // Names are shared by all members with the same name, and are counted once.
+    BitSet appNames = new BitSet(dex.getStringCount());
+    BitSet keptNames = new BitSet(dex.getStringCount());
+    for (int field = 0; field < dex.getFieldCount(); field++) {
+      (platformTypes.get(dex.getFieldClassIndex(field)) ? keptNames : appNames)
+          .set(dex.getFieldNameIndex(field));
+    }
+    for (int method = 0; method < dex.getMethodCount(); method++) {
+      (platformTypes.get(dex.getMethodClassIndex(method)) ? keptNames : appNames)
+          .set(dex.getMethodNameIndex(method));
+    }
+    appNames.andNot(keptNames);
+
+    long identifierSize = 0;
+    long unobfuscatedSize = 0;
+    long obfuscationSavings = 0;
+    for (int name = appNames.nextSetBit(0); name >= 0; name = appNames.nextSetBit(name + 1)) {
+      ByteBuffer nameData = dex.getStringData(name);
+      int length = nameData.remaining();
+      identifierSize += length;
+      // Constructors and static initializers are named <init> and <clinit>.
+      if (length > OBFUSCATED_NAME_LENGTH && nameData.get(0) != '<') {
+        unobfuscatedSize += length;
+        obfuscationSavings += length - OBFUSCATED_NAME_LENGTH;
+      }
+    }
+    for (int type = platformTypes.nextClearBit(0);
+        type < dex.getTypeCount();
+        type = platformTypes.nextClearBit(type + 1)) {
+      ByteBuffer descriptor = dex.getStringData(dex.getTypeDescriptorIndex(type));
+      int simpleNameLength = getSimpleNameLength(descriptor);
+      identifierSize += descriptor.remaining();
+      if (simpleNameLength > OBFUSCATED_NAME_LENGTH) {
+        unobfuscatedSize += descriptor.remaining();
+        obfuscationSavings += simpleNameLength - OBFUSCATED_NAME_LENGTH;
+      }
+    }
+
+    return create(
+        dex.getFileSize(),
+        identifierSize,
+        unobfuscatedSize,
+        dex.getSectionSize(DexFile.TYPE_DEBUG_INFO_ITEM),
+        obfuscationSavings);
+  }
+
+  /** The total size of the dex files. */
+  public abstract long getDexSize();
+
+  /** The size of the identifiers of the app in the string pools. */
+  public abstract long getIdentifierSize();
+
+  /** The size of the identifiers of the app which are not obfuscated. */
+  public abstract long getUnobfuscatedIdentifierSize();
+
+  /** The size of the debug info items, mapping instructions to lines and local variables. */
+  public abstract long getDebugInfoSize();
+
+  /** The bytes saved by shortening the unobfuscated identifiers to obfuscated names. */
+  public abstract long getObfuscationSavings();
+
+  /** The share of the identifiers of the app which are not obfuscated, between 0 and 1. */
+  public double getUnobfuscatedShare() {
+    return getIdentifierSize() == 0
+        ? 0
+        : (double) getUnobfuscatedIdentifierSize() / getIdentifierSize();
+  }
+
+  /**
+   * The bytes saved by building the dex files with Proguard or R8: the unobfuscated identifiers
+   * are renamed, and the debug info is removed unless explicitly kept. The removal of unused code
+   * cannot be estimated without a reachability analysis, so this is a lower bound.
+   */
+  public long getEstimatedSavings() {
+    return getObfuscationSavings() + getDebugInfoSize();
+  }
+
+  /** Adds up the statistics of two sets of dex files. */
+  public DexStatistics plus(DexStatistics other) {
+    return create(
+        getDexSize() + other.getDexSize(),
+        getIdentifierSize() + other.getIdentifierSize(),
+        getUnobfuscatedIdentifierSize() + other.getUnobfuscatedIdentifierSize(),
+        getDebugInfoSize() + other.getDebugInfoSize(),
+        getObfuscationSavings() + other.getObfuscationSavings());
+  }
+
+  /** Whether a type descriptor is the one of a class of the app, rather than the platform. */
+  private static boolean isAppClass(ByteBuffer descriptor) {
+    if (descriptor.remaining() == 0 || descriptor.get(0) != 'L') {
+      return false;
+    }
+    for (String platformPackage : PLATFORM_PACKAGES) {
+      if (startsWith(descriptor, platformPackage)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean startsWith(ByteBuffer data, String prefix) {
+    if (data.remaining() < prefix.length()) {
+      return false;
+    }
+    for (int index = 0; index < prefix.length(); index++) {
+      if (data.get(index) != prefix.charAt(index)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the length of the class name of a descriptor such as Lcom/example/Name; */
+  private static int getSimpleNameLength(ByteBuffer descriptor) {
+    int end = descriptor.remaining() - 1;
+    int start = end;
+    while (start > 0 && descriptor.get(start - 1) != '/') {
+      start--;
+    }
+    // The first character of descriptors of classes in the default package is the L.
+    return start == 0 ? end - 1 : end - start;
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The size of code attributed to the packages of an app, rolled up into a tree where the size of
+ * each package includes the size of its subpackages.
+ */
+public final class PackageTree {
+
+  private final PackageNode root;
+
+  private PackageTree(PackageNode root) {
+    this.root = root;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** The root of the tree, the default package with an empty name. */
+  public PackageNode getRoot() {
+    return root;
+  }
+
+  /** Returns all packages of the tree holding classes or subpackages, parents first. */
+  public Stream<PackageNode> getPackages() {
+    return root.getChildren().stream().flatMap(PackageTree::withDescendants);
+  }
+
+  /**
+   * Returns the packages whose own classes, excluding subpackages, are the largest, so that a
+   * parent package is not reported for the size of its children.
+   */
+  public ImmutableList<PackageNode> getLargestPackages(int count) {
+    return Stream.concat(Stream.of(root), getPackages())
+        .filter(node -> node.getClassCount() > 0)
+        .sorted(Comparator.comparingLong(PackageNode::getOwnSize).reversed())
+        .limit(count)
+        .collect(toImmutableList());
+  }
+
+  private static Stream<PackageNode> withDescendants(PackageNode node) {
+    return Stream.concat(
+        Stream.of(node), node.getChildren().stream().flatMap(PackageTree::withDescendants));
+  }
+
+  /** A package of the tree. */
+  @AutoValue
+  public abstract static class PackageNode {
+
+    static PackageNode create(
+        String name, long size, long ownSize, int classCount, ImmutableList<PackageNode> children) {
+      return new AutoValue_PackageTree_PackageNode(name, size, ownSize, classCount, children);
+    }
+
+    /** The full name of the package, such as com.example. */
+    public abstract String getName();
+
+    /** The size of the classes of the package and of its subpackages. */
+    public abstract long getSize();
+
+    /** The size of the classes of the package, excluding subpackages. */
+    public abstract long getOwnSize();
+
+    /** The number of classes of the package, excluding subpackages. */
+    public abstract int getClassCount();
+
+    /** The direct subpackages, the largest first. */
+    public abstract ImmutableList<PackageNode> getChildren();
+  }
+
+  /** Builder of package trees, adding classes one at a time. */
+  public static final class Builder {
+
+    private final Map<String, MutablePackage> packages = new HashMap<>();
+
+    private Builder() {
+      packages.put("", new MutablePackage(""));
+    }
+
+    /** Adds a class with the given name, such as com.example.Main, and size. */
+    public Builder addClass(String className, long size) {
+      int separator = className.lastIndexOf('.');
+      MutablePackage classPackage =
+          getOrCreatePackage(separator < 0 ? "" : className.substring(0, separator));
+      classPackage.ownSize += size;
+      classPackage.classCount++;
+      return this;
+    }
+
+    public PackageTree build() {
+      return new PackageTree(packages.get("").build());
+    }
+
+    private MutablePackage getOrCreatePackage(String name) {
+      MutablePackage existing = packages.get(name);
+      if (existing != null) {
+        return existing;
+      }
+      int separator = name.lastIndexOf('.');
+      MutablePackage parent = getOrCreatePackage(separator < 0 ? "" : name.substring(0, separator));
+      MutablePackage created = new MutablePackage(name);
+      parent.children.add(created);
+      packages.put(name, created);
+      return created;
+    }
+  }
+
+  private static final class MutablePackage {
+    private final String name;
+    private final List<MutablePackage> children = new ArrayList<>();
+    private long ownSize;
+    private int classCount;
+
+    MutablePackage(String name) {
+      this.name = name;
+    }
+
+    PackageNode build() {
+      ImmutableList<PackageNode> builtChildren =
+          children.stream()
+              .map(MutablePackage::build)
+              .sorted(Comparator.comparingLong(PackageNode::getSize).reversed())
+              .collect(toImmutableList());
+      return PackageNode.create(
+          name,
+          ownSize + builtChildren.stream().mapToLong(PackageNode::getSize).sum(),
+          ownSize,
+          classCount,
+          builtChildren);
+    }
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Index of the mapping file written by Proguard or R8, mapping the obfuscated names of classes and
+ * of their members back to their original names.
+ *
+ * <p>Mapping files of large apps run into hundreds of megabytes, so the file is read one line at a
+ * time and the names are not kept as strings: they are appended as UTF-8 to a single byte arena,
+ * and classes and members are arrays of offsets into it. Classes are found through an open
+ * addressing table of their obfuscated names, and their members are scanned in place. Strings are
+ * only created for the names returned by lookups.
+ */
+public final class ProguardMap {
+
+  /** A map without any mapping, for code which is not obfuscated. */
+  public static final ProguardMap EMPTY = new Builder().build();
+
+  private static final String MAPPING_SEPARATOR = " -> ";
+
+  private final byte[] arena;
+  // Names are packed into longs, as their offset in the arena followed by their length.
+  private final long[] classObfuscatedNames;
+  private final long[] classOriginalNames;
+  // Members of class i are the members from classFirstMembers[i] to classFirstMembers[i + 1].
+  private final int[] classFirstMembers;
+  private final long[] memberObfuscatedNames;
+  private final long[] memberOriginalNames;
+  // Open addressing table of class indexes plus one, keyed by obfuscated name; zero is empty.
+  private final int[] classTable;
+
+  private ProguardMap(
+      byte[] arena,
+      long[] classObfuscatedNames,
+      long[] classOriginalNames,
+      int[] classFirstMembers,
+      long[] memberObfuscatedNames,
+      long[] memberOriginalNames) {
+    this.arena = arena;
+    this.classObfuscatedNames = classObfuscatedNames;
+    this.classOriginalNames = classOriginalNames;
+    this.classFirstMembers = classFirstMembers;
+    this.memberObfuscatedNames = memberObfuscatedNames;
+    this.memberOriginalNames = memberOriginalNames;
+    this.classTable = new int[Integer.highestOneBit(Math.max(classObfuscatedNames.length, 1)) * 4];
+    for (int index = 0; index < classObfuscatedNames.length; index++) {
+      long name = classObfuscatedNames[index];
+      int slot = hash(arena, offset(name), length(name)) & (classTable.length - 1);
+      while (classTable[slot] != 0) {
+        slot = (slot + 1) & (classTable.length - 1);
+      }
+      classTable[slot] = index + 1;
+    }
+  }
+
+  /**
+   * Reads a mapping file. Class mappings are lines such as "com.example.Main -> a.b:", and are
+   * followed by the indented mappings of their members, such as "    1:4:void run() -> a". Line
+   * numbers are not kept.
+   */
+  public static ProguardMap parse(Reader reader) throws IOException {
+    Builder builder = new Builder();
+    BufferedReader lineReader = new BufferedReader(reader);
+    String line;
+    while ((line = lineReader.readLine()) != null) {
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      int separator = line.indexOf(MAPPING_SEPARATOR);
+      if (separator <= 0) {
+        continue;
+      }
+      String obfuscatedName = line.substring(separator + MAPPING_SEPARATOR.length()).trim();
+      if (!Character.isWhitespace(line.charAt(0))) {
+        if (obfuscatedName.endsWith(":")) {
+          builder.addClass(
+              obfuscatedName.substring(0, obfuscatedName.length() - 1),
+              line.substring(0, separator));
+        }
+      } else if (builder.hasClass()) {
+        builder.addMember(obfuscatedName, stripLineNumbers(line.substring(0, separator).trim()));
+      }
+    }
+    return builder.build();
+  }
+
+  /** Returns the original name of the class with the given name, itself if it was not renamed. */
+  public String deobfuscateClassName(String className) {
+    int index = findClass(className);
+    return index < 0 ? className : getName(classOriginalNames[index]);
+  }
+
+  /**
+   * Returns the original signatures of the members with the given name in the class with the given
+   * obfuscated name, such as "void run()" or "int count". Overloaded methods may share the same
+   * obfuscated name. Empty if the class or the member is not in the map.
+   */
+  public ImmutableList<String> getOriginalMembers(String className, String memberName) {
+    int index = findClass(className);
+    if (index < 0) {
+      return ImmutableList.of();
+    }
+    byte[] memberBytes = memberName.getBytes(UTF_8);
+    ImmutableList.Builder<String> members = ImmutableList.builder();
+    for (int member = classFirstMembers[index]; member < classFirstMembers[index + 1]; member++) {
+      if (nameEquals(memberObfuscatedNames[member], memberBytes)) {
+        members.add(getName(memberOriginalNames[member]));
+      }
+    }
+    return members.build();
+  }
+
+  /** The number of classes in the map. */
+  public int getClassCount() {
+    return classObfuscatedNames.length;
+  }
+
+  /** The number of members of all the classes in the map. */
+  public int getMemberCount() {
+    return memberObfuscatedNames.length;
+  }
+
+  private int findClass(String className) {
+    byte[] classBytes = className.getBytes(UTF_8);
+    int slot = hash(classBytes, 0, classBytes.length) & (classTable.length - 1);
+    while (classTable[slot] != 0) {
+      int index = classTable[slot] - 1;
+      if (nameEquals(classObfuscatedNames[index], classBytes)) {
+        return index;
+      }
+      slot = (slot + 1) & (classTable.length - 1);
+    }
+    return -1;
+  }
+
+  private String getName(long name) {
+    return new String(arena, offset(name), length(name), UTF_8);
+  }
+
+  private boolean nameEquals(long name, byte[] bytes) {
+    return nameEquals(name, bytes, 0, bytes.length);
+  }
+
+  private boolean nameEquals(long name, byte[] bytes, int offset, int length) {
+    if (length(name) != length) {
+      return false;
+    }
+    int nameOffset = offset(name);
+    for (int index = 0; index < length; index++) {
+      if (arena[nameOffset + index] != bytes[offset + index]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Removes the line ranges of R8 and Proguard, as in "1:4:void run():10:13". */
+  private static String stripLineNumbers(String member) {
+    int start = 0;
+    while (start < member.length()
+        && (Character.isDigit(member.charAt(start)) || member.charAt(start) == ':')) {
+      start++;
+    }
+    // Only methods have a trailing range, after their parameters.
+    int end = member.lastIndexOf(')');
+    return member.substring(start, end >= start ? end + 1 : member.length());
+  }
+
+  private static int hash(byte[] bytes, int offset, int length) {
+    int hash = 0;
+    for (int index = offset; index < offset + length; index++) {
+      hash = 31 * hash + bytes[index];
+    }
+    // Spreads the low bits, which select the slot.
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int offset(long name) {
+    return (int) (name >>> 32);
+  }
+
+  private static int length(long name) {
+    return (int) name;
+  }
+
+  /** Accumulates the names of a mapping file into growing arrays. */
+  private static final class Builder {
+
+    private byte[] arena = new byte[1024];
+    private int arenaSize = 0;
+    private long[] classObfuscatedNames = new long[16];
+    private long[] classOriginalNames = new long[16];
+    private int[] classFirstMembers = new int[17];
+    private int classCount = 0;
+    private long[] memberObfuscatedNames = new long[64];
+    private long[] memberOriginalNames = new long[64];
+    private int memberCount = 0;
+
+    boolean hasClass() {
+      return classCount > 0;
+    }
+
+    void addClass(String obfuscatedName, String originalName) {
+      if (classCount == classObfuscatedNames.length) {
+        classObfuscatedNames = Arrays.copyOf(classObfuscatedNames, classCount * 2);
+        classOriginalNames = Arrays.copyOf(classOriginalNames, classCount * 2);
+        classFirstMembers = Arrays.copyOf(classFirstMembers, classCount * 2 + 1);
+      }
+      classObfuscatedNames[classCount] = append(obfuscatedName);
+      classOriginalNames[classCount] = append(originalName);
+      classFirstMembers[classCount] = memberCount;
+      classCount++;
+    }
+
+    void addMember(String obfuscatedName, String originalName) {
+      if (memberCount == memberObfuscatedNames.length) {
+        memberObfuscatedNames = Arrays.copyOf(memberObfuscatedNames, memberCount * 2);
+        memberOriginalNames = Arrays.copyOf(memberOriginalNames, memberCount * 2);
+      }
+      memberObfuscatedNames[memberCount] = append(obfuscatedName);
+      memberOriginalNames[memberCount] = append(originalName);
+      memberCount++;
+    }
+
+    private long append(String name) {
+      byte[] bytes = name.getBytes(UTF_8);
+      if (arenaSize + bytes.length > arena.length) {
+        arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + bytes.length));
+      }
+      System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+      long packedName = ((long) arenaSize << 32) | bytes.length;
+      arenaSize += bytes.length;
+      return packedName;
+    }
+
+    ProguardMap build() {
+      classFirstMembers[classCount] = memberCount;
+      return new ProguardMap(
+          Arrays.copyOf(arena, arenaSize),
+          Arrays.copyOf(classObfuscatedNames, classCount),
+          Arrays.copyOf(classOriginalNames, classCount),
+          Arrays.copyOf(classFirstMembers, classCount + 1),
+          Arrays.copyOf(memberObfuscatedNames, memberCount),
+          Arrays.copyOf(memberOriginalNames, memberCount));
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.history;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.play.bit.proto.SizeAnalyzerLog.BundleSizeBreakdown;
+import com.google.play.bit.proto.SizeAnalyzerLog.SizeAnalysisLog;
+import com.google.play.bit.proto.SizeAnalyzerLog.SuggestionsByIssueType;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Converts the size analysis log of a run into the named metrics stored in the history. */
+public final class HistoryMetrics {
+
+  private static final String COUNT = "count";
+  private static final String ESTIMATED_SAVINGS_BYTES = "estimated_savings_bytes";
+
+  private HistoryMetrics() {}
+
+  /**
+   * Returns the metrics of the given run, named like {@code total/dex_bytes}, {@code
+   * module/base/asset_bytes}, {@code category/WEBP/count} or {@code
+   * issue/QUESTIONABLE_FILE/estimated_savings_bytes}.
+   */
+  public static ImmutableMap<String, Long> fromSizeAnalysisLog(SizeAnalysisLog sizeAnalysisLog) {
+    Map<String, Long> metrics = new LinkedHashMap<>();
+    if (sizeAnalysisLog.hasBundleSizeBreakdown()) {
+      addBreakdown(metrics, "total/", sizeAnalysisLog.getBundleSizeBreakdown());
+    }
+    for (BundleSizeBreakdown moduleBreakdown : sizeAnalysisLog.getModuleSizeBreakdownsList()) {
+      addBreakdown(metrics, "module/" + moduleBreakdown.getModuleName() + "/", moduleBreakdown);
+    }
+    for (SuggestionsByIssueType suggestions : sizeAnalysisLog.getSuggestionsByIssueTypeList()) {
+      addSuggestions(metrics, "issue/" + suggestions.getIssueType() + "/", suggestions);
+      addSuggestions(metrics, "category/" + suggestions.getCategory() + "/", suggestions);
+    }
+    return ImmutableMap.copyOf(metrics);
+  }
+
+  private static void addBreakdown(
+      Map<String, Long> metrics, String prefix, BundleSizeBreakdown breakdown) {
+    for (FieldDescriptor field : BundleSizeBreakdown.getDescriptor().getFields()) {
+      if (field.getJavaType() == FieldDescriptor.JavaType.LONG) {
+        metrics.put(prefix + field.getName(), (Long) breakdown.getField(field));
+      }
+    }
+  }
+
+  private static void addSuggestions(
+      Map<String, Long> metrics, String prefix, SuggestionsByIssueType suggestions) {
+    metrics.merge(prefix + COUNT, (long) suggestions.getSuggestionCount(), Long::sum);
+    metrics.merge(
+        prefix + ESTIMATED_SAVINGS_BYTES, suggestions.getEstimatedSavingsBytes(), Long::sum);
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.history;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An append-only, columnar store of the size metrics of past analysis runs.
+ *
+ * <p>The store directory contains:
+ *
+ * <ul>
+ *   <li>{@code metrics.txt}: the name of every metric ever recorded, one per line. The line number
+ *       is the id of the metric.
+ *   <li>{@code runs.bin}: one fixed size record per run, with its timestamp and revision. The
+ *       position of the record is the id of the run.
+ *   <li>{@code metric-<id>.bin}: one column per metric, with a fixed size (run id, value) record
+ *       for every run that recorded the metric.
+ * </ul>
+ *
+ * <p>Querying a metric only reads its column, sequentially, and looks up the runs by position, so
+ * the memory used does not depend on the number of runs.
+ */
+public final class HistoryStore {
+
+  /**
+   * Maximum number of bytes of a revision that are stored, enough for a hex SHA-256. Longer
+   * revisions are truncated to the last whole character that fits.
+   */
+  private static final int REVISION_BYTES = 64;
+  private static final int RUN_RECORD_BYTES = Long.BYTES + REVISION_BYTES;
+  private static final int VALUE_RECORD_BYTES = Integer.BYTES + Long.BYTES;
+
+  private static final String METRICS_FILE = "metrics.txt";
+  private static final String RUNS_FILE = "runs.bin";
+
+  private final Path directory;
+
+  public HistoryStore(Path directory) {
+    this.directory = directory;
+  }
+
+  /** Records the metrics of a run. */
+  @SuppressWarnings("try") // The lock is only held for the duration of the block.
+  public void append(long timestampMillis, String revision, ImmutableMap<String, Long> metrics) {
+    try {
+      Files.createDirectories(directory);
+      try (FileChannel runs =
+              FileChannel.open(
+                  directory.resolve(RUNS_FILE),
+                  StandardOpenOption.CREATE,
+                  StandardOpenOption.WRITE);
+          FileLock lock = runs.lock()) {
+        // Partially written records of an interrupted run are overwritten.
+        int runId = (int) (runs.size() / RUN_RECORD_BYTES);
+        ByteBuffer runRecord = ByteBuffer.allocate(RUN_RECORD_BYTES);
+        runRecord.putLong(timestampMillis);
+        // The encoder stops before a character that does not fit, rather than splitting it.
+        UTF_8
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+            .encode(CharBuffer.wrap(revision), runRecord, /* endOfInput= */ true);
+        runRecord.rewind();
+        runs.write(runRecord, (long) runId * RUN_RECORD_BYTES);
+
+        ImmutableList<String> metricNames = getMetricNames();
+        for (Map.Entry<String, Long> metric : metrics.entrySet()) {
+          int metricId = metricNames.indexOf(metric.getKey());
+          if (metricId < 0) {
+            metricId = metricNames.size();
+            appendMetricName(metric.getKey());
+            metricNames =
+                ImmutableList.<String>builder().addAll(metricNames).add(metric.getKey()).build();
+          }
+          appendValue(metricId, runId, metric.getValue());
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns the names of all metrics recorded so far. */
+  public ImmutableList<String> getMetricNames() {
+    try {
+      return ImmutableList.copyOf(Files.readAllLines(directory.resolve(METRICS_FILE), UTF_8));
+    } catch (NoSuchFileException e) {
+      return ImmutableList.of();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Passes the values recorded for the given metric to the consumer, oldest first, limited to the
+   * given number of most recent values.
+   */
+  public void query(String metricName, int lastValues, Consumer<DataPoint> consumer) {
+    int metricId = getMetricNames().indexOf(metricName);
+    if (metricId < 0) {
+      return;
+    }
+    Path runsFile = directory.resolve(RUNS_FILE);
+    try (FileChannel column = FileChannel.open(metricFile(metricId), StandardOpenOption.READ);
+        FileChannel runs = FileChannel.open(runsFile, StandardOpenOption.READ)) {
+      long recordCount = column.size() / VALUE_RECORD_BYTES;
+      column.position(Math.max(0, recordCount - lastValues) * VALUE_RECORD_BYTES);
+      DataInputStream values =
+          new DataInputStream(new BufferedInputStream(Channels.newInputStream(column)));
+      ByteBuffer runRecord = ByteBuffer.allocate(RUN_RECORD_BYTES);
+      while (true) {
+        int runId;
+        long value;
+        try {
+          runId = values.readInt();
+          value = values.readLong();
+        } catch (EOFException e) {
+          return;
+        }
+        runRecord.clear();
+        while (runRecord.hasRemaining()) {
+          if (runs.read(runRecord, (long) runId * RUN_RECORD_BYTES + runRecord.position()) < 0) {
+            throw new IOException("Missing run record for run " + runId);
+          }
+        }
+        runRecord.flip();
+        long timestampMillis = runRecord.getLong();
+        byte[] revisionBytes = new byte[REVISION_BYTES];
+        runRecord.get(revisionBytes);
+        consumer.accept(DataPoint.create(timestampMillis, decodeRevision(revisionBytes), value));
+      }
+    } catch (NoSuchFileException e) {
+      return;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void appendMetricName(String metricName) throws IOException {
+    Files.write(
+        directory.resolve(METRICS_FILE),
+        ImmutableList.of(metricName),
+        UTF_8,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+  }
+
+  private void appendValue(int metricId, int runId, long value) throws IOException {
+    try (DataOutputStream column =
+        new DataOutputStream(
+            new BufferedOutputStream(
+                Files.newOutputStream(
+                    metricFile(metricId), StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+      column.writeInt(runId);
+      column.writeLong(value);
+    }
+  }
+
+  private Path metricFile(int metricId) {
+    return directory.resolve("metric-" + metricId + ".bin");
+  }
+
+  private static String decodeRevision(byte[] revisionBytes) {
+    int length = 0;
+    while (length < revisionBytes.length && revisionBytes[length] != 0) {
+      length++;
+    }
+    return new String(Arrays.copyOf(revisionBytes, length), UTF_8);
+  }
+
+  /** A single recorded value of a metric. */
+  @AutoValue
+  public abstract static class DataPoint {
+
+    static DataPoint create(long timestampMillis, String revision, long value) {
+      return new AutoValue_HistoryStore_DataPoint(timestampMillis, revision, value);
+    }
+
+    /** When the run was recorded, in milliseconds since the epoch. */
+    public abstract long getTimestampMillis();
+
+    /** The revision the analyzed artifact was built from, may be empty. */
+    public abstract String getRevision();
+
+    public abstract long getValue();
+  }
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableListMultimap.toImmutableListMultimap;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.bundle.AppDependenciesOuterClass.AppDependencies;
+import com.android.bundle.Files.NativeLibraries;
+import com.android.tools.build.bundletool.model.AppBundle;
+import com.android.tools.build.bundletool.model.BundleModule;
+import com.android.tools.build.bundletool.model.BundleModuleName;
+import com.android.tools.build.bundletool.model.ModuleEntry;
+import com.android.tools.build.bundletool.model.ZipPath;
+import com.android.tools.sizereduction.analyzer.dex.DexFile;
+import com.android.tools.sizereduction.analyzer.dex.PackageTree;
+import com.android.tools.sizereduction.analyzer.dex.ProguardMap;
+import com.android.tools.sizereduction.analyzer.resources.ResourceTableAnalysis;
+import com.android.tools.sizereduction.analyzer.zip.ZipCentralDirectory;
+import com.android.tools.sizereduction.analyzer.zip.ZipEntryReader;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimaps;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+
+/**
+ * The state shared by all suggesters during the analysis of a single App Bundle.
+ *
+ * <p>The models derived from the bundle are computed lazily the first time a suggester asks for
+ * them, and then reused by all other suggesters of the run. All accessors are thread-safe.
+ * Closing the session releases the resources opened by the session, but not the bundle ZIP file.
+ *
+ * <p>A session can also be created for a bundle that was read from a stream, in which case the
+ * bundle ZIP file only holds the content of the metadata entries, and the sizes of the entries
+ * come from the given entry table. The content of the other entries is then not available.
+ */
+public final class AnalysisSession implements Closeable {
+
+  private static final String LIBRARIES_METADATA_NAMESPACE = "com.android.tools.build.libraries";
+  private static final String DEPENDENCIES_FILE_NAME = "dependencies.pb";
+  private static final String PROGUARD_MAP_ENTRY_NAME =
+      "BUNDLE-METADATA/com.android.tools.build.obfuscation/proguard.map";
+  private static final String RESOURCE_TABLE_FILE_NAME = "resources.pb";
+
+  private final ZipFile bundleZip;
+  private final boolean hasEntryContent;
+  private final Supplier<AppBundle> appBundle;
+  private final Supplier<ZipCentralDirectory> centralDirectory;
+  private final Supplier<BundleEntryTable> entryTable;
+  private final Supplier<
+          ImmutableMap<BundleModuleName, ImmutableListMultimap<ZipPath, ModuleEntry>>>
+      moduleEntriesByDirectory;
+  private final Supplier<ImmutableList<String>> dexEntryNames;
+  private final Supplier<ImmutableList<Integer>> dexEntries;
+  private final Supplier<ImmutableListMultimap<String, Integer>> dexEntriesByModule;
+  private final Supplier<ImmutableMap<BundleModuleName, NativeLibraries>> nativeConfigs;
+  private final Supplier<Optional<AppDependencies>> appDependencies;
+  private final Supplier<ProguardMap> proguardMap;
+  private final Supplier<ImmutableMap<String, PackageTree>> packageTrees;
+  private final Supplier<ImmutableMap<String, ResourceTableAnalysis>> resourceTableAnalyses;
+  private final ConcurrentMap<Integer, DexFile> dexFiles = new ConcurrentHashMap<>();
+  @Nullable private ZipEntryReader entryReader;
+
+  private AnalysisSession(ZipFile bundleZip, @Nullable BundleEntryTable streamedEntryTable) {
+    this.bundleZip = bundleZip;
+    this.hasEntryContent = streamedEntryTable == null;
+    this.appBundle = Suppliers.memoize(() -> AppBundle.buildFromZip(bundleZip));
+    this.centralDirectory =
+        Suppliers.memoize(() -> ZipCentralDirectory.open(Paths.get(bundleZip.getName())));
+    this.entryTable =
+        streamedEntryTable == null
+            ? Suppliers.memoize(() -> BundleEntryTable.create(getCentralDirectory()))
+            : Suppliers.ofInstance(streamedEntryTable);
+    this.moduleEntriesByDirectory = Suppliers.memoize(this::indexModuleEntries);
+    this.dexEntryNames = Suppliers.memoize(this::findDexEntryNames);
+    this.dexEntries = Suppliers.memoize(this::findDexEntries);
+    this.dexEntriesByModule = Suppliers.memoize(this::groupDexEntriesByModule);
+    this.nativeConfigs = Suppliers.memoize(this::collectNativeConfigs);
+    this.appDependencies = Suppliers.memoize(this::readAppDependencies);
+    this.proguardMap = Suppliers.memoize(this::readProguardMap);
+    this.packageTrees = Suppliers.memoize(this::buildPackageTrees);
+    this.resourceTableAnalyses = Suppliers.memoize(this::analyzeResourceTables);
+  }
+
+  /** Creates the session for the App Bundle contained in the given ZIP file. */
+  public static AnalysisSession create(ZipFile bundleZip) {
+    return new AnalysisSession(bundleZip, /* streamedEntryTable= */ null);
+  }
+
+  /**
+   * Creates the session for an App Bundle that was read from a stream. The given ZIP file holds
+   * all entries of the bundle but only the content of its metadata entries, while the entry table
+   * describes the entries as they were in the stream.
+   */
+  public static AnalysisSession create(ZipFile metadataZip, BundleEntryTable entryTable) {
+    return new AnalysisSession(metadataZip, entryTable);
+  }
+
+  /** The ZIP file of the bundle. */
+  public ZipFile getBundleZip() {
+    return bundleZip;
+  }
+
+  /** The bundletool model of the bundle. */
+  public AppBundle getAppBundle() {
+    return appBundle.get();
+  }
+
+  /**
+   * Whether the content of all bundle entries can be read, which is not the case for bundles read
+   * from a stream.
+   */
+  public boolean hasEntryContent() {
+    return hasEntryContent;
+  }
+
+  /**
+   * The central directory of the bundle ZIP file, for cheap lookups of entry names and sizes. Only
+   * available if the session {@link #hasEntryContent()}.
+   */
+  public ZipCentralDirectory getCentralDirectory() {
+    checkState(hasEntryContent, "The bundle was read from a stream.");
+    return centralDirectory.get();
+  }
+
+  /** The compact table of the bundle entries. */
+  public BundleEntryTable getEntryTable() {
+    return entryTable.get();
+  }
+
+  /**
+   * The reader of the bundle entries, which unlike the bundle ZIP file can read and inflate entries
+   * from several threads concurrently. Only available if the session {@link #hasEntryContent()}.
+   */
+  public synchronized ZipEntryReader getEntryReader() {
+    checkState(hasEntryContent, "The bundle was read from a stream.");
+    if (entryReader == null) {
+      entryReader = ZipEntryReader.open(Paths.get(bundleZip.getName()));
+    }
+    return entryReader;
+  }
+
+  /**
+   * Maps the uncompressed content of the entry at the given index of the entry table into memory,
+   * without copying it onto the heap. Only available if the session {@link #hasEntryContent()}.
+   */
+  public ByteBuffer mapEntryContent(int index) {
+    BundleEntryTable entryTable = getEntryTable();
+    return getEntryReader()
+        .mapEntry(
+            entryTable.getLocalHeaderOffset(index),
+            entryTable.getCompressedSize(index),
+            entryTable.getSize(index),
+            entryTable.isCompressed(index));
+  }
+
+  /**
+   * The parsed dex file of the entry at the given index of the entry table. Each dex file is mapped
+   * and parsed once, and then shared by all suggesters of the run. Only available if the session
+   * {@link #hasEntryContent()}.
+   *
+   * <p>Suggesters skip the analyses of invalid dex files, which are left to the tools consuming the
+   * bundle to report.
+   *
+   * @throws IllegalArgumentException if the entry is not a valid dex file
+   */
+  public DexFile getDexFile(int index) {
+    return dexFiles.computeIfAbsent(index, unused -> DexFile.parse(mapEntryContent(index)));
+  }
+
+  /**
+   * Reads the first bytes of the uncompressed content of the entry at the given index of the entry
+   * table, inflating no more of the entry than needed. The buffer is shorter than the given length
+   * if the entry is. Only available if the session {@link #hasEntryContent()}.
+   */
+  public ByteBuffer readEntryPrefix(int index, int length) {
+    BundleEntryTable entryTable = getEntryTable();
+    byte[] prefix = new byte[(int) Math.min(length, entryTable.getSize(index))];
+    try (InputStream content =
+        getEntryReader()
+            .openEntry(
+                entryTable.getLocalHeaderOffset(index),
+                entryTable.getCompressedSize(index),
+                entryTable.isCompressed(index))) {
+      ByteStreams.readFully(content, prefix);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return ByteBuffer.wrap(prefix);
+  }
+
+  /**
+   * Returns the entries of the given module under the given directory of the module, like {@link
+   * BundleModule#findEntriesUnderPath(ZipPath)} but without scanning all entries of the module.
+   */
+  public Stream<ModuleEntry> findModuleEntriesUnderPath(BundleModule module, ZipPath directory) {
+    ImmutableListMultimap<ZipPath, ModuleEntry> entriesByDirectory =
+        moduleEntriesByDirectory.get().get(module.getName());
+    if (entriesByDirectory == null || directory.getNameCount() == 0) {
+      return module.findEntriesUnderPath(directory);
+    }
+    Stream<ModuleEntry> entries = entriesByDirectory.get(directory.getName(0)).stream();
+    return directory.getNameCount() == 1
+        ? entries
+        : entries.filter(entry -> entry.getPath().startsWith(directory));
+  }
+
+  /** The full paths within the bundle of the dex files of all modules. */
+  public ImmutableList<String> getDexEntryNames() {
+    return dexEntryNames.get();
+  }
+
+  /**
+   * The indexes in the entry table of the dex files of all modules. Dex files which are missing
+   * from the entry table, as in some old multidex bundles, are left out.
+   */
+  public ImmutableList<Integer> getDexEntries() {
+    return dexEntries.get();
+  }
+
+  /** The indexes in the entry table of the dex files of each module, by module name. */
+  public ImmutableListMultimap<String, Integer> getDexEntriesByModule() {
+    return dexEntriesByModule.get();
+  }
+
+  /**
+   * The ratio of the compressed size to the uncompressed size of the given entries, to turn
+   * uncompressed byte counts within them into an estimate of the bytes they take in the bundle. One
+   * if the entries are empty.
+   */
+  public double getCompressionRatio(Collection<Integer> entries) {
+    BundleEntryTable entryTable = getEntryTable();
+    long size = entries.stream().mapToLong(entryTable::getSize).sum();
+    return size == 0
+        ? 1
+        : (double) entries.stream().mapToLong(entryTable::getCompressedSize).sum() / size;
+  }
+
+  /** The native libraries configuration of the modules that have one. */
+  public ImmutableMap<BundleModuleName, NativeLibraries> getNativeConfigs() {
+    return nativeConfigs.get();
+  }
+
+  /** The app dependencies recorded in the bundle metadata, if any. */
+  public Optional<AppDependencies> getAppDependencies() {
+    return appDependencies.get();
+  }
+
+  /**
+   * The index of the Proguard or R8 mapping file of the bundle, empty if the bundle has none. The
+   * mapping file is read from the bundle ZIP file as a stream, so it is also available for bundles
+   * read from a stream.
+   */
+  public ProguardMap getProguardMap() {
+    return proguardMap.get();
+  }
+
+  /**
+   * The size of the code of each module with dex files, attributed to its classes and rolled up
+   * into packages. Obfuscated classes are given their original names if the bundle has a Proguard
+   * map. Empty if the session has no entry content.
+   */
+  public ImmutableMap<String, PackageTree> getPackageTrees() {
+    return packageTrees.get();
+  }
+
+  /**
+   * The size of the resources of each module with a resource table, broken down by resource type,
+   * configuration qualifier and package. The resource tables are read from the bundle ZIP file as
+   * streams, so they are also available for bundles read from a stream.
+   */
+  public ImmutableMap<String, ResourceTableAnalysis> getResourceTableAnalyses() {
+    return resourceTableAnalyses.get();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (entryReader != null) {
+      entryReader.close();
+      entryReader = null;
+    }
+  }
+
+  /** Groups the entries of every module by their top-level directory within the module. */
+  private ImmutableMap<BundleModuleName, ImmutableListMultimap<ZipPath, ModuleEntry>>
+      indexModuleEntries() {
+    return getAppBundle().getModules().values().stream()
+        .collect(
+            toImmutableMap(
+                BundleModule::getName,
+                module ->
+                    Multimaps.index(module.getEntries(), entry -> entry.getPath().getName(0))));
+  }
+
+  private ImmutableList<String> findDexEntryNames() {
+    return getAppBundle().getModules().values().stream()
+        .flatMap(
+            module ->
+                findModuleEntriesUnderPath(module, BundleModule.DEX_DIRECTORY)
+                    .map(ModuleEntry::getPath)
+                    .map(ZipPath.create(module.getName().toString())::resolve))
+        .map(ZipPath::toString)
+        .collect(toImmutableList());
+  }
+
+  private ImmutableList<Integer> findDexEntries() {
+    BundleEntryTable entryTable = getEntryTable();
+    return getDexEntryNames().stream()
+        .map(entryTable::findEntry)
+        .filter(OptionalInt::isPresent)
+        .map(OptionalInt::getAsInt)
+        .collect(toImmutableList());
+  }
+
+  private ImmutableListMultimap<String, Integer> groupDexEntriesByModule() {
+    BundleEntryTable entryTable = getEntryTable();
+    return getDexEntries().stream()
+        .collect(
+            toImmutableListMultimap(
+                index -> entryTable.getModuleName(entryTable.getModuleId(index)),
+                index -> index));
+  }
+
+  private ImmutableMap<BundleModuleName, NativeLibraries> collectNativeConfigs() {
+    ImmutableMap.Builder<BundleModuleName, NativeLibraries> configs = ImmutableMap.builder();
+    for (BundleModule module : getAppBundle().getModules().values()) {
+      module.getNativeConfig().ifPresent(config -> configs.put(module.getName(), config));
+    }
+    return configs.build();
+  }
+
+  /** Parses the dex files of every module in parallel, and attributes their size to classes. */
+  private ImmutableMap<String, PackageTree> buildPackageTrees() {
+    if (!hasEntryContent) {
+      return ImmutableMap.of();
+    }
+    ProguardMap proguardMap = getProguardMap();
+    return getDexEntriesByModule().asMap().entrySet().parallelStream()
+        .collect(
+            toImmutableMap(
+                Map.Entry::getKey,
+                moduleDexEntries -> buildPackageTree(moduleDexEntries.getValue(), proguardMap)));
+  }
+
+  private PackageTree buildPackageTree(Collection<Integer> dexEntries, ProguardMap proguardMap) {
+    ImmutableList<ImmutableMap<String, Long>> classSizes =
+        dexEntries.parallelStream()
+            .map(index -> getDexFile(index).getClassSizes())
+            .collect(toImmutableList());
+    PackageTree.Builder packageTree = PackageTree.builder();
+    for (ImmutableMap<String, Long> dexClassSizes : classSizes) {
+      dexClassSizes.forEach(
+          (className, size) ->
+              packageTree.addClass(proguardMap.deobfuscateClassName(className), size));
+    }
+    return packageTree.build();
+  }
+
+  /** Streams the resource table of every module in parallel. */
+  private ImmutableMap<String, ResourceTableAnalysis> analyzeResourceTables() {
+    BundleEntryTable entryTable = getEntryTable();
+    ImmutableList<Integer> resourceTables =
+        getAppBundle().getModules().keySet().stream()
+            .map(moduleName -> entryTable.findEntry(moduleName + "/" + RESOURCE_TABLE_FILE_NAME))
+            .filter(OptionalInt::isPresent)
+            .map(OptionalInt::getAsInt)
+            .collect(toImmutableList());
+    return resourceTables.parallelStream()
+        .collect(
+            toImmutableMap(
+                index -> entryTable.getModuleName(entryTable.getModuleId(index)),
+                index -> analyzeResourceTable(entryTable, index)));
+  }
+
+  private ResourceTableAnalysis analyzeResourceTable(BundleEntryTable entryTable, int index) {
+    String moduleName = entryTable.getModuleName(entryTable.getModuleId(index));
+    try (InputStream resourceTable =
+        bundleZip.getInputStream(bundleZip.getEntry(entryTable.getName(index)))) {
+      return ResourceTableAnalysis.analyze(
+          resourceTable, moduleName, entryTable, getCompressionRatio(ImmutableList.of(index)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private ProguardMap readProguardMap() {
+    ZipEntry proguardMapEntry = bundleZip.getEntry(PROGUARD_MAP_ENTRY_NAME);
+    if (proguardMapEntry == null) {
+      return ProguardMap.EMPTY;
+    }
+    try (Reader reader =
+        new InputStreamReader(bundleZip.getInputStream(proguardMapEntry), UTF_8)) {
+      return ProguardMap.parse(reader);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Optional<AppDependencies> readAppDependencies() {
+    Optional<ByteSource> byteSource =
+        getAppBundle()
+            .getBundleMetadata()
+            .getFileAsByteSource(LIBRARIES_METADATA_NAMESPACE, DEPENDENCIES_FILE_NAME);
+
+    if (!byteSource.isPresent()) {
+      return Optional.empty();
+    }
+
+    try {
+      try (InputStream entryContent = byteSource.get().openBufferedStream()) {
+        return Optional.of(
+            AppDependencies.parseFrom(entryContent, ExtensionRegistry.getEmptyRegistry()));
+      } catch (InvalidProtocolBufferException e) {
+        try (InputStream entryContent = byteSource.get().openBufferedStream()) {
+          return Optional.of(AppDependencies.parseDelimitedFrom(entryContent));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import com.google.auto.value.AutoValue;
+
+/** Context for the APK being analyzed, to be used by the suggester when it is called. */
+@AutoValue
+public abstract class ApkContext implements Context {
+
+  public static ApkContext create(int minSdkVersion, boolean onDemand, boolean embedsWearApk) {
+    return new AutoValue_ApkContext.Builder()
+        .setMinSdkVersion(minSdkVersion)
+        .setOnDemand(onDemand)
+        .setEmbedsWearApk(embedsWearApk)
+        .build();
+  }
+
+  /** The min sdk version declared in the manifest of the APK. */
+  @Override
+  public abstract int getMinSdkVersion();
+
+  /** Whether the APK is delivered on demand. */
+  @Override
+  public abstract boolean getOnDemand();
+
+  /** Whether the APK embeds a Wear 1.X APK. */
+  @Override
+  public abstract boolean getEmbedsWearApk();
+
+  /** Builder for the {@link ApkContext}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+
+    /** Set the min sdk version. */
+    public abstract Builder setMinSdkVersion(int minSdkVersion);
+
+    /** Set whether the APK is delivered on demand. */
+    public abstract Builder setOnDemand(boolean onDemand);
+
+    /** Set whether the APK embeds a Wear 1.X APK. */
+    public abstract Builder setEmbedsWearApk(boolean embedsWearApk);
+
+    /** Build the context object. */
+    public abstract ApkContext build();
+  }
+}
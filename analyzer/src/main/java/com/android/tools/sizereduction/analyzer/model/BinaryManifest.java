@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_16LE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableSet;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import javax.annotation.Nullable;
+
+/**
+ * The parts of the binary AndroidManifest.xml of an APK that the analyzer needs.
+ *
+ * <p>The manifest is compiled to the binary XML format of aapt, a sequence of chunks starting with
+ * a string pool. Only the string pool, the resource map and the start element chunks are read;
+ * attributes are identified by their resource id when there is one, since the attribute names of
+ * shrunk manifests may be stripped.
+ */
+public final class BinaryManifest {
+
+  private static final int XML_TYPE = 0x0003;
+  private static final int STRING_POOL_TYPE = 0x0001;
+  private static final int RESOURCE_MAP_TYPE = 0x0180;
+  private static final int START_ELEMENT_TYPE = 0x0102;
+  private static final int UTF8_FLAG = 1 << 8;
+  private static final int NO_INDEX = -1;
+
+  private static final int NAME_ATTRIBUTE_ID = 0x01010003;
+  private static final int MIN_SDK_VERSION_ATTRIBUTE_ID = 0x0101020c;
+  private static final int TYPE_STRING = 0x03;
+  private static final int TYPE_FIRST_INT = 0x10;
+  private static final int TYPE_LAST_INT = 0x1f;
+  // The min SDK version of apps that do not declare one.
+  private static final int DEFAULT_MIN_SDK_VERSION = 1;
+
+  private final int minSdkVersion;
+  private final ImmutableSet<String> metadataNames;
+
+  private BinaryManifest(int minSdkVersion, ImmutableSet<String> metadataNames) {
+    this.minSdkVersion = minSdkVersion;
+    this.metadataNames = metadataNames;
+  }
+
+  /** The min SDK version declared by the uses-sdk element, or 1 if there is none. */
+  public int getMinSdkVersion() {
+    return minSdkVersion;
+  }
+
+  /** The names of the meta-data elements of the manifest. */
+  public ImmutableSet<String> getMetadataNames() {
+    return metadataNames;
+  }
+
+  /**
+   * Parses the given binary manifest.
+   *
+   * @throws IllegalArgumentException if the content is not a binary XML document
+   */
+  public static BinaryManifest parse(byte[] content) {
+    ByteBuffer buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+    checkArgument(
+        content.length >= 8 && Short.toUnsignedInt(buffer.getShort(0)) == XML_TYPE,
+        "Not a binary XML manifest.");
+
+    String[] strings = new String[0];
+    int[] resourceIds = new int[0];
+    int minSdkVersion = DEFAULT_MIN_SDK_VERSION;
+    ImmutableSet.Builder<String> metadataNames = ImmutableSet.builder();
+    int chunkStart = Short.toUnsignedInt(buffer.getShort(2));
+    while (chunkStart + 8 <= content.length) {
+      int type = Short.toUnsignedInt(buffer.getShort(chunkStart));
+      int headerSize = Short.toUnsignedInt(buffer.getShort(chunkStart + 2));
+      int chunkSize = buffer.getInt(chunkStart + 4);
+      checkArgument(
+          chunkSize >= 8 && chunkSize <= content.length - chunkStart,
+          "Invalid chunk at offset %s of the binary manifest.",
+          chunkStart);
+      switch (type) {
+        case STRING_POOL_TYPE:
+          strings = readStringPool(buffer, chunkStart);
+          break;
+        case RESOURCE_MAP_TYPE:
+          resourceIds = new int[(chunkSize - headerSize) / 4];
+          for (int i = 0; i < resourceIds.length; i++) {
+            resourceIds[i] = buffer.getInt(chunkStart + headerSize + 4 * i);
+          }
+          break;
+        case START_ELEMENT_TYPE:
+          Element element = new Element(buffer, chunkStart + headerSize, strings, resourceIds);
+          if (element.hasName("uses-sdk")) {
+            int value = element.getIntAttribute(MIN_SDK_VERSION_ATTRIBUTE_ID, "minSdkVersion");
+            if (value != NO_INDEX) {
+              minSdkVersion = value;
+            }
+          } else if (element.hasName("meta-data")) {
+            String name = element.getStringAttribute(NAME_ATTRIBUTE_ID, "name");
+            if (name != null) {
+              metadataNames.add(name);
+            }
+          }
+          break;
+        default:
+          break;
+      }
+      chunkStart += chunkSize;
+    }
+    return new BinaryManifest(minSdkVersion, metadataNames.build());
+  }
+
+  private static String[] readStringPool(ByteBuffer buffer, int chunkStart) {
+    int stringCount = buffer.getInt(chunkStart + 8);
+    int flags = buffer.getInt(chunkStart + 16);
+    int stringsStart = chunkStart + buffer.getInt(chunkStart + 20);
+    int headerSize = Short.toUnsignedInt(buffer.getShort(chunkStart + 2));
+    String[] strings = new String[stringCount];
+    for (int i = 0; i < stringCount; i++) {
+      int position = stringsStart + buffer.getInt(chunkStart + headerSize + 4 * i);
+      strings[i] =
+          (flags & UTF8_FLAG) != 0
+              ? readUtf8String(buffer, position)
+              : readUtf16String(buffer, position);
+    }
+    return strings;
+  }
+
+  private static String readUtf8String(ByteBuffer buffer, int position) {
+    // The length in characters, then the length in bytes, each on one or two bytes.
+    position += (buffer.get(position) & 0x80) != 0 ? 2 : 1;
+    int length = buffer.get(position) & 0xff;
+    if ((length & 0x80) != 0) {
+      length = ((length & 0x7f) << 8) | (buffer.get(position + 1) & 0xff);
+      position++;
+    }
+    position++;
+    return new String(buffer.array(), position, length, UTF_8);
+  }
+
+  private static String readUtf16String(ByteBuffer buffer, int position) {
+    // The length in UTF-16 code units, on one or two code units.
+    int length = Short.toUnsignedInt(buffer.getShort(position));
+    if ((length & 0x8000) != 0) {
+      length = ((length & 0x7fff) << 16) | Short.toUnsignedInt(buffer.getShort(position + 2));
+      position += 2;
+    }
+    position += 2;
+    return new String(buffer.array(), position, 2 * length, UTF_16LE);
+  }
+
+  /** A start element chunk, read from the start of its body. */
+  private static final class Element {
+    private static final int ATTRIBUTE_NAME_OFFSET = 4;
+    private static final int ATTRIBUTE_RAW_VALUE_OFFSET = 8;
+    private static final int ATTRIBUTE_TYPE_OFFSET = 15;
+    private static final int ATTRIBUTE_DATA_OFFSET = 16;
+
+    private final ByteBuffer buffer;
+    private final String[] strings;
+    private final int[] resourceIds;
+    private final int name;
+    private final int attributesStart;
+    private final int attributeSize;
+    private final int attributeCount;
+
+    private Element(ByteBuffer buffer, int bodyStart, String[] strings, int[] resourceIds) {
+      this.buffer = buffer;
+      this.strings = strings;
+      this.resourceIds = resourceIds;
+      this.name = buffer.getInt(bodyStart + 4);
+      this.attributesStart = bodyStart + Short.toUnsignedInt(buffer.getShort(bodyStart + 8));
+      this.attributeSize = Short.toUnsignedInt(buffer.getShort(bodyStart + 10));
+      this.attributeCount = Short.toUnsignedInt(buffer.getShort(bodyStart + 12));
+    }
+
+    private boolean hasName(String elementName) {
+      return elementName.equals(getString(name));
+    }
+
+    /** Returns the integer value of the attribute, or {@link #NO_INDEX} if it has none. */
+    private int getIntAttribute(int resourceId, String attributeName) {
+      int attribute = findAttribute(resourceId, attributeName);
+      if (attribute == NO_INDEX) {
+        return NO_INDEX;
+      }
+      int type = buffer.get(attribute + ATTRIBUTE_TYPE_OFFSET) & 0xff;
+      if (type >= TYPE_FIRST_INT && type <= TYPE_LAST_INT) {
+        return buffer.getInt(attribute + ATTRIBUTE_DATA_OFFSET);
+      }
+      // A preview SDK is declared by its code name, which does not tell the version.
+      return NO_INDEX;
+    }
+
+    /** Returns the string value of the attribute, or null if it has none. */
+    @Nullable
+    private String getStringAttribute(int resourceId, String attributeName) {
+      int attribute = findAttribute(resourceId, attributeName);
+      if (attribute == NO_INDEX) {
+        return null;
+      }
+      int rawValue = buffer.getInt(attribute + ATTRIBUTE_RAW_VALUE_OFFSET);
+      if (rawValue != NO_INDEX) {
+        return getString(rawValue);
+      }
+      int type = buffer.get(attribute + ATTRIBUTE_TYPE_OFFSET) & 0xff;
+      return type == TYPE_STRING
+          ? getString(buffer.getInt(attribute + ATTRIBUTE_DATA_OFFSET))
+          : null;
+    }
+
+    /** Returns the offset of the attribute, matched by resource id or else by name. */
+    private int findAttribute(int resourceId, String attributeName) {
+      for (int i = 0; i < attributeCount; i++) {
+        int attribute = attributesStart + i * attributeSize;
+        int attributeNameIndex = buffer.getInt(attribute + ATTRIBUTE_NAME_OFFSET);
+        boolean matches =
+            attributeNameIndex >= 0 && attributeNameIndex < resourceIds.length
+                ? resourceIds[attributeNameIndex] == resourceId
+                : attributeName.equals(getString(attributeNameIndex));
+        if (matches) {
+          return attribute;
+        }
+      }
+      return NO_INDEX;
+    }
+
+    @Nullable
+    private String getString(int index) {
+      return index >= 0 && index < strings.length ? strings[index] : null;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.android.tools.sizereduction.analyzer.zip.ZipEntrySource;
+import com.google.errorprone.annotations.MustBeClosed;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Supplies the file data for the entries of a {@link BundleEntryTable}.
+ *
+ * <p>A single instance is meant to be moved over all entries of the table, so that no object is
+ * allocated per entry; the paths of the current entry are only created if they are requested. The
+ * content is read from a {@link ZipEntrySource}, so several instances moved by different threads
+ * over the same table read their entries concurrently. A single instance is not threadsafe.
+ */
+public final class BundleEntryFileData implements FileData {
+
+  private final ZipEntrySource entrySource;
+  private final BundleEntryTable entryTable;
+  private int index = -1;
+  private InputStream inputStream;
+  private Path cachedPathWithinRoot;
+  private Path cachedPathWithinModule;
+
+  public BundleEntryFileData(ZipEntrySource entrySource, BundleEntryTable entryTable) {
+    this.entrySource = entrySource;
+    this.entryTable = entryTable;
+  }
+
+  /**
+   * Points this instance at the entry with the given index of the table. This also allows the
+   * input stream to be requested again.
+   */
+  public void moveTo(int index) {
+    if (this.index != index) {
+      this.index = index;
+      cachedPathWithinRoot = null;
+      cachedPathWithinModule = null;
+    }
+    inputStream = null;
+  }
+
+  /** Returns the index of the current entry in the table. */
+  public int getIndex() {
+    return index;
+  }
+
+  @Override
+  @MustBeClosed
+  public InputStream getInputStream() {
+    checkState(inputStream == null, "input stream was already supplied and opened");
+
+    inputStream =
+        entrySource.openEntry(
+            entryTable.getLocalHeaderOffset(index),
+            entryTable.getCompressedSize(index),
+            entryTable.isCompressed(index));
+    return inputStream;
+  }
+
+  @Override
+  public Path getPathWithinRoot() {
+    if (cachedPathWithinRoot == null) {
+      cachedPathWithinRoot = Paths.get(entryTable.getName(index));
+    }
+    return cachedPathWithinRoot;
+  }
+
+  @Override
+  public Path getPathWithinModule() {
+    if (cachedPathWithinModule == null) {
+      cachedPathWithinModule = Paths.get(entryTable.getPathWithinModule(index));
+    }
+    return cachedPathWithinModule;
+  }
+
+  /** Returns the uncompressed size of the current entry. */
+  @Override
+  public long getSize() {
+    return entryTable.getSize(index);
+  }
+
+  /** Returns the compressed size of the current entry. */
+  @Override
+  public long getCompressedSize() {
+    return entryTable.getCompressedSize(index);
+  }
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.zip.ZipCentralDirectory;
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.OptionalInt;
+import java.util.zip.ZipEntry;
+
+/**
+ * A compact table of the entries of a bundle, meant to stay small for bundles with millions of
+ * entries.
+ *
+ * <p>Entry paths are split on '/' and every distinct path segment is stored once, UTF-8 encoded,
+ * in a single byte arena; a path is then the list of its segment ids. The metadata of the entries
+ * is kept in primitive columns indexed by entry, in central directory order, so the table holds no
+ * object per entry.
+ *
+ * <p>A table can also be built one entry at a time with a {@link Builder}, e.g. while a bundle is
+ * read from a stream. The same table describes the entries of an APK, none of which belongs to a
+ * module.
+ */
+public final class BundleEntryTable {
+
+  /** The module id of entries that do not belong to a module. */
+  public static final int NO_MODULE = -1;
+
+  private static final byte SEPARATOR = '/';
+
+  // Segment arena: the bytes of segment i are arena[segmentStarts[i], segmentStarts[i + 1]).
+  private final byte[] arena;
+  private final int[] segmentStarts;
+
+  // Entry paths: the segments of entry i are pathSegments[pathStarts[i], pathStarts[i + 1]).
+  private final int[] pathStarts;
+  private final int[] pathSegments;
+
+  private final int[] moduleIds;
+  private final ImmutableList<String> moduleNames;
+  private final BitSet directories;
+  private final BitSet compressed;
+  private final long[] sizes;
+  private final long[] compressedSizes;
+  private final long[] localHeaderOffsets;
+  private final int[] crcs;
+  // Open addressing table of entry index + 1, keyed by the hash of the entry name. Built on the
+  // first lookup, guarded by this.
+  private int[] nameIndex;
+
+  private BundleEntryTable(Builder builder) {
+    int entryCount = builder.entryCount;
+    this.arena = Arrays.copyOf(builder.arena, builder.arenaSize);
+    this.segmentStarts = Arrays.copyOf(builder.segmentStarts, builder.segmentCount + 1);
+    this.pathStarts = trim(builder.pathStarts, entryCount + 1);
+    this.pathSegments = Arrays.copyOf(builder.pathSegments, builder.pathSegmentCount);
+    this.moduleIds = trim(builder.moduleIds, entryCount);
+    this.moduleNames = builder.moduleNames.build();
+    this.directories = builder.directories;
+    this.compressed = builder.compressed;
+    this.sizes = trim(builder.sizes, entryCount);
+    this.compressedSizes = trim(builder.compressedSizes, entryCount);
+    this.localHeaderOffsets = trim(builder.localHeaderOffsets, entryCount);
+    this.crcs = trim(builder.crcs, entryCount);
+  }
+
+  /** Creates a builder to which entries are added one at a time. */
+  public static Builder builder() {
+    return new Builder(/* expectedEntryCount= */ 1024, /* hasModules= */ true);
+  }
+
+  /** Builds the table for the entries of the given central directory of a bundle. */
+  public static BundleEntryTable create(ZipCentralDirectory centralDirectory) {
+    return create(centralDirectory, /* hasModules= */ true);
+  }
+
+  /**
+   * Builds the table for the entries of the given central directory of an APK, whose entries all
+   * have their full path as path within module.
+   */
+  public static BundleEntryTable createWithoutModules(ZipCentralDirectory centralDirectory) {
+    return create(centralDirectory, /* hasModules= */ false);
+  }
+
+  private static BundleEntryTable create(ZipCentralDirectory centralDirectory, boolean hasModules) {
+    Builder builder = new Builder(centralDirectory.getEntryCount(), hasModules);
+    byte[] name = new byte[0];
+    for (int index = 0; index < centralDirectory.getEntryCount(); index++) {
+      int nameLength = centralDirectory.getNameLength(index);
+      if (name.length < nameLength) {
+        name = new byte[Math.max(nameLength, name.length * 2)];
+      }
+      centralDirectory.copyName(index, name, 0);
+      builder.addEntry(
+          name,
+          nameLength,
+          centralDirectory.getSize(index),
+          centralDirectory.getCompressedSize(index),
+          centralDirectory.getLocalHeaderOffset(index),
+          centralDirectory.getCrc(index),
+          centralDirectory.getMethod(index) != ZipEntry.STORED);
+    }
+    return new BundleEntryTable(builder);
+  }
+
+  /** The number of entries in the table. */
+  public int getEntryCount() {
+    return moduleIds.length;
+  }
+
+  /** The number of distinct path segments stored in the arena. */
+  public int getSegmentCount() {
+    return segmentStarts.length - 1;
+  }
+
+  /** The full path of the entry within the bundle. */
+  public String getName(int index) {
+    return decodePath(pathStarts[index], pathStarts[index + 1], directories.get(index));
+  }
+
+  /**
+   * The path of the entry within its module, or the full path for entries that do not belong to a
+   * module.
+   */
+  public String getPathWithinModule(int index) {
+    int start = pathStarts[index] + (moduleIds[index] == NO_MODULE ? 0 : 1);
+    return decodePath(start, pathStarts[index + 1], directories.get(index));
+  }
+
+  /** The id of the module of the entry, or {@link #NO_MODULE}. */
+  public int getModuleId(int index) {
+    return moduleIds[index];
+  }
+
+  /** The number of distinct modules of the entries. */
+  public int getModuleCount() {
+    return moduleNames.size();
+  }
+
+  /** The name of the module with the given id. */
+  public String getModuleName(int moduleId) {
+    return moduleNames.get(moduleId);
+  }
+
+  /** Whether the entry is a directory. */
+  public boolean isDirectory(int index) {
+    return directories.get(index);
+  }
+
+  /** Whether the entry is compressed, rather than stored. */
+  public boolean isCompressed(int index) {
+    return compressed.get(index);
+  }
+
+  /** The uncompressed size of the entry. */
+  public long getSize(int index) {
+    return sizes[index];
+  }
+
+  /** The compressed size of the entry. */
+  public long getCompressedSize(int index) {
+    return compressedSizes[index];
+  }
+
+  /** The offset of the local file header of the entry in the bundle file. */
+  public long getLocalHeaderOffset(int index) {
+    return localHeaderOffsets[index];
+  }
+
+  /** The CRC-32 of the uncompressed content of the entry. */
+  public int getCrc(int index) {
+    return crcs[index];
+  }
+
+  /** Returns the index of the entry with the given full path within the bundle, if any. */
+  public synchronized OptionalInt findEntry(String name) {
+    if (nameIndex == null) {
+      nameIndex = buildNameIndex();
+    }
+    byte[] nameBytes = name.getBytes(UTF_8);
+    int mask = nameIndex.length - 1;
+    for (int slot = hash(nameBytes, 0, nameBytes.length) & mask;
+        nameIndex[slot] != 0;
+        slot = (slot + 1) & mask) {
+      int index = nameIndex[slot] - 1;
+      if (nameEquals(index, nameBytes)) {
+        return OptionalInt.of(index);
+      }
+    }
+    return OptionalInt.empty();
+  }
+
+  private int[] buildNameIndex() {
+    int[] index = new int[Integer.highestOneBit(Math.max(2 * getEntryCount(), 1)) * 2];
+    int mask = index.length - 1;
+    for (int entry = 0; entry < getEntryCount(); entry++) {
+      int slot = hashName(entry) & mask;
+      while (index[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      index[slot] = entry + 1;
+    }
+    return index;
+  }
+
+  /** Hashes the name of the entry like {@link #hash} hashes its UTF-8 bytes. */
+  private int hashName(int index) {
+    int hash = 1;
+    for (int i = pathStarts[index]; i < pathStarts[index + 1]; i++) {
+      if (i > pathStarts[index]) {
+        hash = 31 * hash + SEPARATOR;
+      }
+      int segment = pathSegments[i];
+      for (int position = segmentStarts[segment];
+          position < segmentStarts[segment + 1];
+          position++) {
+        hash = 31 * hash + arena[position];
+      }
+    }
+    if (directories.get(index)) {
+      hash = 31 * hash + SEPARATOR;
+    }
+    return spread(hash);
+  }
+
+  private boolean nameEquals(int index, byte[] name) {
+    int position = 0;
+    for (int i = pathStarts[index]; i < pathStarts[index + 1]; i++) {
+      if (i > pathStarts[index]) {
+        if (position == name.length || name[position++] != SEPARATOR) {
+          return false;
+        }
+      }
+      int segment = pathSegments[i];
+      int length = segmentLength(segment);
+      if (position + length > name.length) {
+        return false;
+      }
+      for (int j = 0; j < length; j++) {
+        if (arena[segmentStarts[segment] + j] != name[position++]) {
+          return false;
+        }
+      }
+    }
+    if (directories.get(index)) {
+      if (position == name.length || name[position++] != SEPARATOR) {
+        return false;
+      }
+    }
+    return position == name.length;
+  }
+
+  private String decodePath(int firstSegment, int endSegment, boolean directory) {
+    int length = 0;
+    for (int i = firstSegment; i < endSegment; i++) {
+      length += segmentLength(pathSegments[i]) + 1;
+    }
+    if (length == 0) {
+      return "";
+    }
+    byte[] path = new byte[directory ? length : length - 1];
+    int position = 0;
+    for (int i = firstSegment; i < endSegment; i++) {
+      int segment = pathSegments[i];
+      System.arraycopy(arena, segmentStarts[segment], path, position, segmentLength(segment));
+      position += segmentLength(segment);
+      if (position < path.length) {
+        path[position++] = SEPARATOR;
+      }
+    }
+    return new String(path, UTF_8);
+  }
+
+  private int segmentLength(int segment) {
+    return segmentStarts[segment + 1] - segmentStarts[segment];
+  }
+
+  private static int hash(byte[] bytes, int start, int length) {
+    int hash = 1;
+    for (int i = start; i < start + length; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    return spread(hash);
+  }
+
+  // Spread the bits, since the low bits select the slot.
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int[] trim(int[] array, int length) {
+    return array.length == length ? array : Arrays.copyOf(array, length);
+  }
+
+  private static long[] trim(long[] array, int length) {
+    return array.length == length ? array : Arrays.copyOf(array, length);
+  }
+
+  /** Accumulates the columns of the table while entries are added. */
+  public static final class Builder {
+    private static final int INITIAL_SEGMENT_CAPACITY = 1024;
+    private static final int UNKNOWN_MODULE = -2;
+
+    private byte[] arena = new byte[16 * INITIAL_SEGMENT_CAPACITY];
+    private int arenaSize;
+    private int[] segmentStarts = new int[INITIAL_SEGMENT_CAPACITY + 1];
+    private int segmentCount;
+    // Open addressing table of segment id + 1, keyed by the hash of the segment bytes.
+    private int[] segmentIndex = new int[2 * INITIAL_SEGMENT_CAPACITY];
+    // Module id of every segment used as a first segment, NO_MODULE or UNKNOWN_MODULE.
+    private int[] segmentModuleIds = new int[INITIAL_SEGMENT_CAPACITY];
+    private final ImmutableList.Builder<String> moduleNames = ImmutableList.builder();
+    private int moduleCount;
+    private final boolean hasModules;
+
+    private int entryCount;
+    private int[] pathStarts;
+    private int[] pathSegments;
+    private int pathSegmentCount;
+
+    private int[] moduleIds;
+    private final BitSet directories = new BitSet();
+    private final BitSet compressed = new BitSet();
+    private long[] sizes;
+    private long[] compressedSizes;
+    private long[] localHeaderOffsets;
+    private int[] crcs;
+
+    private Builder(int expectedEntryCount, boolean hasModules) {
+      this.hasModules = hasModules;
+      pathStarts = new int[expectedEntryCount + 1];
+      pathSegments = new int[Math.max(4 * expectedEntryCount, 16)];
+      moduleIds = new int[expectedEntryCount];
+      sizes = new long[expectedEntryCount];
+      compressedSizes = new long[expectedEntryCount];
+      localHeaderOffsets = new long[expectedEntryCount];
+      crcs = new int[expectedEntryCount];
+      Arrays.fill(segmentModuleIds, UNKNOWN_MODULE);
+    }
+
+    /**
+     * Adds an entry to the table. The local header offset is only meaningful for entries read from
+     * a zip file.
+     */
+    public Builder addEntry(
+        String name,
+        long size,
+        long compressedSize,
+        long localHeaderOffset,
+        int crc,
+        boolean compressed) {
+      byte[] nameBytes = name.getBytes(UTF_8);
+      addEntry(
+          nameBytes, nameBytes.length, size, compressedSize, localHeaderOffset, crc, compressed);
+      return this;
+    }
+
+    /** Builds the table of the entries added so far. The builder must not be used afterwards. */
+    public BundleEntryTable build() {
+      return new BundleEntryTable(this);
+    }
+
+    private void addEntry(
+        byte[] name,
+        int nameLength,
+        long size,
+        long compressedSize,
+        long localHeaderOffset,
+        int crc,
+        boolean compressed) {
+      if (entryCount == moduleIds.length) {
+        growEntryColumns();
+      }
+      int index = entryCount++;
+      boolean directory = nameLength > 0 && name[nameLength - 1] == SEPARATOR;
+      int pathLength = directory ? nameLength - 1 : nameLength;
+      pathStarts[index] = pathSegmentCount;
+      int segmentStart = 0;
+      for (int i = 0; i <= pathLength; i++) {
+        if (i == pathLength || name[i] == SEPARATOR) {
+          addPathSegment(internSegment(name, segmentStart, i - segmentStart));
+          segmentStart = i + 1;
+        }
+      }
+      pathStarts[index + 1] = pathSegmentCount;
+
+      directories.set(index, directory);
+      this.compressed.set(index, compressed);
+      moduleIds[index] = findModuleId(index);
+      sizes[index] = size;
+      compressedSizes[index] = compressedSize;
+      localHeaderOffsets[index] = localHeaderOffset;
+      crcs[index] = crc;
+    }
+
+    /**
+     * Entries belong to the module named by their first segment, except for top-level files and the
+     * bundle-wide metadata directories.
+     */
+    private int findModuleId(int index) {
+      int segmentCount = pathStarts[index + 1] - pathStarts[index];
+      if (!hasModules || segmentCount < 2) {
+        return NO_MODULE;
+      }
+      int segment = pathSegments[pathStarts[index]];
+      if (segmentModuleIds[segment] == UNKNOWN_MODULE) {
+        String moduleName =
+            new String(arena, segmentStarts[segment], segmentLength(segment), UTF_8);
+        if (moduleName.isEmpty()
+            || moduleName.equals(BundleEntryType.BUNDLE_METADATA_DIRECTORY)
+            || moduleName.equals(BundleEntryType.META_INF_DIRECTORY)) {
+          segmentModuleIds[segment] = NO_MODULE;
+        } else {
+          moduleNames.add(moduleName);
+          segmentModuleIds[segment] = moduleCount++;
+        }
+      }
+      return segmentModuleIds[segment];
+    }
+
+    private void growEntryColumns() {
+      int capacity = Math.max(2 * moduleIds.length, 16);
+      pathStarts = Arrays.copyOf(pathStarts, capacity + 1);
+      moduleIds = Arrays.copyOf(moduleIds, capacity);
+      sizes = Arrays.copyOf(sizes, capacity);
+      compressedSizes = Arrays.copyOf(compressedSizes, capacity);
+      localHeaderOffsets = Arrays.copyOf(localHeaderOffsets, capacity);
+      crcs = Arrays.copyOf(crcs, capacity);
+    }
+
+    private void addPathSegment(int segment) {
+      if (pathSegmentCount == pathSegments.length) {
+        pathSegments = Arrays.copyOf(pathSegments, pathSegments.length * 2);
+      }
+      pathSegments[pathSegmentCount++] = segment;
+    }
+
+    private int internSegment(byte[] name, int start, int length) {
+      int hash = hash(name, start, length);
+      int mask = segmentIndex.length - 1;
+      int slot = hash & mask;
+      while (segmentIndex[slot] != 0) {
+        int segment = segmentIndex[slot] - 1;
+        if (segmentEquals(segment, name, start, length)) {
+          return segment;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return addSegment(name, start, length, slot);
+    }
+
+    private int addSegment(byte[] name, int start, int length, int slot) {
+      if (arenaSize + length > arena.length) {
+        arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+      }
+      System.arraycopy(name, start, arena, arenaSize, length);
+      arenaSize += length;
+      if (segmentCount + 1 == segmentStarts.length) {
+        segmentStarts = Arrays.copyOf(segmentStarts, segmentStarts.length * 2);
+        int oldCapacity = segmentModuleIds.length;
+        segmentModuleIds = Arrays.copyOf(segmentModuleIds, oldCapacity * 2);
+        Arrays.fill(segmentModuleIds, oldCapacity, segmentModuleIds.length, UNKNOWN_MODULE);
+      }
+      int segment = segmentCount++;
+      segmentStarts[segmentCount] = arenaSize;
+      segmentIndex[slot] = segment + 1;
+      if (2 * segmentCount > segmentIndex.length) {
+        rehash();
+      }
+      return segment;
+    }
+
+    private void rehash() {
+      int[] newIndex = new int[segmentIndex.length * 2];
+      int mask = newIndex.length - 1;
+      for (int segment = 0; segment < segmentCount; segment++) {
+        int slot = hash(arena, segmentStarts[segment], segmentLength(segment)) & mask;
+        while (newIndex[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        newIndex[slot] = segment + 1;
+      }
+      segmentIndex = newIndex;
+    }
+
+    private boolean segmentEquals(int segment, byte[] name, int start, int length) {
+      if (segmentLength(segment) != length) {
+        return false;
+      }
+      int segmentStart = segmentStarts[segment];
+      for (int i = 0; i < length; i++) {
+        if (arena[segmentStart + i] != name[start + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int segmentLength(int segment) {
+      return segmentStarts[segment + 1] - segmentStarts[segment];
+    }
+
+  }
+}
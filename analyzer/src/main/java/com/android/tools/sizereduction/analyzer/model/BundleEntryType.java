@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import java.util.Optional;
+
+/** The kind of content stored in a bundle entry, based on its location within the module. */
+public enum BundleEntryType {
+  /** A dex file under dex/. */
+  DEX,
+  /** The compiled resource table, resources.pb. */
+  RESOURCE_TABLE,
+  /** A resource file under res/. */
+  RESOURCE,
+  /** An asset file under assets/. */
+  ASSET,
+  /** A native library under lib/. */
+  NATIVE_LIB,
+  /** Any other entry, including the manifest and files outside of modules. */
+  OTHER;
+
+  static final String BUNDLE_METADATA_DIRECTORY = "BUNDLE-METADATA";
+  static final String META_INF_DIRECTORY = "META-INF";
+
+  /** Returns the type of the bundle entry with the given zip entry name. */
+  public static BundleEntryType fromEntryName(String entryName) {
+    if (!getModuleName(entryName).isPresent()) {
+      return OTHER;
+    }
+    String pathWithinModule = entryName.substring(entryName.indexOf('/') + 1);
+    if (pathWithinModule.startsWith("dex/")) {
+      return DEX;
+    }
+    if (pathWithinModule.equals("resources.pb")) {
+      return RESOURCE_TABLE;
+    }
+    if (pathWithinModule.startsWith("res/")) {
+      return RESOURCE;
+    }
+    if (pathWithinModule.startsWith("assets/")) {
+      return ASSET;
+    }
+    if (pathWithinModule.startsWith("lib/")) {
+      return NATIVE_LIB;
+    }
+    return OTHER;
+  }
+
+  /**
+   * Returns the name of the module containing the bundle entry with the given zip entry name, or
+   * empty for top level files and bundle metadata.
+   */
+  public static Optional<String> getModuleName(String entryName) {
+    int separator = entryName.indexOf('/');
+    if (separator <= 0) {
+      return Optional.empty();
+    }
+    String moduleName = entryName.substring(0, separator);
+    if (moduleName.equals(BUNDLE_METADATA_DIRECTORY) || moduleName.equals(META_INF_DIRECTORY)) {
+      return Optional.empty();
+    }
+    return Optional.of(moduleName);
+  }
+}
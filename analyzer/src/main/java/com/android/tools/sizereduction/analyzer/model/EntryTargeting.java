@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Derives the device targeting of module entries from their paths, the way bundletool does when
+ * distributing them over ABI, screen density and language splits.
+ */
+public final class EntryTargeting {
+
+  /** The screen densities for which bundletool generates splits, by density bucket. */
+  private static final ImmutableSortedMap<Integer, String> DENSITY_BUCKETS =
+      ImmutableSortedMap.<Integer, String>naturalOrder()
+          .put(120, "ldpi")
+          .put(160, "mdpi")
+          .put(213, "tvdpi")
+          .put(240, "hdpi")
+          .put(320, "xhdpi")
+          .put(480, "xxhdpi")
+          .put(640, "xxxhdpi")
+          .build();
+
+  private static final ImmutableMap<String, Integer> DENSITY_QUALIFIERS =
+      DENSITY_BUCKETS.entrySet().stream()
+          .collect(toImmutableMap(Map.Entry::getValue, Map.Entry::getKey));
+  private static final Pattern DENSITY_QUALIFIER = Pattern.compile("(\\d+)dpi");
+  private static final Pattern LANGUAGE_QUALIFIER = Pattern.compile("[a-z]{2,3}");
+  private static final Pattern BCP47_LANGUAGE_QUALIFIER = Pattern.compile("b\\+([a-z]{2,3}).*");
+  private static final Pattern ASSETS_LANGUAGE_DIRECTORY = Pattern.compile("[^/]*#lang_([a-z]+)");
+  /** Resource qualifiers of two or three letters that are not languages. */
+  private static final ImmutableSet<String> NON_LANGUAGE_QUALIFIERS = ImmutableSet.of("car");
+
+  private EntryTargeting() {}
+
+  /** Returns the ABI targeted by a native library, given its path within the module. */
+  public static Optional<String> getAbi(String pathWithinModule) {
+    String[] segments = pathWithinModule.split("/");
+    if (segments[0].equals("lib") && segments.length == 3) {
+      return Optional.of(segments[1]);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the language targeted by a resource or asset, given its path within the module. Assets
+   * target a language through a directory suffixed with #lang_ and the language.
+   */
+  public static Optional<String> getLanguage(String pathWithinModule) {
+    String[] segments = pathWithinModule.split("/");
+    if (segments[0].equals("assets")) {
+      for (String segment : segments) {
+        Matcher matcher = ASSETS_LANGUAGE_DIRECTORY.matcher(segment);
+        if (matcher.matches()) {
+          return Optional.of(matcher.group(1));
+        }
+      }
+    }
+    if (!isResourceFile(segments)) {
+      return Optional.empty();
+    }
+    for (String qualifier : getQualifiers(segments)) {
+      if (LANGUAGE_QUALIFIER.matcher(qualifier).matches()
+          && !NON_LANGUAGE_QUALIFIERS.contains(qualifier)) {
+        return Optional.of(qualifier);
+      }
+      Matcher matcher = BCP47_LANGUAGE_QUALIFIER.matcher(qualifier);
+      if (matcher.matches()) {
+        return Optional.of(matcher.group(1));
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the screen density targeted by a resource file, given its path within the module.
+   * Resources for any density (nodpi and anydpi) do not target a density.
+   */
+  public static Optional<Integer> getDensity(String pathWithinModule) {
+    String[] segments = pathWithinModule.split("/");
+    if (!isResourceFile(segments)) {
+      return Optional.empty();
+    }
+    for (String qualifier : getQualifiers(segments)) {
+      if (DENSITY_QUALIFIERS.containsKey(qualifier)) {
+        return Optional.of(DENSITY_QUALIFIERS.get(qualifier));
+      }
+      Matcher matcher = DENSITY_QUALIFIER.matcher(qualifier);
+      if (matcher.matches()) {
+        return Optional.of(Integer.parseInt(matcher.group(1)));
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the path of a resource file without its density qualifier, which is shared by all the
+   * density variants of the resource.
+   */
+  public static String getDensityGroup(String pathWithinModule) {
+    String[] segments = pathWithinModule.split("/");
+    StringBuilder group = new StringBuilder();
+    for (String part : segments[1].split("-")) {
+      if (!DENSITY_QUALIFIERS.containsKey(part) && !DENSITY_QUALIFIER.matcher(part).matches()) {
+        group.append(part).append('-');
+      }
+    }
+    return group.append('/').append(segments[2]).toString();
+  }
+
+  /** Returns the language of a locale, such as fr for fr-CA or sr for b+sr+Latn. */
+  public static String getLocaleLanguage(String locale) {
+    Matcher matcher = BCP47_LANGUAGE_QUALIFIER.matcher(locale);
+    if (matcher.matches()) {
+      return matcher.group(1);
+    }
+    return locale.split("[-_]")[0];
+  }
+
+  private static boolean isResourceFile(String[] segments) {
+    return segments[0].equals("res") && segments.length == 3;
+  }
+
+  /** Returns the configuration qualifiers of a resource file, without the resource type. */
+  private static ImmutableList<String> getQualifiers(String[] segments) {
+    ImmutableList<String> parts = ImmutableList.copyOf(segments[1].split("-"));
+    return parts.subList(1, parts.size());
+  }
+}
@@ -38,6 +38,11 @@ public interface FileData {
   /** Returns the size of this file. */
   long getSize();
 
+  /** Returns the size this file takes in a compressed artifact, by default its size. */
+  default long getCompressedSize() {
+    return getSize();
+  }
+
   /** Returns the file's lowercase extension without the dot, or an empty string if no extension. */
   static String getFileExtension(FileData fileData) {
     return Ascii.toLowerCase(MoreFiles.getFileExtension(fileData.getPathWithinRoot()));
@@ -32,6 +32,7 @@ public final class ZipFileData implements FileData {
   private final ZipFile zipFile;
   private final ZipEntry entry;
   private InputStream inputStream;
+  private Path cachedPathWithinRoot;
   private Path cachedPathWithinModule;
 
   public ZipFileData(ZipFile zipFile, ZipEntry entry) {
@@ -56,7 +57,10 @@ public final class ZipFileData implements FileData {
   /** Returns the path for this file based on the root of the project/bundle/apk. */
   @Override
   public Path getPathWithinRoot() {
-    return Paths.get(entry.getName());
+    if (cachedPathWithinRoot == null) {
+      cachedPathWithinRoot = Paths.get(entry.getName());
+    }
+    return cachedPathWithinRoot;
   }
 
   @Override
@@ -83,6 +87,7 @@ public final class ZipFileData implements FileData {
   }
 
   /** Returns the compressed size of this zip entry. */
+  @Override
   public long getCompressedSize() {
     return entry.getCompressedSize();
   }
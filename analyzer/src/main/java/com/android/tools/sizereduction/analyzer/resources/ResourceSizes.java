@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.resources;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * The bytes taken by a set of resources in a bundle: their values in the resource table, scaled
+ * by the compression of the resource table, and the files they reference, at their compressed size.
+ */
+@AutoValue
+public abstract class ResourceSizes {
+
+  public static final ResourceSizes EMPTY = create(0, 0);
+
+  public static ResourceSizes create(long valueSize, long fileSize) {
+    return new AutoValue_ResourceSizes(valueSize, fileSize);
+  }
+
+  /** The compressed size of the values in the resource table. */
+  public abstract long getValueSize();
+
+  /** The compressed size of the files referenced by the values. */
+  public abstract long getFileSize();
+
+  public long getTotalSize() {
+    return getValueSize() + getFileSize();
+  }
+
+  /** Adds up the sizes of two sets of resources. */
+  public ResourceSizes plus(ResourceSizes other) {
+    return create(getValueSize() + other.getValueSize(), getFileSize() + other.getFileSize());
+  }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.resources;
+
+import com.android.aapt.Resources.ConfigValue;
+import com.android.aapt.Resources.Configuration;
+import com.android.aapt.Resources.Entry;
+import com.android.aapt.Resources.Item;
+import com.android.aapt.Resources.PackageId;
+import com.android.aapt.Resources.TypeId;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Breakdown of the size of the resources of a module by resource type, by configuration qualifier
+ * and by package, with an index from resource ids to the bundle entries of the files they
+ * reference.
+ *
+ * <p>The resource table of large apps holds hundreds of thousands of values, so it is read as a
+ * stream: packages and types are decoded field by field, and only one entry is parsed into a
+ * message at a time. Values are attributed to every qualifier dimension of their configuration,
+ * so that a value for "fr-night" counts both for the locale and for the night mode, and values
+ * without qualifiers are attributed to {@link #DEFAULT_CONFIGURATION}.
+ */
+public final class ResourceTableAnalysis {
+
+  public static final String DEFAULT_CONFIGURATION = "default";
+  public static final String LOCALE = "locale";
+  public static final String DENSITY = "density";
+  public static final String NIGHT = "night";
+  public static final String LAYOUT_DIRECTION = "layout-direction";
+  public static final String ORIENTATION = "orientation";
+  public static final String SCREEN_SIZE = "screen-size";
+  public static final String SDK_VERSION = "sdk-version";
+  public static final String OTHER_QUALIFIERS = "other";
+
+  private static final int RESOURCE_TABLE_PACKAGE_TAG = makeMessageTag(2);
+  private static final int PACKAGE_ID_TAG = makeMessageTag(1);
+  private static final int PACKAGE_NAME_TAG = makeMessageTag(2);
+  private static final int PACKAGE_TYPE_TAG = makeMessageTag(3);
+  private static final int TYPE_ID_TAG = makeMessageTag(1);
+  private static final int TYPE_NAME_TAG = makeMessageTag(2);
+  private static final int TYPE_ENTRY_TAG = makeMessageTag(3);
+
+  private final ImmutableMap<String, ResourceSizes> typeSizes;
+  private final ImmutableMap<String, ResourceSizes> qualifierSizes;
+  private final ImmutableMap<String, ResourceSizes> packageSizes;
+  private final ImmutableMap<String, ResourceSizes> localeSizes;
+  private final ImmutableMap<Integer, ResourceSizes> densitySizes;
+  // Resource ids referencing files, sorted, and for each of them the range of its bundle entries.
+  private final int[] fileResourceIds;
+  private final int[] fileResourceStarts;
+  private final int[] fileEntries;
+
+  private ResourceTableAnalysis(Builder builder) {
+    this.typeSizes = ImmutableMap.copyOf(builder.typeSizes);
+    this.qualifierSizes = ImmutableMap.copyOf(builder.qualifierSizes);
+    this.packageSizes = ImmutableMap.copyOf(builder.packageSizes);
+    this.localeSizes = ImmutableMap.copyOf(builder.localeSizes);
+    this.densitySizes = ImmutableMap.copyOf(builder.densitySizes);
+
+    long[] fileReferences = Arrays.copyOf(builder.fileReferences, builder.fileReferenceCount);
+    // Sorting on the resource id in the high bits groups the files of each resource.
+    Arrays.sort(fileReferences);
+    int resourceCount = 0;
+    for (int index = 0; index < fileReferences.length; index++) {
+      if (startsResource(fileReferences, index)) {
+        resourceCount++;
+      }
+    }
+    this.fileResourceIds = new int[resourceCount];
+    this.fileResourceStarts = new int[resourceCount + 1];
+    this.fileEntries = new int[fileReferences.length];
+    int resource = -1;
+    for (int index = 0; index < fileReferences.length; index++) {
+      if (startsResource(fileReferences, index)) {
+        resource++;
+        fileResourceIds[resource] = resourceId(fileReferences[index]);
+        fileResourceStarts[resource] = index;
+      }
+      fileEntries[index] = (int) fileReferences[index];
+    }
+    fileResourceStarts[resourceCount] = fileReferences.length;
+  }
+
+  /**
+   * Reads the resource table of the given module from the given stream. File references are
+   * resolved against the entries of the module in the given entry table, and the values are
+   * scaled by the compression ratio of the resource table in the bundle.
+   */
+  public static ResourceTableAnalysis analyze(
+      InputStream resourceTable,
+      String moduleName,
+      BundleEntryTable entryTable,
+      double compressionRatio)
+      throws IOException {
+    Builder builder = new Builder(moduleName, entryTable, compressionRatio);
+    CodedInputStream input = CodedInputStream.newInstance(resourceTable);
+    input.setSizeLimit(Integer.MAX_VALUE);
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      if (tag == RESOURCE_TABLE_PACKAGE_TAG) {
+        int oldLimit = input.pushLimit(input.readRawVarint32());
+        readPackage(input, builder);
+        input.popLimit(oldLimit);
+      } else {
+        input.skipField(tag);
+      }
+    }
+    return new ResourceTableAnalysis(builder);
+  }
+
+  private static void readPackage(CodedInputStream input, Builder builder) throws IOException {
+    int packageId = 0;
+    String packageName = "";
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      if (tag == PACKAGE_ID_TAG) {
+        packageId = input.readMessage(PackageId.parser(), ExtensionRegistryLite.getEmptyRegistry())
+            .getId();
+      } else if (tag == PACKAGE_NAME_TAG) {
+        packageName = input.readStringRequireUtf8();
+      } else if (tag == PACKAGE_TYPE_TAG) {
+        // Fields are written in the order of their numbers, so the id and name come first.
+        int oldLimit = input.pushLimit(input.readRawVarint32());
+        readType(input, builder, packageId, packageName);
+        input.popLimit(oldLimit);
+      } else {
+        input.skipField(tag);
+      }
+    }
+  }
+
+  private static void readType(
+      CodedInputStream input, Builder builder, int packageId, String packageName)
+      throws IOException {
+    int typeId = 0;
+    String typeName = "";
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      if (tag == TYPE_ID_TAG) {
+        typeId =
+            input.readMessage(TypeId.parser(), ExtensionRegistryLite.getEmptyRegistry()).getId();
+      } else if (tag == TYPE_NAME_TAG) {
+        typeName = input.readStringRequireUtf8();
+      } else if (tag == TYPE_ENTRY_TAG) {
+        Entry entry = input.readMessage(Entry.parser(), ExtensionRegistryLite.getEmptyRegistry());
+        int resourceId = (packageId << 24) | (typeId << 16) | entry.getEntryId().getId();
+        builder.addEntry(resourceId, entry, packageName, typeName);
+      } else {
+        input.skipField(tag);
+      }
+    }
+  }
+
+  /** The sizes of the resources by type, such as drawable or string. */
+  public ImmutableMap<String, ResourceSizes> getTypeSizes() {
+    return typeSizes;
+  }
+
+  /**
+   * The sizes of the resources by qualifier dimension, such as {@link #LOCALE} or {@link
+   * #DENSITY}. A resource value qualified for several dimensions counts for each of them.
+   */
+  public ImmutableMap<String, ResourceSizes> getQualifierSizes() {
+    return qualifierSizes;
+  }
+
+  /** The sizes of the resources by package name. */
+  public ImmutableMap<String, ResourceSizes> getPackageSizes() {
+    return packageSizes;
+  }
+
+  /** The sizes of the resources qualified for a locale, by locale such as fr or en-US. */
+  public ImmutableMap<String, ResourceSizes> getLocaleSizes() {
+    return localeSizes;
+  }
+
+  /** The sizes of the resources qualified for a screen density, by density in dpi. */
+  public ImmutableMap<Integer, ResourceSizes> getDensitySizes() {
+    return densitySizes;
+  }
+
+  /** The indexes in the entry table of the files referenced by the values of the resource. */
+  public ImmutableList<Integer> getFileEntries(int resourceId) {
+    int resource = Arrays.binarySearch(fileResourceIds, resourceId);
+    if (resource < 0) {
+      return ImmutableList.of();
+    }
+    ImmutableList.Builder<Integer> entries = ImmutableList.builder();
+    for (int index = fileResourceStarts[resource];
+        index < fileResourceStarts[resource + 1];
+        index++) {
+      entries.add(fileEntries[index]);
+    }
+    return entries.build();
+  }
+
+  /** Returns the qualifier dimensions set in the given configuration. */
+  static ImmutableList<String> getQualifiers(Configuration config) {
+    if (config.equals(Configuration.getDefaultInstance())) {
+      return ImmutableList.of(DEFAULT_CONFIGURATION);
+    }
+    ImmutableList.Builder<String> qualifiers = ImmutableList.builder();
+    Configuration.Builder otherQualifiers = config.toBuilder();
+    if (!config.getLocale().isEmpty()) {
+      qualifiers.add(LOCALE);
+      otherQualifiers.clearLocale();
+    }
+    if (config.getDensity() != 0) {
+      qualifiers.add(DENSITY);
+      otherQualifiers.clearDensity();
+    }
+    if (config.getUiModeNightValue() != 0) {
+      qualifiers.add(NIGHT);
+      otherQualifiers.clearUiModeNight();
+    }
+    if (config.getLayoutDirectionValue() != 0) {
+      qualifiers.add(LAYOUT_DIRECTION);
+      otherQualifiers.clearLayoutDirection();
+    }
+    if (config.getOrientationValue() != 0) {
+      qualifiers.add(ORIENTATION);
+      otherQualifiers.clearOrientation();
+    }
+    if (config.getSmallestScreenWidthDp() != 0
+        || config.getScreenWidthDp() != 0
+        || config.getScreenHeightDp() != 0) {
+      qualifiers.add(SCREEN_SIZE);
+      otherQualifiers.clearSmallestScreenWidthDp().clearScreenWidthDp().clearScreenHeightDp();
+    }
+    if (config.getSdkVersion() != 0) {
+      qualifiers.add(SDK_VERSION);
+      otherQualifiers.clearSdkVersion();
+    }
+    if (!otherQualifiers.build().equals(Configuration.getDefaultInstance())) {
+      qualifiers.add(OTHER_QUALIFIERS);
+    }
+    return qualifiers.build();
+  }
+
+  private static int makeMessageTag(int fieldNumber) {
+    return (fieldNumber << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+  }
+
+  private static int resourceId(long fileReference) {
+    return (int) (fileReference >> 32);
+  }
+
+  private static boolean startsResource(long[] fileReferences, int index) {
+    return index == 0
+        || resourceId(fileReferences[index]) != resourceId(fileReferences[index - 1]);
+  }
+
+  /** Accumulates the sizes of the entries of a resource table as they are read. */
+  private static final class Builder {
+
+    private final String moduleName;
+    private final BundleEntryTable entryTable;
+    private final double compressionRatio;
+    private final Map<String, ResourceSizes> typeSizes = new HashMap<>();
+    private final Map<String, ResourceSizes> qualifierSizes = new HashMap<>();
+    private final Map<String, ResourceSizes> packageSizes = new HashMap<>();
+    private final Map<String, ResourceSizes> localeSizes = new HashMap<>();
+    private final Map<Integer, ResourceSizes> densitySizes = new HashMap<>();
+    // Resource ids in the high bits and entry table indexes in the low bits.
+    private long[] fileReferences = new long[256];
+    private int fileReferenceCount = 0;
+
+    Builder(String moduleName, BundleEntryTable entryTable, double compressionRatio) {
+      this.moduleName = moduleName;
+      this.entryTable = entryTable;
+      this.compressionRatio = compressionRatio;
+    }
+
+    void addEntry(int resourceId, Entry entry, String packageName, String typeName) {
+      for (ConfigValue configValue : entry.getConfigValueList()) {
+        long fileSize = 0;
+        Item item = configValue.getValue().getItem();
+        if (item.hasFile()) {
+          OptionalInt fileEntry = entryTable.findEntry(moduleName + "/" + item.getFile().getPath());
+          if (fileEntry.isPresent()) {
+            fileSize = entryTable.getCompressedSize(fileEntry.getAsInt());
+            addFileReference(resourceId, fileEntry.getAsInt());
+          }
+        }
+        ResourceSizes sizes =
+            ResourceSizes.create(
+                Math.round(configValue.getSerializedSize() * compressionRatio), fileSize);
+        Configuration config = configValue.getConfig();
+        typeSizes.merge(typeName, sizes, ResourceSizes::plus);
+        packageSizes.merge(packageName, sizes, ResourceSizes::plus);
+        for (String qualifier : getQualifiers(config)) {
+          qualifierSizes.merge(qualifier, sizes, ResourceSizes::plus);
+        }
+        if (!config.getLocale().isEmpty()) {
+          localeSizes.merge(config.getLocale(), sizes, ResourceSizes::plus);
+        }
+        if (config.getDensity() != 0) {
+          densitySizes.merge(config.getDensity(), sizes, ResourceSizes::plus);
+        }
+      }
+    }
+
+    private void addFileReference(int resourceId, int fileEntry) {
+      if (fileReferenceCount == fileReferences.length) {
+        fileReferences = Arrays.copyOf(fileReferences, 2 * fileReferenceCount);
+      }
+      fileReferences[fileReferenceCount++] = ((long) resourceId << 32) | fileEntry;
+    }
+  }
+}
@@ -20,9 +20,18 @@ import com.android.tools.sizereduction.analyzer.model.Context;
 import com.android.tools.sizereduction.analyzer.model.FileData;
 import com.google.common.collect.ImmutableList;
 
-/** Interface for generating suggestions for APK ZIP entries. */
+/**
+ * Interface for generating suggestions for APK ZIP entries.
+ *
+ * <p>Entries are processed concurrently, so implementations must be threadsafe.
+ */
 public interface ApkEntrySuggester {
 
   /** Generates suggestions for an APK ZIP file entry. */
   ImmutableList<Suggestion> processApkZipEntry(Context context, FileData entry);
+
+  /** Generates suggestions for an APK ZIP file entry, pushing them into the given sink. */
+  default void processApkZipEntry(Context context, FileData entry, SuggestionSink sink) {
+    sink.acceptAll(processApkZipEntry(context, entry));
+  }
 }
@@ -25,4 +25,9 @@ public interface ApkSuggester {
 
   /** Generates suggestions for an APK file given as a ZIP file. */
   ImmutableList<Suggestion> processApk(Context context, ZipFile apk);
+
+  /** Generates suggestions for an APK file, pushing them into the given sink. */
+  default void processApk(Context context, ZipFile apk, SuggestionSink sink) {
+    sink.acceptAll(processApk(context, apk));
+  }
 }
@@ -20,9 +20,18 @@ import com.android.tools.sizereduction.analyzer.model.BundleContext;
 import com.android.tools.sizereduction.analyzer.model.FileData;
 import com.google.common.collect.ImmutableList;
 
-/** Interface for generating suggestions for App Bundle ZIP entries. */
+/**
+ * Interface for generating suggestions for App Bundle ZIP entries.
+ *
+ * <p>Entries are processed concurrently, so implementations must be threadsafe.
+ */
 public interface BundleEntrySuggester {
 
   /** Generates suggestions for a bundle ZIP file entry. */
   ImmutableList<Suggestion> processBundleZipEntry(BundleContext context, FileData entry);
+
+  /** Generates suggestions for a bundle ZIP file entry, pushing them into the given sink. */
+  default void processBundleZipEntry(BundleContext context, FileData entry, SuggestionSink sink) {
+    sink.acceptAll(processBundleZipEntry(context, entry));
+  }
 }
@@ -16,15 +16,21 @@
 
 package com.android.tools.sizereduction.analyzer.suggesters;
 
-import com.android.tools.build.bundletool.model.AppBundle;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
 import com.google.common.collect.ImmutableList;
-import java.util.zip.ZipFile;
 
 /** Interface for generating suggestions for App Bundle artifacts. */
 public interface BundleSuggester {
 
-  /** Generates suggestions for an App Bundle file given as a ZIP file. */
-  ImmutableList<Suggestion> processBundle(
-      BundleContext context, AppBundle bundle, ZipFile bundleZip);
+  /**
+   * Generates suggestions for the App Bundle of the given session. The session gives access to the
+   * bundle ZIP file and to the models derived from it, which are shared by all suggesters.
+   */
+  ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session);
+
+  /** Generates suggestions for the App Bundle of the session, pushing them into the given sink. */
+  default void processBundle(BundleContext context, AnalysisSession session, SuggestionSink sink) {
+    sink.acceptAll(processBundle(context, session));
+  }
 }
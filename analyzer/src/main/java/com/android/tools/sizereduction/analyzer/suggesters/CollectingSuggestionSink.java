@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Sink that keeps every suggestion it receives. This adapts the streaming APIs to callers that
+ * need all of the suggestions as a list.
+ */
+public final class CollectingSuggestionSink implements SuggestionSink {
+
+  private final ImmutableList.Builder<Suggestion> suggestions = ImmutableList.builder();
+
+  @Override
+  public void accept(Suggestion suggestion) {
+    suggestions.add(suggestion);
+  }
+
+  /** Returns the suggestions received so far, in the order they were received. */
+  public ImmutableList<Suggestion> getSuggestions() {
+    return suggestions.build();
+  }
+}
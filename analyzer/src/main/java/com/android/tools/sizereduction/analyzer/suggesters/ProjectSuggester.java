@@ -25,4 +25,9 @@ public interface ProjectSuggester {
 
   /** Generates suggestions for an Android Studio project directory. */
   ImmutableList<Suggestion> processProject(GradleContext context, File projectDir);
+
+  /** Generates suggestions for an Android Studio project directory, pushing them into the sink. */
+  default void processProject(GradleContext context, File projectDir, SuggestionSink sink) {
+    sink.acceptAll(processProject(context, projectDir));
+  }
 }
@@ -20,9 +20,30 @@ import com.android.tools.sizereduction.analyzer.model.FileData;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.google.common.collect.ImmutableList;
 
-/** Interface for generating suggestions for project tree entries. */
+/**
+ * Interface for generating suggestions for project tree entries.
+ *
+ * <p>Callers must call {@link #finishProjectTree} once all entries of a project tree were
+ * processed, as suggesters looking at several entries together only suggest from there. Such
+ * suggesters keep the entries seen so far, so an instance only processes one project tree at a
+ * time.
+ */
 public interface ProjectTreeSuggester {
 
-  /** Generates suggestions for an Android Studio project file. */
+  /**
+   * Generates suggestions for an Android Studio project file. The suggestions spanning several
+   * files are not included, they are only pushed by {@link #finishProjectTree}.
+   */
   ImmutableList<Suggestion> processProjectEntry(GradleContext context, FileData fileData);
+
+  /** Generates suggestions for an Android Studio project file, pushing them into the given sink. */
+  default void processProjectEntry(GradleContext context, FileData fileData, SuggestionSink sink) {
+    sink.acceptAll(processProjectEntry(context, fileData));
+  }
+
+  /**
+   * Called once all entries of the project tree were processed, for suggesters that need to look at
+   * several entries together before suggesting anything.
+   */
+  default void finishProjectTree(SuggestionSink sink) {}
 }
@@ -16,6 +16,7 @@
 
 package com.android.tools.sizereduction.analyzer.suggesters;
 
+import com.android.tools.sizereduction.analyzer.AnalysisRecords.SuggestionRecord;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
 import com.google.auto.value.AutoValue;
 import javax.annotation.Nullable;
@@ -31,6 +32,8 @@ public abstract class Suggestion {
     BUNDLE_CONFIG,
     BUNDLE_BASE,
     LIBRARIES,
+    DUPLICATE_FILES,
+    CODE_SIZE,
   }
 
   /** The specific issue type for a given suggestion. */
@@ -52,6 +55,12 @@ public abstract class Suggestion {
     LIBRARY_SHOULD_BE_EXTRACTED_TO_FEATURE_SPLITS,
     NONOPTIMAL_LIBRARY,
     EMBEDDED_WEAR_APK,
+    DUPLICATE_FILES,
+    LARGE_CODE_PACKAGE,
+    DUPLICATE_CLASSES,
+    DEBUG_METADATA,
+    DEX_REFERENCE_LIMIT,
+    MULTIDEX_OVERHEAD,
   }
 
   public static Suggestion create(
@@ -65,6 +74,20 @@ public abstract class Suggestion {
         issueType, category, payload, message, estimatedBytesSaved, autoFix);
   }
 
+  /**
+   * Recreates a suggestion from its serialized form. Auto fixes are not serialized, so the returned
+   * suggestion never has one.
+   */
+  public static Suggestion fromRecord(SuggestionRecord record) {
+    return create(
+        IssueType.valueOf(record.getIssueType()),
+        Category.valueOf(record.getCategory()),
+        record.getPayload(),
+        record.getMessage(),
+        record.getHasEstimatedBytesSaved() ? record.getEstimatedBytesSaved() : null,
+        /* autoFix= */ null);
+  }
+
   public abstract IssueType getIssueType();
 
   public abstract Category getCategory();
@@ -79,6 +102,21 @@ public abstract class Suggestion {
   @Nullable
   public abstract AutoFix getAutoFix();
 
+  /** Returns the serialized form of this suggestion, without its auto fix. */
+  public SuggestionRecord toRecord() {
+    SuggestionRecord.Builder record =
+        SuggestionRecord.newBuilder()
+            .setIssueType(getIssueType().name())
+            .setCategory(getCategory().name())
+            .setPayload(payload())
+            .setMessage(getMessage());
+    Long bytesSaved = getEstimatedBytesSaved();
+    if (bytesSaved != null) {
+      record.setHasEstimatedBytesSaved(true).setEstimatedBytesSaved(bytesSaved);
+    }
+    return record.build();
+  }
+
   @Override
   public final String toString() {
     Long bytesSaved = getEstimatedBytesSaved();
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters;
+
+/**
+ * Receives suggestions one at a time as soon as they are produced, so that consumers can process
+ * them incrementally instead of waiting for the whole artifact to be analyzed.
+ *
+ * <p>Suggestions are pushed on the thread doing the analysis. A sink that is slow to consume a
+ * suggestion therefore slows down the producer rather than letting suggestions pile up in memory.
+ */
+public interface SuggestionSink {
+
+  /** Consumes a single suggestion. */
+  void accept(Suggestion suggestion);
+
+  /** Consumes all of the given suggestions, in order. */
+  default void acceptAll(Iterable<Suggestion> suggestions) {
+    for (Suggestion suggestion : suggestions) {
+      accept(suggestion);
+    }
+  }
+
+  /** Returns a sink that pushes every suggestion to both of the given sinks, in order. */
+  static SuggestionSink tee(SuggestionSink first, SuggestionSink second) {
+    return suggestion -> {
+      first.accept(suggestion);
+      second.accept(suggestion);
+    };
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DuplicateFiles;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
+import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryFileData;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
+import com.android.tools.sizereduction.analyzer.model.FileData;
+import com.android.tools.sizereduction.analyzer.model.GradleContext;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.CollectingSuggestionSink;
+import com.android.tools.sizereduction.analyzer.suggesters.ProjectTreeSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Suggester finding files with identical content, which are packaged several times.
+ *
+ * <p>Bundle entries are first grouped by the CRC-32 and uncompressed size recorded in the central
+ * directory, so no entry is inflated unless it has a potential duplicate; only the candidates are
+ * then confirmed with a content hash. Bundles read from a stream are skipped, since the content of
+ * their entries is no longer available once the whole bundle has been seen. Project files are
+ * grouped by size before being hashed. This class keeps the project files seen so far, so it is
+ * not threadsafe.
+ */
+public final class DuplicateFilesSuggester implements BundleSuggester, ProjectTreeSuggester {
+
+  // Duplicates of files under 1 KB are not worth reporting.
+  private static final long SMALL_FILE_SIZE_LIMIT = 1024;
+  private static final ImmutableList<Path> PROJECT_PACKAGED_DIRECTORIES =
+      ImmutableList.of(Paths.get("src/main/res"), Paths.get("src/main/assets"));
+
+  private final Map<Long, List<FileData>> projectFilesBySize = new HashMap<>();
+
+  @Override
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
+    if (!session.hasEntryContent()) {
+      return ImmutableList.of();
+    }
+    BundleEntryTable entryTable = session.getEntryTable();
+    // The candidate groups are independent, so they are hashed concurrently.
+    return findBundleCandidates(entryTable).parallelStream()
+        .map(candidates -> confirmBundleDuplicates(candidates, session))
+        .flatMap(List::stream)
+        .collect(toImmutableList());
+  }
+
+  private static ImmutableList<Suggestion> confirmBundleDuplicates(
+      int[] candidates, AnalysisSession session) {
+    BundleEntryTable entryTable = session.getEntryTable();
+    List<Candidate> group = new ArrayList<>();
+    for (int index : candidates) {
+      BundleEntryFileData fileData = new BundleEntryFileData(session.getEntryReader(), entryTable);
+      fileData.moveTo(index);
+      group.add(
+          new Candidate(entryTable.getName(index), entryTable.getCompressedSize(index), fileData));
+    }
+    return confirmDuplicates(group, entryTable.getSize(candidates[0]));
+  }
+
+  /** Always empty, as duplicates are only reported by {@link #finishProjectTree}. */
+  @Override
+  public ImmutableList<Suggestion> processProjectEntry(GradleContext context, FileData fileData) {
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+    processProjectEntry(context, fileData, sink);
+    return sink.getSuggestions();
+  }
+
+  @Override
+  public void processProjectEntry(GradleContext context, FileData fileData, SuggestionSink sink) {
+    // Only suggest once the whole project tree has been seen.
+    Path pathWithinModule = fileData.getPathWithinModule();
+    if (fileData.getSize() >= SMALL_FILE_SIZE_LIMIT
+        && PROJECT_PACKAGED_DIRECTORIES.stream().anyMatch(pathWithinModule::startsWith)) {
+      projectFilesBySize
+          .computeIfAbsent(fileData.getSize(), size -> new ArrayList<>())
+          .add(fileData);
+    }
+  }
+
+  @Override
+  public void finishProjectTree(SuggestionSink sink) {
+    for (Map.Entry<Long, List<FileData>> sameSizeFiles : projectFilesBySize.entrySet()) {
+      if (sameSizeFiles.getValue().size() < 2) {
+        continue;
+      }
+      List<Candidate> group = new ArrayList<>();
+      for (FileData fileData : sameSizeFiles.getValue()) {
+        group.add(
+            new Candidate(fileData.getPathWithinRoot().toString(), fileData.getSize(), fileData));
+      }
+      sink.acceptAll(confirmDuplicates(group, sameSizeFiles.getKey()));
+    }
+    projectFilesBySize.clear();
+  }
+
+  /**
+   * Groups the entries of the bundle that belong to a module by CRC-32 and uncompressed size,
+   * returning the indices of the entries of every group with more than one entry.
+   */
+  private static ImmutableList<int[]> findBundleCandidates(BundleEntryTable entryTable) {
+    // Sort the entries by CRC with a single primitive array holding the CRC in the high bits and
+    // the entry index in the low bits.
+    long[] crcAndIndex = new long[entryTable.getEntryCount()];
+    int count = 0;
+    for (int index = 0; index < entryTable.getEntryCount(); index++) {
+      if (!entryTable.isDirectory(index)
+          && entryTable.getModuleId(index) != BundleEntryTable.NO_MODULE
+          && entryTable.getSize(index) >= SMALL_FILE_SIZE_LIMIT) {
+        crcAndIndex[count++] = ((long) entryTable.getCrc(index) << 32) | index;
+      }
+    }
+    Arrays.sort(crcAndIndex, 0, count);
+
+    ImmutableList.Builder<int[]> candidates = ImmutableList.builder();
+    int runStart = 0;
+    for (int i = 1; i <= count; i++) {
+      if (i < count && crcAndIndex[i] >>> 32 == crcAndIndex[runStart] >>> 32) {
+        continue;
+      }
+      if (i - runStart > 1) {
+        // Entries with the same CRC are rare, so they are split by size the simple way.
+        int[] sameCrc = new int[i - runStart];
+        for (int j = runStart; j < i; j++) {
+          sameCrc[j - runStart] = (int) crcAndIndex[j];
+        }
+        ImmutableListMultimap<Long, Integer> sameCrcBySize =
+            Multimaps.index(Arrays.stream(sameCrc).boxed().iterator(), entryTable::getSize);
+        for (Collection<Integer> sameSize : sameCrcBySize.asMap().values()) {
+          if (sameSize.size() > 1) {
+            candidates.add(sameSize.stream().mapToInt(Integer::intValue).toArray());
+          }
+        }
+      }
+      runStart = i;
+    }
+    return candidates.build();
+  }
+
+  /** Hashes the content of the candidates, and suggests removing the files that are identical. */
+  private static ImmutableList<Suggestion> confirmDuplicates(
+      List<Candidate> candidates, long size) {
+    ImmutableListMultimap<HashCode, Candidate> candidatesByContent =
+        Multimaps.index(candidates, candidate -> hashContent(candidate.fileData));
+    return candidatesByContent.asMap().values().stream()
+        .filter(duplicates -> duplicates.size() > 1)
+        .map(duplicates -> createSuggestion(ImmutableList.copyOf(duplicates), size))
+        .collect(toImmutableList());
+  }
+
+  private static HashCode hashContent(FileData fileData) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    try (InputStream inputStream = fileData.getInputStream();
+        OutputStream hashingStream = Funnels.asOutputStream(hasher)) {
+      ByteStreams.copy(inputStream, hashingStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return hasher.hash();
+  }
+
+  private static Suggestion createSuggestion(ImmutableList<Candidate> duplicates, long size) {
+    ImmutableList<String> paths =
+        duplicates.stream().map(candidate -> candidate.path).sorted().collect(toImmutableList());
+    // Keeping the largest copy is the most conservative estimate of the savings.
+    long totalSize = duplicates.stream().mapToLong(candidate -> candidate.storedSize).sum();
+    long keptSize =
+        duplicates.stream()
+            .max(Comparator.comparingLong(candidate -> candidate.storedSize))
+            .get()
+            .storedSize;
+    return Suggestion.create(
+        Suggestion.IssueType.DUPLICATE_FILES,
+        Suggestion.Category.DUPLICATE_FILES,
+        Payload.newBuilder()
+            .setDuplicateFiles(DuplicateFiles.newBuilder().addAllPaths(paths).setSize(size))
+            .build(),
+        getSuggestionMessage(paths),
+        totalSize - keptSize,
+        /* autoFix= */ null);
+  }
+
+  @VisibleForTesting
+  static String getSuggestionMessage(ImmutableList<String> paths) {
+    return "Files "
+        + String.join(", ", paths)
+        + " have identical content. Consider keeping a single copy, for example in a module that"
+        + " all users of the file depend on.";
+  }
+
+  /** A file that may have duplicates, with the size it takes in the artifact. */
+  private static final class Candidate {
+    private final String path;
+    private final long storedSize;
+    private final FileData fileData;
+
+    private Candidate(String path, long storedSize, FileData fileData) {
+      this.path = path;
+      this.storedSize = storedSize;
+      this.fileData = fileData;
+    }
+  }
+}
@@ -16,8 +16,8 @@
 
 package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
 
-import com.android.tools.build.bundletool.model.AppBundle;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
 import com.android.tools.sizereduction.analyzer.model.Context;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
@@ -27,7 +27,6 @@ import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import java.io.File;
-import java.util.zip.ZipFile;
 
 /** Suggests move out embedded wear APK. */
 public final class EmbeddedWearApkSuggester implements BundleSuggester, ProjectSuggester {
@@ -41,8 +40,7 @@ public final class EmbeddedWearApkSuggester implements BundleSuggester, ProjectS
   public EmbeddedWearApkSuggester() {}
 
   @Override
-  public ImmutableList<Suggestion> processBundle(
-      BundleContext context, AppBundle bundle, ZipFile bundleZip) {
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
     return suggestRemoveEmbeddedWearApk(context);
   }
 
@@ -23,10 +23,12 @@ import com.android.tools.sizereduction.analyzer.model.BundleContext;
 import com.android.tools.sizereduction.analyzer.model.Context;
 import com.android.tools.sizereduction.analyzer.model.FileData;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
-import com.android.tools.sizereduction.analyzer.model.ZipFileData;
+import com.android.tools.sizereduction.analyzer.suggesters.ApkEntrySuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.CollectingSuggestionSink;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectTreeSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import java.nio.file.Path;
@@ -36,12 +38,14 @@ import java.util.regex.Pattern;
  * Suggests media files that can be streamed or large files that can be placed in an on-demand
  * dynamic-feature.
  */
-public class LargeFilesSuggester implements BundleEntrySuggester, ProjectTreeSuggester {
+public class LargeFilesSuggester
+    implements BundleEntrySuggester, ApkEntrySuggester, ProjectTreeSuggester {
 
   private static final ImmutableSet<String> MEDIA_FILE_TYPES =
       ImmutableSet.of(
           "mp4", "m4p", "m4v", "mpg", "mp2", "mpeg", "mpe", "mpv", "m2v", "vob", "rm", "mp3", "3gp",
           "aa", "aac", "wav", "flac", "m4a", "mpc", "mmf", "wma", "wv");
+  // Paths within the module of a bundle, which are also the paths within an APK.
   private static final ImmutableList<Pattern> BUNDLE_ASSET_FILES =
       ImmutableList.of(Pattern.compile("res/.*"), Pattern.compile("assets/.*"));
   private static final ImmutableList<Pattern> PROJECT_ASSET_FILES =
@@ -56,31 +60,63 @@ public class LargeFilesSuggester implements BundleEntrySuggester, ProjectTreeSug
 
   @Override
   public ImmutableList<Suggestion> processBundleZipEntry(BundleContext context, FileData fileData) {
-    return processFileEntry(context, fileData, isBundleAssetFile(fileData));
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+    processBundleZipEntry(context, fileData, sink);
+    return sink.getSuggestions();
+  }
+
+  @Override
+  public void processBundleZipEntry(
+      BundleContext context, FileData fileData, SuggestionSink sink) {
+    if (skipFileEntry(context, fileData)) {
+      return;
+    }
+    processFileEntry(fileData, isBundleAssetFile(fileData), sink);
+  }
+
+  @Override
+  public ImmutableList<Suggestion> processApkZipEntry(Context context, FileData fileData) {
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+    processApkZipEntry(context, fileData, sink);
+    return sink.getSuggestions();
+  }
+
+  @Override
+  public void processApkZipEntry(Context context, FileData fileData, SuggestionSink sink) {
+    if (skipFileEntry(context, fileData)) {
+      return;
+    }
+    processFileEntry(fileData, isBundleAssetFile(fileData), sink);
   }
 
   @Override
   public ImmutableList<Suggestion> processProjectEntry(GradleContext context, FileData fileData) {
-    return processFileEntry(context, fileData, isProjectAssetFile(fileData));
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+    processProjectEntry(context, fileData, sink);
+    return sink.getSuggestions();
   }
 
-  private ImmutableList<Suggestion> processFileEntry(
-      Context context, FileData fileData, boolean isAssetFile) {
-    if (context.getOnDemand() || fileData.getSize() < SMALL_FILE_SIZE_LIMIT) {
-      return ImmutableList.of();
+  @Override
+  public void processProjectEntry(GradleContext context, FileData fileData, SuggestionSink sink) {
+    if (skipFileEntry(context, fileData)) {
+      return;
     }
+    processFileEntry(fileData, isProjectAssetFile(fileData), sink);
+  }
+
+  private static boolean skipFileEntry(Context context, FileData fileData) {
+    return context.getOnDemand() || fileData.getSize() < SMALL_FILE_SIZE_LIMIT;
+  }
+
+  private static void processFileEntry(FileData fileData, boolean isAssetFile, SuggestionSink sink) {
 
     // Here, we make the assumption that media formats don't get much smaller when the file is
     // zipped, so we use the uncompressed file size.
     final boolean isMediaFile = MEDIA_FILE_TYPES.contains(getFileExtension(fileData));
-    final long size =
-        (isMediaFile && fileData instanceof ZipFileData)
-            ? ((ZipFileData) fileData).getCompressedSize()
-            : fileData.getSize();
+    final long size = isMediaFile ? fileData.getCompressedSize() : fileData.getSize();
 
-    ImmutableList.Builder<Suggestion> suggestions = ImmutableList.<Suggestion>builder();
     if (isAssetFile || isMediaFile) {
-      suggestions.add(
+      sink.accept(
           Suggestion.create(
               Suggestion.IssueType.LARGE_FILES_DYNAMIC_FEATURE,
               Suggestion.Category.LARGE_FILES,
@@ -92,7 +128,7 @@ public class LargeFilesSuggester implements BundleEntrySuggester, ProjectTreeSug
               /* autoFix= */ null));
     }
     if (isMediaFile) {
-      suggestions.add(
+      sink.accept(
           Suggestion.create(
               Suggestion.IssueType.MEDIA_STREAMING,
               Suggestion.Category.LARGE_FILES,
@@ -103,7 +139,6 @@ public class LargeFilesSuggester implements BundleEntrySuggester, ProjectTreeSug
               size,
               /* autoFix= */ null));
     }
-    return suggestions.build();
   }
 
   private static boolean isBundleAssetFile(FileData fileData) {
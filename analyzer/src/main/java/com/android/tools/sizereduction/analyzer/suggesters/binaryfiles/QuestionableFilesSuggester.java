@@ -18,12 +18,15 @@ package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
 
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.Context;
 import com.android.tools.sizereduction.analyzer.model.FileData;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
-import com.android.tools.sizereduction.analyzer.model.ZipFileData;
+import com.android.tools.sizereduction.analyzer.suggesters.ApkEntrySuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.CollectingSuggestionSink;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectTreeSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.SuggestionSink;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import java.nio.file.Path;
@@ -34,7 +37,8 @@ import java.util.regex.Pattern;
  * Suggests certain files that may be able to be removed, and are unncessary for your
  * application to function.
  */
-public class QuestionableFilesSuggester implements BundleEntrySuggester, ProjectTreeSuggester {
+public class QuestionableFilesSuggester
+    implements BundleEntrySuggester, ApkEntrySuggester, ProjectTreeSuggester {
 
   public QuestionableFilesSuggester() {}
 
@@ -57,6 +61,16 @@ public class QuestionableFilesSuggester implements BundleEntrySuggester, Project
           Pattern.compile("META-INF/ANDROIDD.SF*"),
           Pattern.compile("META-INF/ANDROIDD.RSA*"),
           Pattern.compile("META-INF/MANIFEST.MF"));
+  private static final ImmutableList<Pattern> STANDARD_APK_FILES =
+      ImmutableList.of(
+          Pattern.compile("AndroidManifest.xml"),
+          Pattern.compile("resources.arsc"),
+          Pattern.compile("classes[0-9]*\\.dex"),
+          Pattern.compile("res/.*"),
+          Pattern.compile("assets/.*"),
+          Pattern.compile("lib/.*\\.so"),
+          Pattern.compile("META-INF/.*\\.(SF|RSA|DSA|EC)"),
+          Pattern.compile("META-INF/MANIFEST.MF"));
   private static final ImmutableList<Pattern> STANDARD_PROJECT_FILES =
       ImmutableList.of(
           Pattern.compile("^(?!src/main/).*$"), // match anything that does not start with src/main/
@@ -72,33 +86,59 @@ public class QuestionableFilesSuggester implements BundleEntrySuggester, Project
 
   @Override
   public ImmutableList<Suggestion> processBundleZipEntry(BundleContext context, FileData fileData) {
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+    processBundleZipEntry(context, fileData, sink);
+    return sink.getSuggestions();
+  }
+
+  @Override
+  public void processBundleZipEntry(
+      BundleContext context, FileData fileData, SuggestionSink sink) {
     if (fileData.getSize() < SMALL_FILE_SIZE_LIMIT || isStandardBundleFile(fileData)) {
-      return ImmutableList.of();
+      return;
     }
-    return processFileEntry(fileData);
+    sink.accept(createSuggestion(fileData));
+  }
+
+  @Override
+  public ImmutableList<Suggestion> processApkZipEntry(Context context, FileData fileData) {
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+    processApkZipEntry(context, fileData, sink);
+    return sink.getSuggestions();
+  }
+
+  @Override
+  public void processApkZipEntry(Context context, FileData fileData, SuggestionSink sink) {
+    if (fileData.getSize() < SMALL_FILE_SIZE_LIMIT || isStandardApkFile(fileData)) {
+      return;
+    }
+    sink.accept(createSuggestion(fileData));
   }
 
   @Override
   public ImmutableList<Suggestion> processProjectEntry(GradleContext context, FileData fileData) {
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+    processProjectEntry(context, fileData, sink);
+    return sink.getSuggestions();
+  }
+
+  @Override
+  public void processProjectEntry(GradleContext context, FileData fileData, SuggestionSink sink) {
     if (fileData.getSize() < SMALL_FILE_SIZE_LIMIT || isStandardProjectFile(fileData)) {
-      return ImmutableList.of();
+      return;
     }
-    return processFileEntry(fileData);
+    sink.accept(createSuggestion(fileData));
   }
 
-  private ImmutableList<Suggestion> processFileEntry(FileData fileData) {
-    long savingsEstimate =
-        fileData instanceof ZipFileData
-            ? ((ZipFileData) fileData).getCompressedSize()
-            : fileData.getSize();
-    return ImmutableList.of(
-        Suggestion.create(
-            Suggestion.IssueType.QUESTIONABLE_FILE,
-            Suggestion.Category.LARGE_FILES,
-            Payload.getDefaultInstance(),
-            getSuggestionMessage(fileData.getPathWithinRoot()),
-            savingsEstimate,
-            /* autoFix= */ null));
+  private Suggestion createSuggestion(FileData fileData) {
+    long savingsEstimate = fileData.getCompressedSize();
+    return Suggestion.create(
+        Suggestion.IssueType.QUESTIONABLE_FILE,
+        Suggestion.Category.LARGE_FILES,
+        Payload.getDefaultInstance(),
+        getSuggestionMessage(fileData.getPathWithinRoot()),
+        savingsEstimate,
+        /* autoFix= */ null);
   }
 
   @VisibleForTesting
@@ -119,6 +159,13 @@ public class QuestionableFilesSuggester implements BundleEntrySuggester, Project
         .anyMatch(matcher -> matcher.matches());
   }
 
+  private static boolean isStandardApkFile(FileData fileData) {
+    Path path = fileData.getPathWithinRoot();
+    return STANDARD_APK_FILES.stream()
+        .map(pattern -> pattern.matcher(path.toString()))
+        .anyMatch(Matcher::matches);
+  }
+
   private static boolean isStandardProjectFile(FileData fileData) {
     Path pathWithinModule = fileData.getPathWithinModule();
     Path pathWithinRoot = fileData.getPathWithinRoot();
@@ -26,6 +26,7 @@ import com.android.tools.sizereduction.analyzer.model.Context;
 import com.android.tools.sizereduction.analyzer.model.FileData;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.android.tools.sizereduction.analyzer.model.SystemFileData;
+import com.android.tools.sizereduction.analyzer.suggesters.ApkEntrySuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleEntrySuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectTreeSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
@@ -42,7 +43,8 @@ import org.apache.commons.imaging.ImageReadException;
 import org.apache.commons.imaging.Imaging;
 
 /** Suggests images that could be reduced in size by converting to webp. */
-public class WebpSuggester implements BundleEntrySuggester, ProjectTreeSuggester {
+public class WebpSuggester
+    implements BundleEntrySuggester, ApkEntrySuggester, ProjectTreeSuggester {
 
   // Source: https://developer.android.com/studio/write/convert-webp
   @VisibleForTesting static final int MIN_SDK_VERSION_SUPPORTING_LOSSLESS_WEBP = 18;
@@ -68,6 +70,11 @@ public class WebpSuggester implements BundleEntrySuggester, ProjectTreeSuggester
     return processFileEntry(context, fileData);
   }
 
+  @Override
+  public ImmutableList<Suggestion> processApkZipEntry(Context context, FileData fileData) {
+    return processFileEntry(context, fileData);
+  }
+
   @Override
   public ImmutableList<Suggestion> processProjectEntry(GradleContext context, FileData fileData) {
     return processFileEntry(context, fileData);
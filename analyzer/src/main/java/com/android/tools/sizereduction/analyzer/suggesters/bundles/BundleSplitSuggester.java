@@ -23,13 +23,16 @@ import com.android.bundle.Config.SplitDimension;
 import com.android.bundle.Files.NativeLibraries;
 import com.android.bundle.Targeting.Abi.AbiAlias;
 import com.android.tools.build.bundletool.model.AppBundle;
-import com.android.tools.build.bundletool.model.BundleModule;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.BundleSplittingData;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
 import com.android.tools.sizereduction.analyzer.model.AndroidPluginVersion;
 import com.android.tools.sizereduction.analyzer.model.BundleConfig;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
+import com.android.tools.sizereduction.analyzer.model.EntryTargeting;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
+import com.android.tools.sizereduction.analyzer.resources.ResourceTableAnalysis;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.ProjectSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
@@ -39,9 +42,11 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
-import java.util.zip.ZipFile;
 
 /**
  * Analyzes whether the Bundle splits over architecture, screen density and language, for maximum
@@ -72,8 +77,8 @@ public final class BundleSplitSuggester implements BundleSuggester, ProjectSugge
           + "https://developer.android.com/guide/app-bundle/.";
 
   @Override
-  public ImmutableList<Suggestion> processBundle(
-      BundleContext context, AppBundle bundle, ZipFile bundleZip) {
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
+    AppBundle bundle = session.getAppBundle();
     ImmutableSet<SplitDimension.Value> splitDimensionsNotUsed =
         bundle.getBundleConfig().getOptimizations().getSplitsConfig().getSplitDimensionList()
             .stream()
@@ -81,14 +86,22 @@ public final class BundleSplitSuggester implements BundleSuggester, ProjectSugge
             .map(SplitDimension::getValue)
             .collect(toImmutableSet());
     ImmutableList.Builder<Suggestion> suggestions = ImmutableList.builder();
+    if (splitDimensionsNotUsed.isEmpty()) {
+      return suggestions.build();
+    }
+    // The resource tables only count towards the language savings, and are costly to stream.
+    boolean noLanguageSplitting = splitDimensionsNotUsed.contains(SplitDimension.Value.LANGUAGE);
+    SplitSavings savings =
+        SplitSavings.estimate(
+            session.getEntryTable(),
+            noLanguageSplitting
+                ? session.getResourceTableAnalyses().values()
+                : ImmutableList.of());
 
     if (splitDimensionsNotUsed.contains(SplitDimension.Value.ABI)) {
       // Set of ABIs that native libraries in the bundle target.
       ImmutableSet<AbiAlias> abis =
-          bundle.getModules().values().stream()
-              .map(BundleModule::getNativeConfig)
-              .filter(Optional::isPresent)
-              .map(Optional::get)
+          session.getNativeConfigs().values().stream()
               .flatMap(BundleSplitSuggester::getUsedAbis)
               .collect(toImmutableSet());
 
@@ -104,7 +117,7 @@ public final class BundleSplitSuggester implements BundleSuggester, ProjectSugge
                                 abis.stream().map(AbiAlias::toString).collect(toImmutableList())))
                     .build(),
                 NO_ABI_SPLITTING_MESSAGE,
-                /* estimatedBytesSaved= */ null,
+                savings.getAbiBytes(),
                 /* autoFix= */ null));
       }
     }
@@ -116,18 +129,18 @@ public final class BundleSplitSuggester implements BundleSuggester, ProjectSugge
               Category.BUNDLE_CONFIG,
               Payload.getDefaultInstance(),
               NO_DISPLAY_DENSITY_SPLITTING_MESSAGE,
-              /* estimatedBytesSaved= */ null,
+              savings.getDensityBytes(),
               /* autoFix= */ null));
     }
 
-    if (splitDimensionsNotUsed.contains(SplitDimension.Value.LANGUAGE)) {
+    if (noLanguageSplitting) {
       suggestions.add(
           Suggestion.create(
               IssueType.BUNDLES_NO_LANGUAGE_SPLITTING,
               Category.BUNDLE_CONFIG,
               Payload.getDefaultInstance(),
               NO_LANGUAGE_SPLITTING_MESSAGE,
-              /* estimatedBytesSaved= */ null,
+              savings.getLanguageBytes(),
               /* autoFix= */ null));
     }
 
@@ -214,4 +227,97 @@ public final class BundleSplitSuggester implements BundleSuggester, ProjectSugge
         .map(directory -> directory.getTargeting().getAbi().getAlias());
   }
 
+  /**
+   * Estimates the compressed bytes that devices would no longer download if the bundle was split
+   * along each dimension. A device keeps the libraries of a single ABI, a single density variant
+   * of each resource and a single language, so the largest of these is not counted as savings.
+   */
+  @VisibleForTesting
+  static final class SplitSavings {
+
+    private final long abiBytes;
+    private final long densityBytes;
+    private final long languageBytes;
+
+    private SplitSavings(long abiBytes, long densityBytes, long languageBytes) {
+      this.abiBytes = abiBytes;
+      this.densityBytes = densityBytes;
+      this.languageBytes = languageBytes;
+    }
+
+    /**
+     * Estimates the savings with a single pass over the module entries of the bundle, adding the
+     * localized values of the given module resource tables to the language savings.
+     */
+    static SplitSavings estimate(
+        BundleEntryTable entryTable, Collection<ResourceTableAnalysis> resourceTables) {
+      Map<String, Long> abiSizes = new HashMap<>();
+      Map<String, Long> languageSizes = new HashMap<>();
+      Map<String, Long> densityGroupSizes = new HashMap<>();
+      Map<String, Long> densityGroupLargestVariants = new HashMap<>();
+      for (int index = 0; index < entryTable.getEntryCount(); index++) {
+        if (entryTable.getModuleId(index) == BundleEntryTable.NO_MODULE
+            || entryTable.isDirectory(index)) {
+          continue;
+        }
+        String path = entryTable.getPathWithinModule(index);
+        long size = entryTable.getCompressedSize(index);
+        Optional<String> abi = EntryTargeting.getAbi(path);
+        Optional<String> language = EntryTargeting.getLanguage(path);
+        if (abi.isPresent()) {
+          abiSizes.merge(abi.get(), size, Long::sum);
+        } else if (language.isPresent()) {
+          languageSizes.merge(language.get(), size, Long::sum);
+        } else if (EntryTargeting.getDensity(path).isPresent()) {
+          String group =
+              entryTable.getModuleName(entryTable.getModuleId(index))
+                  + "/"
+                  + EntryTargeting.getDensityGroup(path);
+          densityGroupSizes.merge(group, size, Long::sum);
+          densityGroupLargestVariants.merge(group, size, Math::max);
+        }
+      }
+      for (ResourceTableAnalysis analysis : resourceTables) {
+        addLocalizedValues(analysis, languageSizes);
+      }
+
+      return new SplitSavings(
+          sumWithoutLargest(abiSizes.values()),
+          densityGroupSizes.values().stream().mapToLong(Long::longValue).sum()
+              - densityGroupLargestVariants.values().stream().mapToLong(Long::longValue).sum(),
+          sumWithoutLargest(languageSizes.values()));
+    }
+
+    long getAbiBytes() {
+      return abiBytes;
+    }
+
+    long getDensityBytes() {
+      return densityBytes;
+    }
+
+    long getLanguageBytes() {
+      return languageBytes;
+    }
+
+    /**
+     * Adds the size of the values of a module resource table that are specific to a locale. The
+     * files of localized resources are already counted through the path of their entries.
+     */
+    private static void addLocalizedValues(
+        ResourceTableAnalysis analysis, Map<String, Long> languageSizes) {
+      analysis
+          .getLocaleSizes()
+          .forEach(
+              (locale, sizes) ->
+                  languageSizes.merge(
+                      EntryTargeting.getLocaleLanguage(locale), sizes.getValueSize(), Long::sum));
+    }
+
+    private static long sumWithoutLargest(Collection<Long> sizes) {
+      return sizes.stream().mapToLong(Long::longValue).sum()
+          - sizes.stream().mapToLong(Long::longValue).max().orElse(0L);
+    }
+  }
+
 }
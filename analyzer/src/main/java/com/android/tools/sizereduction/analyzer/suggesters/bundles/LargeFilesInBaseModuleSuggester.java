@@ -18,7 +18,6 @@ package com.android.tools.sizereduction.analyzer.suggesters.bundles;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 
-import com.android.tools.build.bundletool.model.AppBundle;
 import com.android.tools.build.bundletool.model.BundleModule;
 import com.android.tools.build.bundletool.model.ModuleEntry;
 import com.android.tools.build.bundletool.model.ZipPath;
@@ -26,7 +25,9 @@ import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.LargeFilesInBaseModule;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.LargeFilesInBaseModule.FileInfo;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.LargeFilesInBaseModule.FileType;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
@@ -37,7 +38,6 @@ import com.google.common.collect.Range;
 import com.google.common.collect.Streams;
 import java.util.Comparator;
 import java.util.stream.Stream;
-import java.util.zip.ZipFile;
 
 /** Suggester to find the heaviest files in the base module of the bundle. */
 public final class LargeFilesInBaseModuleSuggester implements BundleSuggester {
@@ -59,31 +59,30 @@ public final class LargeFilesInBaseModuleSuggester implements BundleSuggester {
   }
 
   @Override
-  public ImmutableList<Suggestion> processBundle(
-      BundleContext context, AppBundle bundle, ZipFile bundleZip) {
-    BundleModule base = bundle.getBaseModule();
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
+    BundleModule base = session.getAppBundle().getBaseModule();
     return suggestionFromListOfLargeFiles(
         Streams.concat(
                 largestModuleEntriesInPath(
-                    bundleZip, base, BundleModule.ASSETS_DIRECTORY, FileType.ASSET),
+                    session, base, BundleModule.ASSETS_DIRECTORY, FileType.ASSET),
                 largestModuleEntriesInPath(
-                    bundleZip, base, BundleModule.RESOURCES_DIRECTORY, FileType.RESOURCE),
+                    session, base, BundleModule.RESOURCES_DIRECTORY, FileType.RESOURCE),
                 largestModuleEntriesInPath(
-                    bundleZip, base, BundleModule.ROOT_DIRECTORY, FileType.ROOT_DIRECTORY_FILE))
+                    session, base, BundleModule.ROOT_DIRECTORY, FileType.ROOT_DIRECTORY_FILE))
             .sorted(Comparator.comparingLong(FileInfo::getSize).reversed())
             .limit(numberOfLargestFilesInBaseToReport)
             .collect(toImmutableList()));
   }
 
   private Stream<FileInfo> largestModuleEntriesInPath(
-      ZipFile bundle, BundleModule module, ZipPath directory, FileType type) {
-    return module
-        .findEntriesUnderPath(directory)
+      AnalysisSession session, BundleModule module, ZipPath directory, FileType type) {
+    return session
+        .findModuleEntriesUnderPath(module, directory)
         .map(
             entry ->
                 FileInfo.newBuilder()
                     .setType(type)
-                    .setSize(moduleEntrySize(bundle, module, entry))
+                    .setSize(moduleEntrySize(session.getEntryTable(), module, entry))
                     .setFinalSplitApkPath(moduleEntryRelativePath(entry, type))
                     .build())
         .filter(file -> Range.atLeast(minimumFileInBaseSizeForReporting).contains(file.getSize()))
@@ -91,8 +90,10 @@ public final class LargeFilesInBaseModuleSuggester implements BundleSuggester {
         .limit(numberOfLargestFilesInBaseToReport);
   }
 
-  private static long moduleEntrySize(ZipFile bundle, BundleModule module, ModuleEntry entry) {
-    return bundle.getEntry(moduleEntryFullPath(module, entry)).getCompressedSize();
+  private static long moduleEntrySize(
+      BundleEntryTable entryTable, BundleModule module, ModuleEntry entry) {
+    return entryTable.getCompressedSize(
+        entryTable.findEntry(moduleEntryFullPath(module, entry)).getAsInt());
   }
 
   private static String moduleEntryFullPath(BundleModule module, ModuleEntry entry) {
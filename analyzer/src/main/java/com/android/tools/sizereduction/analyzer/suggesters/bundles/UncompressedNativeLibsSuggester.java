@@ -17,11 +17,11 @@
 package com.android.tools.sizereduction.analyzer.suggesters.bundles;
 
 import com.android.tools.build.bundletool.model.AppBundle;
-import com.android.tools.build.bundletool.model.BundleModule;
 import com.android.tools.build.bundletool.model.version.Version;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.UncompressedNativeLibsUsage;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.UncompressedNativeLibsUsage.Status;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
@@ -29,8 +29,6 @@ import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
 import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
-import java.util.Optional;
-import java.util.zip.ZipFile;
 
 /** Analyzes whether the Bundle enables uncompressed native libs */
 public final class UncompressedNativeLibsSuggester implements BundleSuggester {
@@ -46,8 +44,8 @@ public final class UncompressedNativeLibsSuggester implements BundleSuggester {
           + "and enable uncompressed native libraries for maximum app size reduction.";
 
   @Override
-  public ImmutableList<Suggestion> processBundle(
-      BundleContext context, AppBundle bundle, ZipFile bundleZip) {
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
+    AppBundle bundle = session.getAppBundle();
     boolean oldBundletool =
         Version.of(bundle.getBundleConfig().getBundletool().getVersion())
             .isOlderThan(Version.of("0.6.0"));
@@ -56,10 +54,7 @@ public final class UncompressedNativeLibsSuggester implements BundleSuggester {
         bundle.getBundleConfig().getOptimizations().getUncompressNativeLibraries().getEnabled();
 
     boolean hasNativeLibs =
-        bundle.getModules().values().stream()
-            .map(BundleModule::getNativeConfig)
-            .filter(Optional::isPresent)
-            .map(Optional::get)
+        session.getNativeConfigs().values().stream()
             .anyMatch(
                 libs ->
                     libs.getDirectoryList().stream()
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.code;
+
+/**
+ * Open addressing table counting the definitions of classes across dex files, keyed by the hash of
+ * the class descriptor and the hash of the class content. Definitions are kept in parallel arrays
+ * of primitives, so that apps with hundreds of thousands of classes do not need a string or an
+ * object per class. Only the first definition of each class is recorded, as the dex entry and the
+ * class definition to read its name from. This class is not threadsafe.
+ */
+final class ClassDefinitionTable {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private long[] descriptorHashes;
+  private long[] contentHashes;
+  private long[] sizes;
+  private long[] moduleMasks;
+  private int[] firstDexEntries;
+  private int[] firstClassDefs;
+  // Zero for the empty slots.
+  private int[] counts;
+  private int classCount = 0;
+
+  ClassDefinitionTable() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  /** Visits the classes defined more than once. */
+  interface DuplicateVisitor {
+    void visit(int dexEntry, int classDef, long size, int count, long moduleMask);
+  }
+
+  /**
+   * Records a definition of a class, in the module with the given id. Module ids above 63 share
+   * the bits of the module mask of lower ids.
+   */
+  void add(
+      long descriptorHash, long contentHash, long size, int moduleId, int dexEntry, int classDef) {
+    if (2 * (classCount + 1) > counts.length) {
+      grow();
+    }
+    int slot = findSlot(descriptorHash, contentHash);
+    if (counts[slot] == 0) {
+      descriptorHashes[slot] = descriptorHash;
+      contentHashes[slot] = contentHash;
+      sizes[slot] = size;
+      firstDexEntries[slot] = dexEntry;
+      firstClassDefs[slot] = classDef;
+      classCount++;
+    }
+    counts[slot]++;
+    moduleMasks[slot] |= 1L << (moduleId & 63);
+  }
+
+  /** The number of distinct classes in the table. */
+  int getClassCount() {
+    return classCount;
+  }
+
+  void forEachDuplicate(DuplicateVisitor visitor) {
+    for (int slot = 0; slot < counts.length; slot++) {
+      if (counts[slot] > 1) {
+        visitor.visit(
+            firstDexEntries[slot],
+            firstClassDefs[slot],
+            sizes[slot],
+            counts[slot],
+            moduleMasks[slot]);
+      }
+    }
+  }
+
+  private int findSlot(long descriptorHash, long contentHash) {
+    int mask = counts.length - 1;
+    int slot = (int) (descriptorHash ^ (descriptorHash >>> 32) ^ contentHash) & mask;
+    while (counts[slot] != 0
+        && (descriptorHashes[slot] != descriptorHash || contentHashes[slot] != contentHash)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    long[] oldDescriptorHashes = descriptorHashes;
+    long[] oldContentHashes = contentHashes;
+    long[] oldSizes = sizes;
+    long[] oldModuleMasks = moduleMasks;
+    int[] oldFirstDexEntries = firstDexEntries;
+    int[] oldFirstClassDefs = firstClassDefs;
+    int[] oldCounts = counts;
+    allocate(2 * oldCounts.length);
+    for (int oldSlot = 0; oldSlot < oldCounts.length; oldSlot++) {
+      if (oldCounts[oldSlot] != 0) {
+        int slot = findSlot(oldDescriptorHashes[oldSlot], oldContentHashes[oldSlot]);
+        descriptorHashes[slot] = oldDescriptorHashes[oldSlot];
+        contentHashes[slot] = oldContentHashes[oldSlot];
+        sizes[slot] = oldSizes[oldSlot];
+        moduleMasks[slot] = oldModuleMasks[oldSlot];
+        firstDexEntries[slot] = oldFirstDexEntries[oldSlot];
+        firstClassDefs[slot] = oldFirstClassDefs[oldSlot];
+        counts[slot] = oldCounts[oldSlot];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    descriptorHashes = new long[capacity];
+    contentHashes = new long[capacity];
+    sizes = new long[capacity];
+    moduleMasks = new long[capacity];
+    firstDexEntries = new int[capacity];
+    firstClassDefs = new int[capacity];
+    counts = new int[capacity];
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.code;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DebugMetadata;
+import com.android.tools.sizereduction.analyzer.dex.DebugOverhead;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
+import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Suggester measuring, for each module, the debug info, source file names and Kotlin metadata
+ * kept in its dex files, and pointing to the Proguard and R8 options which remove them. The dex
+ * files are memory-mapped and scanned in parallel.
+ */
+public final class DebugMetadataSuggester implements BundleSuggester {
+
+  // Metadata under 10 KB or 5% of the dex files of a module is not worth reporting.
+  private static final long SMALL_OVERHEAD_LIMIT = 10 * 1024;
+  private static final double SMALL_OVERHEAD_SHARE = 0.05;
+
+  @VisibleForTesting
+  static final String DEBUG_INFO_OPTIONS =
+      "Remove LocalVariableTable and LocalVariableTypeTable from your -keepattributes rules, which"
+          + " also removes the parameter names, and keep LineNumberTable only if you retrace"
+          + " stack traces.";
+
+  @VisibleForTesting
+  static final String SOURCE_FILE_OPTIONS =
+      "Add -renamesourcefileattribute SourceFile so that all classes share a single source file"
+          + " name, and remove SourceDebugExtension from your -keepattributes rules.";
+
+  @VisibleForTesting
+  static final String KOTLIN_METADATA_OPTIONS =
+      "Remove the rules keeping kotlin.Metadata, such as -keep class kotlin.Metadata, unless the"
+          + " app uses Kotlin reflection.";
+
+  @Override
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
+    if (!session.hasEntryContent()) {
+      return ImmutableList.of();
+    }
+    return session.getDexEntriesByModule().asMap().entrySet().stream()
+        .map(module -> processModule(session, module.getKey(), module.getValue()))
+        .filter(Optional::isPresent)
+        .map(Optional::get)
+        .collect(toImmutableList());
+  }
+
+  private static Optional<Suggestion> processModule(
+      AnalysisSession session, String moduleName, Collection<Integer> dexEntries) {
+    DebugOverhead overhead =
+        dexEntries.parallelStream()
+            .map(index -> computeOverhead(session, index))
+            .reduce(DebugOverhead.EMPTY, DebugOverhead::plus);
+    if (!isLarge(overhead)) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        Suggestion.create(
+            IssueType.DEBUG_METADATA,
+            Category.CODE_SIZE,
+            Payload.newBuilder()
+                .setDebugMetadata(
+                    DebugMetadata.newBuilder()
+                        .setModuleName(moduleName)
+                        .setDexSize(overhead.getDexSize())
+                        .setDebugInfoSize(overhead.getDebugInfoSize())
+                        .setParameterNamesSize(overhead.getParameterNamesSize())
+                        .setSourceFileSize(overhead.getSourceFileSize())
+                        .setKotlinMetadataSize(overhead.getKotlinMetadataSize()))
+                .build(),
+            createMessage(moduleName, overhead),
+            Math.round(overhead.getTotalSize() * session.getCompressionRatio(dexEntries)),
+            /* autoFix= */ null));
+  }
+
+  /** Measures the metadata of the dex file at the given entry, none if it is not valid. */
+  private static DebugOverhead computeOverhead(AnalysisSession session, int dexEntry) {
+    try {
+      return DebugOverhead.compute(session.getDexFile(dexEntry));
+    } catch (IllegalArgumentException e) {
+      return DebugOverhead.EMPTY;
+    }
+  }
+
+  @VisibleForTesting
+  static boolean isLarge(DebugOverhead overhead) {
+    return overhead.getTotalSize() >= SMALL_OVERHEAD_LIMIT
+        && overhead.getTotalSize() >= SMALL_OVERHEAD_SHARE * overhead.getDexSize();
+  }
+
+  /** Lists the options matching the kinds of metadata which take a share of the dex files. */
+  @VisibleForTesting
+  static String createMessage(String moduleName, DebugOverhead overhead) {
+    List<String> options = new ArrayList<>();
+    long minimumSize = Math.round(SMALL_OVERHEAD_SHARE * overhead.getTotalSize());
+    if (overhead.getDebugInfoSize() > 0 && overhead.getDebugInfoSize() >= minimumSize) {
+      options.add(DEBUG_INFO_OPTIONS);
+    }
+    if (overhead.getSourceFileSize() > 0 && overhead.getSourceFileSize() >= minimumSize) {
+      options.add(SOURCE_FILE_OPTIONS);
+    }
+    if (overhead.getKotlinMetadataSize() > 0
+        && overhead.getKotlinMetadataSize() >= minimumSize) {
+      options.add(KOTLIN_METADATA_OPTIONS);
+    }
+    return String.format(
+            "Debug info and source metadata take %d bytes of the %d bytes of dex code of module"
+                + " %s, which R8 removes unless told to keep them. ",
+            overhead.getTotalSize(), overhead.getDexSize(), moduleName)
+        + String.join(" ", options);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.code;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.dex.DexFile;
+import com.android.tools.sizereduction.analyzer.dex.DexIdCounts;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
+import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import java.util.Collection;
+
+/**
+ * Suggester counting the method, field and type ids of the dex files of each module, and reporting
+ * the single dex modules close to the 64K reference limit of a dex file and the modules split into
+ * more dex files than needed. Only the headers of the dex files are read, so the analysis costs a
+ * few hundred bytes of inflation per dex file.
+ */
+public final class DexIdCountsSuggester implements BundleSuggester {
+
+  @VisibleForTesting static final double REFERENCE_LIMIT_WARNING = 0.9;
+
+  @Override
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
+    if (!session.hasEntryContent()) {
+      return ImmutableList.of();
+    }
+    return session.getDexEntriesByModule().asMap().entrySet().stream()
+        .flatMap(module -> processModule(session, module.getKey(), module.getValue()).stream())
+        .collect(toImmutableList());
+  }
+
+  private static ImmutableList<Suggestion> processModule(
+      AnalysisSession session, String moduleName, Collection<Integer> dexEntries) {
+    return createSuggestions(moduleName, countIds(session, dexEntries));
+  }
+
+  private static DexIdCounts countIds(AnalysisSession session, Collection<Integer> dexEntries) {
+    return dexEntries.stream()
+        .map(index -> readIdCounts(session, index))
+        .reduce(DexIdCounts.EMPTY, DexIdCounts::plus);
+  }
+
+  /** Reads the id counts of the dex file at the given entry, none if it is not valid. */
+  private static DexIdCounts readIdCounts(AnalysisSession session, int dexEntry) {
+    try {
+      return DexIdCounts.fromHeader(
+          DexFile.parseHeader(session.readEntryPrefix(dexEntry, DexFile.HEADER_SIZE)));
+    } catch (IllegalArgumentException e) {
+      return DexIdCounts.EMPTY;
+    }
+  }
+
+  @VisibleForTesting
+  static ImmutableList<Suggestion> createSuggestions(String moduleName, DexIdCounts counts) {
+    Payload payload =
+        Payload.newBuilder()
+            .setDexIdCounts(
+                Payload.DexIdCounts.newBuilder()
+                    .setModuleName(moduleName)
+                    .setDexCount(counts.getDexCount())
+                    .setMethodIds(counts.getMethodIds())
+                    .setFieldIds(counts.getFieldIds())
+                    .setTypeIds(counts.getTypeIds())
+                    .setMaxReferences(counts.getMaxReferences())
+                    .setMinimumDexCount(counts.getMinimumDexCount()))
+            .build();
+    ImmutableList.Builder<Suggestion> suggestions = ImmutableList.builder();
+    // Modules with several dex files already fill each of them close to the limit.
+    if (counts.getDexCount() == 1
+        && counts.getReferenceLimitUsage() >= REFERENCE_LIMIT_WARNING) {
+      suggestions.add(
+          Suggestion.create(
+              IssueType.DEX_REFERENCE_LIMIT,
+              Category.CODE_SIZE,
+              payload,
+              String.format(
+                  "The dex file of module %s references %d methods, fields or types, close to the"
+                      + " limit of %d. Shrink the code of the module with R8, or remove unused"
+                      + " dependencies, before it needs another dex file.",
+                  moduleName, counts.getMaxReferences(), DexIdCounts.REFERENCE_LIMIT),
+              /* estimatedBytesSaved= */ null,
+              /* autoFix= */ null));
+    }
+    // Which ids are declared by several dex files cannot be told from the headers, so the bytes
+    // the extra dex files take are not estimated.
+    if (counts.getExtraDexCount() > 0) {
+      suggestions.add(
+          Suggestion.create(
+              IssueType.MULTIDEX_OVERHEAD,
+              Category.CODE_SIZE,
+              payload,
+              String.format(
+                  "Module %s has %d dex files where %d could hold its code, and ids used by"
+                      + " several dex files are declared in each of them. Avoid legacy multidex"
+                      + " options such as a main dex list, and let R8 or D8 distribute the"
+                      + " classes.",
+                  moduleName, counts.getDexCount(), counts.getMinimumDexCount()),
+              /* estimatedBytesSaved= */ null,
+              /* autoFix= */ null));
+    }
+    return suggestions.build();
+  }
+}
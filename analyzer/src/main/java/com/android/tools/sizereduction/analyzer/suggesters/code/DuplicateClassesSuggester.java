@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.code;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DuplicateClasses;
+import com.android.tools.sizereduction.analyzer.dex.DexFile;
+import com.android.tools.sizereduction.analyzer.dex.ProguardMap;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
+import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Suggester finding classes defined in several dex files, typically because a library is bundled
+ * both in the base module and in a feature module.
+ *
+ * <p>The dex files of all modules are parsed in parallel, and each class definition is reduced to a
+ * hash of its descriptor and a hash of its content, which are counted in a compact table. Class
+ * names are only decoded for the classes found more than once, which are then grouped by library,
+ * taken as the first {@value #LIBRARY_PREFIX_PACKAGES} packages of their original names.
+ */
+public final class DuplicateClassesSuggester implements BundleSuggester {
+
+  @VisibleForTesting static final int LIBRARY_PREFIX_PACKAGES = 3;
+  // Libraries with less than 1 KB of duplicated code are not worth reporting.
+  private static final long SMALL_DUPLICATION_LIMIT = 1024;
+
+  @Override
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
+    if (!session.hasEntryContent()) {
+      return ImmutableList.of();
+    }
+    return processDexEntries(session, session.getDexEntries());
+  }
+
+  /** Reports the libraries duplicated between the given dex files of the bundle. */
+  @VisibleForTesting
+  static ImmutableList<Suggestion> processDexEntries(
+      AnalysisSession session, ImmutableList<Integer> dexEntries) {
+    if (dexEntries.isEmpty()) {
+      return ImmutableList.of();
+    }
+    BundleEntryTable entryTable = session.getEntryTable();
+    double compressionRatio = session.getCompressionRatio(dexEntries);
+
+    Map<String, LibraryDuplicates> libraries = findDuplicatedLibraries(session, dexEntries);
+    return libraries.entrySet().stream()
+        .filter(library -> library.getValue().duplicatedSize >= SMALL_DUPLICATION_LIMIT)
+        .sorted(
+            Comparator.comparingLong(
+                    (Map.Entry<String, LibraryDuplicates> library) ->
+                        library.getValue().duplicatedSize)
+                .reversed())
+        .map(
+            library ->
+                createSuggestion(
+                    library.getKey(), library.getValue(), entryTable, compressionRatio))
+        .collect(toImmutableList());
+  }
+
+  private static Map<String, LibraryDuplicates> findDuplicatedLibraries(
+      AnalysisSession session, ImmutableList<Integer> dexEntries) {
+    BundleEntryTable entryTable = session.getEntryTable();
+    ImmutableList<DexClasses> dexClasses =
+        dexEntries.parallelStream()
+            .map(index -> readDexClasses(session, index))
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(toImmutableList());
+
+    ClassDefinitionTable classDefinitions = new ClassDefinitionTable();
+    for (DexClasses classes : dexClasses) {
+      int moduleId = entryTable.getModuleId(classes.dexEntry);
+      for (int classDef = 0; classDef < classes.sizes.length; classDef++) {
+        classDefinitions.add(
+            classes.descriptorHashes[classDef],
+            classes.contentHashes[classDef],
+            classes.sizes[classDef],
+            moduleId,
+            classes.dexEntry,
+            classDef);
+      }
+    }
+
+    // Names are read from the first dex file defining each class, as parsed by the first pass.
+    Map<Integer, DexFile> dexFiles = new HashMap<>();
+    for (DexClasses classes : dexClasses) {
+      dexFiles.put(classes.dexEntry, classes.dex);
+    }
+    Map<Integer, List<DuplicateClass>> duplicatesByDexEntry = new HashMap<>();
+    classDefinitions.forEachDuplicate(
+        (dexEntry, classDef, size, count, moduleMask) ->
+            duplicatesByDexEntry
+                .computeIfAbsent(dexEntry, unused -> new ArrayList<>())
+                .add(new DuplicateClass(classDef, size * (count - 1), moduleMask)));
+
+    ProguardMap proguardMap = session.getProguardMap();
+    Map<String, LibraryDuplicates> libraries = new HashMap<>();
+    duplicatesByDexEntry.forEach(
+        (dexEntry, duplicates) -> {
+          DexFile dex = dexFiles.get(dexEntry);
+          for (DuplicateClass duplicate : duplicates) {
+            String descriptor = dex.getString(getDescriptorIndex(dex, duplicate.classDef));
+            String className = proguardMap.deobfuscateClassName(DexFile.toClassName(descriptor));
+            LibraryDuplicates library =
+                libraries.computeIfAbsent(
+                    getLibraryPrefix(className), unused -> new LibraryDuplicates());
+            library.classCount++;
+            library.duplicatedSize += duplicate.duplicatedSize;
+            library.moduleMask |= duplicate.moduleMask;
+          }
+        });
+    return libraries;
+  }
+
+  /** Reads the classes of the dex file at the given entry, or none if it is not valid. */
+  private static Optional<DexClasses> readDexClasses(AnalysisSession session, int dexEntry) {
+    try {
+      return Optional.of(DexClasses.read(dexEntry, session.getDexFile(dexEntry)));
+    } catch (IllegalArgumentException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static int getDescriptorIndex(DexFile dex, int classDef) {
+    return dex.getTypeDescriptorIndex(dex.getClassDefTypeIndex(classDef));
+  }
+
+  /** Returns the first packages of the name of the class, as many as there are up to the limit. */
+  @VisibleForTesting
+  static String getLibraryPrefix(String className) {
+    int end = -1;
+    for (int packages = 0; packages < LIBRARY_PREFIX_PACKAGES; packages++) {
+      int separator = className.indexOf('.', end + 1);
+      if (separator < 0) {
+        break;
+      }
+      end = separator;
+    }
+    return end < 0 ? "" : className.substring(0, end);
+  }
+
+  private static Suggestion createSuggestion(
+      String libraryPrefix,
+      LibraryDuplicates library,
+      BundleEntryTable entryTable,
+      double compressionRatio) {
+    ImmutableList<String> moduleNames = getModuleNames(entryTable, library.moduleMask);
+    return Suggestion.create(
+        IssueType.DUPLICATE_CLASSES,
+        Category.CODE_SIZE,
+        Payload.newBuilder()
+            .setDuplicateClasses(
+                DuplicateClasses.newBuilder()
+                    .setLibraryPrefix(libraryPrefix)
+                    .addAllModuleNames(moduleNames)
+                    .setClassCount(library.classCount)
+                    .setDuplicatedSize(library.duplicatedSize))
+            .build(),
+        String.format(
+            "%d classes of %s are defined more than once in modules %s. Depend on the library"
+                + " from the base module only, so that feature modules share its classes.",
+            library.classCount,
+            libraryPrefix.isEmpty() ? "the default package" : libraryPrefix,
+            String.join(", ", moduleNames)),
+        Math.round(library.duplicatedSize * compressionRatio),
+        /* autoFix= */ null);
+  }
+
+  private static ImmutableList<String> getModuleNames(BundleEntryTable entryTable, long mask) {
+    ImmutableList.Builder<String> moduleNames = ImmutableList.builder();
+    for (int moduleId = 0; moduleId < Math.min(entryTable.getModuleCount(), 64); moduleId++) {
+      if ((mask & (1L << moduleId)) != 0) {
+        moduleNames.add(entryTable.getModuleName(moduleId));
+      }
+    }
+    return moduleNames.build();
+  }
+
+  /** The hashes and sizes of the classes defined by a dex file, by class definition index. */
+  private static final class DexClasses {
+    private final int dexEntry;
+    private final DexFile dex;
+    private final long[] descriptorHashes;
+    private final long[] contentHashes;
+    private final long[] sizes;
+
+    private DexClasses(int dexEntry, DexFile dex) {
+      this.dexEntry = dexEntry;
+      this.dex = dex;
+      this.descriptorHashes = new long[dex.getClassDefCount()];
+      this.contentHashes = new long[dex.getClassDefCount()];
+      this.sizes = new long[dex.getClassDefCount()];
+    }
+
+    static DexClasses read(int dexEntry, DexFile dex) {
+      DexClasses classes = new DexClasses(dexEntry, dex);
+      for (int classDef = 0; classDef < dex.getClassDefCount(); classDef++) {
+        classes.descriptorHashes[classDef] =
+            Hashing.murmur3_128()
+                .hashBytes(dex.getStringData(getDescriptorIndex(dex, classDef)))
+                .asLong();
+        classes.contentHashes[classDef] = dex.getClassContentHash(classDef);
+        classes.sizes[classDef] = dex.getClassDefSize(classDef);
+      }
+      return classes;
+    }
+  }
+
+  /** A class defined more than once, by its first definition. */
+  private static final class DuplicateClass {
+    private final int classDef;
+    private final long duplicatedSize;
+    private final long moduleMask;
+
+    private DuplicateClass(int classDef, long duplicatedSize, long moduleMask) {
+      this.classDef = classDef;
+      this.duplicatedSize = duplicatedSize;
+      this.moduleMask = moduleMask;
+    }
+  }
+
+  /** The duplicated classes of a library. */
+  private static final class LibraryDuplicates {
+    private int classCount = 0;
+    private long duplicatedSize = 0;
+    private long moduleMask = 0;
+  }
+}
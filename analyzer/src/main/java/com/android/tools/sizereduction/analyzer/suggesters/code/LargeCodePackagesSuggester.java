@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.code;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.LargeCodePackage;
+import com.android.tools.sizereduction.analyzer.dex.PackageTree;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
+import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.Category;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.Comparator;
+
+/**
+ * Suggester reporting the packages whose classes take the most space in the dex files of the
+ * bundle. Sizes are attributed to the classes defining the code, so a package stands out whatever
+ * the number of dex files it is spread over.
+ */
+public final class LargeCodePackagesSuggester implements BundleSuggester {
+
+  private static final int DEFAULT_PACKAGES_TO_REPORT = 10;
+  // Packages under 50 KB of code are not worth reporting.
+  private static final long DEFAULT_MINIMUM_PACKAGE_SIZE = 50 * 1024;
+
+  private final int packagesToReport;
+  private final long minimumPackageSize;
+
+  public LargeCodePackagesSuggester() {
+    this(DEFAULT_PACKAGES_TO_REPORT, DEFAULT_MINIMUM_PACKAGE_SIZE);
+  }
+
+  @VisibleForTesting
+  LargeCodePackagesSuggester(int packagesToReport, long minimumPackageSize) {
+    this.packagesToReport = packagesToReport;
+    this.minimumPackageSize = minimumPackageSize;
+  }
+
+  @Override
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
+    ImmutableMap<String, PackageTree> packageTrees;
+    try {
+      packageTrees = session.getPackageTrees();
+    } catch (IllegalArgumentException e) {
+      return ImmutableList.of();
+    }
+    return packageTrees.entrySet().stream()
+        .flatMap(
+            moduleTree ->
+                moduleTree.getValue().getLargestPackages(packagesToReport).stream()
+                    .filter(node -> node.getOwnSize() >= minimumPackageSize)
+                    .map(
+                        node ->
+                            LargeCodePackage.newBuilder()
+                                .setModuleName(moduleTree.getKey())
+                                .setPackageName(node.getName())
+                                .setSize(node.getOwnSize())
+                                .setClassCount(node.getClassCount())
+                                .build()))
+        .sorted(Comparator.comparingLong(LargeCodePackage::getSize).reversed())
+        .limit(packagesToReport)
+        .map(LargeCodePackagesSuggester::createSuggestion)
+        .collect(toImmutableList());
+  }
+
+  private static Suggestion createSuggestion(LargeCodePackage largePackage) {
+    String packageName =
+        largePackage.getPackageName().isEmpty()
+            ? "the default package"
+            : "package " + largePackage.getPackageName();
+    return Suggestion.create(
+        IssueType.LARGE_CODE_PACKAGE,
+        Category.CODE_SIZE,
+        Payload.newBuilder().setLargeCodePackage(largePackage).build(),
+        String.format(
+            "The %d classes of %s in module %s take %d bytes of dex code. Consider removing"
+                + " unused code from it, or moving it to a dynamic feature module if it is not"
+                + " needed at install time.",
+            largePackage.getClassCount(),
+            packageName,
+            largePackage.getModuleName(),
+            largePackage.getSize()),
+        /* estimatedBytesSaved= */ null,
+        /* autoFix= */ null);
+  }
+}
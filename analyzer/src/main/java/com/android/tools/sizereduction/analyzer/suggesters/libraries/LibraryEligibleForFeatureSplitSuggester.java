@@ -18,7 +18,6 @@ package com.android.tools.sizereduction.analyzer.suggesters.libraries;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 
-import com.android.tools.build.bundletool.model.AppBundle;
 import com.android.tools.build.bundletool.model.BundleModule;
 import com.android.tools.build.bundletool.model.BundleModuleName;
 import com.android.tools.build.bundletool.model.ModuleEntry;
@@ -27,6 +26,7 @@ import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.Librar
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.LibraryForFeatureSplitUsage.LibraryEligibleForFeatureSplit;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.LibraryForFeatureSplitUsage.LibraryEligibleForFeatureSplit.Library;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.LibraryForFeatureSplitUsage.LibraryEligibleForFeatureSplit.LibraryUsage;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
@@ -43,7 +43,6 @@ import com.google.common.collect.Maps;
 import java.io.File;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.zip.ZipFile;
 
 /**
  * Suggester to find whether the App Bundle uses libraries that might be good candidates for
@@ -66,17 +65,13 @@ public final class LibraryEligibleForFeatureSplitSuggester
           "libcardioDecider.so", "libcardioRecognizer.so", "libcardioRecognizer_tegra2.so");
 
   @Override
-  public ImmutableList<Suggestion> processBundle(
-      BundleContext context, AppBundle bundle, ZipFile bundleZip) {
-    ImmutableMap<Library, Function<BundleRepresentation, ImmutableList<String>>> libraryDetectors =
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
+    ImmutableMap<Library, Function<AnalysisSession, ImmutableList<String>>> libraryDetectors =
         getDetectorsForFeatureModuleCandidateLibraries();
 
-    AppBundle appBundle = AppBundle.buildFromZip(bundleZip);
-    BundleRepresentation representation = BundleRepresentation.create(bundleZip, appBundle);
-
     ImmutableMap<Library, ImmutableList<String>> libraryUsageToModules =
         ImmutableMap.copyOf(
-            Maps.transformValues(libraryDetectors, detector -> detector.apply(representation)));
+            Maps.transformValues(libraryDetectors, detector -> detector.apply(session)));
 
     return suggestionsFromLibraryUsages(libraryUsageToModules);
   }
@@ -103,7 +98,7 @@ public final class LibraryEligibleForFeatureSplitSuggester
    * modules using the library in question.
    */
   @VisibleForTesting
-  ImmutableMap<Library, Function<BundleRepresentation, ImmutableList<String>>>
+  ImmutableMap<Library, Function<AnalysisSession, ImmutableList<String>>>
       getDetectorsForFeatureModuleCandidateLibraries() {
     return ImmutableMap.of(Library.CARD_IO, LibraryEligibleForFeatureSplitSuggester::cardIoModules);
   }
@@ -120,9 +115,9 @@ public final class LibraryEligibleForFeatureSplitSuggester
   }
 
   /** Provides list of modules in a bundle that use the card-io library */
-  private static ImmutableList<String> cardIoModules(BundleRepresentation bundle) {
-    return bundle.appBundle().getModules().values().stream()
-        .filter(LibraryEligibleForFeatureSplitSuggester::moduleHasCardIoFiles)
+  private static ImmutableList<String> cardIoModules(AnalysisSession session) {
+    return session.getAppBundle().getModules().values().stream()
+        .filter(module -> moduleHasCardIoFiles(session, module))
         .map(BundleModule::getName)
         .map(BundleModuleName::getName)
         .collect(toImmutableList());
@@ -154,9 +149,9 @@ public final class LibraryEligibleForFeatureSplitSuggester
         && mavenLibrary.getArtifactId().equals(CARD_IO_NAME);
   }
 
-  private static boolean moduleHasCardIoFiles(BundleModule module) {
-    return module
-        .findEntriesUnderPath(BundleModule.LIB_DIRECTORY)
+  private static boolean moduleHasCardIoFiles(AnalysisSession session, BundleModule module) {
+    return session
+        .findModuleEntriesUnderPath(module, BundleModule.LIB_DIRECTORY)
         .map(ModuleEntry::getPath)
         .anyMatch(path -> CARD_IO_LIBRARY_FILES.contains(path.getFileName().toString()));
   }
@@ -207,18 +202,6 @@ public final class LibraryEligibleForFeatureSplitSuggester
         : LibraryUsage.LIBRARY_IN_FEATURE_MODULES_ONLY;
   }
 
-  @AutoValue
-  abstract static class BundleRepresentation {
-    static BundleRepresentation create(ZipFile bundleZipFile, AppBundle appBundle) {
-      return new AutoValue_LibraryEligibleForFeatureSplitSuggester_BundleRepresentation(
-          bundleZipFile, appBundle);
-    }
-
-    abstract ZipFile bundleZipFile();
-
-    abstract AppBundle appBundle();
-  }
-
   @AutoValue
   abstract static class ProjectRepresentation {
     static ProjectRepresentation create(GradleContext context, File projectDir) {
@@ -21,8 +21,8 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import com.android.bundle.AppDependenciesOuterClass.AppDependencies;
 import com.android.bundle.AppDependenciesOuterClass.Library;
 import com.android.bundle.AppDependenciesOuterClass.MavenLibrary;
-import com.android.tools.build.bundletool.model.AppBundle;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
@@ -35,16 +35,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.io.ByteSource;
-import com.google.protobuf.ExtensionRegistry;
-import com.google.protobuf.InvalidProtocolBufferException;
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.UncheckedIOException;
 import java.util.Map;
 import java.util.Optional;
-import java.util.zip.ZipFile;
 import javax.annotation.Nullable;
 
 /**
@@ -73,9 +66,8 @@ public final class OptimalLibrarySuggester implements BundleSuggester, ProjectSu
               .build());
 
   @Override
-  public ImmutableList<Suggestion> processBundle(
-      BundleContext context, AppBundle bundle, ZipFile bundleZip) {
-    Optional<AppDependencies> appDependenciesOptional = readAppDependencies(bundle);
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
+    Optional<AppDependencies> appDependenciesOptional = session.getAppDependencies();
     if (!appDependenciesOptional.isPresent()) {
       return ImmutableList.of();
     }
@@ -132,30 +124,6 @@ public final class OptimalLibrarySuggester implements BundleSuggester, ProjectSu
         + optimalLibrary.getExtendedSuggestionMessage();
   }
 
-  private static Optional<AppDependencies> readAppDependencies(AppBundle bundle) {
-    Optional<ByteSource> byteSource =
-        bundle
-            .getBundleMetadata()
-            .getFileAsByteSource("com.android.tools.build.libraries", "dependencies.pb");
-
-    if (!byteSource.isPresent()) {
-      return Optional.empty();
-    }
-
-    try {
-      try (InputStream entryContent = byteSource.get().openBufferedStream()) {
-        return Optional.of(
-            AppDependencies.parseFrom(entryContent, ExtensionRegistry.getEmptyRegistry()));
-      } catch (InvalidProtocolBufferException e) {
-        try (InputStream entryContent = byteSource.get().openBufferedStream()) {
-          return Optional.of(AppDependencies.parseDelimitedFrom(entryContent));
-        }
-      }
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
-    }
-  }
-
   /** The replacement maven library that a developer should use. */
   @AutoValue
   abstract static class ReplacementLibrary {
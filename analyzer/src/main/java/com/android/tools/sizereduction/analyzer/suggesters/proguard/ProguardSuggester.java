@@ -19,13 +19,12 @@ package com.android.tools.sizereduction.analyzer.suggesters.proguard;
 import static com.google.common.base.Predicates.not;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 
-import com.android.tools.build.bundletool.model.AppBundle;
-import com.android.tools.build.bundletool.model.BundleModule;
-import com.android.tools.build.bundletool.model.ModuleEntry;
-import com.android.tools.build.bundletool.model.ZipPath;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.ProguardData;
+import com.android.tools.sizereduction.analyzer.dex.DexStatistics;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
 import com.android.tools.sizereduction.analyzer.model.ProguardConfig;
 import com.android.tools.sizereduction.analyzer.suggesters.BundleSuggester;
@@ -37,10 +36,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.io.File;
-import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.OptionalLong;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
 
 /** Analyzes Proguard usage of a ZIP artifact (should be used on App Bundles only). */
 public final class ProguardSuggester implements BundleSuggester, ProjectSuggester {
@@ -68,45 +66,36 @@ public final class ProguardSuggester implements BundleSuggester, ProjectSuggeste
           + "space.";
 
   @Override
-  public ImmutableList<Suggestion> processBundle(
-      BundleContext context, AppBundle bundle, ZipFile bundleZip) {
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
+    BundleEntryTable entryTable = session.getEntryTable();
     // Some old bundles contain multidex code in a way not compatible with the new AppBundle
-    // representation, so the extraction of ZIP entries results in null pointers. Hence, entries are
-    // wrapped in optionals to precisely capture the nulls.
-    ImmutableList<Optional<ZipEntry>> dexFileEntries =
-        bundle.getModules().values().stream()
-            .flatMap(
-                module ->
-                    module
-                        .findEntriesUnderPath(BundleModule.DEX_DIRECTORY)
-                        .map(ModuleEntry::getPath)
-                        .map(ZipPath.create(module.getName().toString())::resolve))
-            .map(ZipPath::toString)
-            .map(bundleZip::getEntry)
-            .map(Optional::ofNullable)
+    // representation, so the extraction of ZIP entries results in missing entries. Hence, entry
+    // sizes are optionals to precisely capture the missing entries.
+    ImmutableList<OptionalLong> dexFileSizes =
+        session.getDexEntryNames().stream()
+            .map(entryName -> entrySize(entryTable, entryName))
             .collect(toImmutableList());
 
     OptionalLong totalDex =
-        dexFileEntries.stream().anyMatch(not(Optional::isPresent))
+        dexFileSizes.stream().anyMatch(not(OptionalLong::isPresent))
             ? OptionalLong.empty()
-            : OptionalLong.of(
-                dexFileEntries.stream().map(Optional::get).mapToLong(ZipEntry::getSize).sum());
+            : OptionalLong.of(dexFileSizes.stream().mapToLong(OptionalLong::getAsLong).sum());
 
-    ZipEntry proguardEntry = bundleZip.getEntry(PROGUARD_MAP);
+    OptionalLong proguardMapSize = entrySize(entryTable, PROGUARD_MAP);
 
-    if (proguardEntry == null) {
+    if (!proguardMapSize.isPresent()) {
       return ImmutableList.of(
           Suggestion.create(
               IssueType.PROGUARD_NO_MAP,
               Category.PROGUARD,
               totalDexPayload(totalDex),
               NO_MAP_SUGGESTION_MESSAGE,
-              /* estimatedBytesSaved= */ null,
+              estimateSavings(session, session.getDexEntries()),
               /* autoFix= */ null));
     }
 
     // Deobfuscation map present.
-    if (proguardEntry.getSize() == 0) {
+    if (proguardMapSize.getAsLong() == 0) {
       // Empty deobfuscation map.
       return ImmutableList.of(
           Suggestion.create(
@@ -114,7 +103,7 @@ public final class ProguardSuggester implements BundleSuggester, ProjectSuggeste
               Category.PROGUARD,
               totalDexPayload(totalDex),
               EMPTY_MAP_SUGGESTION_MESSAGE,
-              /* estimatedBytesSaved= */ null,
+              estimateSavings(session, session.getDexEntries()),
               /* autoFix= */ null));
     }
 
@@ -174,6 +163,38 @@ public final class ProguardSuggester implements BundleSuggester, ProjectSuggeste
     return suggestions.build();
   }
 
+  private static OptionalLong entrySize(BundleEntryTable entryTable, String entryName) {
+    OptionalInt index = entryTable.findEntry(entryName);
+    return index.isPresent()
+        ? OptionalLong.of(entryTable.getSize(index.getAsInt()))
+        : OptionalLong.empty();
+  }
+
+  /**
+   * Estimates the bytes saved by obfuscating and shrinking the code, in terms of the compressed
+   * size of the dex files in the bundle. The dex files are memory-mapped and analyzed in parallel,
+   * so that large multidex apps are not loaded onto the heap.
+   */
+  @VisibleForTesting
+  @Nullable
+  static Long estimateSavings(AnalysisSession session, ImmutableList<Integer> dexEntries) {
+    if (!session.hasEntryContent() || dexEntries.isEmpty()) {
+      return null;
+    }
+
+    DexStatistics statistics;
+    try {
+      statistics =
+          dexEntries.parallelStream()
+              .map(index -> DexStatistics.compute(session.getDexFile(index)))
+              .reduce(DexStatistics.EMPTY, DexStatistics::plus);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    return Math.round(
+        statistics.getEstimatedSavings() * session.getCompressionRatio(dexEntries));
+  }
+
   private static Payload totalDexPayload(OptionalLong totalDex) {
     if (!totalDex.isPresent()) {
       // Incorrect multidex usage, no payload can be provided.
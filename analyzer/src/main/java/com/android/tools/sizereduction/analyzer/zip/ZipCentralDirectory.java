@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.zip;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.OptionalInt;
+import java.util.zip.ZipException;
+
+/**
+ * An immutable table of the entries of a zip file, read from its memory-mapped central directory.
+ *
+ * <p>Entries are addressed by their index in the central directory. The metadata of each entry is
+ * kept in primitive arrays, and names stay in the mapped central directory until they are asked
+ * for, so no object is allocated per entry. Zip64 archives are supported.
+ */
+public final class ZipCentralDirectory {
+
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+  private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+  private static final long ZIP64_MAGIC = 0xffffffffL;
+
+  private final ByteBuffer centralDirectory;
+  private final int[] nameOffsets;
+  private final int[] nameLengths;
+  private final long[] compressedSizes;
+  private final long[] sizes;
+  private final int[] crcs;
+  private final int[] methods;
+  private final long[] localHeaderOffsets;
+  private int[] nameHashIndex;
+
+  private ZipCentralDirectory(ByteBuffer centralDirectory, int entryCount) throws ZipException {
+    this.centralDirectory = centralDirectory;
+    this.nameOffsets = new int[entryCount];
+    this.nameLengths = new int[entryCount];
+    this.compressedSizes = new long[entryCount];
+    this.sizes = new long[entryCount];
+    this.crcs = new int[entryCount];
+    this.methods = new int[entryCount];
+    this.localHeaderOffsets = new long[entryCount];
+    readEntries();
+  }
+
+  /** Maps and reads the central directory of the given zip file. */
+  public static ZipCentralDirectory open(Path zipFile) {
+    try (FileChannel channel = FileChannel.open(zipFile, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+      ByteBuffer tail = map(channel, fileSize - tailSize, tailSize);
+      int endOfCentralDirectory = findEndOfCentralDirectory(tail);
+
+      long entryCount = getUnsignedShort(tail, endOfCentralDirectory + 10);
+      long centralDirectorySize = getUnsignedInt(tail, endOfCentralDirectory + 12);
+      long centralDirectoryOffset = getUnsignedInt(tail, endOfCentralDirectory + 16);
+      int locator = endOfCentralDirectory - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE;
+      if (locator >= 0
+          && tail.getInt(locator) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE) {
+        ByteBuffer zip64End =
+            map(channel, tail.getLong(locator + 8), ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+        if (zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+          throw new ZipException("Invalid zip64 end of central directory record.");
+        }
+        entryCount = zip64End.getLong(32);
+        centralDirectorySize = zip64End.getLong(40);
+        centralDirectoryOffset = zip64End.getLong(48);
+      }
+      if (centralDirectorySize > Integer.MAX_VALUE || entryCount > Integer.MAX_VALUE) {
+        throw new ZipException("Central directory is too large to be mapped.");
+      }
+      return new ZipCentralDirectory(
+          map(channel, centralDirectoryOffset, centralDirectorySize), (int) entryCount);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** The number of entries in the zip file. */
+  public int getEntryCount() {
+    return nameOffsets.length;
+  }
+
+  /** The name of the entry at the given index. This decodes the name, so it allocates. */
+  public String getName(int index) {
+    byte[] name = new byte[nameLengths[index]];
+    copyName(index, name, 0);
+    return new String(name, UTF_8);
+  }
+
+  /** The length in bytes of the UTF-8 encoded name of the entry at the given index. */
+  public int getNameLength(int index) {
+    return nameLengths[index];
+  }
+
+  /**
+   * Copies the UTF-8 encoded name of the entry at the given index into the destination array,
+   * which must have room for {@link #getNameLength(int)} bytes from the given offset.
+   */
+  public void copyName(int index, byte[] destination, int destinationOffset) {
+    ByteBuffer buffer = centralDirectory.duplicate();
+    buffer.position(nameOffsets[index]);
+    buffer.get(destination, destinationOffset, nameLengths[index]);
+  }
+
+  /** Whether the name of the entry at the given index starts with the given UTF-8 prefix. */
+  public boolean nameStartsWith(int index, byte[] prefix) {
+    if (nameLengths[index] < prefix.length) {
+      return false;
+    }
+    int nameOffset = nameOffsets[index];
+    for (int i = 0; i < prefix.length; i++) {
+      if (centralDirectory.get(nameOffset + i) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Whether the name of the entry at the given index ends with the given UTF-8 suffix. */
+  public boolean nameEndsWith(int index, byte[] suffix) {
+    int nameLength = nameLengths[index];
+    if (nameLength < suffix.length) {
+      return false;
+    }
+    int suffixOffset = nameOffsets[index] + nameLength - suffix.length;
+    for (int i = 0; i < suffix.length; i++) {
+      if (centralDirectory.get(suffixOffset + i) != suffix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Whether the entry at the given index is a directory. */
+  public boolean isDirectory(int index) {
+    int nameLength = nameLengths[index];
+    return nameLength > 0 && centralDirectory.get(nameOffsets[index] + nameLength - 1) == '/';
+  }
+
+  /** The compressed size of the entry at the given index. */
+  public long getCompressedSize(int index) {
+    return compressedSizes[index];
+  }
+
+  /** The uncompressed size of the entry at the given index. */
+  public long getSize(int index) {
+    return sizes[index];
+  }
+
+  /** The CRC-32 of the uncompressed content of the entry at the given index. */
+  public int getCrc(int index) {
+    return crcs[index];
+  }
+
+  /** The compression method of the entry at the given index, see {@link java.util.zip.ZipEntry}. */
+  public int getMethod(int index) {
+    return methods[index];
+  }
+
+  /** The offset of the local file header of the entry at the given index. */
+  public long getLocalHeaderOffset(int index) {
+    return localHeaderOffsets[index];
+  }
+
+  /**
+   * Returns the index of the entry with the given name. The first lookup builds a hash index of the
+   * names, so that further lookups take constant time.
+   */
+  public synchronized OptionalInt findEntry(String name) {
+    if (nameHashIndex == null) {
+      nameHashIndex = buildNameHashIndex();
+    }
+    byte[] encodedName = name.getBytes(UTF_8);
+    int mask = nameHashIndex.length - 1;
+    for (int slot = Arrays.hashCode(encodedName) & mask;
+        nameHashIndex[slot] != 0;
+        slot = (slot + 1) & mask) {
+      int index = nameHashIndex[slot] - 1;
+      if (nameLengths[index] == encodedName.length && nameStartsWith(index, encodedName)) {
+        return OptionalInt.of(index);
+      }
+    }
+    return OptionalInt.empty();
+  }
+
+  /** Builds an open addressing table of entry index + 1, keyed by the hash of the entry name. */
+  private int[] buildNameHashIndex() {
+    int capacity = Integer.highestOneBit(Math.max(getEntryCount(), 1) * 2) * 2;
+    int[] hashIndex = new int[capacity];
+    int mask = capacity - 1;
+    for (int index = 0; index < getEntryCount(); index++) {
+      int slot = hashName(index) & mask;
+      while (hashIndex[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      hashIndex[slot] = index + 1;
+    }
+    return hashIndex;
+  }
+
+  /** Computes the same hash as {@link Arrays#hashCode(byte[])} of the encoded name. */
+  private int hashName(int index) {
+    int hash = 1;
+    int nameOffset = nameOffsets[index];
+    for (int i = 0; i < nameLengths[index]; i++) {
+      hash = 31 * hash + centralDirectory.get(nameOffset + i);
+    }
+    return hash;
+  }
+
+  private void readEntries() throws ZipException {
+    int offset = 0;
+    for (int index = 0; index < getEntryCount(); index++) {
+      if (offset + CENTRAL_DIRECTORY_HEADER_SIZE > centralDirectory.limit()
+          || centralDirectory.getInt(offset) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+        throw new ZipException("Invalid central directory header for entry " + index + ".");
+      }
+      int nameLength = getUnsignedShort(centralDirectory, offset + 28);
+      int extraLength = getUnsignedShort(centralDirectory, offset + 30);
+      int commentLength = getUnsignedShort(centralDirectory, offset + 32);
+      methods[index] = getUnsignedShort(centralDirectory, offset + 10);
+      crcs[index] = centralDirectory.getInt(offset + 16);
+      compressedSizes[index] = getUnsignedInt(centralDirectory, offset + 20);
+      sizes[index] = getUnsignedInt(centralDirectory, offset + 24);
+      localHeaderOffsets[index] = getUnsignedInt(centralDirectory, offset + 42);
+      nameOffsets[index] = offset + CENTRAL_DIRECTORY_HEADER_SIZE;
+      nameLengths[index] = nameLength;
+      readZip64ExtraField(index, offset + CENTRAL_DIRECTORY_HEADER_SIZE + nameLength, extraLength);
+      offset += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+  }
+
+  /** Replaces the sizes and offset marked as stored in the zip64 extra field by their values. */
+  private void readZip64ExtraField(int index, int extraOffset, int extraLength) {
+    int end = extraOffset + extraLength;
+    while (extraOffset + 4 <= end) {
+      int headerId = getUnsignedShort(centralDirectory, extraOffset);
+      int dataSize = getUnsignedShort(centralDirectory, extraOffset + 2);
+      if (headerId == ZIP64_EXTRA_FIELD_ID) {
+        int valueOffset = extraOffset + 4;
+        if (sizes[index] == ZIP64_MAGIC) {
+          sizes[index] = centralDirectory.getLong(valueOffset);
+          valueOffset += Long.BYTES;
+        }
+        if (compressedSizes[index] == ZIP64_MAGIC) {
+          compressedSizes[index] = centralDirectory.getLong(valueOffset);
+          valueOffset += Long.BYTES;
+        }
+        if (localHeaderOffsets[index] == ZIP64_MAGIC) {
+          localHeaderOffsets[index] = centralDirectory.getLong(valueOffset);
+        }
+        return;
+      }
+      extraOffset += 4 + dataSize;
+    }
+  }
+
+  private static int findEndOfCentralDirectory(ByteBuffer tail) throws ZipException {
+    for (int offset = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; offset >= 0; offset--) {
+      if (tail.getInt(offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE
+          && offset + END_OF_CENTRAL_DIRECTORY_SIZE + getUnsignedShort(tail, offset + 20)
+              == tail.limit()) {
+        return offset;
+      }
+    }
+    throw new ZipException("End of central directory record not found.");
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, long offset, long size)
+      throws IOException {
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    return buffer;
+  }
+
+  private static int getUnsignedShort(ByteBuffer buffer, int offset) {
+    return buffer.getShort(offset) & 0xffff;
+  }
+
+  private static long getUnsignedInt(ByteBuffer buffer, int offset) {
+    return buffer.getInt(offset) & ZIP64_MAGIC;
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.zip;
+
+import com.google.errorprone.annotations.MustBeClosed;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the content of zip entries with positional reads on a single file channel.
+ *
+ * <p>Unlike {@link java.util.zip.ZipFile}, which serializes all reads of an instance, entries can
+ * be read and inflated concurrently from any number of threads. Inflaters are pooled and reused
+ * across entries. Only stored and deflated entries are supported.
+ *
+ * <p>To avoid random seeks on slow storage, a range of the file holding several consecutive
+ * entries can also be read ahead asynchronously with {@link #readAhead}, and the entries then be
+ * served from memory.
+ */
+public final class ZipEntryReader implements ZipEntrySource, Closeable {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int READ_BUFFER_SIZE = 8192;
+
+  private final FileChannel channel;
+  private final AsynchronousFileChannel asynchronousChannel;
+  private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+  private ZipEntryReader(FileChannel channel, AsynchronousFileChannel asynchronousChannel) {
+    this.channel = channel;
+    this.asynchronousChannel = asynchronousChannel;
+  }
+
+  /** Opens a reader for the entries of the given zip file. */
+  @MustBeClosed
+  public static ZipEntryReader open(Path zipFile) {
+    try {
+      return new ZipEntryReader(
+          FileChannel.open(zipFile, StandardOpenOption.READ),
+          AsynchronousFileChannel.open(zipFile, StandardOpenOption.READ));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  @MustBeClosed
+  public InputStream openEntry(long localHeaderOffset, long compressedSize, boolean compressed) {
+    try {
+      InputStream data =
+          new ChannelInputStream(findDataOffset(localHeaderOffset), compressedSize, channel);
+      return inflateIfCompressed(data, compressed);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Maps the uncompressed content of an entry into memory, so that large entries can be accessed
+   * randomly without being copied onto the heap. Stored entries are mapped from the zip file
+   * directly, and compressed entries are first inflated to a temporary file.
+   */
+  public ByteBuffer mapEntry(
+      long localHeaderOffset, long compressedSize, long size, boolean compressed) {
+    try {
+      if (!compressed) {
+        return channel
+            .map(FileChannel.MapMode.READ_ONLY, findDataOffset(localHeaderOffset), size)
+            .order(ByteOrder.LITTLE_ENDIAN);
+      }
+      Path inflatedFile = Files.createTempFile("entry", ".tmp");
+      try {
+        try (InputStream content = openEntry(localHeaderOffset, compressedSize, compressed)) {
+          Files.copy(content, inflatedFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try (FileChannel inflatedChannel =
+            FileChannel.open(inflatedFile, StandardOpenOption.READ)) {
+          // The mapping stays valid once the channel is closed.
+          return inflatedChannel
+              .map(FileChannel.MapMode.READ_ONLY, 0, inflatedChannel.size())
+              .order(ByteOrder.LITTLE_ENDIAN);
+        }
+      } finally {
+        deleteMappedFile(inflatedFile);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Starts reading the given range of the file in the background, and returns a source serving the
+   * entries that lie entirely within the range from memory. Other entries are read from the file.
+   */
+  public ReadAheadWindow readAhead(long start, int length) {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    return new ReadAheadWindow(start, buffer, asynchronousChannel.read(buffer, start));
+  }
+
+  /** Closes the file and releases the pooled inflaters. */
+  @Override
+  public void close() throws IOException {
+    Inflater inflater;
+    while ((inflater = inflaters.poll()) != null) {
+      inflater.end();
+    }
+    asynchronousChannel.close();
+    channel.close();
+  }
+
+  /**
+   * Returns the offset of the entry data, which follows the local file header. The name and extra
+   * field of the local header may differ in length from those of the central directory.
+   */
+  private long findDataOffset(long localHeaderOffset) throws IOException {
+    ByteBuffer localHeader =
+        ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(channel, localHeader, localHeaderOffset);
+    return findDataOffset(localHeader, 0, localHeaderOffset);
+  }
+
+  /** Returns the offset of the entry data, for a local file header read into the buffer. */
+  private static long findDataOffset(ByteBuffer buffer, int position, long localHeaderOffset)
+      throws ZipException {
+    if (buffer.getInt(position) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid local file header at offset " + localHeaderOffset + ".");
+    }
+    int nameLength = buffer.getShort(position + 26) & 0xffff;
+    int extraLength = buffer.getShort(position + 28) & 0xffff;
+    return localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+  }
+
+  /**
+   * Deletes a file that may still be mapped. Platforms which do not allow deleting mapped files
+   * delete it when the JVM exits instead.
+   */
+  private static void deleteMappedFile(Path file) {
+    try {
+      Files.delete(file);
+    } catch (IOException e) {
+      file.toFile().deleteOnExit();
+    }
+  }
+
+  private InputStream inflateIfCompressed(InputStream data, boolean compressed) {
+    return compressed ? new PooledInflaterInputStream(data, acquireInflater()) : data;
+  }
+
+  private Inflater acquireInflater() {
+    Inflater inflater = inflaters.poll();
+    // Entry data is raw deflate data, without zlib header.
+    return inflater != null ? inflater : new Inflater(/* nowrap= */ true);
+  }
+
+  private void releaseInflater(Inflater inflater) {
+    inflater.reset();
+    inflaters.add(inflater);
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new ZipException("Unexpected end of zip file at offset " + position + ".");
+      }
+    }
+  }
+
+  /** A range of the file that is read in the background, serving the entries within it. */
+  public final class ReadAheadWindow implements ZipEntrySource {
+    private final long start;
+    private final ByteBuffer buffer;
+    private Future<Integer> pendingRead;
+
+    private ReadAheadWindow(long start, ByteBuffer buffer, Future<Integer> pendingRead) {
+      this.start = start;
+      this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+      this.pendingRead = pendingRead;
+    }
+
+    @Override
+    @MustBeClosed
+    public InputStream openEntry(long localHeaderOffset, long compressedSize, boolean compressed) {
+      try {
+        int filled = awaitRead();
+        long headerPosition = localHeaderOffset - start;
+        if (headerPosition >= 0 && headerPosition + LOCAL_HEADER_SIZE <= filled) {
+          long dataPosition =
+              findDataOffset(buffer, (int) headerPosition, localHeaderOffset) - start;
+          if (dataPosition + compressedSize <= filled) {
+            InputStream data =
+                new ByteArrayInputStream(buffer.array(), (int) dataPosition, (int) compressedSize);
+            return inflateIfCompressed(data, compressed);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return ZipEntryReader.this.openEntry(localHeaderOffset, compressedSize, compressed);
+    }
+
+    /**
+     * Waits for the background read to complete, and returns the number of bytes of the window
+     * read. A single asynchronous read may complete partially, in which case the rest of the window
+     * is read synchronously.
+     */
+    private synchronized int awaitRead() throws IOException {
+      if (pendingRead != null) {
+        try {
+          pendingRead.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while reading ahead.");
+        } catch (ExecutionException e) {
+          throw new IOException(e.getCause());
+        }
+        pendingRead = null;
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer, start + buffer.position()) < 0) {
+            break;
+          }
+        }
+      }
+      return buffer.position();
+    }
+  }
+
+  /** Reads a range of the file with positional reads, which do not move the channel position. */
+  private static final class ChannelInputStream extends InputStream {
+    private final FileChannel channel;
+    private long position;
+    private long remaining;
+
+    private ChannelInputStream(long position, long length, FileChannel channel) {
+      this.channel = channel;
+      this.position = position;
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] singleByte = new byte[1];
+      return read(singleByte, 0, 1) < 0 ? -1 : singleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (remaining == 0) {
+        return -1;
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, (int) Math.min(length, remaining));
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new ZipException("Unexpected end of zip file at offset " + position + ".");
+      }
+      position += read;
+      remaining -= read;
+      return read;
+    }
+
+    @Override
+    public long skip(long count) {
+      long skipped = Math.max(0, Math.min(count, remaining));
+      position += skipped;
+      remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+  }
+
+  /** Inflates the entry data, and returns its inflater to the pool once closed. */
+  private final class PooledInflaterInputStream extends InflaterInputStream {
+    private boolean eof;
+    private boolean closed;
+
+    private PooledInflaterInputStream(InputStream data, Inflater inflater) {
+      super(data, inflater, READ_BUFFER_SIZE);
+    }
+
+    @Override
+    protected void fill() throws IOException {
+      if (eof) {
+        throw new ZipException("Unexpected end of deflated entry data.");
+      }
+      len = in.read(buf, 0, buf.length);
+      if (len < 0) {
+        // The inflater may need an extra dummy byte when the data is not wrapped.
+        buf[0] = 0;
+        len = 1;
+        eof = true;
+      }
+      inf.setInput(buf, 0, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        // The inflater was not created by this stream, so it is not ended here.
+        super.close();
+        releaseInflater(inf);
+      }
+    }
+  }
+}
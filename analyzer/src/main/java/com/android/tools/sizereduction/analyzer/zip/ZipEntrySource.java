@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.zip;
+
+import com.google.errorprone.annotations.MustBeClosed;
+import java.io.InputStream;
+
+/** Supplies the uncompressed content of the entries of a zip file. */
+public interface ZipEntrySource {
+
+  /**
+   * Opens the uncompressed content of the entry whose local file header is at the given offset, as
+   * recorded in the central directory.
+   *
+   * @param localHeaderOffset the offset of the local file header of the entry
+   * @param compressedSize the size of the entry data in the zip file
+   * @param compressed whether the entry is deflated rather than stored
+   */
+  @MustBeClosed
+  InputStream openEntry(long localHeaderOffset, long compressedSize, boolean compressed);
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.model.ApkContext;
+import com.android.tools.sizereduction.analyzer.model.testing.FakeBinaryManifest;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.testing.FakeSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.testing.FakeSuggester.ContextAndEntryPath;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ApkAnalyzerTest {
+
+  private static final String WEAR_METADATA = "com.google.android.wearable.beta.app";
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final FakeSuggester suggester = new FakeSuggester();
+
+  @Test
+  public void analyze_callsSuggestersWithManifestContext() throws Exception {
+    File apk =
+        writeApk(
+            FakeBinaryManifest.create(/* minSdkVersion= */ 21, WEAR_METADATA),
+            "classes.dex",
+            "res/raw/a.bin",
+            "assets/b.bin");
+    ApkAnalyzer analyzer =
+        new ApkAnalyzer(ImmutableList.of(suggester), ImmutableList.of(suggester));
+    ApkContext context =
+        ApkContext.create(
+            /* minSdkVersion= */ 21, /* onDemand= */ false, /* embedsWearApk= */ true);
+    Suggestion entrySuggestion = stubSuggestion("Stub Suggestion");
+    Suggestion artifactSuggestion = stubSuggestion("Stub Artifact Suggestion");
+    suggester.setEntrySuggestions(
+        ImmutableMultimap.of(
+            ContextAndEntryPath.create(context, "res/raw/a.bin"), entrySuggestion));
+    suggester.setArtifactSuggestions(ImmutableMultimap.of(context, artifactSuggestion));
+
+    ImmutableList<Suggestion> suggestions = analyzer.analyze(apk);
+
+    assertThat(suggestions).containsExactly(artifactSuggestion, entrySuggestion).inOrder();
+    assertThat(suggester.getAnalyzedEntries())
+        .containsAtLeast("AndroidManifest.xml", "classes.dex", "res/raw/a.bin", "assets/b.bin");
+  }
+
+  @Test
+  public void analyze_rejectsApkWithoutManifest() throws Exception {
+    File apk = temporaryFolder.newFile("empty.apk");
+    try (ZipOutputStream zipStream = new ZipOutputStream(new FileOutputStream(apk))) {
+      zipStream.putNextEntry(new ZipEntry("classes.dex"));
+      zipStream.closeEntry();
+    }
+    ApkAnalyzer analyzer =
+        new ApkAnalyzer(ImmutableList.of(suggester), ImmutableList.of(suggester));
+
+    assertThrows(IllegalArgumentException.class, () -> analyzer.analyze(apk));
+  }
+
+  private File writeApk(byte[] manifest, String... entryNames) throws IOException {
+    File apk = temporaryFolder.newFile("app.apk");
+    try (ZipOutputStream zipStream = new ZipOutputStream(new FileOutputStream(apk))) {
+      zipStream.putNextEntry(new ZipEntry("AndroidManifest.xml"));
+      zipStream.write(manifest);
+      zipStream.closeEntry();
+      for (String entryName : entryNames) {
+        zipStream.putNextEntry(new ZipEntry(entryName));
+        zipStream.write(new byte[64]);
+        zipStream.closeEntry();
+      }
+    }
+    return apk;
+  }
+
+  private static Suggestion stubSuggestion(String message) {
+    return Suggestion.create(
+        Suggestion.IssueType.WEBP,
+        Suggestion.Category.WEBP,
+        Payload.getDefaultInstance(),
+        message,
+        /* estimatedBytesSaved= */ null,
+        /* autoFix= */ null);
+  }
+}
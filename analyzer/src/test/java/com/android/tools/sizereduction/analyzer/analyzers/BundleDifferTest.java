@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class BundleDifferTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void diff_reportsChangedAddedAndRemovedEntries() throws Exception {
+    File oldBundle =
+        createBundle(
+            "old.aab",
+            ImmutableMap.of(
+                "base/dex/classes.dex", 100,
+                "base/res/raw/removed.bin", 10,
+                "base/res/raw/unchanged.bin", 20));
+    File newBundle =
+        createBundle(
+            "new.aab",
+            ImmutableMap.of(
+                "base/dex/classes.dex", 150,
+                "base/res/raw/unchanged.bin", 20,
+                "feature/assets/added.bin", 30));
+    List<SizeDelta> entryDeltas = new ArrayList<>();
+
+    BundleDiff bundleDiff = BundleDiffer.diff(oldBundle, newBundle, entryDeltas::add);
+
+    assertThat(paths(entryDeltas))
+        .containsExactly(
+            "base/dex/classes.dex", "base/res/raw/removed.bin", "feature/assets/added.bin")
+        .inOrder();
+    assertThat(entryDeltas.get(0).getSizeDelta()).isEqualTo(50);
+    assertThat(entryDeltas.get(1).getSizeDelta()).isEqualTo(-10);
+    assertThat(entryDeltas.get(2).getSizeDelta()).isEqualTo(30);
+    assertThat(bundleDiff.getTotalDelta().getSizeDelta()).isEqualTo(70);
+    assertThat(paths(bundleDiff.getModuleDeltas()))
+        .containsExactly("base", "feature")
+        .inOrder();
+    assertThat(bundleDiff.getModuleDeltas().get(0).getOldSize()).isEqualTo(130);
+    assertThat(bundleDiff.getModuleDeltas().get(0).getNewSize()).isEqualTo(170);
+    assertThat(bundleDiff.getModuleDeltas().get(1).getOldSize()).isEqualTo(0);
+    assertThat(bundleDiff.getModuleDeltas().get(1).getNewSize()).isEqualTo(30);
+    assertThat(paths(bundleDiff.getDirectoryDeltas()))
+        .containsExactly("base/dex", "base/res/raw", "feature/assets")
+        .inOrder();
+  }
+
+  @Test
+  public void diff_identicalBundlesHaveNoEntryDeltas() throws Exception {
+    File bundle = createBundle("app.aab", ImmutableMap.of("base/dex/classes.dex", 100));
+    List<SizeDelta> entryDeltas = new ArrayList<>();
+
+    BundleDiff bundleDiff = BundleDiffer.diff(bundle, bundle, entryDeltas::add);
+
+    assertThat(entryDeltas).isEmpty();
+    assertThat(bundleDiff.getTotalDelta().getSizeDelta()).isEqualTo(0);
+    assertThat(bundleDiff.getTotalDelta().getCompressedSizeDelta()).isEqualTo(0);
+  }
+
+  @Test
+  public void suggestionDiff_reportsAppearedAndDisappearedSuggestions() {
+    Suggestion kept = createSuggestion("kept", 10L);
+    Suggestion keptWithNewEstimate = createSuggestion("kept", 20L);
+    Suggestion removed = createSuggestion("removed", 10L);
+    Suggestion added = createSuggestion("added", 10L);
+
+    SuggestionDiff suggestionDiff =
+        SuggestionDiff.compute(
+            ImmutableList.of(kept, removed), ImmutableList.of(keptWithNewEstimate, added));
+
+    assertThat(suggestionDiff.getAppearedSuggestions()).containsExactly(added);
+    assertThat(suggestionDiff.getDisappearedSuggestions()).containsExactly(removed);
+  }
+
+  private File createBundle(String name, Map<String, Integer> entrySizes) throws Exception {
+    File bundle = temporaryFolder.newFile(name);
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(bundle))) {
+      for (Map.Entry<String, Integer> entrySize : entrySizes.entrySet()) {
+        zipOutputStream.putNextEntry(new ZipEntry(entrySize.getKey()));
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < entrySize.getValue(); i++) {
+          content.append((char) ('a' + (i * 7) % 26));
+        }
+        zipOutputStream.write(content.toString().getBytes(UTF_8));
+        zipOutputStream.closeEntry();
+      }
+    }
+    return bundle;
+  }
+
+  private static ImmutableList<String> paths(List<SizeDelta> sizeDeltas) {
+    return sizeDeltas.stream().map(SizeDelta::getPath).collect(toImmutableList());
+  }
+
+  private static Suggestion createSuggestion(String message, Long estimatedBytesSaved) {
+    return Suggestion.create(
+        Suggestion.IssueType.QUESTIONABLE_FILE,
+        Suggestion.Category.LARGE_FILES,
+        Payload.getDefaultInstance(),
+        message,
+        estimatedBytesSaved,
+        /* autoFix= */ null);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.google.play.bit.proto.SizeAnalyzerLog.ArtifactType;
+import com.google.play.bit.proto.SizeAnalyzerLog.BundleSizeBreakdown;
+import com.google.play.bit.proto.SizeAnalyzerLog.ErrorType;
+import com.google.play.bit.proto.SizeAnalyzerLog.SizeAnalysisLog;
+import com.google.play.bit.proto.SizeAnalyzerLog.SuggestionsByIssueType;
+import java.util.zip.ZipEntry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class BundleSizeAccountingTest {
+
+  @Test
+  public void addEntry_breaksDownSizesPerModule() {
+    BundleSizeAccounting sizeAccounting = new BundleSizeAccounting();
+    sizeAccounting.addEntry(createEntry("base/dex/classes.dex", 3_000_000_000L));
+    sizeAccounting.addEntry(createEntry("base/dex/classes2.dex", 100L));
+    sizeAccounting.addEntry(createEntry("base/resources.pb", 20L));
+    sizeAccounting.addEntry(createEntry("base/res/drawable/icon.png", 30L));
+    sizeAccounting.addEntry(createEntry("base/manifest/AndroidManifest.xml", 40L));
+    sizeAccounting.addEntry(createEntry("feature/assets/video.mp4", 50L));
+    sizeAccounting.addEntry(createEntry("feature/lib/x86/libfoo.so", 60L));
+    sizeAccounting.addEntry(createEntry("BUNDLE-METADATA/com.example/dex/classes.dex", 70L));
+    sizeAccounting.addEntry(createEntry("BundleConfig.pb", 80L));
+
+    assertThat(sizeAccounting.getTotalBreakdown(/* aabFileBytes= */ 5_000_000_000L))
+        .isEqualTo(
+            BundleSizeBreakdown.newBuilder()
+                .setAabFileBytes(5_000_000_000L)
+                .setDexBytes(3_000_000_100L)
+                .setResourcePbBytes(20L)
+                .setResourceFileBytes(30L)
+                .setAssetBytes(50L)
+                .setNativeLibBytes(60L)
+                .build());
+    assertThat(sizeAccounting.getModuleBreakdowns())
+        .containsExactly(
+            BundleSizeBreakdown.newBuilder()
+                .setModuleName("base")
+                .setDexBytes(3_000_000_100L)
+                .setResourcePbBytes(20L)
+                .setResourceFileBytes(30L)
+                .build(),
+            BundleSizeBreakdown.newBuilder()
+                .setModuleName("feature")
+                .setAssetBytes(50L)
+                .setNativeLibBytes(60L)
+                .build())
+        .inOrder();
+  }
+
+  @Test
+  public void toSizeAnalysisLog_summarizesSuggestionsByIssueType() {
+    BundleSizeAccounting sizeAccounting = new BundleSizeAccounting();
+    sizeAccounting.accept(createSuggestion(Suggestion.IssueType.QUESTIONABLE_FILE, 10L));
+    sizeAccounting.accept(createSuggestion(Suggestion.IssueType.QUESTIONABLE_FILE, null));
+    sizeAccounting.accept(createSuggestion(Suggestion.IssueType.QUESTIONABLE_FILE, 5L));
+
+    SizeAnalysisLog sizeAnalysisLog = sizeAccounting.toSizeAnalysisLog(/* aabFileBytes= */ 100L);
+
+    assertThat(sizeAnalysisLog.getAnalyzerVersion()).isEqualTo(Version.CURRENT_VERSION);
+    assertThat(sizeAnalysisLog.getArtifactType()).isEqualTo(ArtifactType.APP_BUNDLE);
+    assertThat(sizeAnalysisLog.getErrorType()).isEqualTo(ErrorType.NO_ERROR);
+    assertThat(sizeAnalysisLog.getBundleSizeBreakdown().getAabFileBytes()).isEqualTo(100L);
+    assertThat(sizeAnalysisLog.getSuggestionsByIssueTypeList())
+        .containsExactly(
+            SuggestionsByIssueType.newBuilder()
+                .setIssueType("QUESTIONABLE_FILE")
+                .setCategory("LARGE_FILES")
+                .setSuggestionCount(3)
+                .setEstimatedSavingsBytes(15L)
+                .build());
+  }
+
+  private static ZipEntry createEntry(String name, long size) {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setSize(size);
+    return entry;
+  }
+
+  private static Suggestion createSuggestion(
+      Suggestion.IssueType issueType, Long estimatedBytesSaved) {
+    return Suggestion.create(
+        issueType,
+        Suggestion.Category.LARGE_FILES,
+        Payload.getDefaultInstance(),
+        "Suggestion",
+        estimatedBytesSaved,
+        /* autoFix= */ null);
+  }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.android.bundle.Commands.ApkDescription;
+import com.android.bundle.Commands.ApkSet;
+import com.android.bundle.Commands.BuildApksResult;
+import com.android.bundle.Commands.DeliveryType;
+import com.android.bundle.Commands.ModuleMetadata;
+import com.android.bundle.Commands.SplitApkMetadata;
+import com.android.bundle.Commands.StandaloneApkMetadata;
+import com.android.bundle.Commands.Variant;
+import com.android.bundle.Devices.DeviceSpec;
+import com.android.bundle.Targeting.Abi;
+import com.android.bundle.Targeting.Abi.AbiAlias;
+import com.android.bundle.Targeting.AbiTargeting;
+import com.android.bundle.Targeting.ApkTargeting;
+import com.android.bundle.Targeting.LanguageTargeting;
+import com.android.bundle.Targeting.ScreenDensity;
+import com.android.bundle.Targeting.ScreenDensity.DensityAlias;
+import com.android.bundle.Targeting.ScreenDensityTargeting;
+import com.android.bundle.Targeting.SdkVersion;
+import com.android.bundle.Targeting.SdkVersionTargeting;
+import com.android.bundle.Targeting.VariantTargeting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.Int32Value;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DownloadSizeSimulatorTest {
+
+  private static final int NATIVE_LIBRARY_SIZE = 10_000;
+
+  private static final DeviceSpec PIXEL =
+      DeviceSpec.newBuilder()
+          .addSupportedAbis("arm64-v8a")
+          .addSupportedAbis("armeabi-v7a")
+          .setScreenDensity(420)
+          .addSupportedLocales("fr-FR")
+          .setSdkVersion(28)
+          .build();
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Map<String, byte[]> apks = new HashMap<>();
+  private DownloadSizeSimulator simulator;
+
+  @Before
+  public void setUp() throws Exception {
+    apks.put("splits/base-master.apk", createApk("classes.dex", 100_000, ZipEntry.STORED));
+    apks.put(
+        "splits/base-arm64_v8a.apk",
+        createApk("lib/arm64-v8a/libgame.so", NATIVE_LIBRARY_SIZE, ZipEntry.DEFLATED));
+    apks.put(
+        "splits/base-x86.apk",
+        createApk("lib/x86/libgame.so", NATIVE_LIBRARY_SIZE, ZipEntry.DEFLATED));
+    apks.put(
+        "splits/base-xhdpi.apk", createApk("res/drawable-xhdpi/icon.png", 100, ZipEntry.STORED));
+    apks.put(
+        "splits/base-xxhdpi.apk", createApk("res/drawable-xxhdpi/icon.png", 200, ZipEntry.STORED));
+    apks.put("splits/base-fr.apk", createApk("assets/intro-fr.txt", 300, ZipEntry.STORED));
+    apks.put("splits/base-de.apk", createApk("assets/intro-de.txt", 400, ZipEntry.STORED));
+    apks.put("splits/feature-master.apk", createApk("classes.dex", 500, ZipEntry.STORED));
+    apks.put("standalones/standalone.apk", createApk("classes.dex", 600, ZipEntry.STORED));
+    simulator = DownloadSizeSimulator.open(writeApkSet().toPath());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    simulator.close();
+  }
+
+  @Test
+  public void simulate_matchesSplitsOfInstallTimeModules() {
+    DeviceDownloadSize size = simulator.simulate("pixel", PIXEL);
+
+    assertThat(size.getApkPaths())
+        .containsExactly(
+            "splits/base-master.apk",
+            "splits/base-arm64_v8a.apk",
+            "splits/base-xxhdpi.apk",
+            "splits/base-fr.apk");
+  }
+
+  @Test
+  public void simulate_measuresGzippedDownloadAndExtractedLibraries() {
+    DeviceDownloadSize size = simulator.simulate("pixel", PIXEL);
+
+    long apkSize =
+        size.getApkPaths().stream().mapToLong(apkPath -> apks.get(apkPath).length).sum();
+    // The APKs are mostly made of zeros, which gzip compresses away.
+    assertThat(size.getDownloadSize()).isLessThan(apkSize / 10);
+    // The compressed native library is extracted from its APK on installation.
+    assertThat(size.getInstallSize()).isEqualTo(apkSize + NATIVE_LIBRARY_SIZE);
+  }
+
+  @Test
+  public void simulate_sharesApksAcrossDevices() {
+    ImmutableList<DeviceDownloadSize> sizes =
+        simulator.simulate(
+            ImmutableMap.of(
+                "pixel",
+                PIXEL,
+                "german-pixel",
+                PIXEL.toBuilder().clearSupportedLocales().addSupportedLocales("de-DE").build()));
+
+    assertThat(sizes.get(0).getDeviceName()).isEqualTo("pixel");
+    assertThat(sizes.get(1).getApkPaths()).contains("splits/base-de.apk");
+    // The master, ABI and density splits are shared, and sized only once.
+    assertThat(simulator.getComputedApkCount()).isEqualTo(5);
+  }
+
+  @Test
+  public void simulate_usesStandaloneApkBelowLollipop() {
+    DeviceDownloadSize size =
+        simulator.simulate("old-phone", PIXEL.toBuilder().setSdkVersion(19).build());
+
+    assertThat(size.getApkPaths()).containsExactly("standalones/standalone.apk");
+  }
+
+  @Test
+  public void simulate_rejectsDevicesBelowMinSdkVersion() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> simulator.simulate("ancient", PIXEL.toBuilder().setSdkVersion(15).build()));
+  }
+
+  @Test
+  public void open_rejectsFilesWithoutTableOfContents() throws Exception {
+    File notAnApkSet = temporaryFolder.newFile("app.zip");
+    try (ZipOutputStream zipStream = new ZipOutputStream(new FileOutputStream(notAnApkSet))) {
+      zipStream.putNextEntry(new ZipEntry("base/dex/classes.dex"));
+    }
+
+    assertThrows(
+        IllegalArgumentException.class, () -> DownloadSizeSimulator.open(notAnApkSet.toPath()));
+  }
+
+  /** Writes an APK set in the layout of bundletool, with its table of contents. */
+  private File writeApkSet() throws IOException {
+    BuildApksResult tableOfContents =
+        BuildApksResult.newBuilder()
+            .addVariant(
+                Variant.newBuilder()
+                    .setVariantNumber(0)
+                    .setTargeting(variantTargeting(/* minSdkVersion= */ 16, 21))
+                    .addApkSet(
+                        ApkSet.newBuilder()
+                            .setModuleMetadata(moduleMetadata("base", DeliveryType.INSTALL_TIME))
+                            .addApkDescription(
+                                ApkDescription.newBuilder()
+                                    .setPath("standalones/standalone.apk")
+                                    .setStandaloneApkMetadata(
+                                        StandaloneApkMetadata.newBuilder()
+                                            .addFusedModuleName("base")))))
+            .addVariant(
+                Variant.newBuilder()
+                    .setVariantNumber(1)
+                    .setTargeting(variantTargeting(/* minSdkVersion= */ 21, 16))
+                    .addApkSet(
+                        ApkSet.newBuilder()
+                            .setModuleMetadata(moduleMetadata("base", DeliveryType.INSTALL_TIME))
+                            .addApkDescription(
+                                split("splits/base-master.apk", ApkTargeting.getDefaultInstance()))
+                            .addApkDescription(
+                                split(
+                                    "splits/base-arm64_v8a.apk",
+                                    abiTargeting(AbiAlias.ARM64_V8A, AbiAlias.X86)))
+                            .addApkDescription(
+                                split(
+                                    "splits/base-x86.apk",
+                                    abiTargeting(AbiAlias.X86, AbiAlias.ARM64_V8A)))
+                            .addApkDescription(
+                                split(
+                                    "splits/base-xhdpi.apk",
+                                    densityTargeting(DensityAlias.XHDPI, DensityAlias.XXHDPI)))
+                            .addApkDescription(
+                                split(
+                                    "splits/base-xxhdpi.apk",
+                                    densityTargeting(DensityAlias.XXHDPI, DensityAlias.XHDPI)))
+                            .addApkDescription(
+                                split("splits/base-fr.apk", languageTargeting("fr", "de")))
+                            .addApkDescription(
+                                split("splits/base-de.apk", languageTargeting("de", "fr"))))
+                    .addApkSet(
+                        ApkSet.newBuilder()
+                            .setModuleMetadata(moduleMetadata("feature", DeliveryType.ON_DEMAND))
+                            .addApkDescription(
+                                split(
+                                    "splits/feature-master.apk",
+                                    ApkTargeting.getDefaultInstance()))))
+            .build();
+
+    File apkSet = temporaryFolder.newFile("app.apks");
+    try (ZipOutputStream zipStream = new ZipOutputStream(new FileOutputStream(apkSet))) {
+      zipStream.putNextEntry(new ZipEntry("toc.pb"));
+      tableOfContents.writeTo(zipStream);
+      for (Map.Entry<String, byte[]> apk : apks.entrySet()) {
+        zipStream.putNextEntry(new ZipEntry(apk.getKey()));
+        zipStream.write(apk.getValue());
+      }
+    }
+    return apkSet;
+  }
+
+  private static byte[] createApk(String entryName, int size, int method) throws IOException {
+    byte[] content = new byte[size];
+    ByteArrayOutputStream apk = new ByteArrayOutputStream();
+    try (ZipOutputStream zipStream = new ZipOutputStream(apk)) {
+      ZipEntry zipEntry = new ZipEntry(entryName);
+      if (method == ZipEntry.STORED) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(size);
+        zipEntry.setCrc(crc.getValue());
+      }
+      zipStream.putNextEntry(zipEntry);
+      zipStream.write(content);
+    }
+    return apk.toByteArray();
+  }
+
+  private static VariantTargeting variantTargeting(int minSdkVersion, int alternativeSdkVersion) {
+    return VariantTargeting.newBuilder()
+        .setSdkVersionTargeting(
+            SdkVersionTargeting.newBuilder()
+                .addValue(sdkVersion(minSdkVersion))
+                .addAlternatives(sdkVersion(alternativeSdkVersion)))
+        .build();
+  }
+
+  private static SdkVersion sdkVersion(int minSdkVersion) {
+    return SdkVersion.newBuilder().setMin(Int32Value.newBuilder().setValue(minSdkVersion)).build();
+  }
+
+  private static ModuleMetadata moduleMetadata(String name, DeliveryType deliveryType) {
+    return ModuleMetadata.newBuilder().setName(name).setDeliveryType(deliveryType).build();
+  }
+
+  private static ApkDescription split(String path, ApkTargeting targeting) {
+    return ApkDescription.newBuilder()
+        .setPath(path)
+        .setTargeting(targeting)
+        .setSplitApkMetadata(
+            SplitApkMetadata.newBuilder()
+                .setSplitId(path.substring(path.indexOf('-') + 1, path.indexOf(".apk")))
+                .setIsMasterSplit(targeting.equals(ApkTargeting.getDefaultInstance())))
+        .build();
+  }
+
+  private static ApkTargeting abiTargeting(AbiAlias abi, AbiAlias alternative) {
+    return ApkTargeting.newBuilder()
+        .setAbiTargeting(
+            AbiTargeting.newBuilder()
+                .addValue(Abi.newBuilder().setAlias(abi))
+                .addAlternatives(Abi.newBuilder().setAlias(alternative)))
+        .build();
+  }
+
+  private static ApkTargeting densityTargeting(DensityAlias density, DensityAlias alternative) {
+    return ApkTargeting.newBuilder()
+        .setScreenDensityTargeting(
+            ScreenDensityTargeting.newBuilder()
+                .addValue(ScreenDensity.newBuilder().setDensityAlias(density))
+                .addAlternatives(ScreenDensity.newBuilder().setDensityAlias(alternative)))
+        .build();
+  }
+
+  private static ApkTargeting languageTargeting(String language, String alternative) {
+    return ApkTargeting.newBuilder()
+        .setLanguageTargeting(
+            LanguageTargeting.newBuilder().addValue(language).addAlternatives(alternative))
+        .build();
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
+import com.android.tools.sizereduction.analyzer.zip.ZipCentralDirectory;
+import com.android.tools.sizereduction.analyzer.zip.ZipEntryReader;
+import com.android.tools.sizereduction.analyzer.zip.ZipEntrySource;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class EntryReadScheduleTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void create_splitsEntriesInFileOrder() throws Exception {
+    File zip = temporaryFolder.newFile();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(zip))) {
+      for (int i = 0; i < 150; i++) {
+        writeEntry(zipOutputStream, "base/assets/entry" + i, ("content " + i).getBytes(UTF_8));
+      }
+    }
+    BundleEntryTable entryTable = BundleEntryTable.create(ZipCentralDirectory.open(zip.toPath()));
+
+    try (ZipEntryReader entryReader = ZipEntryReader.open(zip.toPath())) {
+      EntryReadSchedule schedule = EntryReadSchedule.create(entryTable, entryReader, zip.length());
+
+      assertThat(schedule.getBatchCount()).isEqualTo(3);
+      ImmutableList.Builder<Integer> entries = ImmutableList.builder();
+      for (int batch = 0; batch < schedule.getBatchCount(); batch++) {
+        ImmutableList<Integer> batchEntries =
+            schedule.getBatchEntries(batch).boxed().collect(toImmutableList());
+        assertThat(batchEntries.size()).isAtMost(EntryReadSchedule.MAX_BATCH_SIZE);
+        entries.addAll(batchEntries);
+      }
+      // The entries are written in central directory order.
+      assertThat(entries.build())
+          .containsExactlyElementsIn(IntStream.range(0, 150).boxed().collect(toImmutableList()))
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void takeBatchSource_readsEntriesOfEveryBatch() throws Exception {
+    File zip = temporaryFolder.newFile();
+    byte[] largeContent = new byte[EntryReadSchedule.MAX_WINDOW_SIZE + 1];
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(zip))) {
+      writeEntry(zipOutputStream, "base/assets/small1", "small content".getBytes(UTF_8));
+      writeStoredEntry(zipOutputStream, "base/assets/large", largeContent);
+      writeEntry(zipOutputStream, "base/assets/small2", "other content".getBytes(UTF_8));
+    }
+    BundleEntryTable entryTable = BundleEntryTable.create(ZipCentralDirectory.open(zip.toPath()));
+
+    try (ZipEntryReader entryReader = ZipEntryReader.open(zip.toPath());
+        ZipFile zipFile = new ZipFile(zip)) {
+      EntryReadSchedule schedule = EntryReadSchedule.create(entryTable, entryReader, zip.length());
+
+      // The large entry does not fit in a window, so it is in a batch of its own.
+      assertThat(schedule.getBatchCount()).isEqualTo(3);
+      for (int batch = 0; batch < schedule.getBatchCount(); batch++) {
+        ZipEntrySource source = schedule.takeBatchSource(batch);
+        for (int index : schedule.getBatchEntries(batch).toArray()) {
+          byte[] expected;
+          try (InputStream inputStream =
+              zipFile.getInputStream(zipFile.getEntry(entryTable.getName(index)))) {
+            expected = ByteStreams.toByteArray(inputStream);
+          }
+          try (InputStream inputStream =
+              source.openEntry(
+                  entryTable.getLocalHeaderOffset(index),
+                  entryTable.getCompressedSize(index),
+                  entryTable.isCompressed(index))) {
+            assertThat(ByteStreams.toByteArray(inputStream)).isEqualTo(expected);
+          }
+        }
+      }
+    }
+  }
+
+  private static void writeEntry(ZipOutputStream zipOutputStream, String name, byte[] content)
+      throws Exception {
+    zipOutputStream.putNextEntry(new ZipEntry(name));
+    zipOutputStream.write(content);
+    zipOutputStream.closeEntry();
+  }
+
+  private static void writeStoredEntry(
+      ZipOutputStream zipOutputStream, String name, byte[] content) throws Exception {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(content.length);
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    entry.setCrc(crc.getValue());
+    zipOutputStream.putNextEntry(entry);
+    zipOutputStream.write(content);
+    zipOutputStream.closeEntry();
+  }
+}
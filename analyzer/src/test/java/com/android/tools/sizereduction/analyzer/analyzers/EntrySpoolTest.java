@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.analyzers.EntrySpool.SpooledContent;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class EntrySpoolTest {
+
+  @Test
+  public void spool_keepsContentInMemoryWithinBudget() throws Exception {
+    try (EntrySpool spool = new EntrySpool(/* memoryBudget= */ 100)) {
+      SpooledContent first = spool.spool(new ByteArrayInputStream(content(60, 1)));
+      SpooledContent second = spool.spool(new ByteArrayInputStream(content(40, 2)));
+
+      assertThat(spool.getMemoryUsed()).isEqualTo(100);
+      assertThat(first.getContent().read()).isEqualTo(content(60, 1));
+      assertThat(second.getContent().read()).isEqualTo(content(40, 2));
+
+      first.release();
+
+      assertThat(spool.getMemoryUsed()).isEqualTo(40);
+    }
+  }
+
+  @Test
+  public void spool_writesContentBeyondBudgetToFile() throws Exception {
+    try (EntrySpool spool = new EntrySpool(/* memoryBudget= */ 100)) {
+      SpooledContent small = spool.spool(new ByteArrayInputStream(content(60, 1)));
+      SpooledContent large = spool.spool(new ByteArrayInputStream(content(1000, 2)));
+
+      assertThat(spool.getMemoryUsed()).isEqualTo(60);
+      assertThat(large.getSize()).isEqualTo(1000);
+      assertThat(large.getContent().read()).isEqualTo(content(1000, 2));
+      // Content can be read again until it is released.
+      assertThat(large.getContent().read()).isEqualTo(content(1000, 2));
+
+      large.release();
+      small.release();
+
+      assertThat(spool.getMemoryUsed()).isEqualTo(0);
+    }
+  }
+
+  private static byte[] content(int size, int value) {
+    byte[] content = new byte[size];
+    Arrays.fill(content, (byte) value);
+    return content;
+  }
+}
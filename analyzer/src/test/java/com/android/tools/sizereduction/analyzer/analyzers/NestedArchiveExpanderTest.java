@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.analyzers.NestedArchiveExpander.NestedEntry;
+import com.android.tools.sizereduction.analyzer.model.FileData;
+import com.android.tools.sizereduction.analyzer.model.testing.FakeFileData;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class NestedArchiveExpanderTest {
+
+  private static final FileData ARCHIVE =
+      FakeFileData.builder()
+          .setPathWithinRoot(Paths.get("base/assets/foo.zip"))
+          .setPathWithinModule(Paths.get("assets/foo.zip"))
+          .build();
+
+  @Test
+  public void expand_visitsNestedEntriesUpToMaxDepth() throws Exception {
+    byte[] innerJar = zip("deep.txt", "deep".getBytes(UTF_8));
+    byte[] archive = zip("img.png", "png".getBytes(UTF_8), "lib/inner.jar", innerJar);
+
+    List<FileData> entries = expand(new NestedArchiveExpander(2, 1024), archive);
+
+    assertThat(entries).hasSize(3);
+    assertThat(entries.get(0).getPathWithinRoot().toString())
+        .isEqualTo("base/assets/foo.zip!/img.png");
+    assertThat(entries.get(0).getPathWithinModule().toString())
+        .isEqualTo("assets/foo.zip!/img.png");
+    assertThat(entries.get(0).getSize()).isEqualTo(3);
+    assertThat(entries.get(1).getPathWithinRoot().toString())
+        .isEqualTo("base/assets/foo.zip!/lib/inner.jar");
+    assertThat(entries.get(2).getPathWithinRoot().toString())
+        .isEqualTo("base/assets/foo.zip!/lib/inner.jar!/deep.txt");
+    assertThat(read(entries.get(2))).isEqualTo("deep".getBytes(UTF_8));
+
+    assertThat(expand(new NestedArchiveExpander(1, 1024), archive)).hasSize(2);
+    assertThat(expand(NestedArchiveExpander.DISABLED, archive)).isEmpty();
+  }
+
+  @Test
+  public void expand_inflatesLargeEntriesOnce() throws Exception {
+    byte[] large = new byte[NestedArchiveExpander.MAX_BUFFERED_ENTRY_SIZE + 10];
+    large[large.length - 1] = 42;
+    byte[] innerJar = zip("large.bin", large);
+    byte[] archive = zip("large.bin", large, "lib/inner.jar", innerJar);
+    AtomicInteger archiveOpenCount = new AtomicInteger();
+    ByteSource archiveSource =
+        new ByteSource() {
+          @Override
+          public InputStream openStream() {
+            archiveOpenCount.incrementAndGet();
+            return new ByteArrayInputStream(archive);
+          }
+        };
+    List<byte[]> contents = new ArrayList<>();
+
+    new NestedArchiveExpander(2, 16 * 1024 * 1024)
+        .expand(
+            ARCHIVE,
+            archiveSource,
+            nestedEntry -> {
+              // The file data are created on every access, so the entry can be read again.
+              contents.add(read(nestedEntry.newFileData()));
+              contents.add(read(nestedEntry.newFileData()));
+            });
+
+    assertThat(contents).hasSize(6);
+    assertThat(contents.get(0)).isEqualTo(large);
+    assertThat(contents.get(1)).isEqualTo(large);
+    assertThat(contents.get(2)).isEqualTo(innerJar);
+    assertThat(contents.get(4)).isEqualTo(large);
+    assertThat(contents.get(5)).isEqualTo(large);
+    assertThat(archiveOpenCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void expand_stopsWhenBudgetIsExceeded() throws Exception {
+    byte[] archive =
+        zip("a.txt", new byte[600], "b.txt", new byte[600], "c.txt", new byte[10]);
+
+    List<FileData> entries = expand(new NestedArchiveExpander(1, 1000), archive);
+
+    assertThat(entries).hasSize(1);
+    assertThat(entries.get(0).getPathWithinModule().toString())
+        .isEqualTo("assets/foo.zip!/a.txt");
+  }
+
+  @Test
+  public void expand_ignoresContentThatIsNotZip() throws Exception {
+    assertThat(expand(new NestedArchiveExpander(2, 1024), "not a zip".getBytes(UTF_8))).isEmpty();
+  }
+
+  /**
+   * Expands the archive, returning a copy of the file data of every visited entry, as their content
+   * is only available while they are visited.
+   */
+  private static List<FileData> expand(NestedArchiveExpander expander, byte[] archive) {
+    List<FileData> entries = new ArrayList<>();
+    expander.expand(
+        ARCHIVE, ByteSource.wrap(archive), nestedEntry -> entries.add(copy(nestedEntry)));
+    return entries;
+  }
+
+  private static FileData copy(NestedEntry nestedEntry) {
+    FileData fileData = nestedEntry.newFileData();
+    return FakeFileData.builder()
+        .setPathWithinRoot(fileData.getPathWithinRoot())
+        .setPathWithinModule(fileData.getPathWithinModule())
+        .setSize(fileData.getSize())
+        .setInputStream(new ByteArrayInputStream(read(fileData)))
+        .build();
+  }
+
+  private static byte[] read(FileData fileData) {
+    try (InputStream inputStream = fileData.getInputStream()) {
+      return ByteStreams.toByteArray(inputStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Writes a zip with the given alternating entry names and contents. */
+  private static byte[] zip(Object... namesAndContents) throws Exception {
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(zip)) {
+      for (int i = 0; i < namesAndContents.length; i += 2) {
+        zipOutputStream.putNextEntry(new ZipEntry((String) namesAndContents[i]));
+        zipOutputStream.write((byte[]) namesAndContents[i + 1]);
+        zipOutputStream.closeEntry();
+      }
+    }
+    return zip.toByteArray();
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.ProguardData;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.utils.TestUtils;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ResultCacheTest {
+
+  private static final ImmutableList<Suggestion> SUGGESTIONS =
+      ImmutableList.of(
+          Suggestion.create(
+              Suggestion.IssueType.PROGUARD_NO_MAP,
+              Suggestion.Category.PROGUARD,
+              Payload.newBuilder()
+                  .setProguardData(ProguardData.newBuilder().setTotalDexSize(1234L))
+                  .build(),
+              "Suggestion 1",
+              /* estimatedBytesSaved= */ null,
+              /* autoFix= */ null),
+          Suggestion.create(
+              Suggestion.IssueType.QUESTIONABLE_FILE,
+              Suggestion.Category.LARGE_FILES,
+              Payload.getDefaultInstance(),
+              "Suggestion 2",
+              /* estimatedBytesSaved= */ 0L,
+              /* autoFix= */ null));
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void lookup_returnsStoredSuggestions() throws Exception {
+    ResultCache cache = new ResultCache(temporaryFolder.getRoot().toPath());
+    ResultCache.Key key = cache.createKey("abcd", "1.0", "suggesters");
+
+    cache.store(key, SUGGESTIONS);
+
+    assertThat(cache.lookup(key)).hasValue(SUGGESTIONS);
+  }
+
+  @Test
+  public void lookup_missesForDifferentVersionOrConfiguration() throws Exception {
+    ResultCache cache = new ResultCache(temporaryFolder.getRoot().toPath());
+    cache.store(cache.createKey("abcd", "1.0", "suggesters"), SUGGESTIONS);
+
+    assertThat(cache.lookup(cache.createKey("abcd", "1.1", "suggesters"))).isEmpty();
+    assertThat(cache.lookup(cache.createKey("abcd", "1.0", "other"))).isEmpty();
+    assertThat(cache.lookup(cache.createKey("dcba", "1.0", "suggesters"))).isEmpty();
+  }
+
+  @Test
+  public void lookup_missesForDifferentOptions() throws Exception {
+    Path cacheDirectory = temporaryFolder.getRoot().toPath();
+    ResultCache cache = new ResultCache(cacheDirectory, "threshold=1");
+    cache.store(cache.createKey("abcd", "1.0", "suggesters"), SUGGESTIONS);
+
+    ResultCache otherCache = new ResultCache(cacheDirectory, "threshold=2");
+
+    assertThat(otherCache.lookup(otherCache.createKey("abcd", "1.0", "suggesters"))).isEmpty();
+  }
+
+  @Test
+  public void createKey_dependsOnResultFormatVersion() throws Exception {
+    ResultCache cache = new ResultCache(temporaryFolder.getRoot().toPath());
+
+    assertThat(cache.createKey("abcd", "1.0", "suggesters").getSuggesterConfiguration())
+        .endsWith(";format=" + ResultCache.RESULT_FORMAT_VERSION);
+  }
+
+  @Test
+  public void lookup_treatsCorruptedEntriesAsMisses() throws Exception {
+    Path cacheDirectory = temporaryFolder.getRoot().toPath();
+    ResultCache cache = new ResultCache(cacheDirectory);
+    ResultCache.Key key = cache.createKey("abcd", "1.0", "suggesters");
+    cache.store(key, SUGGESTIONS);
+
+    try (Stream<Path> cacheFiles = Files.list(cacheDirectory)) {
+      for (Path cacheFile : (Iterable<Path>) cacheFiles::iterator) {
+        Files.write(cacheFile, new byte[] {(byte) 0xff, 0x01});
+      }
+    }
+
+    assertThat(cache.lookup(key)).isEmpty();
+  }
+
+  @Test
+  public void hash_dependsOnlyOnContent() throws Exception {
+    File bundleFile = TestUtils.getTestDataFile("app.aab");
+    File bundleCopy = temporaryFolder.newFile("copy.aab");
+    Files.copy(bundleFile.toPath(), bundleCopy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    assertThat(ArtifactHasher.hash(bundleCopy)).isEqualTo(ArtifactHasher.hash(bundleFile));
+    assertThat(ArtifactHasher.hash(TestUtils.getTestDataFile("wear.aab")))
+        .isNotEqualTo(ArtifactHasher.hash(bundleFile));
+  }
+
+  @Test
+  public void hash_coversEveryChunk() throws Exception {
+    File bundleFile = TestUtils.getTestDataFile("app.aab");
+    File modifiedBundle = temporaryFolder.newFile("modified.aab");
+    byte[] content = Files.readAllBytes(bundleFile.toPath());
+    content[content.length - 1] ^= 1;
+    Files.write(modifiedBundle.toPath(), content);
+
+    assertThat(ArtifactHasher.hash(modifiedBundle, /* chunkSize= */ 4096))
+        .isNotEqualTo(ArtifactHasher.hash(bundleFile, /* chunkSize= */ 4096));
+    assertThat(ArtifactHasher.hash(bundleFile, /* chunkSize= */ 4096))
+        .isEqualTo(ArtifactHasher.hash(bundleFile, /* chunkSize= */ 4096));
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.Budget.SizeBudget;
+import com.android.tools.sizereduction.analyzer.Budget.SizeLimit;
+import com.android.tools.sizereduction.analyzer.analyzers.SizeBudgetChecker.LimitUsage;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SizeBudgetCheckerTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void check_reportsUsagePerLimit() throws Exception {
+    File bundle = createBundle();
+    SizeBudget budget =
+        SizeBudget.newBuilder()
+            .addLimits(SizeLimit.newBuilder().setModule("base").setMaxBytes(1000))
+            .addLimits(SizeLimit.newBuilder().setPathGlob("feature/assets/**").setMaxBytes(1000))
+            .addLimits(
+                SizeLimit.newBuilder()
+                    .setEntryType(SizeLimit.EntryType.DEX)
+                    .setMaxBytes(1000))
+            .build();
+
+    ImmutableList<LimitUsage> limitUsages = new SizeBudgetChecker(budget).check(bundle);
+
+    assertThat(limitUsages).hasSize(3);
+    assertThat(limitUsages.get(0).getUsedBytes()).isEqualTo(300);
+    assertThat(limitUsages.get(1).getUsedBytes()).isEqualTo(400);
+    assertThat(limitUsages.get(2).getUsedBytes()).isEqualTo(300);
+    assertThat(limitUsages.stream().anyMatch(LimitUsage::isExceeded)).isFalse();
+  }
+
+  @Test
+  public void check_stopsCountingExceededLimits() throws Exception {
+    File bundle = createBundle();
+    SizeBudget budget =
+        SizeBudget.newBuilder()
+            .addLimits(
+                SizeLimit.newBuilder()
+                    .setEntryType(SizeLimit.EntryType.DEX)
+                    .setMaxBytes(150))
+            .build();
+
+    ImmutableList<LimitUsage> limitUsages = new SizeBudgetChecker(budget).check(bundle);
+
+    assertThat(limitUsages.get(0).isExceeded()).isTrue();
+    // Only the first two dex files are read before the limit is exceeded.
+    assertThat(limitUsages.get(0).getUsedBytes()).isEqualTo(200);
+  }
+
+  @Test
+  public void readBudget_parsesTextFormat() throws Exception {
+    File budgetFile = temporaryFolder.newFile("budget.textproto");
+    Files.write(
+        budgetFile.toPath(),
+        ("limits { module: \"base\" max_bytes: 10 }\n"
+                + "limits { entry_type: NATIVE_LIB max_bytes: 20 compressed: true }\n")
+            .getBytes(UTF_8));
+
+    assertThat(SizeBudgetChecker.readBudget(budgetFile))
+        .isEqualTo(
+            SizeBudget.newBuilder()
+                .addLimits(SizeLimit.newBuilder().setModule("base").setMaxBytes(10))
+                .addLimits(
+                    SizeLimit.newBuilder()
+                        .setEntryType(SizeLimit.EntryType.NATIVE_LIB)
+                        .setMaxBytes(20)
+                        .setCompressed(true))
+                .build());
+  }
+
+  private File createBundle() throws Exception {
+    File bundle = temporaryFolder.newFile("app.aab");
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(bundle))) {
+      addEntry(zipOutputStream, "base/dex/classes.dex", 100);
+      addEntry(zipOutputStream, "base/dex/classes2.dex", 100);
+      addEntry(zipOutputStream, "base/res/raw/file.bin", 100);
+      addEntry(zipOutputStream, "feature/dex/classes.dex", 100);
+      addEntry(zipOutputStream, "feature/assets/a/file.bin", 400);
+    }
+    return bundle;
+  }
+
+  private static void addEntry(ZipOutputStream zipOutputStream, String name, int size)
+      throws Exception {
+    zipOutputStream.putNextEntry(new ZipEntry(name));
+    zipOutputStream.write(new byte[size]);
+    zipOutputStream.closeEntry();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.analyzers;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.testing.FakeSuggester;
+import com.android.tools.sizereduction.analyzer.suggesters.testing.FakeSuggester.ContextAndEntryPath;
+import com.android.tools.sizereduction.analyzer.utils.TestUtils;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class StreamingBundleAnalyzerTest {
+
+  private static final String APP_BUNDLE = "app.aab";
+
+  private final FakeSuggester suggester = new FakeSuggester();
+
+  @Test
+  public void analyze_callsSuggesters() throws Exception {
+    StreamingBundleAnalyzer analyzer =
+        new StreamingBundleAnalyzer(ImmutableList.of(suggester), ImmutableList.of(suggester));
+    Suggestion entrySuggestion = stubSuggestion("Stub Suggestion");
+    Suggestion artifactSuggestion = stubSuggestion("Stub Artifact Suggestion");
+    BundleContext context = BundleContext.create(/* minSdkVersion= */ 23);
+    suggester.setEntrySuggestions(
+        ImmutableMultimap.of(
+            ContextAndEntryPath.create(context, "base/manifest/AndroidManifest.xml"),
+            entrySuggestion));
+    suggester.setArtifactSuggestions(ImmutableMultimap.of(context, artifactSuggestion));
+
+    ImmutableList<Suggestion> suggestions;
+    try (InputStream bundleStream =
+        new FileInputStream(TestUtils.getTestDataFile(APP_BUNDLE))) {
+      suggestions = analyzer.analyze(bundleStream);
+    }
+
+    assertThat(suggestions).containsExactly(entrySuggestion, artifactSuggestion).inOrder();
+  }
+
+  @Test
+  public void analyze_matchesBundleAnalyzerWithTinyMemoryBudget() throws Exception {
+    // With no memory for the content of entries, all entries are spooled to temporary files.
+    StreamingBundleAnalyzer analyzer =
+        new StreamingBundleAnalyzer(
+            ImmutableList.of(suggester),
+            ImmutableList.of(suggester),
+            NestedArchiveExpander.DISABLED,
+            /* memoryBudget= */ 0);
+    Suggestion entrySuggestion = stubSuggestion("Stub Suggestion");
+    BundleContext context = BundleContext.create(/* minSdkVersion= */ 23);
+    suggester.setEntrySuggestions(
+        ImmutableMultimap.of(
+            ContextAndEntryPath.create(context, "base/dex/classes.dex"), entrySuggestion));
+
+    ImmutableList<Suggestion> suggestions;
+    try (InputStream bundleStream =
+        new FileInputStream(TestUtils.getTestDataFile(APP_BUNDLE))) {
+      suggestions = analyzer.analyze(bundleStream);
+    }
+
+    assertThat(suggestions)
+        .containsExactlyElementsIn(
+            new BundleAnalyzer(ImmutableList.of(suggester), ImmutableList.of(suggester))
+                .analyze(TestUtils.getTestDataFile(APP_BUNDLE)));
+    assertThat(suggestions).contains(entrySuggestion);
+  }
+
+  private static Suggestion stubSuggestion(String message) {
+    return Suggestion.create(
+        Suggestion.IssueType.WEBP,
+        Suggestion.Category.WEBP,
+        Payload.getDefaultInstance(),
+        message,
+        /* estimatedBytesSaved= */ null,
+        /* autoFix= */ null);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.cli;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.AnalysisRecords.SuggestionRecord;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.ProguardData;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.util.JsonFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SuggestionWriterTest {
+
+  private static final Suggestion PROGUARD_SUGGESTION =
+      Suggestion.create(
+          Suggestion.IssueType.PROGUARD_NO_MAP,
+          Suggestion.Category.PROGUARD,
+          Payload.newBuilder()
+              .setProguardData(ProguardData.newBuilder().setTotalDexSize(1234L))
+              .build(),
+          "Suggestion 1",
+          /* estimatedBytesSaved= */ null,
+          /* autoFix= */ null);
+  private static final Suggestion FILE_SUGGESTION =
+      Suggestion.create(
+          Suggestion.IssueType.QUESTIONABLE_FILE,
+          Suggestion.Category.LARGE_FILES,
+          Payload.getDefaultInstance(),
+          "Suggestion 2\nwith a second line",
+          /* estimatedBytesSaved= */ 4096L,
+          /* autoFix= */ null);
+
+  @Test
+  public void jsonLines_writesOneRecordPerLine() throws Exception {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    SuggestionWriter writer = SuggestionWriter.create(OutputFormat.JSONL, outputStream);
+
+    writer.accept(PROGUARD_SUGGESTION);
+    writer.accept(FILE_SUGGESTION);
+    writer.flush();
+
+    List<String> lines =
+        Splitter.on('\n')
+            .omitEmptyStrings()
+            .splitToList(new String(outputStream.toByteArray(), UTF_8));
+    assertThat(lines).hasSize(2);
+    assertThat(parseJson(lines.get(0))).isEqualTo(PROGUARD_SUGGESTION.toRecord());
+    assertThat(parseJson(lines.get(1))).isEqualTo(FILE_SUGGESTION.toRecord());
+  }
+
+  @Test
+  public void proto_writesDelimitedRecords() throws Exception {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    SuggestionWriter writer = SuggestionWriter.create(OutputFormat.PROTO, outputStream);
+
+    writer.accept(PROGUARD_SUGGESTION);
+    writer.accept(FILE_SUGGESTION);
+    writer.flush();
+
+    InputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+    ImmutableList.Builder<Suggestion> suggestions = ImmutableList.builder();
+    SuggestionRecord record;
+    while ((record = SuggestionRecord.parseDelimitedFrom(inputStream)) != null) {
+      suggestions.add(Suggestion.fromRecord(record));
+    }
+    assertThat(suggestions.build())
+        .containsExactly(PROGUARD_SUGGESTION, FILE_SUGGESTION)
+        .inOrder();
+  }
+
+  private static SuggestionRecord parseJson(String json) throws Exception {
+    SuggestionRecord.Builder record = SuggestionRecord.newBuilder();
+    JsonFormat.parser().merge(json, record);
+    return record.build();
+  }
+}
@@ -246,12 +246,25 @@ public final class TerminalInterfaceTest {
         .inOrder();
   }
 
+  @Test
+  public void streamingSetsProperCategoryOrder() {
+    TerminalInterface terminalInterface =
+        TerminalInterface.createStreaming(ImmutableList.of(), /* displayDetails= */ false);
+    ALL_SUGGESTIONS.forEach(terminalInterface::accept);
+
+    assertThat(terminalInterface.getCategoryDisplayOrder())
+        .containsExactly(
+            Suggestion.Category.WEBP, Suggestion.Category.LARGE_FILES, Suggestion.Category.PROGUARD)
+        .inOrder();
+    assertThat(terminalInterface.categorizeSuggestions()).isEmpty();
+  }
+
   @Test
   public void setsProperCategoryOrder() {
     TerminalInterface terminalInterface =
         TerminalInterface.create(ALL_SUGGESTIONS, ImmutableList.of(), false);
     ImmutableList<Category> categoryDisplayOrder =
-        terminalInterface.getCategoryDisplayOrder(terminalInterface.categorizeSuggestions());
+        terminalInterface.getCategoryDisplayOrder();
 
     assertThat(categoryDisplayOrder)
         .containsExactly(
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.dex.testing.FakeDexFile;
+import com.android.tools.sizereduction.analyzer.utils.TestUtils;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DebugOverheadTest {
+
+  @Test
+  public void compute_scansBundleDexFile() throws Exception {
+    ByteBuffer content;
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile("app.aab"))) {
+      ZipEntry dexEntry = bundleZip.getEntry("base/dex/classes.dex");
+      try (InputStream dexStream = bundleZip.getInputStream(dexEntry)) {
+        content = ByteBuffer.wrap(ByteStreams.toByteArray(dexStream));
+      }
+    }
+    DexFile dex = DexFile.parse(content);
+
+    DebugOverhead overhead = DebugOverhead.compute(dex);
+
+    assertThat(overhead.getDexSize()).isEqualTo(content.limit());
+    // The linear scan of the debug info items ends where the next section starts, up to the
+    // padding aligning the next section on 4 bytes.
+    long debugInfoSectionSize = dex.getSectionSize(DexFile.TYPE_DEBUG_INFO_ITEM);
+    assertThat(overhead.getDebugInfoSize()).isAtMost(debugInfoSectionSize);
+    assertThat(overhead.getDebugInfoSize()).isAtLeast(debugInfoSectionSize - 3);
+    assertThat(overhead.getParameterNamesSize()).isAtMost(overhead.getDebugInfoSize());
+    assertThat(overhead.getTotalSize()).isLessThan(overhead.getDexSize());
+  }
+
+  @Test
+  public void compute_withoutMetadata_isEmpty() {
+    DexFile dex =
+        DexFile.parse(
+            FakeDexFile.builder()
+                .addMethod("Lcom/example/Main;", "run")
+                .addClassDef("Lcom/example/Main;")
+                .build());
+
+    DebugOverhead overhead = DebugOverhead.compute(dex);
+
+    assertThat(overhead.getTotalSize()).isEqualTo(0);
+    assertThat(overhead.getDexSize()).isEqualTo(dex.getFileSize());
+  }
+
+  @Test
+  public void plus_addsUpSizes() {
+    assertThat(DebugOverhead.create(100, 10, 2, 3, 4).plus(DebugOverhead.create(200, 20, 4, 6, 8)))
+        .isEqualTo(DebugOverhead.create(300, 30, 6, 9, 12));
+    assertThat(DebugOverhead.create(100, 10, 2, 3, 4).getTotalSize()).isEqualTo(17);
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.android.tools.sizereduction.analyzer.dex.testing.FakeDexFile;
+import com.android.tools.sizereduction.analyzer.utils.TestUtils;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DexFileTest {
+
+  @Test
+  public void parse_readsIdsAndSections() {
+    DexFile dex =
+        DexFile.parse(
+            FakeDexFile.builder()
+                .addMethod("Lcom/example/Main;", "onCreate")
+                .addField("Lcom/example/Main;", "count")
+                .setDebugInfoSize(42)
+                .build());
+
+    assertThat(dex.getStringCount()).isEqualTo(3);
+    assertThat(dex.getTypeCount()).isEqualTo(1);
+    assertThat(dex.getString(dex.getTypeDescriptorIndex(0))).isEqualTo("Lcom/example/Main;");
+    assertThat(dex.getString(dex.getMethodNameIndex(0))).isEqualTo("onCreate");
+    assertThat(dex.getMethodClassIndex(0)).isEqualTo(0);
+    assertThat(dex.getString(dex.getFieldNameIndex(0))).isEqualTo("count");
+    assertThat(dex.getStringDataSize(dex.getFieldNameIndex(0))).isEqualTo(5);
+    assertThat(dex.getSectionSize(DexFile.TYPE_DEBUG_INFO_ITEM)).isEqualTo(42);
+  }
+
+  @Test
+  public void parse_readsBundleDexFile() throws Exception {
+    ByteBuffer content;
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile("app.aab"))) {
+      ZipEntry dexEntry = bundleZip.getEntry("base/dex/classes.dex");
+      try (InputStream dexStream = bundleZip.getInputStream(dexEntry)) {
+        content = ByteBuffer.wrap(ByteStreams.toByteArray(dexStream));
+      }
+    }
+
+    DexFile dex = DexFile.parse(content);
+
+    assertThat(dex.getFileSize()).isEqualTo(content.limit());
+    assertThat(dex.getMethodCount()).isGreaterThan(0);
+    for (int type = 0; type < dex.getTypeCount(); type++) {
+      assertThat(dex.getString(dex.getTypeDescriptorIndex(type))).matches("\\[*[VZBSCIJFDL].*");
+    }
+    assertThat(dex.getSectionSize(DexFile.TYPE_STRING_DATA_ITEM)).isGreaterThan(0L);
+    assertThat(dex.getSectionSize(DexFile.TYPE_DEBUG_INFO_ITEM)).isLessThan((long) content.limit());
+  }
+
+  @Test
+  public void getClassSizes_attributesBundleDexFileToClasses() throws Exception {
+    ByteBuffer content;
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile("app.aab"))) {
+      ZipEntry dexEntry = bundleZip.getEntry("base/dex/classes.dex");
+      try (InputStream dexStream = bundleZip.getInputStream(dexEntry)) {
+        content = ByteBuffer.wrap(ByteStreams.toByteArray(dexStream));
+      }
+    }
+
+    DexFile dex = DexFile.parse(content);
+    ImmutableMap<String, Long> classSizes = dex.getClassSizes();
+
+    assertThat(classSizes).hasSize(dex.getClassDefCount());
+    assertThat(classSizes.keySet()).doesNotContain("");
+    assertThat(classSizes.values().stream().allMatch(size -> size >= 32)).isTrue();
+    assertThat(classSizes.values().stream().mapToLong(Long::longValue).sum())
+        .isAtMost((long) content.limit());
+  }
+
+  @Test
+  public void getClassContentHash_doesNotDependOnIdNumbering() {
+    DexFile dex =
+        DexFile.parse(
+            FakeDexFile.builder()
+                .addMethod("Lcom/example/Main;", "run")
+                .addField("Lcom/example/Main;", "count")
+                .addClassDef("Lcom/example/Main;")
+                .build());
+    DexFile otherDex =
+        DexFile.parse(
+            FakeDexFile.builder()
+                .addMethod("Lcom/example/Other;", "a")
+                .addClassDef("Lcom/example/Other;")
+                .addMethod("Lcom/example/Main;", "run")
+                .addField("Lcom/example/Main;", "count")
+                .addClassDef("Lcom/example/Main;")
+                .build());
+    DexFile changedDex =
+        DexFile.parse(
+            FakeDexFile.builder()
+                .addMethod("Lcom/example/Main;", "stop")
+                .addField("Lcom/example/Main;", "count")
+                .addClassDef("Lcom/example/Main;")
+                .build());
+
+    assertThat(otherDex.getClassContentHash(1)).isEqualTo(dex.getClassContentHash(0));
+    assertThat(changedDex.getClassContentHash(0)).isNotEqualTo(dex.getClassContentHash(0));
+    assertThat(otherDex.getClassSizes().keySet())
+        .containsExactly("com.example.Other", "com.example.Main");
+  }
+
+  @Test
+  public void toClassName_convertsDescriptors() {
+    assertThat(DexFile.toClassName("Lcom/example/Main$Inner;")).isEqualTo("com.example.Main$Inner");
+    assertThat(DexFile.toClassName("LMain;")).isEqualTo("Main");
+  }
+
+  @Test
+  public void parse_rejectsOtherFiles() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> DexFile.parse(ByteBuffer.wrap(new byte[0x70])));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> DexFile.parse(ByteBuffer.wrap("PK\003\004".getBytes(UTF_8))));
+  }
+
+  @Test
+  public void parse_rejectsIdSectionsOutOfFile() {
+    ByteBuffer content =
+        FakeDexFile.builder().addMethod("Lcom/example/Main;", "onCreate").build();
+    content.order(ByteOrder.LITTLE_ENDIAN).putInt(0x38, content.limit());
+
+    assertThrows(IllegalArgumentException.class, () -> DexFile.parse(content));
+  }
+
+  @Test
+  public void getString_rejectsStringDataOutOfFile() {
+    ByteBuffer content =
+        FakeDexFile.builder().addMethod("Lcom/example/Main;", "onCreate").build();
+    content.order(ByteOrder.LITTLE_ENDIAN);
+    content.putInt(content.getInt(0x3C), content.limit() + 100);
+    DexFile dex = DexFile.parse(content);
+
+    assertThrows(IllegalArgumentException.class, () -> dex.getString(0));
+  }
+
+  @Test
+  public void getTypeDescriptorIndex_rejectsIndexesOutOfIds() {
+    DexFile dex =
+        DexFile.parse(FakeDexFile.builder().addMethod("Lcom/example/Main;", "onCreate").build());
+
+    assertThrows(
+        IllegalArgumentException.class, () -> dex.getTypeDescriptorIndex(dex.getTypeCount()));
+    assertThrows(IllegalArgumentException.class, () -> dex.getString(-1));
+  }
+}
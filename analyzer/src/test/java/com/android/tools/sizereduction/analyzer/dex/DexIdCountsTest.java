@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.dex.testing.FakeDexFile;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DexIdCountsTest {
+
+  @Test
+  public void fromHeader_readsTruncatedDexFile() {
+    ByteBuffer dex =
+        FakeDexFile.builder()
+            .addMethod("Lcom/example/Main;", "run")
+            .addMethod("Lcom/example/Main;", "stop")
+            .addField("Lcom/example/Util;", "count")
+            .build();
+    int fileSize = dex.limit();
+    dex.limit(DexFile.HEADER_SIZE);
+
+    DexIdCounts counts = DexIdCounts.fromHeader(DexFile.parseHeader(dex));
+
+    assertThat(counts)
+        .isEqualTo(
+            DexIdCounts.create(
+                /* dexCount= */ 1,
+                fileSize,
+                /* stringIds= */ 5,
+                /* typeIds= */ 2,
+                /* protoIds= */ 0,
+                /* fieldIds= */ 1,
+                /* methodIds= */ 2,
+                /* maxReferences= */ 2));
+  }
+
+  @Test
+  public void getMinimumDexCount_dependsOnTotalReferences() {
+    assertThat(DexIdCounts.create(1, 1000, 10, 10, 10, 10, 10, 10).getMinimumDexCount())
+        .isEqualTo(1);
+    assertThat(
+            DexIdCounts.create(3, 1000, 10, 10, 10, 10, 100_000, 60_000).getMinimumDexCount())
+        .isEqualTo(2);
+  }
+
+  @Test
+  public void getExtraDexCount_countsDexFilesBeyondMinimum() {
+    DexIdCounts singleDex = DexIdCounts.create(1, 1000, 10, 10, 10, 10, 10, 10);
+    DexIdCounts threeSmallDex = DexIdCounts.create(3, 3000, 300, 300, 300, 300, 300, 100);
+    DexIdCounts threeFullDex =
+        DexIdCounts.create(3, 30_000_000, 200_000, 50_000, 40_000, 90_000, 190_000, 65_000);
+
+    assertThat(singleDex.getExtraDexCount()).isEqualTo(0);
+    assertThat(threeSmallDex.getExtraDexCount()).isEqualTo(2);
+    assertThat(threeFullDex.getExtraDexCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void plus_addsUpCounts() {
+    DexIdCounts counts =
+        DexIdCounts.create(1, 100, 1, 2, 3, 4, 5, 5)
+            .plus(DexIdCounts.create(2, 200, 10, 20, 30, 40, 50, 40));
+
+    assertThat(counts).isEqualTo(DexIdCounts.create(3, 300, 11, 22, 33, 44, 55, 40));
+    assertThat(DexIdCounts.EMPTY.plus(counts)).isEqualTo(counts);
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.dex.testing.FakeDexFile;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DexStatisticsTest {
+
+  @Test
+  public void compute_measuresUnobfuscatedIdentifiers() {
+    DexStatistics statistics =
+        DexStatistics.compute(
+            DexFile.parse(
+                FakeDexFile.builder()
+                    .addMethod("Lcom/example/Main;", "computeTotal")
+                    .addMethod("Lcom/example/Main;", "<init>")
+                    .addField("Lcom/example/Main;", "a")
+                    .setDebugInfoSize(100)
+                    .build()));
+
+    // Lcom/example/Main; (18), computeTotal (12), <init> (6) and a (1).
+    assertThat(statistics.getIdentifierSize()).isEqualTo(18 + 12 + 6 + 1);
+    assertThat(statistics.getUnobfuscatedIdentifierSize()).isEqualTo(18 + 12);
+    assertThat(statistics.getObfuscationSavings()).isEqualTo((4 - 2) + (12 - 2));
+    assertThat(statistics.getDebugInfoSize()).isEqualTo(100);
+    assertThat(statistics.getEstimatedSavings()).isEqualTo(12 + 100);
+  }
+
+  @Test
+  public void compute_ignoresPlatformNames() {
+    DexStatistics statistics =
+        DexStatistics.compute(
+            DexFile.parse(
+                FakeDexFile.builder()
+                    .addMethod("Landroid/app/Activity;", "onCreate")
+                    .addMethod("Lcom/example/a;", "onCreate")
+                    .addMethod("Ljava/lang/String;", "length")
+                    .build()));
+
+    // Only the obfuscated class name Lcom/example/a; remains.
+    assertThat(statistics.getIdentifierSize()).isEqualTo(15);
+    assertThat(statistics.getUnobfuscatedIdentifierSize()).isEqualTo(0);
+    assertThat(statistics.getUnobfuscatedShare()).isEqualTo(0.0);
+  }
+
+  @Test
+  public void plus_addsUpStatistics() {
+    DexStatistics statistics = DexStatistics.create(10, 8, 4, 2, 1);
+
+    assertThat(statistics.plus(statistics)).isEqualTo(DexStatistics.create(20, 16, 8, 4, 2));
+    assertThat(DexStatistics.EMPTY.plus(statistics)).isEqualTo(statistics);
+    assertThat(statistics.getUnobfuscatedShare()).isEqualTo(0.5);
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.dex.PackageTree.PackageNode;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class PackageTreeTest {
+
+  private static final PackageTree TREE =
+      PackageTree.builder()
+          .addClass("com.example.Main", 100)
+          .addClass("com.example.Util", 50)
+          .addClass("com.example.ui.Activity", 400)
+          .addClass("com.other.Library", 200)
+          .addClass("Default", 10)
+          .build();
+
+  @Test
+  public void build_rollsUpSizesIntoPackages() {
+    PackageNode root = TREE.getRoot();
+
+    assertThat(root.getName()).isEmpty();
+    assertThat(root.getSize()).isEqualTo(760);
+    assertThat(root.getOwnSize()).isEqualTo(10);
+    assertThat(root.getClassCount()).isEqualTo(1);
+    assertThat(root.getChildren()).hasSize(1);
+
+    PackageNode com = root.getChildren().get(0);
+    assertThat(com.getName()).isEqualTo("com");
+    assertThat(com.getSize()).isEqualTo(750);
+    assertThat(com.getOwnSize()).isEqualTo(0);
+    assertThat(com.getChildren().stream().map(PackageNode::getName).collect(toImmutableList()))
+        .containsExactly("com.example", "com.other")
+        .inOrder();
+
+    PackageNode example = com.getChildren().get(0);
+    assertThat(example.getSize()).isEqualTo(550);
+    assertThat(example.getOwnSize()).isEqualTo(150);
+    assertThat(example.getClassCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void getPackages_listsEveryPackage() {
+    assertThat(TREE.getPackages().map(PackageNode::getName).collect(toImmutableList()))
+        .containsExactly("com", "com.example", "com.example.ui", "com.other");
+  }
+
+  @Test
+  public void getLargestPackages_ranksPackagesByOwnSize() {
+    assertThat(
+            TREE.getLargestPackages(3).stream()
+                .map(PackageNode::getName)
+                .collect(toImmutableList()))
+        .containsExactly("com.example.ui", "com.other", "com.example")
+        .inOrder();
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.StringReader;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ProguardMapTest {
+
+  @Test
+  public void parse_readsClassMappings() throws Exception {
+    ProguardMap proguardMap =
+        ProguardMap.parse(
+            new StringReader(
+                "# compiler: R8\n"
+                    + "com.example.Main -> a.a:\n"
+                    + "    int count -> a\n"
+                    + "    1:2:void onCreate() -> b\n"
+                    + "com.example.Util -> a.b:\n"));
+
+    assertThat(proguardMap.deobfuscateClassName("a.a")).isEqualTo("com.example.Main");
+    assertThat(proguardMap.deobfuscateClassName("a.b")).isEqualTo("com.example.Util");
+    assertThat(proguardMap.deobfuscateClassName("com.example.Kept"))
+        .isEqualTo("com.example.Kept");
+  }
+
+  @Test
+  public void parse_readsMemberMappings() throws Exception {
+    ProguardMap proguardMap =
+        ProguardMap.parse(
+            new StringReader(
+                "com.example.Main -> a.a:\n"
+                    + "    int count2 -> a\n"
+                    + "    1:2:void onCreate(android.os.Bundle):10:11 -> b\n"
+                    + "    3:3:void run():20:20 -> b\n"
+                    + "    java.lang.String name -> c\n"
+                    + "com.example.Util -> a.b:\n"
+                    + "    void help() -> a\n"));
+
+    assertThat(proguardMap.getClassCount()).isEqualTo(2);
+    assertThat(proguardMap.getMemberCount()).isEqualTo(5);
+    assertThat(proguardMap.getOriginalMembers("a.a", "a")).containsExactly("int count2");
+    assertThat(proguardMap.getOriginalMembers("a.a", "b"))
+        .containsExactly("void onCreate(android.os.Bundle)", "void run()")
+        .inOrder();
+    assertThat(proguardMap.getOriginalMembers("a.b", "a")).containsExactly("void help()");
+    assertThat(proguardMap.getOriginalMembers("a.b", "b")).isEmpty();
+    assertThat(proguardMap.getOriginalMembers("a.c", "a")).isEmpty();
+  }
+
+  @Test
+  public void parse_indexesManyClasses() throws Exception {
+    StringBuilder mappingFile = new StringBuilder();
+    for (int index = 0; index < 5000; index++) {
+      mappingFile.append("com.example.Class").append(index).append(" -> c").append(index);
+      mappingFile.append(":\n    void method() -> m\n");
+    }
+
+    ProguardMap proguardMap = ProguardMap.parse(new StringReader(mappingFile.toString()));
+
+    assertThat(proguardMap.getClassCount()).isEqualTo(5000);
+    for (int index = 0; index < 5000; index++) {
+      assertThat(proguardMap.deobfuscateClassName("c" + index))
+          .isEqualTo("com.example.Class" + index);
+    }
+    assertThat(proguardMap.getOriginalMembers("c4999", "m")).containsExactly("void method()");
+  }
+
+  @Test
+  public void empty_keepsClassNames() {
+    assertThat(ProguardMap.EMPTY.deobfuscateClassName("a.a")).isEqualTo("a.a");
+    assertThat(ProguardMap.EMPTY.getOriginalMembers("a.a", "a")).isEmpty();
+    assertThat(ProguardMap.EMPTY.getClassCount()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.dex.testing;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes minimal dex files, with the string, type, field and method ids, the class definitions and
+ * the sections that the size analysis reads. The code of the methods is not written.
+ */
+public final class FakeDexFile {
+
+  private static final int HEADER_SIZE = 0x70;
+  private static final int ACC_PUBLIC = 0x1;
+  private static final int NO_INDEX = -1;
+
+  private final Map<String, Integer> strings = new LinkedHashMap<>();
+  private final Map<String, Integer> types = new LinkedHashMap<>();
+  private final List<int[]> fields = new ArrayList<>();
+  private final List<int[]> methods = new ArrayList<>();
+  private final List<Integer> classDefs = new ArrayList<>();
+  private int debugInfoSize = 0;
+
+  public static FakeDexFile builder() {
+    return new FakeDexFile();
+  }
+
+  /** Adds a string to the string pool, if not already present. */
+  public FakeDexFile addString(String string) {
+    strings.computeIfAbsent(string, unused -> strings.size());
+    return this;
+  }
+
+  /** Adds a type with the given descriptor, if not already present. */
+  public FakeDexFile addType(String descriptor) {
+    addString(descriptor);
+    types.computeIfAbsent(descriptor, unused -> types.size());
+    return this;
+  }
+
+  /** Adds a field with the given name to the class with the given descriptor. */
+  public FakeDexFile addField(String classDescriptor, String name) {
+    addType(classDescriptor);
+    addString(name);
+    fields.add(new int[] {types.get(classDescriptor), strings.get(name)});
+    return this;
+  }
+
+  /** Adds a method with the given name to the class with the given descriptor. */
+  public FakeDexFile addMethod(String classDescriptor, String name) {
+    addType(classDescriptor);
+    addString(name);
+    methods.add(new int[] {types.get(classDescriptor), strings.get(name)});
+    return this;
+  }
+
+  /**
+   * Defines the class with the given descriptor, with the fields and methods added to it so far as
+   * instance fields and virtual methods without code.
+   */
+  public FakeDexFile addClassDef(String classDescriptor) {
+    addType(classDescriptor);
+    classDefs.add(types.get(classDescriptor));
+    return this;
+  }
+
+  /** Reserves a debug info section of the given size. */
+  public FakeDexFile setDebugInfoSize(int debugInfoSize) {
+    this.debugInfoSize = debugInfoSize;
+    return this;
+  }
+
+  /** Writes the dex file. */
+  public ByteBuffer build() {
+    int stringIdsOffset = HEADER_SIZE;
+    int typeIdsOffset = stringIdsOffset + 4 * strings.size();
+    int fieldIdsOffset = typeIdsOffset + 4 * types.size();
+    int methodIdsOffset = fieldIdsOffset + 8 * fields.size();
+    int classDefsOffset = methodIdsOffset + 8 * methods.size();
+    int stringDataOffset = classDefsOffset + 32 * classDefs.size();
+    int stringDataSize = 0;
+    for (String string : strings.keySet()) {
+      stringDataSize += string.getBytes(UTF_8).length + 2;
+    }
+    int classDataOffset = stringDataOffset + stringDataSize;
+    List<byte[]> classData = new ArrayList<>();
+    int classDataSize = 0;
+    for (int classType : classDefs) {
+      classData.add(writeClassData(classType));
+      classDataSize += classData.get(classData.size() - 1).length;
+    }
+    int debugInfoOffset = classDataOffset + classDataSize;
+    int mapOffset = debugInfoOffset + debugInfoSize;
+    List<int[]> mapItems = new ArrayList<>();
+    mapItems.add(new int[] {0x0000, 1, 0});
+    mapItems.add(new int[] {0x0001, strings.size(), stringIdsOffset});
+    mapItems.add(new int[] {0x0002, types.size(), typeIdsOffset});
+    mapItems.add(new int[] {0x0004, fields.size(), fieldIdsOffset});
+    mapItems.add(new int[] {0x0005, methods.size(), methodIdsOffset});
+    if (!classDefs.isEmpty()) {
+      mapItems.add(new int[] {0x0006, classDefs.size(), classDefsOffset});
+    }
+    mapItems.add(new int[] {0x2002, strings.size(), stringDataOffset});
+    if (!classDefs.isEmpty()) {
+      mapItems.add(new int[] {0x2000, classDefs.size(), classDataOffset});
+    }
+    if (debugInfoSize > 0) {
+      mapItems.add(new int[] {0x2003, 1, debugInfoOffset});
+    }
+    mapItems.add(new int[] {0x1000, 1, mapOffset});
+    int fileSize = mapOffset + 4 + 12 * mapItems.size();
+
+    ByteBuffer dex = ByteBuffer.allocate(fileSize).order(ByteOrder.LITTLE_ENDIAN);
+    dex.put("dex\n035\0".getBytes(UTF_8));
+    dex.putInt(0x20, fileSize);
+    dex.putInt(0x24, HEADER_SIZE);
+    dex.putInt(0x28, 0x12345678);
+    dex.putInt(0x34, mapOffset);
+    dex.putInt(0x38, strings.size()).putInt(0x3C, stringIdsOffset);
+    dex.putInt(0x40, types.size()).putInt(0x44, typeIdsOffset);
+    dex.putInt(0x50, fields.size()).putInt(0x54, fieldIdsOffset);
+    dex.putInt(0x58, methods.size()).putInt(0x5C, methodIdsOffset);
+    dex.putInt(0x60, classDefs.size()).putInt(0x64, classDefsOffset);
+
+    int position = stringDataOffset;
+    for (String string : strings.keySet()) {
+      byte[] bytes = string.getBytes(UTF_8);
+      dex.putInt(stringIdsOffset + 4 * strings.get(string), position);
+      // Strings used in tests are shorter than 128 characters, with a single byte ULEB128 length.
+      dex.put(position, (byte) string.length());
+      for (int index = 0; index < bytes.length; index++) {
+        dex.put(position + 1 + index, bytes[index]);
+      }
+      position += bytes.length + 2;
+    }
+    for (Map.Entry<String, Integer> type : types.entrySet()) {
+      dex.putInt(typeIdsOffset + 4 * type.getValue(), strings.get(type.getKey()));
+    }
+    for (int field = 0; field < fields.size(); field++) {
+      dex.putShort(fieldIdsOffset + 8 * field, (short) fields.get(field)[0]);
+      dex.putInt(fieldIdsOffset + 8 * field + 4, fields.get(field)[1]);
+    }
+    for (int method = 0; method < methods.size(); method++) {
+      dex.putShort(methodIdsOffset + 8 * method, (short) methods.get(method)[0]);
+      dex.putInt(methodIdsOffset + 8 * method + 4, methods.get(method)[1]);
+    }
+    position = classDataOffset;
+    for (int classDef = 0; classDef < classDefs.size(); classDef++) {
+      int classDefOffset = classDefsOffset + 32 * classDef;
+      dex.putInt(classDefOffset, classDefs.get(classDef));
+      dex.putInt(classDefOffset + 4, ACC_PUBLIC);
+      dex.putInt(classDefOffset + 8, NO_INDEX);
+      dex.putInt(classDefOffset + 16, NO_INDEX);
+      dex.putInt(classDefOffset + 24, position);
+      byte[] bytes = classData.get(classDef);
+      for (int index = 0; index < bytes.length; index++) {
+        dex.put(position + index, bytes[index]);
+      }
+      position += bytes.length;
+    }
+    dex.putInt(mapOffset, mapItems.size());
+    for (int item = 0; item < mapItems.size(); item++) {
+      int itemOffset = mapOffset + 4 + 12 * item;
+      dex.putShort(itemOffset, (short) mapItems.get(item)[0]);
+      dex.putInt(itemOffset + 4, mapItems.get(item)[1]);
+      dex.putInt(itemOffset + 8, mapItems.get(item)[2]);
+    }
+    dex.rewind();
+    return dex;
+  }
+
+  /** Writes the class data item listing the fields and methods of the class. */
+  private byte[] writeClassData(int classType) {
+    ByteArrayOutputStream classData = new ByteArrayOutputStream();
+    List<Integer> classFields = new ArrayList<>();
+    for (int field = 0; field < fields.size(); field++) {
+      if (fields.get(field)[0] == classType) {
+        classFields.add(field);
+      }
+    }
+    List<Integer> classMethods = new ArrayList<>();
+    for (int method = 0; method < methods.size(); method++) {
+      if (methods.get(method)[0] == classType) {
+        classMethods.add(method);
+      }
+    }
+    // Sizes of the static fields, instance fields, direct methods and virtual methods.
+    writeUleb128(classData, 0);
+    writeUleb128(classData, classFields.size());
+    writeUleb128(classData, 0);
+    writeUleb128(classData, classMethods.size());
+    int previous = 0;
+    for (int field : classFields) {
+      writeUleb128(classData, field - previous);
+      writeUleb128(classData, ACC_PUBLIC);
+      previous = field;
+    }
+    previous = 0;
+    for (int method : classMethods) {
+      writeUleb128(classData, method - previous);
+      writeUleb128(classData, ACC_PUBLIC);
+      writeUleb128(classData, 0); // code_off
+      previous = method;
+    }
+    return classData.toByteArray();
+  }
+
+  private static void writeUleb128(ByteArrayOutputStream output, int value) {
+    while ((value & ~0x7f) != 0) {
+      output.write((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    output.write(value);
+  }
+}
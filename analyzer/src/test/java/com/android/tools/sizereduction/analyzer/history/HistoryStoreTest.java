@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.history;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.history.HistoryStore.DataPoint;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.play.bit.proto.SizeAnalyzerLog.BundleSizeBreakdown;
+import com.google.play.bit.proto.SizeAnalyzerLog.SizeAnalysisLog;
+import com.google.play.bit.proto.SizeAnalyzerLog.SuggestionsByIssueType;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class HistoryStoreTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void query_returnsValuesOfRunsInOrder() {
+    HistoryStore historyStore = new HistoryStore(temporaryFolder.getRoot().toPath());
+    historyStore.append(1000L, "abc", ImmutableMap.of("total/dex_bytes", 10L, "other", 1L));
+    historyStore.append(2000L, "def", ImmutableMap.of("other", 2L));
+    historyStore.append(3000L, "ghi", ImmutableMap.of("total/dex_bytes", 30L));
+
+    List<DataPoint> dataPoints = new ArrayList<>();
+    historyStore.query("total/dex_bytes", Integer.MAX_VALUE, dataPoints::add);
+
+    assertThat(dataPoints)
+        .containsExactly(
+            DataPoint.create(1000L, "abc", 10L), DataPoint.create(3000L, "ghi", 30L))
+        .inOrder();
+    assertThat(historyStore.getMetricNames()).containsExactly("total/dex_bytes", "other").inOrder();
+  }
+
+  @Test
+  public void query_limitsToLastValues() {
+    HistoryStore historyStore = new HistoryStore(temporaryFolder.getRoot().toPath());
+    for (long run = 0; run < 10; run++) {
+      historyStore.append(run, "rev" + run, ImmutableMap.of("metric", run * 100));
+    }
+
+    List<DataPoint> dataPoints = new ArrayList<>();
+    historyStore.query("metric", /* lastValues= */ 2, dataPoints::add);
+
+    assertThat(dataPoints)
+        .containsExactly(DataPoint.create(8L, "rev8", 800L), DataPoint.create(9L, "rev9", 900L))
+        .inOrder();
+  }
+
+  @Test
+  public void query_truncatesLongRevisionsOnCharacterBoundary() {
+    HistoryStore historyStore = new HistoryStore(temporaryFolder.getRoot().toPath());
+    // 63 single-byte characters leave one byte, too few for the two-byte character.
+    String revision = Strings.repeat("a", 63) + "\u00e9";
+    historyStore.append(1000L, revision, ImmutableMap.of("metric", 1L));
+
+    List<DataPoint> dataPoints = new ArrayList<>();
+    historyStore.query("metric", Integer.MAX_VALUE, dataPoints::add);
+
+    assertThat(dataPoints).containsExactly(DataPoint.create(1000L, Strings.repeat("a", 63), 1L));
+  }
+
+  @Test
+  public void query_unknownMetricReturnsNothing() {
+    HistoryStore historyStore = new HistoryStore(temporaryFolder.getRoot().toPath());
+
+    List<DataPoint> dataPoints = new ArrayList<>();
+    historyStore.query("metric", Integer.MAX_VALUE, dataPoints::add);
+
+    assertThat(dataPoints).isEmpty();
+  }
+
+  @Test
+  public void fromSizeAnalysisLog_namesMetricsByModuleAndIssueType() {
+    SizeAnalysisLog sizeAnalysisLog =
+        SizeAnalysisLog.newBuilder()
+            .setBundleSizeBreakdown(BundleSizeBreakdown.newBuilder().setDexBytes(100L))
+            .addModuleSizeBreakdowns(
+                BundleSizeBreakdown.newBuilder().setModuleName("base").setAssetBytes(20L))
+            .addSuggestionsByIssueType(
+                SuggestionsByIssueType.newBuilder()
+                    .setIssueType("MEDIA_STREAMING")
+                    .setCategory("LARGE_FILES")
+                    .setSuggestionCount(2)
+                    .setEstimatedSavingsBytes(5L))
+            .addSuggestionsByIssueType(
+                SuggestionsByIssueType.newBuilder()
+                    .setIssueType("QUESTIONABLE_FILE")
+                    .setCategory("LARGE_FILES")
+                    .setSuggestionCount(1)
+                    .setEstimatedSavingsBytes(7L))
+            .build();
+
+    ImmutableMap<String, Long> metrics = HistoryMetrics.fromSizeAnalysisLog(sizeAnalysisLog);
+
+    assertThat(metrics).containsEntry("total/dex_bytes", 100L);
+    assertThat(metrics).containsEntry("total/asset_bytes", 0L);
+    assertThat(metrics).containsEntry("module/base/asset_bytes", 20L);
+    assertThat(metrics).containsEntry("issue/MEDIA_STREAMING/count", 2L);
+    assertThat(metrics).containsEntry("issue/QUESTIONABLE_FILE/estimated_savings_bytes", 7L);
+    assertThat(metrics).containsEntry("category/LARGE_FILES/count", 3L);
+    assertThat(metrics).containsEntry("category/LARGE_FILES/estimated_savings_bytes", 12L);
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.build.bundletool.model.BundleModule;
+import com.android.tools.build.bundletool.model.ModuleEntry;
+import com.android.tools.sizereduction.analyzer.dex.DexFile;
+import com.android.tools.sizereduction.analyzer.utils.TestUtils;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.ZipFile;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class AnalysisSessionTest {
+
+  private static final String APP_BUNDLE = "app.aab";
+
+  @Test
+  public void getAppBundle_isBuiltOnce() throws Exception {
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile(APP_BUNDLE))) {
+      AnalysisSession session = AnalysisSession.create(bundleZip);
+
+      assertThat(session.getAppBundle()).isSameAs(session.getAppBundle());
+      assertThat(session.getCentralDirectory()).isSameAs(session.getCentralDirectory());
+    }
+  }
+
+  @Test
+  public void findModuleEntriesUnderPath_matchesBundleModule() throws Exception {
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile(APP_BUNDLE))) {
+      AnalysisSession session = AnalysisSession.create(bundleZip);
+
+      for (BundleModule module : session.getAppBundle().getModules().values()) {
+        assertThat(
+                session
+                    .findModuleEntriesUnderPath(module, BundleModule.RESOURCES_DIRECTORY)
+                    .map(ModuleEntry::getPath)
+                    .collect(toImmutableList()))
+            .containsExactlyElementsIn(
+                module
+                    .findEntriesUnderPath(BundleModule.RESOURCES_DIRECTORY)
+                    .map(ModuleEntry::getPath)
+                    .collect(toImmutableList()));
+      }
+    }
+  }
+
+  @Test
+  public void getDexEntryNames_areBundleEntries() throws Exception {
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile(APP_BUNDLE))) {
+      AnalysisSession session = AnalysisSession.create(bundleZip);
+
+      assertThat(session.getDexEntryNames()).isNotEmpty();
+      for (String dexEntryName : session.getDexEntryNames()) {
+        assertThat(dexEntryName).endsWith(".dex");
+        assertThat(session.getCentralDirectory().findEntry(dexEntryName).isPresent()).isTrue();
+      }
+    }
+  }
+
+  @Test
+  public void getResourceTableAnalyses_coversModulesWithResourceTable() throws Exception {
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile(APP_BUNDLE))) {
+      AnalysisSession session = AnalysisSession.create(bundleZip);
+
+      assertThat(session.getResourceTableAnalyses().keySet()).containsExactly("base");
+      assertThat(session.getResourceTableAnalyses().get("base").getTypeSizes()).isNotEmpty();
+    }
+  }
+
+  @Test
+  public void getProguardMap_isEmptyWithoutMappingFile() throws Exception {
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile(APP_BUNDLE));
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      assertThat(session.getProguardMap().getClassCount()).isEqualTo(0);
+      assertThat(session.getProguardMap()).isSameAs(session.getProguardMap());
+    }
+  }
+
+  @Test
+  public void readEntryPrefix_readsStartOfEntry() throws Exception {
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile(APP_BUNDLE));
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      BundleEntryTable entryTable = session.getEntryTable();
+      int index = entryTable.findEntry("base/dex/classes.dex").getAsInt();
+
+      ByteBuffer prefix = session.readEntryPrefix(index, 4);
+
+      assertThat(prefix.remaining()).isEqualTo(4);
+      assertThat(prefix.get(0)).isEqualTo((byte) 'd');
+      assertThat(prefix.get(3)).isEqualTo((byte) '\n');
+      assertThat(session.readEntryPrefix(index, Integer.MAX_VALUE).remaining())
+          .isEqualTo((int) entryTable.getSize(index));
+    }
+  }
+
+  @Test
+  public void mapEntryContent_matchesEntryContent() throws Exception {
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile(APP_BUNDLE));
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      BundleEntryTable entryTable = session.getEntryTable();
+      int index = entryTable.findEntry("base/dex/classes.dex").getAsInt();
+      ByteBuffer content = session.mapEntryContent(index);
+
+      byte[] expected;
+      try (InputStream entryStream =
+          bundleZip.getInputStream(bundleZip.getEntry("base/dex/classes.dex"))) {
+        expected = ByteStreams.toByteArray(entryStream);
+      }
+      byte[] mapped = new byte[content.remaining()];
+      content.get(mapped);
+      assertThat(mapped).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void getDexFile_isParsedOnce() throws Exception {
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile(APP_BUNDLE));
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      int index = session.getEntryTable().findEntry("base/dex/classes.dex").getAsInt();
+
+      DexFile dex = session.getDexFile(index);
+
+      assertThat(dex.getClassDefCount()).isGreaterThan(0);
+      assertThat(session.getDexFile(index)).isSameAs(dex);
+    }
+  }
+
+  @Test
+  public void getCompressionRatio_comparesCompressedAndUncompressedSizes() throws Exception {
+    try (ZipFile bundleZip = new ZipFile(TestUtils.getTestDataFile(APP_BUNDLE));
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      BundleEntryTable entryTable = session.getEntryTable();
+      int index = entryTable.findEntry("base/dex/classes.dex").getAsInt();
+
+      assertThat(session.getCompressionRatio(ImmutableList.of(index)))
+          .isEqualTo((double) entryTable.getCompressedSize(index) / entryTable.getSize(index));
+      assertThat(session.getCompressionRatio(ImmutableList.of())).isEqualTo(1.0);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.android.tools.sizereduction.analyzer.model.testing.FakeBinaryManifest;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class BinaryManifestTest {
+
+  @Test
+  public void parse_readsMinSdkVersionAndMetadata() {
+    BinaryManifest manifest =
+        BinaryManifest.parse(
+            FakeBinaryManifest.create(
+                /* minSdkVersion= */ 21, "com.google.android.wearable.beta.app", "other"));
+
+    assertThat(manifest.getMinSdkVersion()).isEqualTo(21);
+    assertThat(manifest.getMetadataNames())
+        .containsExactly("com.google.android.wearable.beta.app", "other");
+  }
+
+  @Test
+  public void parse_rejectsTextManifest() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> BinaryManifest.parse("<manifest/>".getBytes(UTF_8)));
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.utils.TestUtils;
+import com.android.tools.sizereduction.analyzer.zip.ZipCentralDirectory;
+import com.android.tools.sizereduction.analyzer.zip.ZipEntryReader;
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class BundleEntryTableTest {
+
+  private static final String APP_BUNDLE = "app.aab";
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void create_matchesZipEntries() throws Exception {
+    File bundleFile = TestUtils.getTestDataFile(APP_BUNDLE);
+
+    BundleEntryTable table =
+        BundleEntryTable.create(ZipCentralDirectory.open(bundleFile.toPath()));
+
+    try (ZipFile zipFile = new ZipFile(bundleFile)) {
+      List<? extends ZipEntry> entries = Collections.list(zipFile.entries());
+      assertThat(table.getEntryCount()).isEqualTo(entries.size());
+      for (int index = 0; index < entries.size(); index++) {
+        ZipEntry entry = entries.get(index);
+        assertThat(table.getName(index)).isEqualTo(entry.getName());
+        assertThat(table.isDirectory(index)).isEqualTo(entry.isDirectory());
+        assertThat(table.getSize(index)).isEqualTo(entry.getSize());
+        assertThat(table.getCompressedSize(index)).isEqualTo(entry.getCompressedSize());
+        assertThat(table.getCrc(index)).isEqualTo((int) entry.getCrc());
+        Optional<String> moduleName = BundleEntryType.getModuleName(entry.getName());
+        int moduleId = table.getModuleId(index);
+        assertThat(
+                moduleId == BundleEntryTable.NO_MODULE
+                    ? Optional.empty()
+                    : Optional.of(table.getModuleName(moduleId)))
+            .isEqualTo(moduleName);
+        assertThat(table.getPathWithinModule(index))
+            .isEqualTo(new ZipFileData(zipFile, entry).getPathWithinModule().toString());
+      }
+    }
+  }
+
+  @Test
+  public void create_internsPathSegments() throws Exception {
+    File zip =
+        writeZip(
+            "base/res/drawable/a.png",
+            "base/res/drawable/b.png",
+            "feature/res/drawable/a.png",
+            "feature/res/",
+            "BUNDLE-METADATA/com.android.tools/a.png",
+            "BundleConfig.pb");
+
+    BundleEntryTable table = BundleEntryTable.create(ZipCentralDirectory.open(zip.toPath()));
+
+    // base, res, drawable, a.png, b.png, feature, BUNDLE-METADATA, com.android.tools,
+    // BundleConfig.pb
+    assertThat(table.getSegmentCount()).isEqualTo(9);
+    assertThat(table.getModuleCount()).isEqualTo(2);
+    assertThat(table.getModuleName(table.getModuleId(0))).isEqualTo("base");
+    assertThat(table.getModuleName(table.getModuleId(2))).isEqualTo("feature");
+    assertThat(table.getModuleId(4)).isEqualTo(BundleEntryTable.NO_MODULE);
+    assertThat(table.getModuleId(5)).isEqualTo(BundleEntryTable.NO_MODULE);
+    assertThat(table.getName(3)).isEqualTo("feature/res/");
+    assertThat(table.isDirectory(3)).isTrue();
+    assertThat(table.getPathWithinModule(2)).isEqualTo("res/drawable/a.png");
+    assertThat(table.getPathWithinModule(4)).isEqualTo("BUNDLE-METADATA/com.android.tools/a.png");
+  }
+
+  @Test
+  public void createWithoutModules_keepsEntriesOutsideModules() throws Exception {
+    File zip = writeZip("res/drawable/a.png", "lib/x86/a.so", "AndroidManifest.xml");
+
+    BundleEntryTable table =
+        BundleEntryTable.createWithoutModules(ZipCentralDirectory.open(zip.toPath()));
+
+    assertThat(table.getEntryCount()).isEqualTo(3);
+    assertThat(table.getModuleCount()).isEqualTo(0);
+    assertThat(table.getModuleId(0)).isEqualTo(BundleEntryTable.NO_MODULE);
+    assertThat(table.getModuleId(2)).isEqualTo(BundleEntryTable.NO_MODULE);
+    assertThat(table.getPathWithinModule(0)).isEqualTo("res/drawable/a.png");
+    assertThat(table.getPathWithinModule(1)).isEqualTo("lib/x86/a.so");
+  }
+
+  @Test
+  public void builder_addsEntriesBeyondExpectedCount() throws Exception {
+    BundleEntryTable.Builder builder = BundleEntryTable.builder();
+    for (int index = 0; index < 3000; index++) {
+      builder.addEntry(
+          "base/assets/" + index + ".txt",
+          /* size= */ index,
+          /* compressedSize= */ index / 2,
+          /* localHeaderOffset= */ -1,
+          /* crc= */ index,
+          /* compressed= */ index % 2 == 0);
+    }
+
+    BundleEntryTable table = builder.build();
+
+    assertThat(table.getEntryCount()).isEqualTo(3000);
+    assertThat(table.getModuleCount()).isEqualTo(1);
+    assertThat(table.getName(2999)).isEqualTo("base/assets/2999.txt");
+    assertThat(table.getSize(2999)).isEqualTo(2999);
+    assertThat(table.getCompressedSize(2999)).isEqualTo(1499);
+    assertThat(table.isCompressed(2998)).isTrue();
+    assertThat(table.isCompressed(2999)).isFalse();
+  }
+
+  @Test
+  public void findEntry_findsEntriesByName() throws Exception {
+    BundleEntryTable table =
+        BundleEntryTable.create(
+            ZipCentralDirectory.open(
+                writeZip("base/res/drawable/a.png", "feature/res/", "BundleConfig.pb").toPath()));
+
+    assertThat(table.findEntry("base/res/drawable/a.png")).hasValue(0);
+    assertThat(table.findEntry("feature/res/")).hasValue(1);
+    assertThat(table.findEntry("BundleConfig.pb")).hasValue(2);
+    assertThat(table.findEntry("feature/res")).isEmpty();
+    assertThat(table.findEntry("base/res/drawable")).isEmpty();
+    assertThat(table.findEntry("base/res/drawable/a.pngx")).isEmpty();
+  }
+
+  @Test
+  public void fileData_movesOverEntries() throws Exception {
+    File zip = writeZip("base/assets/a.txt", "feature/assets/b.txt");
+
+    BundleEntryTable table = BundleEntryTable.create(ZipCentralDirectory.open(zip.toPath()));
+    try (ZipEntryReader entryReader = ZipEntryReader.open(zip.toPath())) {
+      BundleEntryFileData fileData = new BundleEntryFileData(entryReader, table);
+
+      for (int index = 0; index < table.getEntryCount(); index++) {
+        fileData.moveTo(index);
+        String name = table.getName(index);
+
+        assertThat(fileData.getPathWithinRoot().toString()).isEqualTo(name);
+        assertThat(fileData.getPathWithinModule().toString())
+            .isEqualTo(name.substring(name.indexOf('/') + 1));
+        assertThat(fileData.getSize()).isEqualTo(name.length());
+        try (InputStream inputStream = fileData.getInputStream()) {
+          assertThat(new String(ByteStreams.toByteArray(inputStream), UTF_8)).isEqualTo(name);
+        }
+      }
+    }
+  }
+
+  /** Writes a zip file with the given entries, each containing its own name. */
+  private File writeZip(String... entryNames) throws Exception {
+    File zip = temporaryFolder.newFile();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(zip))) {
+      for (String entryName : entryNames) {
+        zipOutputStream.putNextEntry(new ZipEntry(entryName));
+        if (!entryName.endsWith("/")) {
+          zipOutputStream.write(entryName.getBytes(UTF_8));
+        }
+        zipOutputStream.closeEntry();
+      }
+    }
+    return zip;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class EntryTargetingTest {
+
+  @Test
+  public void getAbi_readsNativeLibraryDirectory() {
+    assertThat(EntryTargeting.getAbi("lib/arm64-v8a/libgame.so")).hasValue("arm64-v8a");
+    assertThat(EntryTargeting.getAbi("lib/libgame.so")).isEmpty();
+    assertThat(EntryTargeting.getAbi("assets/lib/x86/libgame.so")).isEmpty();
+  }
+
+  @Test
+  public void getLanguage_readsResourceQualifiersAndAssetDirectories() {
+    assertThat(EntryTargeting.getLanguage("res/raw-fr-rCA-xhdpi/intro.txt")).hasValue("fr");
+    assertThat(EntryTargeting.getLanguage("res/raw-b+sr+Latn/intro.txt")).hasValue("sr");
+    assertThat(EntryTargeting.getLanguage("assets/voices#lang_de/intro.ogg")).hasValue("de");
+    assertThat(EntryTargeting.getLanguage("res/drawable-car/icon.png")).isEmpty();
+    assertThat(EntryTargeting.getLanguage("res/drawable-mcc310/icon.png")).isEmpty();
+    assertThat(EntryTargeting.getLanguage("res/drawable/icon.png")).isEmpty();
+  }
+
+  @Test
+  public void getDensity_readsDensityQualifiers() {
+    assertThat(EntryTargeting.getDensity("res/drawable-xxhdpi-v4/icon.png")).hasValue(480);
+    assertThat(EntryTargeting.getDensity("res/drawable-420dpi/icon.png")).hasValue(420);
+    assertThat(EntryTargeting.getDensity("res/drawable-nodpi/icon.png")).isEmpty();
+    assertThat(EntryTargeting.getDensity("assets/drawable-xxhdpi/icon.png")).isEmpty();
+  }
+
+  @Test
+  public void getDensityGroup_isSharedByDensityVariants() {
+    assertThat(EntryTargeting.getDensityGroup("res/drawable-xxhdpi-v4/icon.png"))
+        .isEqualTo(EntryTargeting.getDensityGroup("res/drawable-mdpi-v4/icon.png"));
+    assertThat(EntryTargeting.getDensityGroup("res/drawable-xxhdpi-v4/icon.png"))
+        .isNotEqualTo(EntryTargeting.getDensityGroup("res/drawable-xxhdpi/icon.png"));
+  }
+
+  @Test
+  public void getLocaleLanguage_stripsRegionAndScript() {
+    assertThat(EntryTargeting.getLocaleLanguage("fr-CA")).isEqualTo("fr");
+    assertThat(EntryTargeting.getLocaleLanguage("en_US")).isEqualTo("en");
+    assertThat(EntryTargeting.getLocaleLanguage("b+sr+Latn")).isEqualTo("sr");
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.model.testing;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes minimal binary AndroidManifest.xml documents, with a uses-sdk element and meta-data
+ * elements, in the binary XML format of aapt.
+ */
+public final class FakeBinaryManifest {
+
+  private static final int MIN_SDK_VERSION_ATTRIBUTE_ID = 0x0101020c;
+  private static final int NAME_ATTRIBUTE_ID = 0x01010003;
+  private static final int TYPE_STRING = 0x03;
+  private static final int TYPE_INT_DEC = 0x10;
+
+  private FakeBinaryManifest() {}
+
+  /** Returns a binary manifest with the given min SDK version and meta-data names. */
+  public static byte[] create(int minSdkVersion, String... metadataNames) {
+    // The attribute names come first, so that the resource map covers them.
+    List<String> strings =
+        new ArrayList<>(
+            Arrays.asList("minSdkVersion", "name", "manifest", "uses-sdk", "meta-data"));
+    strings.addAll(Arrays.asList(metadataNames));
+
+    ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+    writeChunk(chunks, stringPool(strings));
+    writeChunk(chunks, chunk(0x0180, 8, MIN_SDK_VERSION_ATTRIBUTE_ID, NAME_ATTRIBUTE_ID));
+    writeChunk(chunks, startElement(/* name= */ 2));
+    writeChunk(
+        chunks,
+        startElement(/* name= */ 3, /* attributeName= */ 0, -1, TYPE_INT_DEC, minSdkVersion));
+    for (int i = 0; i < metadataNames.length; i++) {
+      int value = 5 + i;
+      writeChunk(
+          chunks, startElement(/* name= */ 4, /* attributeName= */ 1, value, TYPE_STRING, value));
+    }
+
+    ByteBuffer document = ByteBuffer.allocate(8 + chunks.size()).order(ByteOrder.LITTLE_ENDIAN);
+    document.putShort((short) 0x0003).putShort((short) 8).putInt(8 + chunks.size());
+    document.put(chunks.toByteArray());
+    return document.array();
+  }
+
+  private static byte[] stringPool(List<String> strings) {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    int[] offsets = new int[strings.size()];
+    for (int i = 0; i < strings.size(); i++) {
+      offsets[i] = data.size();
+      byte[] bytes = strings.get(i).getBytes(UTF_8);
+      data.write(strings.get(i).length());
+      data.write(bytes.length);
+      data.write(bytes, 0, bytes.length);
+      data.write(0);
+    }
+    while (data.size() % 4 != 0) {
+      data.write(0);
+    }
+    int headerSize = 28;
+    int stringsStart = headerSize + 4 * strings.size();
+    ByteBuffer chunk =
+        ByteBuffer.allocate(stringsStart + data.size()).order(ByteOrder.LITTLE_ENDIAN);
+    chunk.putShort((short) 0x0001).putShort((short) headerSize).putInt(chunk.capacity());
+    chunk.putInt(strings.size()).putInt(0).putInt(1 << 8).putInt(stringsStart).putInt(0);
+    for (int offset : offsets) {
+      chunk.putInt(offset);
+    }
+    chunk.put(data.toByteArray());
+    return chunk.array();
+  }
+
+  /** A start element with no attribute, or with one attribute given as name, raw, type, data. */
+  private static byte[] startElement(int name, int... attribute) {
+    int attributeCount = attribute.length == 0 ? 0 : 1;
+    ByteBuffer chunk =
+        ByteBuffer.allocate(16 + 20 + 20 * attributeCount).order(ByteOrder.LITTLE_ENDIAN);
+    chunk.putShort((short) 0x0102).putShort((short) 16).putInt(chunk.capacity());
+    chunk.putInt(/* lineNumber= */ 1).putInt(/* comment= */ -1);
+    chunk.putInt(/* namespace= */ -1).putInt(name);
+    chunk.putShort((short) 20).putShort((short) 20).putShort((short) attributeCount);
+    chunk.putShort((short) 0).putShort((short) 0).putShort((short) 0);
+    if (attributeCount == 1) {
+      chunk.putInt(/* namespace= */ -1).putInt(attribute[0]).putInt(attribute[1]);
+      chunk.putShort((short) 8).put((byte) 0).put((byte) attribute[2]).putInt(attribute[3]);
+    }
+    return chunk.array();
+  }
+
+  private static byte[] chunk(int type, int headerSize, int... values) {
+    ByteBuffer chunk =
+        ByteBuffer.allocate(headerSize + 4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+    chunk.putShort((short) type).putShort((short) headerSize).putInt(chunk.capacity());
+    for (int value : values) {
+      chunk.putInt(value);
+    }
+    return chunk.array();
+  }
+
+  private static void writeChunk(ByteArrayOutputStream chunks, byte[] chunk) {
+    chunks.write(chunk, 0, chunk.length);
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.resources;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.aapt.Resources.ConfigValue;
+import com.android.aapt.Resources.Configuration;
+import com.android.aapt.Resources.Configuration.UiModeNight;
+import com.android.aapt.Resources.Entry;
+import com.android.aapt.Resources.EntryId;
+import com.android.aapt.Resources.FileReference;
+import com.android.aapt.Resources.Item;
+import com.android.aapt.Resources.Package;
+import com.android.aapt.Resources.PackageId;
+import com.android.aapt.Resources.ResourceTable;
+import com.android.aapt.Resources.Type;
+import com.android.aapt.Resources.TypeId;
+import com.android.aapt.Resources.Value;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
+import java.io.ByteArrayInputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ResourceTableAnalysisTest {
+
+  private static final int ICON_ID = 0x7f010000;
+  private static final int TITLE_ID = 0x7f020000;
+
+  private static final ConfigValue DEFAULT_TITLE = stringValue(Configuration.getDefaultInstance());
+  private static final ConfigValue FRENCH_TITLE =
+      stringValue(Configuration.newBuilder().setLocale("fr").build());
+  private static final ConfigValue FRENCH_NIGHT_TITLE =
+      stringValue(
+          Configuration.newBuilder()
+              .setLocale("fr")
+              .setUiModeNight(UiModeNight.UI_MODE_NIGHT_NIGHT)
+              .build());
+  private static final ConfigValue MDPI_ICON =
+      fileValue(Configuration.newBuilder().setDensity(160).build(), "res/drawable-mdpi/icon.png");
+  private static final ConfigValue XHDPI_ICON =
+      fileValue(Configuration.newBuilder().setDensity(320).build(), "res/drawable-xhdpi/icon.png");
+
+  private static final ResourceTable RESOURCE_TABLE =
+      ResourceTable.newBuilder()
+          .addPackage(
+              Package.newBuilder()
+                  .setPackageId(PackageId.newBuilder().setId(0x7f))
+                  .setPackageName("com.example.app")
+                  .addType(
+                      Type.newBuilder()
+                          .setTypeId(TypeId.newBuilder().setId(0x01))
+                          .setName("drawable")
+                          .addEntry(
+                              Entry.newBuilder()
+                                  .setEntryId(EntryId.newBuilder().setId(0))
+                                  .setName("icon")
+                                  .addConfigValue(MDPI_ICON)
+                                  .addConfigValue(XHDPI_ICON)))
+                  .addType(
+                      Type.newBuilder()
+                          .setTypeId(TypeId.newBuilder().setId(0x02))
+                          .setName("string")
+                          .addEntry(
+                              Entry.newBuilder()
+                                  .setEntryId(EntryId.newBuilder().setId(0))
+                                  .setName("title")
+                                  .addConfigValue(DEFAULT_TITLE)
+                                  .addConfigValue(FRENCH_TITLE)
+                                  .addConfigValue(FRENCH_NIGHT_TITLE))))
+          .build();
+
+  private static final BundleEntryTable ENTRY_TABLE =
+      BundleEntryTable.builder()
+          .addEntry("base/manifest/AndroidManifest.xml", 100, 50, 0, 0, true)
+          .addEntry("base/res/drawable-mdpi/icon.png", 1000, 1000, 0, 0, false)
+          .addEntry("base/res/drawable-xhdpi/icon.png", 4000, 4000, 0, 0, false)
+          .addEntry("base/resources.pb", 500, 250, 0, 0, true)
+          .build();
+
+  @Test
+  public void analyze_breaksDownSizesByTypeAndPackage() throws Exception {
+    ResourceTableAnalysis analysis = analyze(/* compressionRatio= */ 1);
+
+    assertThat(analysis.getTypeSizes().get("drawable"))
+        .isEqualTo(
+            ResourceSizes.create(
+                MDPI_ICON.getSerializedSize() + XHDPI_ICON.getSerializedSize(), 5000));
+    assertThat(analysis.getTypeSizes().get("string"))
+        .isEqualTo(
+            ResourceSizes.create(
+                DEFAULT_TITLE.getSerializedSize()
+                    + FRENCH_TITLE.getSerializedSize()
+                    + FRENCH_NIGHT_TITLE.getSerializedSize(),
+                0));
+    assertThat(analysis.getPackageSizes().keySet()).containsExactly("com.example.app");
+    assertThat(analysis.getPackageSizes().get("com.example.app").getTotalSize())
+        .isEqualTo(
+            analysis.getTypeSizes().get("drawable").getTotalSize()
+                + analysis.getTypeSizes().get("string").getTotalSize());
+  }
+
+  @Test
+  public void analyze_breaksDownSizesByQualifier() throws Exception {
+    ResourceTableAnalysis analysis = analyze(/* compressionRatio= */ 1);
+
+    assertThat(analysis.getQualifierSizes().keySet())
+        .containsExactly(
+            ResourceTableAnalysis.DEFAULT_CONFIGURATION,
+            ResourceTableAnalysis.LOCALE,
+            ResourceTableAnalysis.NIGHT,
+            ResourceTableAnalysis.DENSITY);
+    assertThat(analysis.getQualifierSizes().get(ResourceTableAnalysis.LOCALE).getValueSize())
+        .isEqualTo(FRENCH_TITLE.getSerializedSize() + FRENCH_NIGHT_TITLE.getSerializedSize());
+    assertThat(analysis.getQualifierSizes().get(ResourceTableAnalysis.NIGHT).getValueSize())
+        .isEqualTo(FRENCH_NIGHT_TITLE.getSerializedSize());
+    assertThat(analysis.getLocaleSizes().keySet()).containsExactly("fr");
+    assertThat(analysis.getDensitySizes().get(160))
+        .isEqualTo(ResourceSizes.create(MDPI_ICON.getSerializedSize(), 1000));
+    assertThat(analysis.getDensitySizes().get(320))
+        .isEqualTo(ResourceSizes.create(XHDPI_ICON.getSerializedSize(), 4000));
+  }
+
+  @Test
+  public void analyze_scalesValuesByCompressionRatio() throws Exception {
+    ResourceTableAnalysis analysis = analyze(/* compressionRatio= */ 0.5);
+
+    assertThat(analysis.getLocaleSizes().get("fr").getValueSize())
+        .isEqualTo(
+            Math.round(
+                (FRENCH_TITLE.getSerializedSize() + FRENCH_NIGHT_TITLE.getSerializedSize())
+                    * 0.5));
+  }
+
+  @Test
+  public void getFileEntries_indexesFilesByResourceId() throws Exception {
+    ResourceTableAnalysis analysis = analyze(/* compressionRatio= */ 1);
+
+    assertThat(analysis.getFileEntries(ICON_ID))
+        .containsExactly(
+            ENTRY_TABLE.findEntry("base/res/drawable-mdpi/icon.png").getAsInt(),
+            ENTRY_TABLE.findEntry("base/res/drawable-xhdpi/icon.png").getAsInt());
+    assertThat(analysis.getFileEntries(TITLE_ID)).isEmpty();
+    assertThat(analysis.getFileEntries(0x7f030000)).isEmpty();
+  }
+
+  @Test
+  public void analyze_skipsUnknownFields() throws Exception {
+    byte[] resourceTable = RESOURCE_TABLE.toByteArray();
+    // A source pool, field 1 of the resource table, precedes the packages in aapt2 output.
+    byte[] withSourcePool = new byte[resourceTable.length + 4];
+    withSourcePool[0] = 0x0a;
+    withSourcePool[1] = 2;
+    withSourcePool[2] = 0x0a;
+    withSourcePool[3] = 0;
+    System.arraycopy(resourceTable, 0, withSourcePool, 4, resourceTable.length);
+
+    ResourceTableAnalysis analysis =
+        ResourceTableAnalysis.analyze(
+            new ByteArrayInputStream(withSourcePool), "base", ENTRY_TABLE, 1);
+
+    assertThat(analysis.getTypeSizes().keySet()).containsExactly("drawable", "string");
+  }
+
+  @Test
+  public void getQualifiers_reportsOtherQualifiers() {
+    assertThat(
+            ResourceTableAnalysis.getQualifiers(
+                Configuration.newBuilder().setMcc(310).setSdkVersion(21).build()))
+        .containsExactly(ResourceTableAnalysis.SDK_VERSION, ResourceTableAnalysis.OTHER_QUALIFIERS);
+  }
+
+  private static ResourceTableAnalysis analyze(double compressionRatio) throws Exception {
+    return ResourceTableAnalysis.analyze(
+        new ByteArrayInputStream(RESOURCE_TABLE.toByteArray()),
+        "base",
+        ENTRY_TABLE,
+        compressionRatio);
+  }
+
+  private static ConfigValue stringValue(Configuration config) {
+    return ConfigValue.newBuilder()
+        .setConfig(config)
+        .setValue(
+            Value.newBuilder()
+                .setItem(
+                    Item.newBuilder()
+                        .setStr(
+                            com.android.aapt.Resources.String.newBuilder()
+                                .setValue("Title " + config.getLocale()))))
+        .build();
+  }
+
+  private static ConfigValue fileValue(Configuration config, String path) {
+    return ConfigValue.newBuilder()
+        .setConfig(config)
+        .setValue(
+            Value.newBuilder()
+                .setItem(Item.newBuilder().setFile(FileReference.newBuilder().setPath(path))))
+        .build();
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DuplicateFiles;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
+import com.android.tools.sizereduction.analyzer.model.BundleContext;
+import com.android.tools.sizereduction.analyzer.model.GradleContext;
+import com.android.tools.sizereduction.analyzer.model.testing.FakeFileData;
+import com.android.tools.sizereduction.analyzer.suggesters.CollectingSuggestionSink;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DuplicateFilesSuggesterTest {
+
+  private static final String CONTENT = Strings.repeat("duplicated content ", 100);
+  private static final String OTHER_CONTENT = Strings.repeat("different content ", 100);
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final DuplicateFilesSuggester suggester = new DuplicateFilesSuggester();
+
+  @Test
+  public void processBundle_reportsDuplicatesAcrossModules() throws Exception {
+    File bundle = temporaryFolder.newFile("app.aab");
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(bundle))) {
+      writeEntry(zipOutputStream, "base/assets/intro.txt", CONTENT);
+      writeEntry(zipOutputStream, "base/res/raw/unique.txt", OTHER_CONTENT);
+      writeEntry(zipOutputStream, "feature/assets/intro.txt", CONTENT);
+      // Not part of a module.
+      writeEntry(zipOutputStream, "BUNDLE-METADATA/com.example/intro.txt", CONTENT);
+    }
+
+    ImmutableList<Suggestion> suggestions;
+    try (ZipFile bundleZip = new ZipFile(bundle);
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      suggestions = suggester.processBundle(BundleContext.create(/* minSdkVersion= */ 21), session);
+    }
+
+    assertThat(suggestions).hasSize(1);
+    Suggestion suggestion = suggestions.get(0);
+    assertThat(suggestion.getIssueType()).isEqualTo(Suggestion.IssueType.DUPLICATE_FILES);
+    assertThat(suggestion.getCategory()).isEqualTo(Suggestion.Category.DUPLICATE_FILES);
+    assertThat(suggestion.payload().getDuplicateFiles().getPathsList())
+        .containsExactly("base/assets/intro.txt", "feature/assets/intro.txt")
+        .inOrder();
+    assertThat(suggestion.payload().getDuplicateFiles().getSize()).isEqualTo(CONTENT.length());
+    assertThat(suggestion.getEstimatedBytesSaved()).isGreaterThan(0L);
+  }
+
+  @Test
+  public void processBundle_confirmsCandidatesByContent() throws Exception {
+    byte[] content = CONTENT.getBytes(UTF_8);
+    byte[] collidingContent = withSameCrc(content);
+    File bundle = temporaryFolder.newFile("app.aab");
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(bundle))) {
+      writeEntry(zipOutputStream, "base/assets/a.txt", content);
+      writeEntry(zipOutputStream, "feature/assets/b.txt", collidingContent);
+    }
+
+    try (ZipFile bundleZip = new ZipFile(bundle);
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      assertThat(bundleZip.getEntry("base/assets/a.txt").getCrc())
+          .isEqualTo(bundleZip.getEntry("feature/assets/b.txt").getCrc());
+      assertThat(suggester.processBundle(BundleContext.create(/* minSdkVersion= */ 21), session))
+          .isEmpty();
+    }
+  }
+
+  @Test
+  public void projectTree_reportsDuplicatesOnceTheTreeIsFinished() throws Exception {
+    GradleContext context = GradleContext.create(/* minSdkVersion= */ 21, 28, false);
+    CollectingSuggestionSink sink = new CollectingSuggestionSink();
+
+    suggester.processProjectEntry(
+        context, projectFile("app", "src/main/res/raw/intro.txt", CONTENT), sink);
+    suggester.processProjectEntry(
+        context, projectFile("feature", "src/main/assets/intro.txt", CONTENT), sink);
+    suggester.processProjectEntry(
+        context, projectFile("feature", "src/main/res/raw/other.txt", OTHER_CONTENT), sink);
+    // Not packaged.
+    suggester.processProjectEntry(
+        context, projectFile("app", "src/test/resources/intro.txt", CONTENT), sink);
+    assertThat(sink.getSuggestions()).isEmpty();
+
+    suggester.finishProjectTree(sink);
+
+    assertThat(sink.getSuggestions())
+        .containsExactly(
+            Suggestion.create(
+                Suggestion.IssueType.DUPLICATE_FILES,
+                Suggestion.Category.DUPLICATE_FILES,
+                Payload.newBuilder()
+                    .setDuplicateFiles(
+                        DuplicateFiles.newBuilder()
+                            .addPaths("app/src/main/res/raw/intro.txt")
+                            .addPaths("feature/src/main/assets/intro.txt")
+                            .setSize(CONTENT.length()))
+                    .build(),
+                DuplicateFilesSuggester.getSuggestionMessage(
+                    ImmutableList.of(
+                        "app/src/main/res/raw/intro.txt", "feature/src/main/assets/intro.txt")),
+                (long) CONTENT.length(),
+                /* autoFix= */ null));
+  }
+
+  private static FakeFileData projectFile(String module, String path, String content) {
+    return FakeFileData.builder()
+        .setPathWithinRoot(Paths.get(module, path))
+        .setPathWithinModule(Paths.get(path))
+        .setSize(content.length())
+        .setInputStream(new ByteArrayInputStream(content.getBytes(UTF_8)))
+        .build();
+  }
+
+  private static void writeEntry(ZipOutputStream zipOutputStream, String name, String content)
+      throws Exception {
+    writeEntry(zipOutputStream, name, content.getBytes(UTF_8));
+  }
+
+  private static void writeEntry(ZipOutputStream zipOutputStream, String name, byte[] content)
+      throws Exception {
+    zipOutputStream.putNextEntry(new ZipEntry(name));
+    zipOutputStream.write(content);
+    zipOutputStream.closeEntry();
+  }
+
+  /**
+   * Returns a different content of the same size and CRC32, obtained by adding the (bit reflected)
+   * CRC32 generator polynomial to the content.
+   */
+  private static byte[] withSameCrc(byte[] content) {
+    byte[] result = content.clone();
+    long polynomial = 0x1DB710641L;
+    for (int i = 0; i < 5; i++) {
+      result[i] ^= (byte) (polynomial >>> (8 * i));
+    }
+    return result;
+  }
+}
@@ -19,6 +19,7 @@ package com.android.tools.sizereduction.analyzer.suggesters.binaryfiles;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload;
+import com.android.tools.sizereduction.analyzer.model.ApkContext;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
 import com.android.tools.sizereduction.analyzer.model.FileData;
 import com.android.tools.sizereduction.analyzer.model.GradleContext;
@@ -195,6 +196,36 @@ public class QuestionableFilesSuggesterTest {
     testValidProjectFile(BUILD_FILE);
   }
 
+  @Test
+  public void validApkFiles() {
+    for (String filename :
+        new String[] {
+          "AndroidManifest.xml", "resources.arsc", "classes2.dex", "lib/x86/goog.so", ASSETS_FILE
+        }) {
+      FileData fileData = FakeFileData.builder(filename).setSize(LARGE_FILE_SIZE).build();
+      assertThat(
+              new QuestionableFilesSuggester()
+                  .processApkZipEntry(ApkContext.create(1, false, false), fileData))
+          .isEmpty();
+    }
+  }
+
+  @Test
+  public void invalidApkFile() {
+    FileData fileData = FakeFileData.builder("foobar.txt").setSize(LARGE_FILE_SIZE).build();
+    assertThat(
+            new QuestionableFilesSuggester()
+                .processApkZipEntry(ApkContext.create(1, false, false), fileData))
+        .containsExactly(
+            Suggestion.create(
+                Suggestion.IssueType.QUESTIONABLE_FILE,
+                Suggestion.Category.LARGE_FILES,
+                Payload.getDefaultInstance(),
+                QuestionableFilesSuggester.getSuggestionMessage(Paths.get("foobar.txt")),
+                LARGE_FILE_SIZE,
+                /* autoFix= */ null));
+  }
+
   @Test
   public void invalidSmallFile() {
     FileData fileData = FakeFileData.builder(ROOT_MISC_FILE).setSize(SMALL_FILE_SIZE).build();
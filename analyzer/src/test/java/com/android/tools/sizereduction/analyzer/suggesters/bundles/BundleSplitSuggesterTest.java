@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.bundles;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.aapt.Resources.ConfigValue;
+import com.android.aapt.Resources.Configuration;
+import com.android.aapt.Resources.Entry;
+import com.android.aapt.Resources.EntryId;
+import com.android.aapt.Resources.Item;
+import com.android.aapt.Resources.Package;
+import com.android.aapt.Resources.PackageId;
+import com.android.aapt.Resources.ResourceTable;
+import com.android.aapt.Resources.Type;
+import com.android.aapt.Resources.TypeId;
+import com.android.aapt.Resources.Value;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
+import com.android.tools.sizereduction.analyzer.resources.ResourceTableAnalysis;
+import com.android.tools.sizereduction.analyzer.suggesters.bundles.BundleSplitSuggester.SplitSavings;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class BundleSplitSuggesterTest {
+
+  private static final BundleEntryTable ENTRY_TABLE =
+      BundleEntryTable.builder()
+          .addEntry("base/manifest/AndroidManifest.xml", 100, 50, 0, 0, true)
+          .addEntry("base/lib/arm64-v8a/libapp.so", 6000, 3000, 0, 0, true)
+          .addEntry("base/lib/armeabi-v7a/libapp.so", 4000, 2000, 0, 0, true)
+          .addEntry("base/res/drawable-mdpi/icon.png", 1000, 1000, 0, 0, false)
+          .addEntry("base/res/drawable-xhdpi/icon.png", 4000, 4000, 0, 0, false)
+          .addEntry("base/res/drawable-mdpi/logo.png", 300, 300, 0, 0, false)
+          .addEntry("base/res/drawable-xxhdpi/logo.png", 900, 900, 0, 0, false)
+          .addEntry("base/res/raw-fr/intro.ogg", 500, 500, 0, 0, false)
+          .addEntry("base/assets/voice#lang_fr/hello.ogg", 300, 300, 0, 0, false)
+          .addEntry("base/res/raw-de/intro.ogg", 2000, 2000, 0, 0, false)
+          .addEntry("base/res/raw/theme.ogg", 5000, 5000, 0, 0, false)
+          .addEntry("base/resources.pb", 500, 250, 0, 0, true)
+          .build();
+
+  @Test
+  public void estimate_countsAllButLargestVariantOfEachDimension() {
+    SplitSavings savings = SplitSavings.estimate(ENTRY_TABLE, ImmutableList.of());
+
+    // The armeabi-v7a libraries, beside the larger arm64-v8a ones.
+    assertThat(savings.getAbiBytes()).isEqualTo(2000L);
+    // The mdpi variants of each drawable, beside their larger variant.
+    assertThat(savings.getDensityBytes()).isEqualTo(1000L + 300L);
+    // The French resources and assets, beside the larger German ones.
+    assertThat(savings.getLanguageBytes()).isEqualTo(500L + 300L);
+  }
+
+  @Test
+  public void estimate_addsLocalizedValuesOfResourceTables() throws Exception {
+    ResourceTableAnalysis analysis =
+        ResourceTableAnalysis.analyze(
+            new ByteArrayInputStream(createResourceTable().toByteArray()),
+            "base",
+            ENTRY_TABLE,
+            /* compressionRatio= */ 1);
+    long frenchValueSize = analysis.getLocaleSizes().get("fr").getValueSize();
+
+    SplitSavings savings = SplitSavings.estimate(ENTRY_TABLE, ImmutableList.of(analysis));
+
+    assertThat(frenchValueSize).isGreaterThan(0L);
+    assertThat(savings.getLanguageBytes()).isEqualTo(500L + 300L + frenchValueSize);
+    assertThat(savings.getAbiBytes()).isEqualTo(2000L);
+    assertThat(savings.getDensityBytes()).isEqualTo(1000L + 300L);
+  }
+
+  private static ResourceTable createResourceTable() {
+    return ResourceTable.newBuilder()
+        .addPackage(
+            Package.newBuilder()
+                .setPackageId(PackageId.newBuilder().setId(0x7f))
+                .setPackageName("com.example")
+                .addType(
+                    Type.newBuilder()
+                        .setTypeId(TypeId.newBuilder().setId(1))
+                        .setName("string")
+                        .addEntry(
+                            Entry.newBuilder()
+                                .setEntryId(EntryId.newBuilder().setId(0))
+                                .setName("title")
+                                .addConfigValue(stringValue(""))
+                                .addConfigValue(stringValue("fr")))))
+        .build();
+  }
+
+  private static ConfigValue stringValue(String locale) {
+    return ConfigValue.newBuilder()
+        .setConfig(Configuration.newBuilder().setLocale(locale))
+        .setValue(
+            Value.newBuilder()
+                .setItem(
+                    Item.newBuilder()
+                        .setStr(
+                            com.android.aapt.Resources.String.newBuilder()
+                                .setValue("Title " + locale))))
+        .build();
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.code;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ClassDefinitionTableTest {
+
+  @Test
+  public void forEachDuplicate_visitsClassesDefinedMoreThanOnce() {
+    ClassDefinitionTable table = new ClassDefinitionTable();
+    table.add(1L, 10L, 100, /* moduleId= */ 0, /* dexEntry= */ 5, /* classDef= */ 0);
+    table.add(1L, 10L, 100, /* moduleId= */ 2, /* dexEntry= */ 7, /* classDef= */ 3);
+    table.add(1L, 10L, 100, /* moduleId= */ 3, /* dexEntry= */ 8, /* classDef= */ 1);
+    // Same descriptor with a different content, and same content with a different descriptor.
+    table.add(1L, 11L, 200, /* moduleId= */ 2, /* dexEntry= */ 7, /* classDef= */ 4);
+    table.add(2L, 10L, 300, /* moduleId= */ 2, /* dexEntry= */ 7, /* classDef= */ 5);
+
+    List<long[]> duplicates = new ArrayList<>();
+    table.forEachDuplicate(
+        (dexEntry, classDef, size, count, moduleMask) ->
+            duplicates.add(new long[] {dexEntry, classDef, size, count, moduleMask}));
+
+    assertThat(table.getClassCount()).isEqualTo(3);
+    assertThat(duplicates).hasSize(1);
+    assertThat(duplicates.get(0)).asList().containsExactly(5L, 0L, 100L, 3L, 0b1101L).inOrder();
+  }
+
+  @Test
+  public void add_growsBeyondInitialCapacity() {
+    ClassDefinitionTable table = new ClassDefinitionTable();
+    for (int classDef = 0; classDef < 100_000; classDef++) {
+      table.add(classDef, 31L * classDef, 10, /* moduleId= */ 0, /* dexEntry= */ 0, classDef);
+      table.add(classDef, 31L * classDef, 10, /* moduleId= */ 1, /* dexEntry= */ 1, classDef);
+    }
+
+    int[] duplicateCount = new int[1];
+    table.forEachDuplicate(
+        (dexEntry, classDef, size, count, moduleMask) -> {
+          assertThat(dexEntry).isEqualTo(0);
+          assertThat(count).isEqualTo(2);
+          duplicateCount[0]++;
+        });
+
+    assertThat(table.getClassCount()).isEqualTo(100_000);
+    assertThat(duplicateCount[0]).isEqualTo(100_000);
+  }
+}
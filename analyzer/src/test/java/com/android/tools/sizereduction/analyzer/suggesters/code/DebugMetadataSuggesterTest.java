@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.code;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.dex.DebugOverhead;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DebugMetadataSuggesterTest {
+
+  @Test
+  public void isLarge_requiresSizeAndShare() {
+    assertThat(DebugMetadataSuggester.isLarge(DebugOverhead.create(100_000, 20_000, 0, 0, 0)))
+        .isTrue();
+    assertThat(DebugMetadataSuggester.isLarge(DebugOverhead.create(100_000, 2_000, 0, 0, 0)))
+        .isFalse();
+    assertThat(DebugMetadataSuggester.isLarge(DebugOverhead.create(10_000_000, 100_000, 0, 0, 0)))
+        .isFalse();
+  }
+
+  @Test
+  public void createMessage_listsOptionsOfLargeMetadata() {
+    String message =
+        DebugMetadataSuggester.createMessage(
+            "base", DebugOverhead.create(1_000_000, 100_000, 10_000, 100, 50_000));
+
+    assertThat(message).contains("module base");
+    assertThat(message).contains(DebugMetadataSuggester.DEBUG_INFO_OPTIONS);
+    assertThat(message).contains(DebugMetadataSuggester.KOTLIN_METADATA_OPTIONS);
+    assertThat(message).doesNotContain(DebugMetadataSuggester.SOURCE_FILE_OPTIONS);
+  }
+}
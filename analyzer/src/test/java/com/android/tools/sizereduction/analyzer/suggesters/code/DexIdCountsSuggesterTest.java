@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.code;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.sizereduction.analyzer.dex.DexIdCounts;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion.IssueType;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DexIdCountsSuggesterTest {
+
+  @Test
+  public void createSuggestions_smallModule_isEmpty() {
+    assertThat(
+            DexIdCountsSuggester.createSuggestions(
+                "base", DexIdCounts.create(1, 100_000, 900, 800, 700, 600, 5000, 5000)))
+        .isEmpty();
+  }
+
+  @Test
+  public void createSuggestions_flagsReferenceLimit() {
+    ImmutableList<Suggestion> suggestions =
+        DexIdCountsSuggester.createSuggestions(
+            "base",
+            DexIdCounts.create(1, 9_000_000, 90_000, 9000, 9000, 20_000, 62_000, 62_000));
+
+    assertThat(suggestions.stream().map(Suggestion::getIssueType).collect(toImmutableList()))
+        .containsExactly(IssueType.DEX_REFERENCE_LIMIT);
+    assertThat(suggestions.get(0).payload().getDexIdCounts().getMaxReferences())
+        .isEqualTo(62_000);
+  }
+
+  @Test
+  public void createSuggestions_multidexModuleWithFullDexFiles_isEmpty() {
+    // Four dex files filled close to the limit, as laid out by D8 and R8.
+    DexIdCounts counts =
+        DexIdCounts.create(4, 40_000_000, 300_000, 60_000, 50_000, 120_000, 255_000, 64_500);
+
+    assertThat(DexIdCountsSuggester.createSuggestions("base", counts)).isEmpty();
+  }
+
+  @Test
+  public void createSuggestions_flagsExtraDexFiles() {
+    ImmutableList<Suggestion> suggestions =
+        DexIdCountsSuggester.createSuggestions(
+            "feature", DexIdCounts.create(3, 3_000_000, 30_000, 6000, 6000, 9000, 30_000, 12_000));
+
+    assertThat(suggestions).hasSize(1);
+    assertThat(suggestions.get(0).getIssueType()).isEqualTo(IssueType.MULTIDEX_OVERHEAD);
+    assertThat(suggestions.get(0).payload().getDexIdCounts().getDexCount()).isEqualTo(3);
+    assertThat(suggestions.get(0).payload().getDexIdCounts().getMinimumDexCount())
+        .isEqualTo(1);
+    assertThat(suggestions.get(0).getEstimatedBytesSaved()).isNull();
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.code;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.SuggestionPayload.Payload.DuplicateClasses;
+import com.android.tools.sizereduction.analyzer.dex.testing.FakeDexFile;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
+import com.android.tools.sizereduction.analyzer.suggesters.Suggestion;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DuplicateClassesSuggesterTest {
+
+  private static final String LIBRARY_PREFIX = "com.example.lib";
+  // Enough classes for the duplicated code of the library to be worth reporting.
+  private static final int LIBRARY_CLASS_COUNT = 30;
+  // The class definition (32 bytes) and its empty class data (4 bytes).
+  private static final long CLASS_SIZE = 36;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void processDexEntries_reportsLibrariesDuplicatedAcrossModules() throws Exception {
+    File bundle =
+        writeBundle(
+            ImmutableMap.of(
+                "base/dex/classes.dex",
+                libraryDex().addClassDef("Lcom/example/app/Main;").build(),
+                "base/dex/classes2.dex",
+                libraryDex().addClassDef("Lcom/other/util/Helper;").build(),
+                "feature/dex/classes.dex",
+                libraryDex().addClassDef("Lcom/other/util/Helper;").build()));
+
+    try (ZipFile bundleZip = new ZipFile(bundle);
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      ImmutableList<Integer> dexEntries = findDexEntries(session);
+      ImmutableList<Suggestion> suggestions =
+          DuplicateClassesSuggester.processDexEntries(session, dexEntries);
+
+      // The library classes are defined three times, and the single duplicated class of
+      // com.other.util is too small to be reported.
+      long duplicatedSize = LIBRARY_CLASS_COUNT * CLASS_SIZE * (3 - 1);
+      assertThat(suggestions).hasSize(1);
+      Suggestion suggestion = suggestions.get(0);
+      assertThat(suggestion.getIssueType()).isEqualTo(Suggestion.IssueType.DUPLICATE_CLASSES);
+      assertThat(suggestion.payload().getDuplicateClasses())
+          .isEqualTo(
+              DuplicateClasses.newBuilder()
+                  .setLibraryPrefix(LIBRARY_PREFIX)
+                  .addModuleNames("base")
+                  .addModuleNames("feature")
+                  .setClassCount(LIBRARY_CLASS_COUNT)
+                  .setDuplicatedSize(duplicatedSize)
+                  .build());
+      assertThat(suggestion.getEstimatedBytesSaved())
+          .isEqualTo(Math.round(duplicatedSize * session.getCompressionRatio(dexEntries)));
+    }
+  }
+
+  @Test
+  public void processDexEntries_skipsInvalidDexFiles() throws Exception {
+    File bundle =
+        writeBundle(
+            ImmutableMap.of(
+                "base/dex/classes.dex",
+                libraryDex().build(),
+                "feature/dex/classes.dex",
+                libraryDex().build(),
+                "feature/dex/classes2.dex",
+                ByteBuffer.wrap("not a dex file".getBytes(UTF_8))));
+
+    try (ZipFile bundleZip = new ZipFile(bundle);
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      ImmutableList<Suggestion> suggestions =
+          DuplicateClassesSuggester.processDexEntries(session, findDexEntries(session));
+
+      assertThat(suggestions).hasSize(1);
+      assertThat(suggestions.get(0).payload().getDuplicateClasses().getDuplicatedSize())
+          .isEqualTo(LIBRARY_CLASS_COUNT * CLASS_SIZE);
+    }
+  }
+
+  @Test
+  public void getLibraryPrefix_keepsLeadingPackages() {
+    assertThat(DuplicateClassesSuggester.getLibraryPrefix("com.google.gson.internal.Excluder"))
+        .isEqualTo("com.google.gson");
+    assertThat(DuplicateClassesSuggester.getLibraryPrefix("com.google.gson.Gson"))
+        .isEqualTo("com.google.gson");
+    assertThat(DuplicateClassesSuggester.getLibraryPrefix("okio.Buffer")).isEqualTo("okio");
+    assertThat(DuplicateClassesSuggester.getLibraryPrefix("Main")).isEmpty();
+  }
+
+  /** A dex file defining the classes of the library, without fields or methods. */
+  private static FakeDexFile libraryDex() {
+    FakeDexFile dex = FakeDexFile.builder();
+    for (int index = 0; index < LIBRARY_CLASS_COUNT; index++) {
+      dex.addClassDef("L" + LIBRARY_PREFIX.replace('.', '/') + "/Class" + index + ";");
+    }
+    return dex;
+  }
+
+  private static ImmutableList<Integer> findDexEntries(AnalysisSession session) {
+    ImmutableList.Builder<Integer> dexEntries = ImmutableList.builder();
+    for (int index = 0; index < session.getEntryTable().getEntryCount(); index++) {
+      dexEntries.add(index);
+    }
+    return dexEntries.build();
+  }
+
+  private File writeBundle(ImmutableMap<String, ByteBuffer> dexFiles) throws Exception {
+    File bundle = temporaryFolder.newFile("app.aab");
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(bundle))) {
+      for (Map.Entry<String, ByteBuffer> dexFile : dexFiles.entrySet()) {
+        ByteBuffer content = dexFile.getValue().duplicate();
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        zipOutputStream.putNextEntry(new ZipEntry(dexFile.getKey()));
+        zipOutputStream.write(bytes);
+        zipOutputStream.closeEntry();
+      }
+    }
+    return bundle;
+  }
+}
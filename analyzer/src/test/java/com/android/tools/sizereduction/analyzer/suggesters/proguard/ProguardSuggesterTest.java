@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.suggesters.proguard;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.dex.testing.FakeDexFile;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
+import com.android.tools.sizereduction.analyzer.model.BundleEntryTable;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ProguardSuggesterTest {
+
+  private static final String BASE_DEX = "base/dex/classes.dex";
+  private static final String FEATURE_DEX = "feature/dex/classes.dex";
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void estimateSavings_addsUpDexFilesInCompressedBytes() throws Exception {
+    File bundle =
+        writeBundle(
+            ImmutableList.of(BASE_DEX, FEATURE_DEX),
+            ImmutableList.of(unobfuscatedDex(/* debugInfoSize= */ 100), unobfuscatedDex(50)));
+
+    try (ZipFile bundleZip = new ZipFile(bundle);
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      ImmutableList<Integer> dexEntries = findEntries(session, BASE_DEX, FEATURE_DEX);
+      double compressionRatio = session.getCompressionRatio(dexEntries);
+
+      // The unobfuscated method name computeTotal and the debug info of each dex file.
+      assertThat(ProguardSuggester.estimateSavings(session, dexEntries))
+          .isEqualTo(Math.round(((12 + 100) + (12 + 50)) * compressionRatio));
+      assertThat(compressionRatio).isLessThan(1.0);
+    }
+  }
+
+  @Test
+  public void estimateSavings_isNullWithoutEntryContent() throws Exception {
+    File bundle =
+        writeBundle(ImmutableList.of(BASE_DEX), ImmutableList.of(unobfuscatedDex(100)));
+    BundleEntryTable entryTable =
+        BundleEntryTable.builder().addEntry(BASE_DEX, 1000, 500, 0, 0, true).build();
+
+    try (ZipFile bundleZip = new ZipFile(bundle);
+        AnalysisSession session = AnalysisSession.create(bundleZip, entryTable)) {
+      assertThat(session.hasEntryContent()).isFalse();
+      assertThat(ProguardSuggester.estimateSavings(session, ImmutableList.of(0))).isNull();
+    }
+  }
+
+  @Test
+  public void estimateSavings_isNullWithoutDexFiles() throws Exception {
+    File bundle =
+        writeBundle(ImmutableList.of(BASE_DEX), ImmutableList.of(unobfuscatedDex(100)));
+
+    try (ZipFile bundleZip = new ZipFile(bundle);
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      assertThat(ProguardSuggester.estimateSavings(session, ImmutableList.of())).isNull();
+    }
+  }
+
+  @Test
+  public void estimateSavings_isNullForInvalidDexFile() throws Exception {
+    File bundle =
+        writeBundle(
+            ImmutableList.of(BASE_DEX),
+            ImmutableList.of(ByteBuffer.wrap("not a dex file".getBytes(UTF_8))));
+
+    try (ZipFile bundleZip = new ZipFile(bundle);
+        AnalysisSession session = AnalysisSession.create(bundleZip)) {
+      assertThat(ProguardSuggester.estimateSavings(session, findEntries(session, BASE_DEX)))
+          .isNull();
+    }
+  }
+
+  private static ByteBuffer unobfuscatedDex(int debugInfoSize) {
+    return FakeDexFile.builder()
+        .addMethod("Lcom/example/Main;", "computeTotal")
+        .addMethod("Lcom/example/Main;", "<init>")
+        .addField("Lcom/example/Main;", "a")
+        .setDebugInfoSize(debugInfoSize)
+        .build();
+  }
+
+  private static ImmutableList<Integer> findEntries(
+      AnalysisSession session, String... entryNames) {
+    ImmutableList.Builder<Integer> entries = ImmutableList.builder();
+    for (String entryName : entryNames) {
+      entries.add(session.getEntryTable().findEntry(entryName).getAsInt());
+    }
+    return entries.build();
+  }
+
+  private File writeBundle(ImmutableList<String> entryNames, ImmutableList<ByteBuffer> contents)
+      throws Exception {
+    File bundle = temporaryFolder.newFile("app.aab");
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(bundle))) {
+      for (int i = 0; i < entryNames.size(); i++) {
+        ByteBuffer content = contents.get(i).duplicate();
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        zipOutputStream.putNextEntry(new ZipEntry(entryNames.get(i)));
+        zipOutputStream.write(bytes);
+        zipOutputStream.closeEntry();
+      }
+    }
+    return bundle;
+  }
+}
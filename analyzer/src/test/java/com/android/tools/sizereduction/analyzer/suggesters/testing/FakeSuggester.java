@@ -16,7 +16,7 @@
 
 package com.android.tools.sizereduction.analyzer.suggesters.testing;
 
-import com.android.tools.build.bundletool.model.AppBundle;
+import com.android.tools.sizereduction.analyzer.model.AnalysisSession;
 import com.android.tools.sizereduction.analyzer.model.BundleContext;
 import com.android.tools.sizereduction.analyzer.model.Context;
 import com.android.tools.sizereduction.analyzer.model.FileData;
@@ -73,8 +73,7 @@ public final class FakeSuggester
   }
 
   @Override
-  public ImmutableList<Suggestion> processBundle(
-      BundleContext context, AppBundle bundle, ZipFile bundleZip) {
+  public ImmutableList<Suggestion> processBundle(BundleContext context, AnalysisSession session) {
     return getArtifactSuggestions(context);
   }
 
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.zip;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.utils.TestUtils;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ZipCentralDirectoryTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void open_readsSameEntriesAsZipFile() throws Exception {
+    File bundleFile = TestUtils.getTestDataFile("app.aab");
+
+    ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(bundleFile.toPath());
+
+    try (ZipFile zipFile = new ZipFile(bundleFile)) {
+      List<? extends ZipEntry> entries = Collections.list(zipFile.entries());
+      assertThat(centralDirectory.getEntryCount()).isEqualTo(entries.size());
+      for (int index = 0; index < entries.size(); index++) {
+        ZipEntry entry = entries.get(index);
+        assertThat(centralDirectory.getName(index)).isEqualTo(entry.getName());
+        assertThat(centralDirectory.isDirectory(index)).isEqualTo(entry.isDirectory());
+        assertThat(centralDirectory.getSize(index)).isEqualTo(entry.getSize());
+        assertThat(centralDirectory.getCompressedSize(index)).isEqualTo(entry.getCompressedSize());
+        assertThat(centralDirectory.getCrc(index)).isEqualTo((int) entry.getCrc());
+        assertThat(centralDirectory.getMethod(index)).isEqualTo(entry.getMethod());
+        assertThat(centralDirectory.findEntry(entry.getName())).isEqualTo(OptionalInt.of(index));
+      }
+    }
+  }
+
+  @Test
+  public void findEntry_missingEntry() throws Exception {
+    File zip = writeZip(10);
+
+    ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(zip.toPath());
+
+    assertThat(centralDirectory.findEntry("dir/missing.txt")).isEqualTo(OptionalInt.empty());
+    assertThat(centralDirectory.findEntry("dir/file1")).isEqualTo(OptionalInt.empty());
+    assertThat(centralDirectory.findEntry("dir/file1.txt")).isEqualTo(OptionalInt.of(1));
+  }
+
+  @Test
+  public void nameMatching() throws Exception {
+    File zip = writeZip(1);
+
+    ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(zip.toPath());
+
+    assertThat(centralDirectory.nameStartsWith(0, "dir/".getBytes(UTF_8))).isTrue();
+    assertThat(centralDirectory.nameStartsWith(0, "file".getBytes(UTF_8))).isFalse();
+    assertThat(centralDirectory.nameEndsWith(0, ".txt".getBytes(UTF_8))).isTrue();
+    assertThat(centralDirectory.nameEndsWith(0, ".dex".getBytes(UTF_8))).isFalse();
+  }
+
+  @Test
+  public void open_readsZip64CentralDirectory() throws Exception {
+    // More than 65535 entries require the zip64 end of central directory record.
+    int entryCount = 70_000;
+    File zip = writeZip(entryCount);
+
+    ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(zip.toPath());
+
+    assertThat(centralDirectory.getEntryCount()).isEqualTo(entryCount);
+    int lastIndex = entryCount - 1;
+    assertThat(centralDirectory.getName(lastIndex)).isEqualTo("dir/file" + lastIndex + ".txt");
+    assertThat(centralDirectory.findEntry("dir/file" + lastIndex + ".txt"))
+        .isEqualTo(OptionalInt.of(lastIndex));
+    CRC32 crc = new CRC32();
+    crc.update(contentOf(lastIndex));
+    assertThat(centralDirectory.getCrc(lastIndex)).isEqualTo((int) crc.getValue());
+    assertThat(centralDirectory.getSize(lastIndex)).isEqualTo(contentOf(lastIndex).length);
+  }
+
+  private File writeZip(int entryCount) throws Exception {
+    File zip = temporaryFolder.newFile();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(zip))) {
+      for (int index = 0; index < entryCount; index++) {
+        zipOutputStream.putNextEntry(new ZipEntry("dir/file" + index + ".txt"));
+        zipOutputStream.write(contentOf(index));
+        zipOutputStream.closeEntry();
+      }
+    }
+    return zip;
+  }
+
+  private static byte[] contentOf(int index) {
+    return ("content of file " + index).getBytes(UTF_8);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.tools.sizereduction.analyzer.zip;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.tools.sizereduction.analyzer.utils.TestUtils;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ZipEntryReaderTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void openEntry_readsSameContentAsZipFile() throws Exception {
+    File bundleFile = TestUtils.getTestDataFile("app.aab");
+    ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(bundleFile.toPath());
+
+    try (ZipFile zipFile = new ZipFile(bundleFile);
+        ZipEntryReader entryReader = ZipEntryReader.open(bundleFile.toPath())) {
+      for (int index = 0; index < centralDirectory.getEntryCount(); index++) {
+        byte[] expected;
+        try (InputStream inputStream =
+            zipFile.getInputStream(zipFile.getEntry(centralDirectory.getName(index)))) {
+          expected = ByteStreams.toByteArray(inputStream);
+        }
+
+        assertThat(readEntry(entryReader, centralDirectory, index)).isEqualTo(expected);
+      }
+    }
+  }
+
+  @Test
+  public void openEntry_readsEntriesConcurrently() throws Exception {
+    File zip = temporaryFolder.newFile();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(zip))) {
+      for (int i = 0; i < 200; i++) {
+        byte[] content = Strings.repeat("entry " + i + " ", 1000).getBytes(UTF_8);
+        ZipEntry entry = new ZipEntry("entry" + i);
+        if (i % 2 == 0) {
+          entry.setMethod(ZipEntry.STORED);
+          entry.setSize(content.length);
+          CRC32 crc = new CRC32();
+          crc.update(content);
+          entry.setCrc(crc.getValue());
+        }
+        zipOutputStream.putNextEntry(entry);
+        zipOutputStream.write(content);
+        zipOutputStream.closeEntry();
+      }
+    }
+    ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(zip.toPath());
+
+    try (ZipEntryReader entryReader = ZipEntryReader.open(zip.toPath())) {
+      // Every entry is read several times, so that pooled inflaters get reused.
+      IntStream.range(0, 4 * centralDirectory.getEntryCount())
+          .parallel()
+          .forEach(
+              i -> {
+                int index = i % centralDirectory.getEntryCount();
+                String expected = Strings.repeat("entry " + index + " ", 1000);
+                assertThat(new String(readEntry(entryReader, centralDirectory, index), UTF_8))
+                    .isEqualTo(expected);
+              });
+    }
+  }
+
+  @Test
+  public void readAhead_servesEntriesWithinAndOutsideOfWindow() throws Exception {
+    File bundleFile = TestUtils.getTestDataFile("app.aab");
+    ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(bundleFile.toPath());
+
+    try (ZipEntryReader entryReader = ZipEntryReader.open(bundleFile.toPath())) {
+      // A window covering only the first half of the file.
+      ZipEntrySource window = entryReader.readAhead(0, (int) (bundleFile.length() / 2));
+
+      for (int index = 0; index < centralDirectory.getEntryCount(); index++) {
+        assertThat(readEntry(window, centralDirectory, index))
+            .isEqualTo(readEntry(entryReader, centralDirectory, index));
+      }
+    }
+  }
+
+  private static byte[] readEntry(
+      ZipEntrySource entryReader, ZipCentralDirectory centralDirectory, int index) {
+    try (InputStream inputStream =
+        entryReader.openEntry(
+            centralDirectory.getLocalHeaderOffset(index),
+            centralDirectory.getCompressedSize(index),
+            centralDirectory.getMethod(index) != ZipEntry.STORED)) {
+      return ByteStreams.toByteArray(inputStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}